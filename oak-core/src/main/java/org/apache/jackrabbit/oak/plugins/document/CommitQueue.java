@@ -23,10 +23,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -41,6 +42,14 @@ import org.slf4j.LoggerFactory;
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * The queue is backed by a concurrent skip list sorted by revision. Only the
+ * creation of a revision and its insertion into the queue are serialized,
+ * because the order of the revisions must match the order of the queue. A
+ * commit at the head of the queue calls back, removes its entry and then
+ * releases the new head without holding a lock. Each removal of an entry is
+ * followed by a release of the current head, which guarantees an entry is
+ * released once all earlier entries are done or canceled.
  */
 final class CommitQueue {
 
@@ -51,12 +60,19 @@ final class CommitQueue {
      */
     static final long DEFAULT_SUSPEND_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+    private final ConcurrentNavigableMap<Revision, Entry> commits =
+            new ConcurrentSkipListMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+
+    /**
+     * Monitor for the creation of revisions. Ensures revisions are added to
+     * {@link #commits} in the order they were created.
+     */
+    private final Object creationMonitor = new Object();
 
     /**
      * Map of currently suspended commits until a given Revision is visible.
      */
-    private final Map<Semaphore, SuspendedCommit> suspendedCommits = Maps.newIdentityHashMap();
+    private final ConcurrentMap<Semaphore, SuspendedCommit> suspendedCommits = Maps.newConcurrentMap();
 
     private final RevisionContext context;
 
@@ -76,7 +92,7 @@ final class CommitQueue {
         checkArgument(num > 0);
         SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
         Revision rev = null;
-        synchronized (this) {
+        synchronized (creationMonitor) {
             for (int i = 0; i < num; i++) {
                 rev = context.newRevision();
                 revs.add(rev);
@@ -98,9 +114,7 @@ final class CommitQueue {
     }
 
     boolean contains(@Nonnull Revision revision) {
-        synchronized (this) {
-            return commits.containsKey(checkNotNull(revision));
-        }
+        return commits.containsKey(checkNotNull(revision));
     }
 
     /**
@@ -115,29 +129,27 @@ final class CommitQueue {
      * @param conflictRevisions the revisions to become visible.
      */
     void suspendUntilAll(@Nonnull Set<Revision> conflictRevisions) {
-        Semaphore s;
-        int addedRevisions;
-        synchronized (suspendedCommits) {
-            RevisionVector headRevision = context.getHeadRevision();
-            Set<Revision> afterHead = new HashSet<Revision>(conflictRevisions.size());
-            for (Revision r : conflictRevisions) {
-                if (headRevision.isRevisionNewer(r)) {
-                    afterHead.add(r);
-                }
+        RevisionVector headRevision = context.getHeadRevision();
+        Set<Revision> afterHead = new HashSet<Revision>(conflictRevisions.size());
+        for (Revision r : conflictRevisions) {
+            if (headRevision.isRevisionNewer(r)) {
+                afterHead.add(r);
             }
-
-            s = new Semaphore(0);
-            suspendedCommits.put(s, new SuspendedCommit(s, afterHead));
-            addedRevisions = afterHead.size();
         }
+
+        Semaphore s = new Semaphore(0);
+        SuspendedCommit suspended = new SuspendedCommit(s, afterHead);
+        int addedRevisions = afterHead.size();
+        suspendedCommits.put(s, suspended);
+        // the head revision may have changed after it was read above, but
+        // before the suspended commit was registered
+        suspended.removeRevisionsVisibleFrom(context.getHeadRevision());
         try {
             s.tryAcquire(addedRevisions, suspendTimeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             LOG.debug("The suspended thread has been interrupted", e);
         } finally {
-            synchronized (suspendedCommits) {
-                suspendedCommits.remove(s);
-            }
+            suspendedCommits.remove(s);
         }
     }
 
@@ -153,9 +165,7 @@ final class CommitQueue {
      * @return the number of suspended threads on this commit queue.
      */
     int numSuspendedThreads() {
-        synchronized (suspendedCommits) {
-            return suspendedCommits.size();
-        }
+        return suspendedCommits.size();
     }
 
     /**
@@ -176,82 +186,70 @@ final class CommitQueue {
     //------------------------< internal >--------------------------------------
 
     private void notifySuspendedCommits() {
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            RevisionVector headRevision = context.getHeadRevision();
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        RevisionVector headRevision = context.getHeadRevision();
+        Iterator<Map.Entry<Semaphore, SuspendedCommit>> it = suspendedCommits.entrySet().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next().getValue();
+            if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void notifySuspendedCommits(@Nonnull Revision revision) {
         checkNotNull(revision);
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<Semaphore, SuspendedCommit>> it = suspendedCommits.entrySet().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next().getValue();
+            if (suspended.removeRevision(revision) && suspended.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void removeCommit(@Nonnull Revision rev) {
-        // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
-            LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
-        }
+        // simply remove and notify next head if any. the head must be
+        // notified even if the removed commit was not the head, because
+        // a concurrently removed head may have released this commit
+        commits.remove(rev);
+        LOG.debug("removed commit {}", rev);
+        notifyHead();
     }
 
     private void waitUntilHeadOfQueue(@Nonnull Revision rev,
                                       @Nonnull Callback c) {
         assert !commits.isEmpty();
 
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
-        if (!isHead) {
+        Entry commitEntry = commits.get(rev);
+        if (!commits.firstKey().equals(rev)) {
             LOG.debug("not head: {}, waiting...", rev);
             commitEntry.await();
         }
-        synchronized (this) {
+        try {
+            c.headOfQueue(rev);
+        } finally {
+            // remove only after the callback, otherwise the
+            // next commit may call back concurrently
             commits.remove(rev);
-            try {
-                LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-                c.headOfQueue(rev);
-            } finally {
-                // notify next if there is any
-                notifyHead();
-            }
+            LOG.debug("removed {}", rev);
+            // notify next if there is any
+            notifyHead();
         }
     }
 
     private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        if (head != null) {
+            LOG.debug("release {}", head.getKey());
+            head.getValue().release();
         }
     }
-
     /**
      * An entry in the commit queue.
      */
@@ -295,7 +293,11 @@ final class CommitQueue {
         }
     }
 
-    private class SuspendedCommit {
+    /**
+     * A suspended commit. Methods are synchronized on the instance, which
+     * only contends with notifications for the same suspended commit.
+     */
+    private static class SuspendedCommit {
 
         private final Semaphore semaphore;
 
@@ -306,7 +308,11 @@ final class CommitQueue {
             this.revisions = revisions;
         }
 
-        private boolean removeRevisionsVisibleFrom(RevisionVector revision) {
+        private synchronized boolean isEmpty() {
+            return revisions.isEmpty();
+        }
+
+        private synchronized boolean removeRevisionsVisibleFrom(RevisionVector revision) {
             Iterator<Revision> it = revisions.iterator();
             boolean removed = false;
             while (it.hasNext()) {
@@ -319,7 +325,7 @@ final class CommitQueue {
             return removed;
         }
 
-        private boolean removeRevision(Revision r) {
+        private synchronized boolean removeRevision(Revision r) {
             if (revisions.remove(r)) {
                 semaphore.release();
                 return true;
@@ -69,6 +69,23 @@ abstract class DiffCache {
                             @Nonnull RevisionVector to,
                             boolean local);
 
+    /**
+     * Starts a new cache entry for external changes read from the journal
+     * during a background read. In contrast to entries created with
+     * {@link #newEntry(RevisionVector, RevisionVector, boolean)}, this entry
+     * is known to contain all changed paths between the two revisions. The
+     * default implementation creates an entry for external changes.
+     *
+     * @param from the from revision.
+     * @param to the to revision.
+     * @return the cache entry.
+     */
+    @Nonnull
+    Entry newJournalEntry(@Nonnull RevisionVector from,
+                          @Nonnull RevisionVector to) {
+        return newEntry(from, to, false);
+    }
+
     /**
      * @return the statistics for this cache.
      */
@@ -132,7 +132,10 @@ public class Document implements CacheValue {
     public void seal() {
         if (!sealed.getAndSet(true)) {
             for (Map.Entry<String, Object> entry : data.entrySet()) {
-                if (entry.getValue() instanceof Map) {
+                if (entry.getValue() instanceof LazyRevisionMap) {
+                    // seal without decoding
+                    ((LazyRevisionMap) entry.getValue()).seal();
+                } else if (entry.getValue() instanceof Map) {
                     @SuppressWarnings("unchecked")
                     Map<Object, Object> map = (Map<Object, Object>) entry.getValue();
                     entry.setValue(transformAndSeal(map, entry.getKey(), 1));
@@ -58,6 +58,7 @@ import org.apache.jackrabbit.oak.plugins.blob.CachingBlobStore;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState.Children;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.OffHeapCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoBlobReferenceIterator;
@@ -503,12 +504,16 @@ public class DocumentMK {
         private BlobStore blobStore;
         private int clusterId  = Integer.getInteger("oak.documentMK.clusterId", 0);
         private int asyncDelay = 1000;
+        private int backgroundWriteConcurrency = 1;
+        private int childPrefetchDepth = 0;
+        private boolean journalCacheInvalidation = false;
         private boolean timing;
         private boolean logging;
         private boolean leaseCheck = true; // OAK-2739 is enabled by default also for non-osgi
         private boolean isReadOnlyMode = false;
         private Weigher<CacheValue, CacheValue> weigher = new EmpiricalWeigher();
         private long memoryCacheSize = DEFAULT_MEMORY_CACHE_SIZE;
+        private long offHeapCacheSize;
         private int nodeCachePercentage = DEFAULT_NODE_CACHE_PERCENTAGE;
         private int prevDocCachePercentage = DEFAULT_PREV_DOC_CACHE_PERCENTAGE;
         private int childrenCachePercentage = DEFAULT_CHILDREN_CACHE_PERCENTAGE;
@@ -528,6 +533,8 @@ public class DocumentMK {
         private BlobStoreStats blobStoreStats;
         private CacheStats blobStoreCacheStats;
         private DocumentStoreStatsCollector documentStoreStatsCollector;
+        private Map<CacheType, CacheStats> offHeapCacheStats =
+                new EnumMap<CacheType, CacheStats>(CacheType.class);
         private Map<CacheType, PersistentCacheStats> persistentCacheStats =
                 new EnumMap<CacheType, PersistentCacheStats>(CacheType.class);
 
@@ -798,6 +805,70 @@ public class DocumentMK {
             return asyncDelay;
         }
 
+        /**
+         * Set the maximum number of batches written concurrently when the
+         * background update persists the pending _lastRev changes. By
+         * default 1 is used, meaning batches are written one after another
+         * by the background update thread.
+         *
+         * @param concurrency the number of concurrent batch writes.
+         * @return this
+         */
+        public Builder setBackgroundWriteConcurrency(int concurrency) {
+            checkArgument(concurrency > 0,
+                    "concurrency must be greater than zero: %s", concurrency);
+            this.backgroundWriteConcurrency = concurrency;
+            return this;
+        }
+
+        public int getBackgroundWriteConcurrency() {
+            return backgroundWriteConcurrency;
+        }
+
+        /**
+         * Set the number of pages of child nodes read ahead when the child
+         * node entries of a node are iterated. While the caller consumes a
+         * page, the query for the following pages and the node states of
+         * their child nodes are read using the {@link #setExecutor(Executor)
+         * executor} of this builder. By default 0 is used, meaning child nodes
+         * are only read when the next page is needed. Read-ahead only makes
+         * sense with an executor that runs tasks asynchronously.
+         *
+         * @param depth the number of pages to read ahead.
+         * @return this
+         */
+        public Builder setChildPrefetchDepth(int depth) {
+            checkArgument(depth >= 0,
+                    "depth must not be negative: %s", depth);
+            this.childPrefetchDepth = depth;
+            return this;
+        }
+
+        public int getChildPrefetchDepth() {
+            return childPrefetchDepth;
+        }
+
+        /**
+         * Enable or disable journal based invalidation of cached documents.
+         * When enabled, a background thread tails the journal entries written
+         * by other cluster nodes and invalidates the documents changed by
+         * those entries as they arrive. The background read then only
+         * processes journal entries not seen yet, instead of checking all
+         * cached documents changed in the external revision range. Disabled
+         * by default.
+         *
+         * @param enabled whether journal based cache invalidation is enabled.
+         * @return this
+         */
+        public Builder setJournalCacheInvalidation(boolean enabled) {
+            this.journalCacheInvalidation = enabled;
+            return this;
+        }
+
+        public boolean isJournalCacheInvalidation() {
+            return journalCacheInvalidation;
+        }
+
         public Weigher<CacheValue, CacheValue> getWeigher() {
             return weigher;
         }
@@ -812,6 +883,28 @@ public class DocumentMK {
             return this;
         }
 
+        /**
+         * Sets the size of the off-heap tier of the document caches. Documents
+         * evicted from the heap cache are kept serialized in off-heap memory
+         * until this size is reached. The size is distributed between the
+         * document and the previous document cache in the same ratio as the
+         * heap cache. The off-heap tier is only used with a
+         * {@link MongoDocumentStore}. By default the size is 0, which disables
+         * the off-heap tier.
+         *
+         * @param offHeapCacheSize the size in bytes.
+         * @return this
+         */
+        public Builder offHeapCacheSize(long offHeapCacheSize) {
+            checkArgument(offHeapCacheSize >= 0);
+            this.offHeapCacheSize = offHeapCacheSize;
+            return this;
+        }
+
+        public long getOffHeapCacheSize() {
+            return offHeapCacheSize;
+        }
+
         public Builder memoryCacheDistribution(int nodeCachePercentage,
                                                int prevDocCachePercentage,
                                                int childrenCachePercentage,
@@ -911,6 +1004,11 @@ public class DocumentMK {
             return this;
         }
 
+        @Nonnull
+        public Map<CacheType, CacheStats> getOffHeapCacheStats() {
+            return offHeapCacheStats;
+        }
+
         @Nonnull
         public Map<CacheType, PersistentCacheStats> getPersistenceCacheStats() {
             return persistentCacheStats;
@@ -1037,6 +1135,14 @@ public class DocumentMK {
                 ) {
             Set<EvictionListener<K, V>> listeners = new CopyOnWriteArraySet<EvictionListener<K,V>>();
             Cache<K, V> cache = buildCache(cacheType.name(), maxWeight, listeners);
+            long offHeapSize = getOffHeapCacheSize(cacheType, docStore);
+            if (offHeapSize > 0) {
+                OffHeapCache<K, V> offHeapCache = new OffHeapCache<K, V>(
+                        cache, cacheType, docNodeStore, docStore, offHeapSize);
+                listeners.add(offHeapCache);
+                offHeapCacheStats.put(cacheType, offHeapCache.getOffHeapStats());
+                cache = offHeapCache;
+            }
             PersistentCache p = getPersistentCache();
             if (p != null) {
                 if (docNodeStore != null) {
@@ -1054,6 +1160,29 @@ public class DocumentMK {
             return cache;
         }
 
+        /**
+         * Returns the size of the off-heap tier for the given cache type.
+         * Only the document caches of a {@link MongoDocumentStore} have an
+         * off-heap tier.
+         */
+        private long getOffHeapCacheSize(CacheType cacheType, DocumentStore docStore) {
+            if (offHeapCacheSize == 0 || !(docStore instanceof MongoDocumentStore)) {
+                return 0;
+            }
+            long heapSize = getDocumentCacheSize() + getPrevDocumentCacheSize();
+            if (heapSize == 0) {
+                return 0;
+            }
+            // compute the ratio first, the product of two byte counts
+            // overflows at realistic sizes
+            if (cacheType == CacheType.DOCUMENT) {
+                return (long) ((double) getDocumentCacheSize() / heapSize * offHeapCacheSize);
+            } else if (cacheType == CacheType.PREV_DOCUMENT) {
+                return (long) ((double) getPrevDocumentCacheSize() / heapSize * offHeapCacheSize);
+            }
+            return 0;
+        }
+
         public PersistentCache getPersistentCache() {
             if (persistentCacheURI == null) {
                 return null;
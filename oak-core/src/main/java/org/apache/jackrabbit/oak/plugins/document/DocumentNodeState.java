@@ -16,14 +16,17 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -49,13 +52,17 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.apache.jackrabbit.oak.util.PerfLogger;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static org.apache.jackrabbit.oak.commons.StringUtils.estimateMemoryUsage;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 
@@ -64,6 +71,8 @@ import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE
  */
 public class DocumentNodeState extends AbstractNodeState implements CacheValue {
 
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentNodeState.class);
+
     private static final PerfLogger perfLogger = new PerfLogger(
             LoggerFactory.getLogger(DocumentNodeState.class.getName()
                     + ".perf"));
@@ -505,20 +514,16 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
     }
 
     /**
-     * Returns up to {@code limit} child node entries, starting after the given
-     * {@code name}.
+     * Returns the child node entries for the given children of this node.
      *
-     * @param name the name of the lower bound child node entry (exclusive) or
-     *             {@code null}, if the method should start with the first known
-     *             child node.
-     * @param limit the maximum number of child node entries to return.
+     * @param children the children as returned by
+     *          {@link DocumentNodeStore#getChildren(DocumentNodeState, String, int)}.
      * @return the child node entries.
      */
     @Nonnull
-    private Iterable<ChildNodeEntry> getChildNodeEntries(@Nullable String name,
-                                                         int limit) {
-        Iterable<DocumentNodeState> children = store.getChildNodes(this, name, limit);
-        return Iterables.transform(children, new Function<DocumentNodeState, ChildNodeEntry>() {
+    private Iterable<ChildNodeEntry> getChildNodeEntries(@Nonnull Children children) {
+        Iterable<DocumentNodeState> nodes = store.getChildNodes(this, children);
+        return Iterables.transform(nodes, new Function<DocumentNodeState, ChildNodeEntry>() {
             @Override
             public ChildNodeEntry apply(final DocumentNodeState input) {
                 return new AbstractChildNodeEntry() {
@@ -689,6 +694,17 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
         private int fetchSize = INITIAL_FETCH_SIZE;
         private int currentRemaining = fetchSize;
 
+        /**
+         * Pages of children read ahead, in iteration order.
+         */
+        private final Deque<ListenableFuture<Children>> prefetched =
+                new ArrayDeque<ListenableFuture<Children>>();
+
+        /**
+         * The fetch size of the next page to read ahead.
+         */
+        private int prefetchSize;
+
         ChildNodeEntryIterator() {
             fetchMore();
         }
@@ -725,16 +741,57 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
         }
 
         private void fetchMore() {
-            Iterator<ChildNodeEntry> entries = getChildNodeEntries(
-                    previousName, fetchSize).iterator();
+            Children children = null;
+            ListenableFuture<Children> next = prefetched.poll();
+            if (next != null) {
+                try {
+                    children = getUninterruptibly(next);
+                } catch (ExecutionException e) {
+                    // read-ahead is an optimization only
+                    LOG.debug("Read-ahead of children failed for {}, reading them now",
+                            path, e.getCause());
+                    prefetched.clear();
+                }
+            }
+            if (children == null) {
+                children = store.getChildren(DocumentNodeState.this,
+                        previousName, fetchSize);
+            }
+            Iterator<ChildNodeEntry> entries = getChildNodeEntries(children).iterator();
             currentRemaining = fetchSize;
             fetchSize = Math.min(fetchSize * 2, MAX_FETCH_SIZE);
             if (entries.hasNext()) {
                 current = entries;
+                readAhead(children);
             } else {
                 current = null;
             }
         }
+
+        /**
+         * Reads ahead pages of children following the given page, until the
+         * configured number of pages is pending.
+         *
+         * @param children the page of children returned last.
+         */
+        private void readAhead(Children children) {
+            int depth = store.getChildPrefetchDepth();
+            if (depth == 0 || !children.hasMore) {
+                return;
+            }
+            if (prefetched.isEmpty()) {
+                prefetchSize = fetchSize;
+            }
+            while (prefetched.size() < depth) {
+                ListenableFuture<Children> previous = prefetched.peekLast();
+                if (previous == null) {
+                    previous = Futures.immediateFuture(children);
+                }
+                prefetched.add(store.prefetchChildren(
+                        DocumentNodeState.this, previous, prefetchSize));
+                prefetchSize = Math.min(prefetchSize * 2, MAX_FETCH_SIZE);
+            }
+        }
     }
 
 }
@@ -56,6 +56,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,16 +72,19 @@ import javax.management.NotCompliantMBeanException;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.apache.jackrabbit.oak.commons.IOUtils;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
@@ -136,6 +141,12 @@ public final class DocumentNodeStore
      */
     static final int NUM_CHILDREN_CACHE_LIMIT = Integer.getInteger("oak.documentMK.childrenCacheLimit", 16 * 1024);
 
+    /**
+     * The interval in milliseconds at which the journal is tailed when
+     * journal based cache invalidation is enabled.
+     */
+    static final int JOURNAL_TAIL_INTERVAL_MILLIS = Integer.getInteger("oak.documentMK.journalTailInterval", 100);
+
     /**
      * Feature flag to enable concurrent add/remove operations of hidden empty
      * nodes. See OAK-2673.
@@ -399,6 +410,33 @@ public final class DocumentNodeStore
     
     private final Executor executor;
 
+    /**
+     * Executor for concurrent batch writes of the background update or
+     * {@code null} if batches are written by the background update thread.
+     */
+    private final ExecutorService backgroundWriteExecutor;
+
+    private final int backgroundWriteConcurrency;
+
+    /**
+     * The number of pages of child nodes read ahead when the child node
+     * entries of a node are iterated.
+     */
+    private final int childPrefetchDepth;
+
+    /**
+     * Tails the journal and invalidates cached documents changed by other
+     * cluster nodes or {@code null} if cached documents are invalidated by
+     * the background read only.
+     */
+    private final JournalCacheInvalidator journalCacheInvalidator;
+
+    /**
+     * Background thread tailing the journal or {@code null} if
+     * {@link #journalCacheInvalidator} is {@code null}.
+     */
+    private Thread journalTailThread;
+
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
 
     private final boolean disableBranches;
@@ -430,6 +468,8 @@ public final class DocumentNodeStore
         this.changes = Collection.JOURNAL.newDocument(s);
         this.executor = builder.getExecutor();
         this.clock = builder.getClock();
+        this.backgroundWriteConcurrency = builder.getBackgroundWriteConcurrency();
+        this.childPrefetchDepth = builder.getChildPrefetchDepth();
 
         int cid = builder.getClusterId();
         cid = Integer.getInteger("oak.documentMK.clusterId", cid);
@@ -450,6 +490,11 @@ public final class DocumentNodeStore
 
         this.store = s;
         this.clusterId = cid;
+        if (builder.isJournalCacheInvalidation()) {
+            this.journalCacheInvalidator = new JournalCacheInvalidator(s, clock);
+        } else {
+            this.journalCacheInvalidator = null;
+        }
         this.branches = new UnmergedBranches();
         this.asyncDelay = builder.getAsyncDelay();
         this.versionGarbageCollector = new VersionGarbageCollector(
@@ -537,12 +582,29 @@ public final class DocumentNodeStore
                 new BackgroundOperation(this, isDisposed),
                 "DocumentNodeStore background update thread " + threadNamePostfix);
         backgroundUpdateThread.setDaemon(true);
+        if (backgroundWriteConcurrency > 1 && !readOnlyMode) {
+            backgroundWriteExecutor = Executors.newFixedThreadPool(
+                    backgroundWriteConcurrency, new ThreadFactoryBuilder()
+                            .setNameFormat("DocumentNodeStore background write thread "
+                                    + threadNamePostfix + " %d")
+                            .setDaemon(true).build());
+        } else {
+            backgroundWriteExecutor = null;
+        }
 
         backgroundReadThread.start();
         if (!readOnlyMode) {
             backgroundUpdateThread.start();
         }
 
+        if (journalCacheInvalidator != null) {
+            journalTailThread = new Thread(
+                    new BackgroundJournalTail(this, isDisposed),
+                    "DocumentNodeStore journal tail thread " + threadNamePostfix);
+            journalTailThread.setDaemon(true);
+            journalTailThread.start();
+        }
+
         leaseUpdateThread = new Thread(new BackgroundLeaseUpdate(this, isDisposed),
                 "DocumentNodeStore lease update thread " + threadNamePostfix);
         leaseUpdateThread.setDaemon(true);
@@ -611,6 +673,13 @@ public final class DocumentNodeStore
         } catch (InterruptedException e) {
             // ignore
         }
+        if (journalTailThread != null) {
+            try {
+                journalTailThread.join();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
 
         // do a final round of background operations after
         // the background thread stopped
@@ -628,6 +697,10 @@ public final class DocumentNodeStore
             }
         }
 
+        if (backgroundWriteExecutor != null) {
+            new ExecutorCloser(backgroundWriteExecutor).close();
+        }
+
         try {
             leaseUpdateThread.join();
         } catch (InterruptedException e) {
@@ -1058,18 +1131,13 @@ public final class DocumentNodeStore
             docChildrenCache.put(key, clone);
             c = clone;
         }
-        Iterable<NodeDocument> head = filter(transform(c.childNames,
-                new Function<String, NodeDocument>() {
+        final List<String> childNames = c.childNames;
+        Iterable<NodeDocument> head = new Iterable<NodeDocument>() {
             @Override
-            public NodeDocument apply(String name) {
-                String p = concat(path, name);
-                NodeDocument doc = store.find(Collection.NODES, Utils.getIdFromPath(p));
-                if (doc == null) {
-                    docChildrenCache.invalidate(key);
-                }
-                return doc;
+            public Iterator<NodeDocument> iterator() {
+                return readChildDocs(path, childNames, key, limit).iterator();
             }
-        }), Predicates.notNull());
+        };
         Iterable<NodeDocument> it;
         if (c.isComplete) {
             it = head;
@@ -1090,6 +1158,51 @@ public final class DocumentNodeStore
         return Iterables.limit(it, limit);
     }
 
+    /**
+     * Reads up to {@code limit} child documents with the given names with
+     * bulk {@link DocumentStore#find(Collection, List)} calls. The returned
+     * documents are in the same order as the given names. If a child
+     * document does not exist anymore, the cache entry for the children
+     * of {@code path} is invalidated and the documents of the following
+     * names are read instead, until {@code limit} documents are read or
+     * all names are used.
+     *
+     * @param path the path of the parent document.
+     * @param childNames the names of the child documents.
+     * @param key the key of the cached child names.
+     * @param limit the maximum number of child documents to read.
+     * @return the child documents.
+     */
+    @Nonnull
+    private List<NodeDocument> readChildDocs(@Nonnull String path,
+                                             @Nonnull List<String> childNames,
+                                             @Nonnull StringValue key,
+                                             int limit) {
+        List<NodeDocument> result = newArrayList();
+        int next = 0;
+        while (result.size() < limit && next < childNames.size()) {
+            int end = Math.min(childNames.size(), next + limit - result.size());
+            List<String> ids = newArrayList();
+            for (String name : childNames.subList(next, end)) {
+                ids.add(Utils.getIdFromPath(concat(path, name)));
+            }
+            next = end;
+            Map<String, NodeDocument> docs = Maps.newHashMap();
+            for (NodeDocument doc : store.find(Collection.NODES, ids)) {
+                docs.put(doc.getId(), doc);
+            }
+            for (String id : ids) {
+                NodeDocument doc = docs.get(id);
+                if (doc == null) {
+                    docChildrenCache.invalidate(key);
+                } else {
+                    result.add(doc);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns up to {@code limit} child nodes, starting at the given
      * {@code name} (exclusive).
@@ -1111,8 +1224,22 @@ public final class DocumentNodeStore
             return Collections.emptyList();
         }
 
+        return getChildNodes(parent, getChildren(parent, name, limit));
+    }
+
+    /**
+     * Returns the child node states for the given children of a parent node.
+     *
+     * @param parent the parent node.
+     * @param children the children of the parent node as returned by
+     *          {@link #getChildren(DocumentNodeState, String, int)}.
+     * @return the child nodes.
+     */
+    @Nonnull
+    Iterable<DocumentNodeState> getChildNodes(@Nonnull final DocumentNodeState parent,
+                                              @Nonnull DocumentNodeState.Children children) {
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        return transform(children.children, new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
                 String p = concat(parent.getPath(), input);
@@ -1125,6 +1252,60 @@ public final class DocumentNodeStore
         });
     }
 
+    /**
+     * @return the number of pages of child nodes to read ahead when the child
+     *          node entries of a node are iterated.
+     */
+    int getChildPrefetchDepth() {
+        return childPrefetchDepth;
+    }
+
+    /**
+     * Reads the page of children following the {@code previous} page
+     * asynchronously using the executor of this node store. In addition to
+     * the children, the node states of the child nodes are read as well and
+     * put into the node cache. Documents of child nodes not yet in the node
+     * cache are read from the {@link DocumentStore} with a single bulk
+     * request.
+     *
+     * @param parent the parent node.
+     * @param previous the previous page of children.
+     * @param limit the maximum number of child nodes to read.
+     * @return the following page of children.
+     */
+    @Nonnull
+    ListenableFuture<DocumentNodeState.Children> prefetchChildren(
+            @Nonnull final DocumentNodeState parent,
+            @Nonnull ListenableFuture<DocumentNodeState.Children> previous,
+            final int limit) {
+        return Futures.transform(previous, new Function<DocumentNodeState.Children, DocumentNodeState.Children>() {
+            @Override
+            public DocumentNodeState.Children apply(DocumentNodeState.Children input) {
+                if (!input.hasMore || input.children.isEmpty()) {
+                    return DocumentNodeState.NO_CHILDREN;
+                }
+                String name = input.children.get(input.children.size() - 1);
+                DocumentNodeState.Children children = getChildren(parent, name, limit);
+                RevisionVector readRevision = parent.getLastRevision();
+                List<String> ids = newArrayList();
+                for (String c : children.children) {
+                    String p = concat(parent.getPath(), c);
+                    if (nodeCache.getIfPresent(new PathRev(p, readRevision)) == null) {
+                        ids.add(Utils.getIdFromPath(p));
+                    }
+                }
+                if (ids.size() > 1) {
+                    // warm the document cache with a single request
+                    store.find(NODES, ids);
+                }
+                for (String c : children.children) {
+                    getNode(concat(parent.getPath(), c), readRevision);
+                }
+                return children;
+            }
+        }, executor);
+    }
+
     @CheckForNull
     DocumentNodeState readNode(String path, RevisionVector readRevision) {
         final long start = PERFLOG.start();
@@ -1837,6 +2018,17 @@ public final class DocumentNodeStore
         }));
     }
 
+    /**
+     * Invalidates cached documents changed by journal entries other cluster
+     * nodes wrote since the journal was tailed the last time. Does nothing
+     * unless journal based cache invalidation is enabled.
+     */
+    void tailJournal() {
+        if (journalCacheInvalidator != null && !isDisposed.get()) {
+            journalCacheInvalidator.tail(getHeadRevision(), clusterId);
+        }
+    }
+
     /**
      * Perform a background read and make external changes visible.
      */
@@ -1899,7 +2091,20 @@ public final class DocumentNodeStore
                 } else {
                     try {
                         externalSort.sort();
-                        stats.cacheStats = store.invalidateCache(pathToId(externalSort));
+                        if (journalCacheInvalidator != null) {
+                            // only process journal entries not yet
+                            // seen by the journal tail thread
+                            for (Revision r : externalChanges) {
+                                Revision last = headRevision.getRevision(r.getClusterId());
+                                if (last == null) {
+                                    last = new Revision(0, 0, r.getClusterId());
+                                }
+                                journalCacheInvalidator.catchUp(last, r);
+                            }
+                            stats.cacheStats = journalCacheInvalidator.getAndResetStats();
+                        } else {
+                            stats.cacheStats = store.invalidateCache(pathToId(externalSort));
+                        }
                         // OAK-3002: only invalidate affected items (using journal)
                         long origSize = docChildrenCache.size();
                         if (origSize == 0) {
@@ -2079,7 +2284,8 @@ public final class DocumentNodeStore
                             + " bytes).");
                 }
             }
-        }, backgroundOperationLock.writeLock());
+        }, backgroundOperationLock.writeLock(),
+                backgroundWriteExecutor, backgroundWriteConcurrency);
     }
 
     //-----------------------------< internal >---------------------------------
@@ -2701,6 +2907,28 @@ public final class DocumentNodeStore
         }
     }
 
+    /**
+     * Tails the journal and invalidates documents changed by other cluster
+     * nodes. Runs every {@link #JOURNAL_TAIL_INTERVAL_MILLIS}, but does
+     * nothing while background operations are disabled with an async delay
+     * of zero.
+     */
+    static class BackgroundJournalTail extends NodeStoreTask {
+
+        BackgroundJournalTail(DocumentNodeStore nodeStore,
+                              AtomicBoolean isDisposed) {
+            super(nodeStore, isDisposed,
+                    Suppliers.ofInstance(JOURNAL_TAIL_INTERVAL_MILLIS));
+        }
+
+        @Override
+        protected void execute(@Nonnull DocumentNodeStore nodeStore) {
+            if (nodeStore.getAsyncDelay() != 0) {
+                nodeStore.tailJournal();
+            }
+        }
+    }
+
     static class BackgroundLeaseUpdate extends NodeStoreTask {
 
         BackgroundLeaseUpdate(DocumentNodeStore nodeStore,
@@ -117,6 +117,7 @@ public class DocumentNodeStoreService {
     private static final String DEFAULT_PERSISTENT_CACHE = "";
     private static final int DEFAULT_CACHE_SEGMENT_COUNT = 16;
     private static final int DEFAULT_CACHE_STACK_MOVE_DISTANCE = 16;
+    private static final int DEFAULT_OFF_HEAP_CACHE = 0;
     private static final String PREFIX = "oak.documentstore.";
     private static final String DESCRIPTION = "oak.nodestore.description";
 
@@ -199,6 +200,14 @@ public class DocumentNodeStoreService {
     )
     private static final String PROP_CACHE_STACK_MOVE_DISTANCE = "cacheStackMoveDistance";
 
+    @Property(intValue = DEFAULT_OFF_HEAP_CACHE,
+            label = "Off-Heap Cache Size (in MB)",
+            description = "Size in MB of the off-heap tier of the document caches. Documents evicted " +
+                    "from the heap are kept serialized in off-heap memory. Only used with MongoDB " +
+                    "(default 0, which disables the off-heap tier)"
+    )
+    private static final String PROP_OFF_HEAP_CACHE = "offHeapCache";
+
     @Property(intValue =  DEFAULT_BLOB_CACHE_SIZE,
             label = "Blob Cache Size (in MB)",
             description = "Cache size to store blobs in memory. Used only with default BlobStore " +
@@ -305,6 +314,41 @@ public class DocumentNodeStoreService {
     )
     public static final String PROP_VER_GC_MAX_AGE = "versionGcMaxAgeInSecs";
 
+    private static final int DEFAULT_VER_GC_PARALLELISM = 1;
+    @Property (intValue = DEFAULT_VER_GC_PARALLELISM,
+            label = "Version GC Parallelism",
+            description = "Number of threads the Version Garbage Collector (GC) uses to collect and remove " +
+                    "documents of deleted nodes. With a value greater than one the candidate documents are " +
+                    "processed concurrently in segments of one hour and a subsequent run resumes after the " +
+                    "last completed segment."
+    )
+    public static final String PROP_VER_GC_PARALLELISM = "versionGcParallelism";
+
+    private static final int DEFAULT_BACKGROUND_WRITE_CONCURRENCY = 1;
+    @Property (intValue = DEFAULT_BACKGROUND_WRITE_CONCURRENCY,
+            label = "Background Write Concurrency",
+            description = "Maximum number of batches written concurrently when the background update " +
+                    "persists pending _lastRev changes. With a value greater than one the batches are " +
+                    "written by a pool of threads while the next batch is prepared."
+    )
+    public static final String PROP_BACKGROUND_WRITE_CONCURRENCY = "backgroundWriteConcurrency";
+
+    private static final int DEFAULT_CHILD_PREFETCH_DEPTH = 0;
+    @Property (intValue = DEFAULT_CHILD_PREFETCH_DEPTH,
+            label = "Child Prefetch Depth",
+            description = "Number of pages of child nodes read ahead in the background when the children " +
+                    "of a node are iterated. A value of 0 disables the read-ahead."
+    )
+    public static final String PROP_CHILD_PREFETCH_DEPTH = "childPrefetchDepth";
+
+    @Property (boolValue = false,
+            label = "Journal Cache Invalidation",
+            description = "Boolean value indicating whether cached documents changed by other cluster " +
+                    "nodes are invalidated by tailing the journal. When disabled (default), the background " +
+                    "read checks all cached documents changed in the external revision range."
+    )
+    public static final String PROP_JOURNAL_CACHE_INVALIDATION = "journalCacheInvalidation";
+
     public static final String PROP_REV_RECOVERY_INTERVAL = "lastRevRecoveryJobIntervalInSecs";
 
     /**
@@ -389,10 +433,16 @@ public class DocumentNodeStoreService {
         String persistentCache = PropertiesUtil.toString(prop(PROP_PERSISTENT_CACHE), DEFAULT_PERSISTENT_CACHE);
         int cacheSegmentCount = toInteger(prop(PROP_CACHE_SEGMENT_COUNT), DEFAULT_CACHE_SEGMENT_COUNT);
         int cacheStackMoveDistance = toInteger(prop(PROP_CACHE_STACK_MOVE_DISTANCE), DEFAULT_CACHE_STACK_MOVE_DISTANCE);
+        int offHeapCacheSize = toInteger(prop(PROP_OFF_HEAP_CACHE), DEFAULT_OFF_HEAP_CACHE);
+        int backgroundWriteConcurrency = toInteger(prop(PROP_BACKGROUND_WRITE_CONCURRENCY),
+                DEFAULT_BACKGROUND_WRITE_CONCURRENCY);
+        int childPrefetchDepth = toInteger(prop(PROP_CHILD_PREFETCH_DEPTH), DEFAULT_CHILD_PREFETCH_DEPTH);
+        boolean journalCacheInvalidation = toBoolean(prop(PROP_JOURNAL_CACHE_INVALIDATION), false);
         DocumentMK.Builder mkBuilder =
                 new DocumentMK.Builder().
                 setStatisticsProvider(statisticsProvider).
                 memoryCacheSize(cacheSize * MB).
+                offHeapCacheSize(offHeapCacheSize * MB).
                 memoryCacheDistribution(
                         nodeCachePercentage,
                         prevDocCachePercentage,
@@ -401,6 +451,9 @@ public class DocumentNodeStoreService {
                         diffCachePercentage).
                 setCacheSegmentCount(cacheSegmentCount).
                 setCacheStackMoveDistance(cacheStackMoveDistance).
+                setBackgroundWriteConcurrency(backgroundWriteConcurrency).
+                setChildPrefetchDepth(childPrefetchDepth).
+                setJournalCacheInvalidation(journalCacheInvalidation).
                 setLeaseCheck(true /* OAK-2739: enabled by default */).
                 setLeaseFailureHandler(new LeaseFailureHandler() {
                     
@@ -690,6 +743,15 @@ public class DocumentNodeStoreService {
             );
         }
 
+        // register off-heap cache stats
+        for (CacheStats cs : mkBuilder.getOffHeapCacheStats().values()) {
+            registrations.add(
+                    registerMBean(whiteboard,
+                            CacheStatsMBean.class, cs,
+                            CacheStatsMBean.TYPE, cs.getName())
+            );
+        }
+
         // register persistent cache stats
         Map<CacheType, PersistentCacheStats> persistenceCacheStats = mkBuilder.getPersistenceCacheStats();
         for (PersistentCacheStats pcs: persistenceCacheStats.values()) {
@@ -704,6 +766,8 @@ public class DocumentNodeStoreService {
 
 
         final long versionGcMaxAgeInSecs = toLong(prop(PROP_VER_GC_MAX_AGE), DEFAULT_VER_GC_MAX_AGE);
+        store.getVersionGarbageCollector().setParallelism(
+                toInteger(prop(PROP_VER_GC_PARALLELISM), DEFAULT_VER_GC_PARALLELISM));
         final long blobGcMaxAgeInSecs = toLong(prop(PROP_BLOB_GC_MAX_AGE), DEFAULT_BLOB_GC_MAX_AGE);
 
         if (store.getBlobStore() instanceof GarbageCollectableBlobStore) {
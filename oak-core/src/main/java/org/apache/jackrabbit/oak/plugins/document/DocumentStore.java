@@ -81,6 +81,24 @@ public interface DocumentStore {
     @CheckForNull
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge);
 
+    /**
+     * Get the documents with the given {@code keys}. This is the bulk variant
+     * of {@link #find(Collection, String)} and an implementation may serve
+     * documents from a cache the same way. Documents that are not cached
+     * should be read from the underlying storage with as few round trips as
+     * possible.
+     * <p>
+     * Keys for documents that do not exist are simply ignored. The returned
+     * documents are immutable and in no particular order.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys of the documents to get
+     * @return the list of documents found (possibly empty)
+     */
+    @Nonnull
+    <T extends Document> List<T> find(Collection<T> collection, List<String> keys);
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Maps;
+
+import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.JOURNAL;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+
+/**
+ * Tails the journal entries written by other cluster nodes and invalidates
+ * the cached {@link NodeDocument}s changed by those entries as they arrive.
+ * Each journal entry is processed only once, which means the background read
+ * only has to invalidate documents for journal entries written since the
+ * last time the journal was tailed instead of checking all cached documents
+ * changed in the external revision range.
+ * <p>
+ * Statistics are accumulated between calls to {@link #getAndResetStats()},
+ * including the lag between the revision of a journal entry and the time its
+ * changes were invalidated.
+ */
+final class JournalCacheInvalidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalCacheInvalidator.class);
+
+    private final DocumentStore store;
+
+    private final Clock clock;
+
+    /**
+     * The revision of the most recent journal entry processed per cluster
+     * node.
+     */
+    private final Map<Integer, Revision> tails = Maps.newHashMap();
+
+    private Stats stats = new Stats();
+
+    JournalCacheInvalidator(@Nonnull DocumentStore store,
+                            @Nonnull Clock clock) {
+        this.store = checkNotNull(store);
+        this.clock = checkNotNull(clock);
+    }
+
+    /**
+     * Processes all journal entries written by other cluster nodes since the
+     * last call. Tailing for a cluster node starts at its revision in the
+     * given head revision, unless journal entries were processed already for
+     * this cluster node.
+     *
+     * @param head the current head revision.
+     * @param clusterId the id of the local cluster node. Journal entries of
+     *                  this cluster node are ignored.
+     */
+    synchronized void tail(@Nonnull RevisionVector head, int clusterId) {
+        for (Revision r : head) {
+            if (r.getClusterId() == clusterId) {
+                continue;
+            }
+            Revision from = tails.get(r.getClusterId());
+            if (from == null) {
+                from = r;
+                tails.put(r.getClusterId(), r);
+            }
+            process(from, new Revision(Long.MAX_VALUE, Integer.MAX_VALUE,
+                    r.getClusterId()));
+        }
+    }
+
+    /**
+     * Processes the journal entries of a cluster node in the given revision
+     * range, unless they were processed already.
+     *
+     * @param from the lower bound of the revision range (exclusive).
+     * @param to the upper bound of the revision range (inclusive).
+     */
+    synchronized void catchUp(@Nonnull Revision from, @Nonnull Revision to) {
+        checkArgument(checkNotNull(from).getClusterId() == checkNotNull(to).getClusterId());
+        Revision tail = tails.get(to.getClusterId());
+        if (tail != null && tail.compareRevisionTime(from) > 0) {
+            from = tail;
+        }
+        if (from.compareRevisionTime(to) < 0) {
+            process(from, new Revision(to.getTimestamp(), to.getCounter() + 1,
+                    to.getClusterId(), to.isBranch()));
+        }
+    }
+
+    /**
+     * @return the statistics accumulated since the previous call.
+     */
+    @Nonnull
+    synchronized CacheInvalidationStats getAndResetStats() {
+        Stats s = stats;
+        stats = new Stats();
+        return s;
+    }
+
+    //-----------------------------< internal >---------------------------------
+
+    /**
+     * Invalidates the documents changed by journal entries between
+     * {@code from} and {@code to} (both exclusive).
+     */
+    private void process(Revision from, Revision to) {
+        String fromId = JournalEntry.asId(from);
+        String toId = JournalEntry.asId(to);
+        while (true) {
+            List<JournalEntry> entries = store.query(JOURNAL, fromId, toId,
+                    JournalEntry.READ_CHUNK_SIZE);
+            stats.queryCount++;
+            for (JournalEntry entry : entries) {
+                for (String path : entry.getModifiedPaths()) {
+                    store.invalidateCache(NODES, Utils.getIdFromPath(path));
+                    stats.invalidationCount++;
+                }
+                Revision r = entry.getRevision();
+                Revision tail = tails.get(r.getClusterId());
+                if (tail == null || r.compareRevisionTime(tail) > 0) {
+                    tails.put(r.getClusterId(), r);
+                }
+                stats.journalEntryCount++;
+                stats.lag = Math.max(stats.lag,
+                        clock.getTime() - r.getTimestamp());
+            }
+            if (entries.size() < JournalEntry.READ_CHUNK_SIZE) {
+                break;
+            }
+            fromId = entries.get(entries.size() - 1).getId();
+        }
+        LOG.trace("Processed journal from {} to {}: {}", from, to, stats);
+    }
+
+    private static final class Stats implements CacheInvalidationStats {
+        int journalEntryCount;
+        int invalidationCount;
+        int queryCount;
+        long lag;
+
+        @Override
+        public String toString() {
+            return "JournalInvalidationResult{" +
+                    "journalEntryCount=" + journalEntryCount +
+                    ", invalidationCount=" + invalidationCount +
+                    ", queryCount=" + queryCount +
+                    ", lag=" + lag +
+                    '}';
+        }
+
+        @Override
+        public String summaryReport() {
+            return toString();
+        }
+    }
+}
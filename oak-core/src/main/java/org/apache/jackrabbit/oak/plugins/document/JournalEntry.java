@@ -67,7 +67,7 @@ public final class JournalEntry extends Document {
 
     public static final String MODIFIED = "_modified";
 
-    private static final int READ_CHUNK_SIZE = 100;
+    static final int READ_CHUNK_SIZE = 100;
 
     /**
      * switch to disk after 1MB
@@ -99,7 +99,7 @@ public final class JournalEntry extends Document {
         // note that it is not de-duplicated yet
         LOG.debug("applyTo: sorting done.");
 
-        final DiffCache.Entry entry = checkNotNull(diffCache).newEntry(from, to, false);
+        final DiffCache.Entry entry = checkNotNull(diffCache).newJournalEntry(from, to);
 
         final Iterator<String> it = externalSort.getIds();
         if (!it.hasNext()) {
@@ -224,6 +224,22 @@ public final class JournalEntry extends Document {
         return Long.parseLong(parts[1], 16);
     }
 
+    /**
+     * @return the revision of this journal entry as derived from its id.
+     */
+    @Nonnull
+    Revision getRevision() {
+        String id = getId();
+        boolean isBranch = id.startsWith("b");
+        if (isBranch) {
+            id = id.substring(1);
+        }
+        final String[] parts = id.split("-");
+        return new Revision(Long.parseLong(parts[1], 16),
+                Integer.parseInt(parts[2], 16),
+                Integer.parseInt(parts[0]), isBranch);
+    }
+
     void modified(String path) {
         TreeNode node = getChanges();
         for (String name : PathUtils.elements(path)) {
@@ -289,6 +305,35 @@ public final class JournalEntry extends Document {
         }
     }
 
+    /**
+     * Returns the paths modified by this journal entry, including the paths
+     * modified by related branch commits. Ancestors of modified paths are
+     * included as well.
+     *
+     * @return the modified paths.
+     */
+    @Nonnull
+    List<String> getModifiedPaths() {
+        final List<String> paths = Lists.newArrayList();
+        TraversingVisitor v = new TraversingVisitor() {
+
+            @Override
+            public void node(TreeNode node, String path) {
+                paths.add(path);
+            }
+        };
+        try {
+            getChanges().accept(v, "/");
+            for (JournalEntry e : getBranchCommits()) {
+                e.getChanges().accept(v, "/");
+            }
+        } catch (IOException e) {
+            // cannot happen, the visitor does not throw
+            throw new IllegalStateException(e);
+        }
+        return paths;
+    }
+
     /**
      * Returns the branch commits that are related to this journal entry.
      *
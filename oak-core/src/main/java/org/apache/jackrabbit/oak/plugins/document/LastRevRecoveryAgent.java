@@ -27,6 +27,7 @@ import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.PROPERTY_OR_DELETED;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -35,6 +36,8 @@ import javax.annotation.CheckForNull;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -49,6 +52,12 @@ import org.slf4j.LoggerFactory;
  * Utility class for recovering potential missing _lastRev updates of nodes due to crash of a node.
  */
 public class LastRevRecoveryAgent {
+
+    /**
+     * The number of parent documents to read with a single bulk find.
+     */
+    private static final int PARENT_BATCH_SIZE = 100;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final DocumentNodeStore nodeStore;
@@ -219,30 +228,36 @@ public class LastRevRecoveryAgent {
             }
         }
 
-        for (String parentPath : unsavedParents.getPaths()) {
-            Revision calcLastRev = unsavedParents.get(parentPath);
-            Revision knownLastRev = knownLastRevOrModification.get(parentPath);
-            if (knownLastRev == null) {
-                // we don't know when the document was last modified with
-                // the given clusterId. need to read from store
-                String id = Utils.getIdFromPath(parentPath);
-                NodeDocument doc = docStore.find(NODES, id);
-                if (doc != null) {
-                    Revision lastRev = doc.getLastRev().get(clusterId);
-                    Revision lastMod = determineLastModification(doc, clusterId);
-                    knownLastRev = Utils.max(lastRev, lastMod);
-                } else {
-                    log.warn("Unable to find document: {}", id);
-                    continue;
+        for (List<String> parentPaths : Iterables.partition(unsavedParents.getPaths(), PARENT_BATCH_SIZE)) {
+            // read all parent documents of this batch with unknown
+            // last modification from the store in a single call
+            Map<String, NodeDocument> parentDocs = readParentDocs(
+                    docStore, parentPaths, knownLastRevOrModification);
+            for (String parentPath : parentPaths) {
+                Revision calcLastRev = unsavedParents.get(parentPath);
+                Revision knownLastRev = knownLastRevOrModification.get(parentPath);
+                if (knownLastRev == null) {
+                    // we don't know when the document was last modified with
+                    // the given clusterId. need to read from store
+                    String id = Utils.getIdFromPath(parentPath);
+                    NodeDocument doc = parentDocs.get(id);
+                    if (doc != null) {
+                        Revision lastRev = doc.getLastRev().get(clusterId);
+                        Revision lastMod = determineLastModification(doc, clusterId);
+                        knownLastRev = Utils.max(lastRev, lastMod);
+                    } else {
+                        log.warn("Unable to find document: {}", id);
+                        continue;
+                    }
                 }
-            }
 
-            //Copy the calcLastRev of parent only if they have changed
-            //In many case it might happen that parent have consistent lastRev
-            //This check ensures that unnecessary updates are not made
-            if (knownLastRev == null
-                    || calcLastRev.compareRevisionTime(knownLastRev) > 0) {
-                unsaved.put(parentPath, calcLastRev);
+                //Copy the calcLastRev of parent only if they have changed
+                //In many case it might happen that parent have consistent lastRev
+                //This check ensures that unnecessary updates are not made
+                if (knownLastRev == null
+                        || calcLastRev.compareRevisionTime(knownLastRev) > 0) {
+                    unsaved.put(parentPath, calcLastRev);
+                }
             }
         }
 
@@ -304,6 +319,33 @@ public class LastRevRecoveryAgent {
         return size;
     }
 
+    /**
+     * Reads the documents for the given parent paths, which are not present
+     * in {@code knownLastRevOrModification}, with a single bulk find.
+     *
+     * @param docStore the document store.
+     * @param parentPaths the paths of the parent documents.
+     * @param knownLastRevOrModification the known last revisions by path.
+     * @return the documents read from the store, keyed by id.
+     */
+    private static Map<String, NodeDocument> readParentDocs(DocumentStore docStore,
+                                                            List<String> parentPaths,
+                                                            Map<String, Revision> knownLastRevOrModification) {
+        List<String> ids = Lists.newArrayList();
+        for (String parentPath : parentPaths) {
+            if (!knownLastRevOrModification.containsKey(parentPath)) {
+                ids.add(Utils.getIdFromPath(parentPath));
+            }
+        }
+        Map<String, NodeDocument> docs = Maps.newHashMap();
+        if (!ids.isEmpty()) {
+            for (NodeDocument doc : docStore.find(NODES, ids)) {
+                docs.put(doc.getId(), doc);
+            }
+        }
+        return docs;
+    }
+
     /**
      * Retrieves possible candidates which have been modified after the given
      * {@code startTime} and recovers the missing updates.
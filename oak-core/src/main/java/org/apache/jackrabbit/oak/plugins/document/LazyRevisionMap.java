@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.NavigableMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+
+import com.google.common.collect.ForwardingNavigableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * A map of revisions to values (e.g. the local map of a property on a
+ * {@link NodeDocument}), which keeps the raw representation as read from the
+ * underlying storage and is only decoded when accessed for the first time.
+ * <p>
+ * Once decoded, the raw representation is released. A map that is sealed
+ * before it is decoded becomes unmodifiable when it is decoded. This class is
+ * thread-safe.
+ */
+public abstract class LazyRevisionMap
+        extends ForwardingNavigableMap<Revision, Object> {
+
+    private volatile NavigableMap<Revision, Object> map;
+
+    private volatile boolean sealed;
+
+    private final int memory;
+
+    /**
+     * Creates a map weighed by the memory of its raw representation plus an
+     * allowance for decoding it, which is bounded by the raw memory. Caches
+     * weigh a document only when it is put, so a lazy map keeps most of its
+     * smaller footprint while it is not decoded, and a decoded map may weigh
+     * up to {@code decodedMemory - 2 * rawMemory} more than accounted for.
+     *
+     * @param rawMemory the estimated memory of the raw representation.
+     * @param decodedMemory the estimated memory of the decoded map, computed
+     *                      from the raw representation.
+     */
+    protected LazyRevisionMap(int rawMemory, int decodedMemory) {
+        this.memory = 32 + rawMemory
+                + Math.max(0, Math.min(decodedMemory - rawMemory, rawMemory));
+    }
+
+    /**
+     * Decodes the raw representation. Only called once per instance.
+     *
+     * @return the decoded map, sorted by {@link StableRevisionComparator#REVERSE}.
+     */
+    @Nonnull
+    protected abstract NavigableMap<Revision, Object> decode();
+
+    /**
+     * Releases the raw representation after the map has been decoded.
+     */
+    protected abstract void release();
+
+    /**
+     * @return {@code true} if this map has been decoded already.
+     */
+    public final boolean isDecoded() {
+        return map != null;
+    }
+
+    /**
+     * @return the estimated memory used by this map. Until the map is
+     *          decoded, this is the raw memory plus the decode allowance
+     *          computed by the constructor.
+     */
+    public final int getMemory() {
+        NavigableMap<Revision, Object> m = map;
+        if (m == null) {
+            return memory;
+        }
+        return Utils.estimateMemoryUsage(m);
+    }
+
+    @Override
+    protected final NavigableMap<Revision, Object> delegate() {
+        NavigableMap<Revision, Object> m = map;
+        if (m == null) {
+            synchronized (this) {
+                m = map;
+                if (m == null) {
+                    m = decode();
+                    if (sealed) {
+                        m = Maps.unmodifiableNavigableMap(m);
+                    }
+                    map = m;
+                    release();
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Makes this map unmodifiable without decoding it.
+     */
+    final synchronized void seal() {
+        if (!sealed) {
+            sealed = true;
+            NavigableMap<Revision, Object> m = map;
+            if (m != null) {
+                map = Maps.unmodifiableNavigableMap(m);
+            }
+        }
+    }
+}
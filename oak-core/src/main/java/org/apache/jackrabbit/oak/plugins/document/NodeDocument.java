@@ -2000,6 +2000,14 @@ public final class NodeDocument extends Document implements CachedNodeDocument{
         return json.toString();
     }
     
+    /**
+     * @return the binary representation of this document.
+     * @see NodeDocumentCodec
+     */
+    public byte[] asBytes() {
+        return NodeDocumentCodec.encode(this);
+    }
+
     @SuppressWarnings("unchecked")
     private static void toJson(JsopWriter json, Map<?, Object> map) {
         for (Entry<?, Object>e : map.entrySet()) {
@@ -2044,6 +2052,20 @@ public final class NodeDocument extends Document implements CachedNodeDocument{
         return doc;
     }
     
+    /**
+     * Creates a sealed document from its binary representation.
+     *
+     * @param store the document store.
+     * @param data the binary representation as created by {@link #asBytes()}.
+     * @return the document.
+     * @throws IllegalArgumentException if the data is malformed.
+     */
+    public static NodeDocument fromBytes(DocumentStore store, byte[] data) {
+        NodeDocument doc = NodeDocumentCodec.decode(data, new NodeDocument(store));
+        doc.seal();
+        return doc;
+    }
+
     private static Object fromJson(JsopTokenizer json) {
         switch (json.read()) {
         case JsopReader.NULL:
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.REVERSE;
+
+/**
+ * A compact, versioned binary format for the properties of a {@link Document}.
+ * <p>
+ * Layout of version 1:
+ * <pre>
+ * byte    {@link #MAGIC}
+ * byte    {@link #VERSION}
+ * varint  number of distinct property names, followed by the names
+ * varint  number of properties, followed by the properties:
+ *         varint  index into the name table
+ *         value
+ * </pre>
+ * A value is a type byte followed by its payload. A map value starts with
+ * the fixed-width byte length of its entries, which allows a reader to skip
+ * individual property maps and decode them lazily. {@link Revision} keys
+ * of a map are encoded as fixed-width (timestamp, counter, clusterId)
+ * triples, where the sign bit of the clusterId is set for branch revisions.
+ * <p>
+ * The magic byte neither matches the first character of a JSON serialized
+ * document nor the first byte of a GZIP stream, which means readers can use
+ * {@link #isBinary(byte[])} to detect the format and fall back to JSON for
+ * existing entries.
+ */
+public final class NodeDocumentCodec {
+
+    /**
+     * The first byte of a binary encoded document.
+     */
+    public static final byte MAGIC = (byte) 0xD0;
+
+    /**
+     * The current version of the format.
+     */
+    public static final byte VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_FALSE = 1;
+    private static final byte TYPE_TRUE = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_STRING = 5;
+    private static final byte TYPE_MAP = 6;
+
+    private static final int BRANCH_FLAG = 0x80000000;
+
+    private NodeDocumentCodec() {
+    }
+
+    /**
+     * @param data the serialized data.
+     * @return {@code true} if {@code data} starts with a binary encoded
+     *          document of a known version, {@code false} otherwise.
+     */
+    public static boolean isBinary(@CheckForNull byte[] data) {
+        return data != null && data.length >= 2
+                && data[0] == MAGIC && data[1] == VERSION;
+    }
+
+    /**
+     * Encodes all properties of the given document.
+     *
+     * @param doc the document to encode.
+     * @return the binary representation of the document.
+     */
+    @Nonnull
+    public static byte[] encode(@Nonnull Document doc) {
+        return encode(doc, Collections.<String>emptySet());
+    }
+
+    /**
+     * Encodes the properties of the given document, except those with a
+     * name contained in {@code exclude}.
+     *
+     * @param doc the document to encode.
+     * @param exclude names of properties to leave out.
+     * @return the binary representation of the document.
+     */
+    @Nonnull
+    public static byte[] encode(@Nonnull Document doc,
+                                @Nonnull Set<String> exclude) {
+        Map<String, Integer> names = new LinkedHashMap<String, Integer>();
+        for (String key : doc.keySet()) {
+            if (!exclude.contains(key) && !names.containsKey(key)) {
+                names.put(key, names.size());
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            writeVarInt(out, names.size());
+            for (String name : names.keySet()) {
+                writeString(out, name);
+            }
+            writeVarInt(out, names.size());
+            for (Map.Entry<String, Integer> e : names.entrySet()) {
+                writeVarInt(out, e.getValue());
+                writeValue(out, doc.get(e.getKey()));
+            }
+            out.flush();
+        } catch (IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the binary representation of a document and puts all its
+     * properties into the given document. Property maps are not decoded
+     * immediately but put as {@link LazyRevisionMap}s into the document and
+     * decoded when accessed for the first time.
+     *
+     * @param data the binary representation.
+     * @param doc the document to populate.
+     * @return the passed document.
+     * @throws IllegalArgumentException if the data is not a binary encoded
+     *          document of a known version or is malformed.
+     */
+    @Nonnull
+    public static <T extends Document> T decode(@Nonnull byte[] data,
+                                                @Nonnull T doc) {
+        ByteBuffer buff = open(data);
+        try {
+            String[] names = readNames(buff);
+            int count = readVarInt(buff);
+            for (int i = 0; i < count; i++) {
+                String name = names[readVarInt(buff)];
+                if (buff.hasRemaining() && buff.get(buff.position()) == TYPE_MAP) {
+                    buff.get();
+                    int len = buff.getInt();
+                    int start = buff.position();
+                    buff.position(start + len);
+                    doc.put(name, new BinaryRevisionMap(
+                            Arrays.copyOfRange(data, start, start + len)));
+                } else {
+                    doc.put(name, readValue(buff));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed document data", e);
+        }
+        return doc;
+    }
+
+    /**
+     * Decodes a single property of the binary representation of a document.
+     * The values of all other properties are skipped without decoding them.
+     *
+     * @param data the binary representation.
+     * @param name the name of the property.
+     * @return the decoded value or {@code null} if the property does not
+     *          exist or its value is {@code null}.
+     * @throws IllegalArgumentException if the data is not a binary encoded
+     *          document of a known version or is malformed.
+     */
+    @CheckForNull
+    public static Object decodeProperty(@Nonnull byte[] data,
+                                        @Nonnull String name) {
+        ByteBuffer buff = open(data);
+        try {
+            String[] names = readNames(buff);
+            int count = readVarInt(buff);
+            for (int i = 0; i < count; i++) {
+                if (name.equals(names[readVarInt(buff)])) {
+                    return readValue(buff);
+                }
+                skipValue(buff);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed document data", e);
+        }
+        return null;
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private static ByteBuffer open(byte[] data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary document of version " + VERSION);
+        }
+        ByteBuffer buff = ByteBuffer.wrap(data);
+        buff.position(2);
+        return buff;
+    }
+
+    private static String[] readNames(ByteBuffer buff) {
+        String[] names = new String[readVarInt(buff)];
+        for (int i = 0; i < names.length; i++) {
+            // property names repeat across all documents
+            names[i] = readString(buff).intern();
+        }
+        return names;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Long || value instanceof Integer) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Map) {
+            out.writeByte(TYPE_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else {
+            // strings and revisions (as in the JSON representation)
+            out.writeByte(TYPE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map)
+            throws IOException {
+        if (map instanceof BinaryRevisionMap) {
+            byte[] raw = ((BinaryRevisionMap) map).raw();
+            if (raw != null) {
+                // not decoded yet, write as is
+                out.writeInt(raw.length);
+                out.write(raw);
+                return;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(map.size() * 24);
+        DataOutputStream entries = new DataOutputStream(bytes);
+        writeVarInt(entries, map.size());
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            Object k = e.getKey();
+            Revision r = k instanceof Revision
+                    ? (Revision) k : Revision.fromString(k.toString());
+            entries.writeLong(r.getTimestamp());
+            entries.writeInt(r.getCounter());
+            entries.writeInt(r.isBranch()
+                    ? r.getClusterId() | BRANCH_FLAG : r.getClusterId());
+            writeValue(entries, e.getValue());
+        }
+        entries.flush();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Object readValue(ByteBuffer buff) {
+        byte type = buff.get();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_LONG:
+                return buff.getLong();
+            case TYPE_DOUBLE:
+                return buff.getDouble();
+            case TYPE_STRING:
+                return readString(buff);
+            case TYPE_MAP:
+                return readMap(buff);
+            default:
+                throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+    }
+
+    private static Map<Revision, Object> readMap(ByteBuffer buff) {
+        // skip byte length
+        buff.getInt();
+        return readMapEntries(buff);
+    }
+
+    private static NavigableMap<Revision, Object> readMapEntries(ByteBuffer buff) {
+        int size = readVarInt(buff);
+        TreeMap<Revision, Object> map = new TreeMap<Revision, Object>(REVERSE);
+        for (int i = 0; i < size; i++) {
+            long timestamp = buff.getLong();
+            int counter = buff.getInt();
+            int clusterId = buff.getInt();
+            Revision r = new Revision(timestamp, counter,
+                    clusterId & ~BRANCH_FLAG, (clusterId & BRANCH_FLAG) != 0);
+            map.put(r, readValue(buff));
+        }
+        return map;
+    }
+
+    /**
+     * A map decoded lazily from its binary representation.
+     */
+    private static final class BinaryRevisionMap extends LazyRevisionMap {
+
+        private byte[] raw;
+
+        BinaryRevisionMap(byte[] raw) {
+            super(16 + raw.length, estimateMemoryUsage(raw));
+            this.raw = raw;
+        }
+
+        /**
+         * Estimates the memory of the decoded map as computed by
+         * {@link org.apache.jackrabbit.oak.plugins.document.util.Utils#estimateMemoryUsage(Map)}:
+         * the map overhead, the entries with their revisions and at most the
+         * header of a string value each, plus two bytes per byte of the values.
+         * This overestimates maps of non-string values by at most the string
+         * header per entry.
+         */
+        private static int estimateMemoryUsage(byte[] raw) {
+            int size = readVarInt(ByteBuffer.wrap(raw));
+            return 112 + size * (64 + 32 + 48) + raw.length * 2;
+        }
+
+        /**
+         * @return the binary representation or {@code null} if the map
+         *          has been decoded already.
+         */
+        synchronized byte[] raw() {
+            return raw;
+        }
+
+        @Nonnull
+        @Override
+        protected NavigableMap<Revision, Object> decode() {
+            try {
+                return readMapEntries(ByteBuffer.wrap(raw));
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Malformed document data", e);
+            }
+        }
+
+        @Override
+        protected void release() {
+            raw = null;
+        }
+    }
+
+    private static void skipValue(ByteBuffer buff) {
+        byte type = buff.get();
+        switch (type) {
+            case TYPE_NULL:
+            case TYPE_FALSE:
+            case TYPE_TRUE:
+                break;
+            case TYPE_LONG:
+            case TYPE_DOUBLE:
+                buff.position(buff.position() + 8);
+                break;
+            case TYPE_STRING:
+                int len = readVarInt(buff);
+                buff.position(buff.position() + len);
+                break;
+            case TYPE_MAP:
+                int size = buff.getInt();
+                buff.position(buff.position() + size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buff) {
+        int len = readVarInt(buff);
+        if (len > buff.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(buff.array(),
+                buff.arrayOffset() + buff.position(), len, UTF8);
+        buff.position(buff.position() + len);
+        return s;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int x)
+            throws IOException {
+        while ((x & ~0x7f) != 0) {
+            out.writeByte((x & 0x7f) | 0x80);
+            x >>>= 7;
+        }
+        out.writeByte(x);
+    }
+
+    private static int readVarInt(ByteBuffer buff) {
+        int x = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buff.get();
+            x |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
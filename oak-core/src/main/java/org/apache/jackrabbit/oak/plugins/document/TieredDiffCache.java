@@ -68,6 +68,41 @@ class TieredDiffCache extends DiffCache {
         }
     }
 
+    /**
+     * Creates a new entry for external changes read from the journal. The
+     * entry is added to the {@link MemoryDiffCache} and the
+     * {@link LocalDiffCache}. The journal contains all paths changed in the
+     * revision range, which means the {@link LocalDiffCache} can serve the
+     * changes for any path in this range without a loader. Ranges with more
+     * changes than a single {@link LocalDiffCache} entry can hold only go to
+     * the {@link MemoryDiffCache}.
+     *
+     * @param from the from revision.
+     * @param to the to revision.
+     * @return the new entry.
+     */
+    @Nonnull
+    @Override
+    Entry newJournalEntry(@Nonnull RevisionVector from,
+                          @Nonnull RevisionVector to) {
+        final Entry memoryEntry = memoryCache.newEntry(from, to, false);
+        final Entry localEntry = localCache.newEntry(from, to, false);
+        return new Entry() {
+            @Override
+            public void append(@Nonnull String path, @Nonnull String changes) {
+                memoryEntry.append(path, changes);
+                localEntry.append(path, changes);
+            }
+
+            @Override
+            public boolean done() {
+                boolean memoryDone = memoryEntry.done();
+                boolean localDone = localEntry.done();
+                return memoryDone || localDone;
+            }
+        };
+    }
+
     @Nonnull
     @Override
     public Iterable<CacheStats> getStats() {
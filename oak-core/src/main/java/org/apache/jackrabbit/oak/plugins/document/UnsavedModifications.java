@@ -16,16 +16,23 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.plugins.document.util.MapFactory;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
@@ -35,11 +42,13 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 
@@ -131,7 +140,8 @@ class UnsavedModifications {
     /**
      * Persist the pending changes to _lastRev to the given store. This method
      * will persist a snapshot of the pending revisions by acquiring the passed
-     * lock for a short period of time.
+     * lock for a short period of time. The batches are written one after
+     * another by the calling thread.
      *
      * @param store the document node store.
      * @param snapshot callback when the snapshot of the pending changes is
@@ -143,12 +153,45 @@ class UnsavedModifications {
     public BackgroundWriteStats persist(@Nonnull DocumentNodeStore store,
                                         @Nonnull Snapshot snapshot,
                                         @Nonnull Lock lock) {
+        return persist(store, snapshot, lock, null, 1);
+    }
+
+    /**
+     * Persist the pending changes to _lastRev to the given store. This method
+     * will persist a snapshot of the pending revisions by acquiring the passed
+     * lock for a short period of time.
+     * <p>
+     * If an {@code executor} is passed, the batches are written by the
+     * executor while the calling thread prepares the next batch. Up to
+     * {@code maxConcurrentWrites} batches are written concurrently, but a
+     * batch is only written once all batches with deeper paths completed.
+     * This guarantees the _lastRev of a node is never written before the
+     * _lastRevs of its descendants.
+     *
+     * @param store the document node store.
+     * @param snapshot callback when the snapshot of the pending changes is
+     *                 acquired.
+     * @param lock the lock to acquire to get a consistent snapshot of the
+     *             revisions to write back.
+     * @param executor the executor for the batch writes or {@code null} to
+     *                 write the batches with the calling thread.
+     * @param maxConcurrentWrites the maximum number of batches written
+     *                            concurrently by the executor.
+     * @return stats about the write operation.
+     */
+    public BackgroundWriteStats persist(@Nonnull DocumentNodeStore store,
+                                        @Nonnull Snapshot snapshot,
+                                        @Nonnull Lock lock,
+                                        @Nullable ExecutorService executor,
+                                        int maxConcurrentWrites) {
         BackgroundWriteStats stats = new BackgroundWriteStats();
         if (map.size() == 0) {
             return stats;
         }
         checkNotNull(store);
         checkNotNull(lock);
+        checkArgument(maxConcurrentWrites > 0,
+                "maxConcurrentWrites must be greater than zero: %s", maxConcurrentWrites);
 
         Clock clock = store.getClock();
 
@@ -171,48 +214,47 @@ class UnsavedModifications {
         PeekingIterator<String> paths = Iterators.peekingIterator(
                 pending.keySet().iterator());
         int i = 0;
-        ArrayList<String> pathList = new ArrayList<String>();
-        while (paths.hasNext()) {
-            String p = paths.peek();
-            Revision r = pending.get(p);
-
-            int size = pathList.size();
-            if (updateOp == null) {
-                // create UpdateOp
-                Commit commit = new Commit(store, r, null, null);
-                updateOp = commit.getUpdateOperationForNode(p);
-                NodeDocument.setLastRev(updateOp, r);
-                lastRev = r;
-                pathList.add(p);
-                paths.next();
-                i++;
-            } else if (r.equals(lastRev)) {
-                // use multi update when possible
-                pathList.add(p);
-                paths.next();
-                i++;
-            }
-            // call update if any of the following is true:
-            // - this is the second-to-last or last path (update last path, the
-            //   root document, individually)
-            // - revision is not equal to last revision (size of ids didn't change)
-            // - the update limit is reached
-            if (i + 2 > pending.size()
-                    || size == pathList.size()
-                    || pathList.size() >= BACKGROUND_MULTI_UPDATE_LIMIT) {
-                List<String> ids = new ArrayList<String>();
-                for (String path : pathList) {
-                    ids.add(Utils.getIdFromPath(path));
+        List<String> pathList = new ArrayList<String>();
+        BatchWriter writer = new BatchWriter(store.getDocumentStore(),
+                executor, maxConcurrentWrites);
+        try {
+            while (paths.hasNext()) {
+                String p = paths.peek();
+                Revision r = pending.get(p);
+
+                int size = pathList.size();
+                if (updateOp == null) {
+                    // create UpdateOp
+                    Commit commit = new Commit(store, r, null, null);
+                    updateOp = commit.getUpdateOperationForNode(p);
+                    NodeDocument.setLastRev(updateOp, r);
+                    lastRev = r;
+                    pathList.add(p);
+                    paths.next();
+                    i++;
+                } else if (r.equals(lastRev)) {
+                    // use multi update when possible
+                    pathList.add(p);
+                    paths.next();
+                    i++;
                 }
-                store.getDocumentStore().update(NODES, ids, updateOp);
-                LOG.debug("Updated _lastRev to {} on {}", lastRev, ids);
-                for (String path : pathList) {
-                    map.remove(path, lastRev);
+                // call update if any of the following is true:
+                // - this is the second-to-last or last path (update last path, the
+                //   root document, individually)
+                // - revision is not equal to last revision (size of ids didn't change)
+                // - the update limit is reached
+                if (i + 2 > pending.size()
+                        || size == pathList.size()
+                        || pathList.size() >= BACKGROUND_MULTI_UPDATE_LIMIT) {
+                    writer.write(pathList, updateOp, lastRev);
+                    pathList = new ArrayList<String>();
+                    updateOp = null;
+                    lastRev = null;
                 }
-                pathList.clear();
-                updateOp = null;
-                lastRev = null;
             }
+            writer.awaitCompletion();
+        } finally {
+            writer.awaitQuietly();
         }
         Revision writtenRootRev = pending.get("/");
         if (writtenRootRev != null) {
@@ -246,6 +288,116 @@ class UnsavedModifications {
         return rev;
     }
 
+    /**
+     * Writes batches of _lastRev updates, either with the calling thread or
+     * with an executor. Batches must be passed in the order of
+     * {@link PathComparator}, i.e. deeper paths first.
+     */
+    private class BatchWriter {
+
+        private final DocumentStore store;
+        private final ExecutorService executor;
+        private final int maxConcurrentWrites;
+        private final Deque<Batch> inFlight = new ArrayDeque<Batch>();
+
+        BatchWriter(DocumentStore store,
+                    @Nullable ExecutorService executor,
+                    int maxConcurrentWrites) {
+            this.store = store;
+            this.executor = executor;
+            this.maxConcurrentWrites = maxConcurrentWrites;
+        }
+
+        void write(List<String> paths, UpdateOp updateOp, Revision lastRev) {
+            Batch batch = new Batch(paths, updateOp, lastRev);
+            if (executor == null) {
+                batch.call();
+                return;
+            }
+            // the batch must not be written before batches with paths
+            // deeper than its shallowest path completed. those may contain
+            // descendants of nodes in this batch
+            int minDepth = batch.getMinDepth();
+            while (!inFlight.isEmpty()
+                    && (inFlight.size() >= maxConcurrentWrites
+                        || inFlight.peekFirst().getMaxDepth() > minDepth)) {
+                await(inFlight.removeFirst());
+            }
+            batch.future = executor.submit(batch);
+            inFlight.addLast(batch);
+        }
+
+        void awaitCompletion() {
+            while (!inFlight.isEmpty()) {
+                await(inFlight.removeFirst());
+            }
+        }
+
+        /**
+         * Waits for outstanding batches without propagating failures. This
+         * ensures no batch is written anymore after persist returned.
+         */
+        void awaitQuietly() {
+            while (!inFlight.isEmpty()) {
+                try {
+                    inFlight.removeFirst().future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOG.debug("Background write failed", e.getCause());
+                }
+            }
+        }
+
+        private void await(Batch batch) {
+            try {
+                batch.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DocumentStoreException(
+                        "Interrupted while waiting for background write", e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        private class Batch implements Callable<Void> {
+
+            private final List<String> paths;
+            private final UpdateOp updateOp;
+            private final Revision lastRev;
+            private Future<Void> future;
+
+            Batch(List<String> paths, UpdateOp updateOp, Revision lastRev) {
+                this.paths = paths;
+                this.updateOp = updateOp;
+                this.lastRev = lastRev;
+            }
+
+            int getMaxDepth() {
+                return Utils.pathDepth(paths.get(0));
+            }
+
+            int getMinDepth() {
+                return Utils.pathDepth(paths.get(paths.size() - 1));
+            }
+
+            @Override
+            public Void call() {
+                List<String> ids = new ArrayList<String>();
+                for (String path : paths) {
+                    ids.add(Utils.getIdFromPath(path));
+                }
+                store.update(NODES, ids, updateOp);
+                LOG.debug("Updated _lastRev to {} on {}", lastRev, ids);
+                for (String path : paths) {
+                    map.remove(path, lastRev);
+                }
+                return null;
+            }
+        }
+    }
+
     public interface Snapshot {
 
         Snapshot IGNORE = new Snapshot() {
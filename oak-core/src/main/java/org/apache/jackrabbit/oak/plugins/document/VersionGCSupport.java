@@ -24,9 +24,11 @@ import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getAllDocume
 import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getSelectedDocuments;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument.SplitDocType;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
+import org.apache.jackrabbit.oak.stats.Clock;
 
 import com.google.common.base.Predicate;
 
@@ -47,6 +49,57 @@ public class VersionGCSupport {
         });
     }
 
+    /**
+     * Returns documents that have a {@link NodeDocument#DELETED_ONCE} flag
+     * and a {@link NodeDocument#MODIFIED_IN_SECS} value in the range
+     * {@code [fromModified, toModified)}. Both bounds are timestamps in
+     * milliseconds and are converted to the resolution of
+     * {@link NodeDocument#MODIFIED_IN_SECS} with
+     * {@link NodeDocument#getModifiedInSecs(long)}, which means ranges with
+     * adjacent bounds do not overlap.
+     *
+     * @param fromModified the lower bound (inclusive).
+     * @param toModified the upper bound (exclusive).
+     * @return matching documents.
+     */
+    public Iterable<NodeDocument> getPossiblyDeletedDocs(final long fromModified,
+                                                         final long toModified) {
+        final long fromModifiedInSecs = NodeDocument.getModifiedInSecs(fromModified);
+        final long toModifiedInSecs = NodeDocument.getModifiedInSecs(toModified);
+        return filter(getSelectedDocuments(store, NodeDocument.DELETED_ONCE, 1), new Predicate<NodeDocument>() {
+            @Override
+            public boolean apply(NodeDocument input) {
+                Long modified = input.getModified();
+                return input.wasDeletedOnce() && modified != null
+                        && modified >= fromModifiedInSecs && modified < toModifiedInSecs;
+            }
+        });
+    }
+
+    /**
+     * Returns the {@link NodeDocument#MODIFIED_IN_SECS} value of the oldest
+     * document with a {@link NodeDocument#DELETED_ONCE} flag as a timestamp
+     * in milliseconds.
+     *
+     * @param clock the clock to use when there is no such document.
+     * @return the timestamp of the oldest document with a
+     *          {@link NodeDocument#DELETED_ONCE} flag or the current time of
+     *          the {@code clock} if there is none.
+     */
+    public long getOldestDeletedOnceTimestamp(Clock clock) {
+        long oldest = Long.MAX_VALUE;
+        for (NodeDocument doc : getSelectedDocuments(store, NodeDocument.DELETED_ONCE, 1)) {
+            Long modified = doc.getModified();
+            if (doc.wasDeletedOnce() && modified != null) {
+                oldest = Math.min(oldest, modified);
+            }
+        }
+        if (oldest == Long.MAX_VALUE) {
+            return clock.getTime();
+        }
+        return TimeUnit.SECONDS.toMillis(oldest);
+    }
+
     public void deleteSplitDocuments(Set<SplitDocType> gcTypes,
                                      long oldestRevTimeStamp,
                                      VersionGCStats stats) {
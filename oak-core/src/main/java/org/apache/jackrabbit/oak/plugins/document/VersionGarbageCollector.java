@@ -26,6 +26,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
@@ -33,10 +38,14 @@ import javax.annotation.Nonnull;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
@@ -44,6 +53,7 @@ import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.StandardSystemProperty.LINE_SEPARATOR;
 import static com.google.common.collect.Iterators.partition;
@@ -59,10 +69,23 @@ public class VersionGarbageCollector {
     private static final int DELETE_BATCH_SIZE = 450;
     private static final int PROGRESS_BATCH_SIZE = 10000;
     private static final Key KEY_MODIFIED = new Key(MODIFIED_IN_SECS, null);
+    /**
+     * Id of the document in the {@link Collection#SETTINGS} collection, which
+     * keeps track of the progress of the segmented garbage collection.
+     */
+    static final String SETTINGS_COLLECTION_ID = "versionGC";
+    /**
+     * Property on the {@link #SETTINGS_COLLECTION_ID} document with the end
+     * timestamp of the last segment that completed, such that all segments
+     * before it completed as well.
+     */
+    static final String SETTINGS_LAST_COMPLETED_SEGMENT_PROP = "lastCompletedSegment";
     private final DocumentNodeStore nodeStore;
     private final DocumentStore ds;
     private final VersionGCSupport versionStore;
     private int overflowToDiskThreshold = 100000;
+    private int parallelism = 1;
+    private long segmentDurationMillis = TimeUnit.HOURS.toMillis(1);
 
     private static final Logger log = LoggerFactory.getLogger(VersionGarbageCollector.class);
 
@@ -101,7 +124,11 @@ public class VersionGarbageCollector {
             return stats;
         }
 
-        collectDeletedDocuments(stats, headRevision, oldestRevTimeStamp);
+        if (parallelism > 1) {
+            collectDeletedDocumentsInSegments(stats, headRevision, oldestRevTimeStamp);
+        } else {
+            collectDeletedDocuments(stats, headRevision, oldestRevTimeStamp);
+        }
         collectSplitDocuments(stats, oldestRevTimeStamp);
 
         sw.stop();
@@ -113,6 +140,38 @@ public class VersionGarbageCollector {
         this.overflowToDiskThreshold = overflowToDiskThreshold;
     }
 
+    /**
+     * Sets the number of threads used to collect and remove documents of
+     * deleted nodes. With a value greater than one, the garbage collector
+     * splits the {@link NodeDocument#MODIFIED_IN_SECS} range of candidate
+     * documents into segments of {@link #setSegmentDuration(long, TimeUnit)}
+     * and processes them concurrently. Progress of this mode is recorded in
+     * the store and a subsequent run resumes after the last completed
+     * segment. The default is one, which processes all candidates
+     * sequentially.
+     *
+     * @param parallelism the number of threads to use.
+     */
+    public void setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be greater than zero");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the duration of a {@link NodeDocument#MODIFIED_IN_SECS} range
+     * processed as one segment when {@link #setParallelism(int)} is greater
+     * than one. The default is one hour.
+     *
+     * @param duration the duration of a segment.
+     * @param unit the time unit of the duration.
+     */
+    public void setSegmentDuration(long duration, TimeUnit unit) {
+        long millis = unit.toMillis(duration);
+        checkArgument(millis >= TimeUnit.SECONDS.toMillis(NodeDocument.MODIFIED_IN_SECS_RESOLUTION),
+                "segment duration must not be less than the resolution of _modified");
+        this.segmentDurationMillis = millis;
+    }
+
     private void collectSplitDocuments(VersionGCStats stats, long oldestRevTimeStamp) {
         stats.collectAndDeleteSplitDocs.start();
         versionStore.deleteSplitDocuments(GC_TYPES, oldestRevTimeStamp, stats);
@@ -161,11 +220,170 @@ public class VersionGarbageCollector {
         }
     }
 
+    /**
+     * Collects and removes documents of deleted nodes in segments of
+     * {@link #segmentDurationMillis} on a pool of {@link #parallelism}
+     * threads. Segments start after the last completed segment of a previous
+     * run (if any) or at the oldest candidate document.
+     */
+    private void collectDeletedDocumentsInSegments(VersionGCStats stats,
+                                                   RevisionVector headRevision,
+                                                   long oldestRevTimeStamp)
+            throws IOException {
+        long start = Math.max(versionStore.getOldestDeletedOnceTimestamp(nodeStore.getClock()),
+                getLastCompletedSegment());
+        List<long[]> segments = Lists.newArrayList();
+        for (long from = start; from < oldestRevTimeStamp; from += segmentDurationMillis) {
+            segments.add(new long[]{from, Math.min(from + segmentDurationMillis, oldestRevTimeStamp)});
+        }
+        stats.segmentCount = segments.size();
+        if (segments.isEmpty()) {
+            return;
+        }
+        log.info("Collecting deleted documents modified between [{}] and [{}] in {} segments with {} threads",
+                Utils.timestampToString(start), Utils.timestampToString(oldestRevTimeStamp),
+                segments.size(), parallelism);
+
+        stats.collectDeletedDocs.start();
+        SegmentTracker tracker = new SegmentTracker(segments, stats);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("oak-version-gc-%d").setDaemon(true).build());
+        List<Future<?>> futures = Lists.newArrayList();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                futures.add(executor.submit(new SegmentGC(i, headRevision, tracker)));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for garbage collection of segments", e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            new ExecutorCloser(executor).close();
+            nodeStore.invalidateDocChildrenCache();
+            stats.collectDeletedDocs.stop();
+        }
+    }
+
+    private long getLastCompletedSegment() {
+        Document doc = ds.find(Collection.SETTINGS, SETTINGS_COLLECTION_ID);
+        if (doc != null) {
+            Object value = doc.get(SETTINGS_LAST_COMPLETED_SEGMENT_PROP);
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+        }
+        return 0;
+    }
+
+    private void setLastCompletedSegment(long timestamp) {
+        UpdateOp op = new UpdateOp(SETTINGS_COLLECTION_ID, true);
+        op.set(Document.ID, SETTINGS_COLLECTION_ID);
+        op.set(SETTINGS_LAST_COMPLETED_SEGMENT_PROP, timestamp);
+        ds.createOrUpdate(Collection.SETTINGS, op);
+    }
+
+    /**
+     * Keeps track of completed segments, merges the statistics of the
+     * segments and records the end of the last completed segment, before
+     * which all other segments completed as well.
+     */
+    private class SegmentTracker {
+
+        private final List<long[]> segments;
+        private final VersionGCStats stats;
+        private final boolean[] completed;
+        private int nextIncomplete = 0;
+
+        SegmentTracker(List<long[]> segments, VersionGCStats stats) {
+            this.segments = segments;
+            this.stats = stats;
+            this.completed = new boolean[segments.size()];
+        }
+
+        long[] getSegment(int index) {
+            return segments.get(index);
+        }
+
+        synchronized void completed(int index, VersionGCStats segmentStats) {
+            stats.deletedDocGCCount += segmentStats.deletedDocGCCount;
+            stats.splitDocGCCount += segmentStats.splitDocGCCount;
+            stats.segmentsCompleted++;
+            completed[index] = true;
+            int previous = nextIncomplete;
+            while (nextIncomplete < completed.length && completed[nextIncomplete]) {
+                nextIncomplete++;
+            }
+            if (nextIncomplete > previous) {
+                setLastCompletedSegment(segments.get(nextIncomplete - 1)[1]);
+            }
+            long[] segment = segments.get(index);
+            log.info("Completed segment [{}, {}) ({} of {}): {} deleted documents, {} previous documents. " +
+                            "Total so far: {} deleted documents, {} previous documents",
+                    Utils.timestampToString(segment[0]), Utils.timestampToString(segment[1]),
+                    stats.segmentsCompleted, stats.segmentCount,
+                    segmentStats.deletedDocGCCount, segmentStats.splitDocGCCount,
+                    stats.deletedDocGCCount, stats.splitDocGCCount);
+        }
+    }
+
+    /**
+     * Collects and removes the documents of deleted nodes for a single
+     * segment.
+     */
+    private class SegmentGC implements Callable<Void> {
+
+        private final int index;
+        private final RevisionVector headRevision;
+        private final SegmentTracker tracker;
+
+        SegmentGC(int index, RevisionVector headRevision, SegmentTracker tracker) {
+            this.index = index;
+            this.headRevision = headRevision;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            long[] segment = tracker.getSegment(index);
+            VersionGCStats segmentStats = new VersionGCStats();
+            DeletedDocsGC gc = new DeletedDocsGC(headRevision);
+            try {
+                Iterable<NodeDocument> itr = versionStore.getPossiblyDeletedDocs(segment[0], segment[1]);
+                try {
+                    for (NodeDocument doc : itr) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException();
+                        }
+                        gc.possiblyDeleted(doc);
+                    }
+                } finally {
+                    Utils.closeIfCloseable(itr);
+                }
+                if (gc.getNumDocuments() > 0) {
+                    gc.removeDocuments(segmentStats);
+                }
+            } finally {
+                gc.close();
+            }
+            tracker.completed(index, segmentStats);
+            return null;
+        }
+    }
+
     public static class VersionGCStats {
         boolean ignoredGCDueToCheckPoint;
         int deletedDocGCCount;
         int splitDocGCCount;
         int intermediateSplitDocGCCount;
+        int segmentCount;
+        int segmentsCompleted;
         final Stopwatch collectDeletedDocs = Stopwatch.createUnstarted();
         final Stopwatch deleteDeletedDocs = Stopwatch.createUnstarted();
         final Stopwatch collectAndDeleteSplitDocs = Stopwatch.createUnstarted();
@@ -177,6 +395,7 @@ public class VersionGarbageCollector {
                     ", deletedDocGCCount=" + deletedDocGCCount +
                     ", splitDocGCCount=" + splitDocGCCount +
                     ", intermediateSplitDocGCCount=" + intermediateSplitDocGCCount +
+                    ", segmentsCompleted=" + segmentsCompleted + "/" + segmentCount +
                     ", timeToCollectDeletedDocs=" + collectDeletedDocs +
                     ", timeTakenToDeleteDeletedDocs=" + deleteDeletedDocs +
                     ", timeTakenToCollectAndDeleteSplitDocs=" + collectAndDeleteSplitDocs +
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.cache.RemovalCause.COLLECTED;
+import static com.google.common.cache.RemovalCause.EXPIRED;
+import static com.google.common.cache.RemovalCause.SIZE;
+
+/**
+ * A cache tier that keeps entries evicted from an on-heap cache in off-heap
+ * memory. The entries are serialized with the {@link CacheType} of the cache
+ * and stored in chunks allocated by a {@link SlabAllocator}. A separate LIRS
+ * cache keeps track of the chunks and evicts them when the off-heap capacity
+ * is reached.
+ * <p>
+ * The tiers are exclusive: an entry read from the off-heap tier is moved back
+ * to the heap cache and an entry put into the heap cache removes a previous
+ * entry from the off-heap tier. Modifications and moves of entries with the
+ * same key are serialized with striped locks. The eviction listener only
+ * uses a {@code tryLock()}, because it is called while the heap cache holds
+ * a lock of its own. If the lock is not available, the evicted entry is not
+ * kept.
+ * <p>
+ * The allocator assigns its memory to size classes as needed. Once all memory
+ * is assigned, an entry can only be stored if a chunk of its size class is
+ * free, even though the LIRS cache may still be below its capacity. Least
+ * recently used entries of the same size class are evicted in that case.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class OffHeapCache<K extends CacheValue, V extends CacheValue>
+        implements Cache<K, V>, EvictionListener<K, V>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapCache.class);
+
+    private static final Set<RemovalCause> EVICTION_CAUSES = ImmutableSet.of(COLLECTED, EXPIRED, SIZE);
+
+    private static final int NUM_STRIPES = 256;
+
+    /**
+     * Maximum number of entries evicted at once when the allocator has no
+     * more memory for the size class of an entry.
+     */
+    private static final int EVICTION_BATCH = 16;
+
+    private final Cache<K, V> memCache;
+
+    private final CacheType type;
+
+    private final DocumentNodeStore docNodeStore;
+
+    private final DocumentStore docStore;
+
+    private final SlabAllocator allocator;
+
+    private final CacheLIRS<K, Slot> slots;
+
+    private final Striped<Lock> locks = Striped.lock(NUM_STRIPES);
+
+    private final CacheStats stats;
+
+    public OffHeapCache(@Nonnull Cache<K, V> memCache,
+                        @Nonnull CacheType type,
+                        @Nullable DocumentNodeStore docNodeStore,
+                        @Nullable DocumentStore docStore,
+                        long capacity) {
+        this.memCache = memCache;
+        this.type = type;
+        this.docNodeStore = docNodeStore;
+        this.docStore = docStore;
+        this.allocator = new SlabAllocator(capacity);
+        Weigher<K, Slot> weigher = new Weigher<K, Slot>() {
+            @Override
+            public int weigh(@Nonnull K key, @Nonnull Slot value) {
+                return value.size;
+            }
+        };
+        this.slots = CacheLIRS.<K, Slot>newBuilder()
+                .module(type.name() + "-OffHeap")
+                .weigher(weigher)
+                .averageWeight(2000)
+                .maximumWeight(capacity)
+                .recordStats()
+                .evictionCallback(new EvictionCallback<K, Slot>() {
+                    @Override
+                    public void evicted(@Nonnull K key,
+                                        @Nullable Slot value,
+                                        @Nonnull RemovalCause cause) {
+                        if (value != null) {
+                            value.release();
+                        }
+                    }
+                }).build();
+        this.stats = new CacheStats(slots, type.name() + "-OffHeap", weigher, capacity);
+    }
+
+    /**
+     * @return the statistics of the off-heap tier.
+     */
+    @Nonnull
+    public CacheStats getOffHeapStats() {
+        return stats;
+    }
+
+    /**
+     * @return the number of bytes currently allocated off-heap.
+     */
+    public long getAllocatedMemory() {
+        return allocator.getAllocatedMemory();
+    }
+
+    //-------------------------------< Cache >----------------------------------
+
+    @SuppressWarnings("unchecked")
+    @Override
+    @CheckForNull
+    public V getIfPresent(@Nonnull Object key) {
+        V value = memCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Slot slot = slots.getIfPresent(key);
+            if (slot == null || !slot.retain()) {
+                return null;
+            }
+            try {
+                String s = new String(allocator.read(slot.address), Charsets.UTF_8);
+                value = type.valueFromString(docNodeStore, docStore, s);
+            } finally {
+                slot.release();
+            }
+            // move the entry to the heap cache
+            slots.invalidate(key);
+            memCache.put((K) key, value);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key, Callable<? extends V> valueLoader)
+            throws ExecutionException {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        value = memCache.get(key, valueLoader);
+        // the entry may have been moved to the off-heap tier while it
+        // was loaded. the loaded value takes precedence
+        slots.invalidate(key);
+        return value;
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAllPresent(Iterable<?> keys) {
+        return memCache.getAllPresent(keys);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            slots.invalidate(key);
+            memCache.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            slots.invalidate(key);
+            memCache.invalidate(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll(Iterable<?> keys) {
+        for (Object key : keys) {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        slots.invalidateAll();
+        memCache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return memCache.size() + slots.size();
+    }
+
+    @Override
+    public com.google.common.cache.CacheStats stats() {
+        return memCache.stats();
+    }
+
+    /**
+     * Returns a view on the heap cache. The key set of the view also
+     * contains the keys of the entries in the off-heap tier, all other
+     * methods only reflect the heap cache.
+     */
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+        final ConcurrentMap<K, V> map = memCache.asMap();
+        return new ForwardingConcurrentMap<K, V>() {
+            @Override
+            protected ConcurrentMap<K, V> delegate() {
+                return map;
+            }
+
+            @Override
+            public Set<K> keySet() {
+                return Sets.union(map.keySet(), slots.asMap().keySet());
+            }
+        };
+    }
+
+    @Override
+    public void cleanUp() {
+        memCache.cleanUp();
+        slots.cleanUp();
+    }
+
+    @Override
+    public void close() {
+        slots.invalidateAll();
+    }
+
+    //--------------------------< EvictionListener >----------------------------
+
+    /**
+     * Invoked on the eviction from the heap cache.
+     */
+    @Override
+    public void evicted(K key, V value, RemovalCause cause) {
+        if (value == null || !EVICTION_CAUSES.contains(cause)) {
+            return;
+        }
+        Lock lock = locks.get(key);
+        if (!lock.tryLock()) {
+            // an older entry in the off-heap tier must not
+            // survive the entry evicted from the heap cache
+            slots.invalidate(key);
+            return;
+        }
+        try {
+            byte[] data = type.valueToString(value).getBytes(Charsets.UTF_8);
+            long address = allocator.store(data);
+            if (address == -1 && evictSlots(allocator.getChunkSize(data.length))) {
+                address = allocator.store(data);
+            }
+            if (address == -1) {
+                LOG.debug("Unable to store {} bytes for {} off-heap", data.length, key);
+                slots.invalidate(key);
+                return;
+            }
+            Slot slot = new Slot(address, allocator.getChunkSize(data.length));
+            slots.put(key, slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evict least recently used entries with chunks of the given size, cold
+     * entries first.
+     *
+     * @param chunkSize the size of the chunks to free.
+     * @return {@code true} if entries were evicted.
+     */
+    private boolean evictSlots(int chunkSize) {
+        if (chunkSize < 0) {
+            return false;
+        }
+        int evicted = evictSlots(slots.keys(true, false), chunkSize);
+        if (evicted == 0) {
+            evicted = evictSlots(slots.keys(false, false), chunkSize);
+        }
+        return evicted > 0;
+    }
+
+    private int evictSlots(List<K> keys, int chunkSize) {
+        int evicted = 0;
+        // the least recently used entries are at the end of the list
+        for (int i = keys.size() - 1; i >= 0 && evicted < EVICTION_BATCH; i--) {
+            K key = keys.get(i);
+            Slot slot = slots.peek(key);
+            if (slot != null && slot.size == chunkSize) {
+                slots.invalidate(key);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * A chunk of off-heap memory holding a serialized entry. The chunk is
+     * freed when the slot was removed from the cache and no reader
+     * references it anymore.
+     */
+    private final class Slot {
+
+        private final long address;
+
+        private final int size;
+
+        /**
+         * Reference count, starts with the reference of the cache.
+         */
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        Slot(long address, int size) {
+            this.address = address;
+            this.size = size;
+        }
+
+        boolean retain() {
+            for (;;) {
+                int r = refs.get();
+                if (r == 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(r, r + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                allocator.free(address);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Allocates chunks of off-heap memory. The memory is split into slabs of
+ * {@link #SLAB_SIZE} bytes, which are allocated as direct {@link ByteBuffer}s
+ * on demand until the capacity is reached. Each slab is assigned to a size
+ * class and divided into chunks of the size of the class. Freed chunks are
+ * reused for allocations in the same size class, slabs are never released.
+ * <p>
+ * A chunk is identified by an address, which encodes the size class, the
+ * slab within the size class and the chunk within the slab.
+ */
+final class SlabAllocator {
+
+    static final int SLAB_SIZE = 1024 * 1024;
+
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    private static final double GROWTH_FACTOR = 1.25;
+
+    /**
+     * The length of the header of a chunk, which contains the length of the
+     * data in the chunk.
+     */
+    private static final int HEADER_LENGTH = 4;
+
+    private static final int SLAB_BITS = 20;
+
+    private static final int CHUNK_BITS = 20;
+
+    private final SizeClass[] sizeClasses;
+
+    private final int maxSlabs;
+
+    private final AtomicInteger slabCount = new AtomicInteger();
+
+    SlabAllocator(long capacity) {
+        checkArgument(capacity > 0, "capacity must be greater than zero: %s", capacity);
+        this.maxSlabs = (int) Math.min(1 << SLAB_BITS, Math.max(1, capacity / SLAB_SIZE));
+        List<SizeClass> classes = Lists.newArrayList();
+        int size = MIN_CHUNK_SIZE;
+        while (size < SLAB_SIZE) {
+            classes.add(new SizeClass(classes.size(), size));
+            // align chunk sizes to 8 bytes
+            size = (int) Math.ceil(size * GROWTH_FACTOR / 8) * 8;
+        }
+        classes.add(new SizeClass(classes.size(), SLAB_SIZE));
+        this.sizeClasses = classes.toArray(new SizeClass[classes.size()]);
+    }
+
+    /**
+     * Returns the size of the chunk used to store data of the given length.
+     *
+     * @param length the length of the data.
+     * @return the size of the chunk or -1 if the data is too large to be
+     *          stored.
+     */
+    int getChunkSize(int length) {
+        SizeClass c = getSizeClass(length);
+        return c == null ? -1 : c.chunkSize;
+    }
+
+    /**
+     * Allocates a chunk and writes the given data to it.
+     *
+     * @param data the data to store.
+     * @return the address of the chunk or -1 if the data is too large or
+     *          there is no more memory available in the size class of the
+     *          data.
+     */
+    long store(byte[] data) {
+        SizeClass c = getSizeClass(data.length);
+        if (c == null) {
+            return -1;
+        }
+        long address = c.allocate();
+        if (address == -1) {
+            return -1;
+        }
+        ByteBuffer b = getBuffer(address);
+        b.putInt(data.length);
+        b.put(data);
+        return address;
+    }
+
+    /**
+     * Reads the data stored in the chunk with the given address.
+     *
+     * @param address the address of the chunk.
+     * @return the data.
+     */
+    byte[] read(long address) {
+        ByteBuffer b = getBuffer(address);
+        byte[] data = new byte[b.getInt()];
+        b.get(data);
+        return data;
+    }
+
+    /**
+     * Frees the chunk with the given address. The chunk must not be accessed
+     * anymore after this call.
+     *
+     * @param address the address of the chunk.
+     */
+    void free(long address) {
+        sizeClasses[sizeClassIndex(address)].free.add(address);
+    }
+
+    /**
+     * @return the number of bytes currently allocated in slabs.
+     */
+    long getAllocatedMemory() {
+        return (long) slabCount.get() * SLAB_SIZE;
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private SizeClass getSizeClass(int length) {
+        int size = length + HEADER_LENGTH;
+        for (SizeClass c : sizeClasses) {
+            if (c.chunkSize >= size) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer getBuffer(long address) {
+        SizeClass c = sizeClasses[sizeClassIndex(address)];
+        ByteBuffer b = c.slabs.get(slabIndex(address)).duplicate();
+        b.position(chunkIndex(address) * c.chunkSize);
+        return b;
+    }
+
+    private static long address(int sizeClass, int slab, int chunk) {
+        return ((long) sizeClass << (SLAB_BITS + CHUNK_BITS))
+                | ((long) slab << CHUNK_BITS) | chunk;
+    }
+
+    private static int sizeClassIndex(long address) {
+        return (int) (address >>> (SLAB_BITS + CHUNK_BITS));
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> CHUNK_BITS) & ((1 << SLAB_BITS) - 1);
+    }
+
+    private static int chunkIndex(long address) {
+        return (int) address & ((1 << CHUNK_BITS) - 1);
+    }
+
+    private final class SizeClass {
+
+        private final int index;
+
+        private final int chunkSize;
+
+        private final List<ByteBuffer> slabs = new CopyOnWriteArrayList<ByteBuffer>();
+
+        private final Queue<Long> free = new ConcurrentLinkedQueue<Long>();
+
+        SizeClass(int index, int chunkSize) {
+            this.index = index;
+            this.chunkSize = chunkSize;
+        }
+
+        long allocate() {
+            Long address = free.poll();
+            if (address != null) {
+                return address;
+            }
+            return grow();
+        }
+
+        private synchronized long grow() {
+            // another thread may have added a slab in the meantime
+            Long address = free.poll();
+            if (address != null) {
+                return address;
+            }
+            if (slabCount.incrementAndGet() > maxSlabs) {
+                slabCount.decrementAndGet();
+                return -1;
+            }
+            int slab = slabs.size();
+            slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            int numChunks = SLAB_SIZE / chunkSize;
+            for (int i = 1; i < numChunks; i++) {
+                free.add(address(index, slab, i));
+            }
+            return address(index, slab, 0);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.document.memory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentNavigableMap;
@@ -111,6 +112,19 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> keys) {
+        List<T> list = new ArrayList<T>(keys.size());
+        for (String key : new LinkedHashSet<String>(keys)) {
+            T doc = find(collection, key);
+            if (doc != null) {
+                list.add(doc);
+            }
+        }
+        return list;
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -25,9 +25,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
@@ -59,6 +61,7 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreStatsCollector;
 import org.apache.jackrabbit.oak.plugins.document.JournalEntry;
+import org.apache.jackrabbit.oak.plugins.document.LazyRevisionMap;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
@@ -352,6 +355,35 @@ public class MongoDocumentStore implements DocumentStore {
         return result;
     }
 
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys) {
+        final long start = PERFLOG.start();
+        List<T> result = new ArrayList<T>(keys.size());
+        List<String> uncached = new ArrayList<String>();
+        for (String key : new LinkedHashSet<String>(keys)) {
+            NodeDocument doc = null;
+            if (collection == Collection.NODES) {
+                doc = nodesCache.getIfPresent(key);
+            }
+            if (doc == null) {
+                uncached.add(key);
+            } else {
+                stats.doneFindCached(collection, key);
+                if (doc != NodeDocument.NULL) {
+                    result.add((T) doc);
+                }
+            }
+        }
+        for (List<String> batch : Lists.partition(uncached, IN_CLAUSE_BATCH_SIZE)) {
+            result.addAll(findUncached(collection, batch));
+        }
+        PERFLOG.end(start, 1, "find: keys={}, uncached={}", keys.size(), uncached.size());
+        return result;
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Document> T find(final Collection<T> collection,
                                        final String key,
@@ -505,6 +537,64 @@ public class MongoDocumentStore implements DocumentStore {
         }
     }
 
+    /**
+     * Reads the documents with the given keys with a single {@code $in}
+     * query from the primary and puts them into the cache (if the
+     * collection is {@link Collection#NODES}) unless a cache entry was
+     * modified concurrently.
+     *
+     * @param collection the collection to read from.
+     * @param keys the keys of the documents to read.
+     * @param <T> the document type of the given collection.
+     * @return the documents found.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private <T extends Document> List<T> findUncached(Collection<T> collection,
+                                                      List<String> keys) {
+        log("findUncached", keys);
+        DBCollection dbCollection = getDBCollection(collection);
+        DBObject query = QueryBuilder.start(Document.ID).in(keys).get();
+        final Stopwatch watch = startWatch();
+        int resultSize = 0;
+        CacheChangesTracker tracker = null;
+        if (collection == Collection.NODES) {
+            tracker = nodesCache.registerTracker(new HashSet<String>(keys));
+        }
+        try {
+            // the documents may belong to different parents, hence the
+            // read preference cannot be derived from a parent document.
+            // always read from the primary to get consistent results
+            DBCursor cursor = dbCollection.find(query);
+            cursor.setReadPreference(ReadPreference.primary());
+            List<T> list = new ArrayList<T>(keys.size());
+            try {
+                while (cursor.hasNext()) {
+                    T doc = convertFromDBObject(collection, cursor.next());
+                    if (doc != null) {
+                        doc.seal();
+                        list.add(doc);
+                    }
+                }
+                resultSize = list.size();
+            } finally {
+                cursor.close();
+            }
+            if (tracker != null) {
+                nodesCache.putNonConflictingDocs(tracker, (List<NodeDocument>) list);
+            }
+            return list;
+        } catch (MongoException e) {
+            throw DocumentStoreException.convert(e, "Failed to load documents " + keys);
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+            stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), collection,
+                    keys.get(0), keys.get(keys.size() - 1), false, resultSize, -1, false);
+        }
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -1290,20 +1380,42 @@ public class MongoDocumentStore implements DocumentStore {
                 } else if (o instanceof Boolean) {
                     copy.put(key, o);
                 } else if (o instanceof BasicDBObject) {
-                    copy.put(key, convertMongoMap((BasicDBObject) o));
+                    copy.put(key, new LazyMongoMap((BasicDBObject) o));
                 }
             }
         }
         return copy;
     }
 
-    @Nonnull
-    private Map<Revision, Object> convertMongoMap(@Nonnull BasicDBObject obj) {
-        Map<Revision, Object> map = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
-        for (Map.Entry<String, Object> entry : obj.entrySet()) {
-            map.put(Revision.fromString(entry.getKey()), entry.getValue());
+    /**
+     * A revision map, which keeps the {@link BasicDBObject} as read from
+     * MongoDB and only parses the revisions when accessed.
+     */
+    private static final class LazyMongoMap extends LazyRevisionMap {
+
+        private BasicDBObject obj;
+
+        LazyMongoMap(@Nonnull BasicDBObject obj) {
+            // revisions are kept as strings, which take more memory than
+            // the decoded revisions, so no decode allowance is needed
+            super(Utils.estimateMemoryUsage(obj), 0);
+            this.obj = obj;
+        }
+
+        @Nonnull
+        @Override
+        protected NavigableMap<Revision, Object> decode() {
+            NavigableMap<Revision, Object> map = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+            for (Map.Entry<String, Object> entry : obj.entrySet()) {
+                map.put(Revision.fromString(entry.getKey()), entry.getValue());
+            }
+            return map;
+        }
+
+        @Override
+        protected void release() {
+            obj = null;
         }
-        return map;
     }
 
     <T extends Document> DBCollection getDBCollection(Collection<T> collection) {
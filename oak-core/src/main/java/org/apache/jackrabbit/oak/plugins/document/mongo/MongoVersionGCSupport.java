@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.document.mongo;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
@@ -39,6 +40,7 @@ import org.apache.jackrabbit.oak.plugins.document.SplitDocumentCleanUp;
 import org.apache.jackrabbit.oak.plugins.document.VersionGCSupport;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
 import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
+import org.apache.jackrabbit.oak.stats.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +90,50 @@ public class MongoVersionGCSupport extends VersionGCSupport {
         }), cursor);
     }
 
+    @Override
+    public CloseableIterable<NodeDocument> getPossiblyDeletedDocs(final long fromModified,
+                                                                  final long toModified) {
+        //_deletedOnce == true && fromModified <= _modified < toModified
+        DBObject query =
+                start(NodeDocument.DELETED_ONCE).is(Boolean.TRUE)
+                        .put(NodeDocument.MODIFIED_IN_SECS)
+                        .greaterThanEquals(NodeDocument.getModifiedInSecs(fromModified))
+                        .lessThan(NodeDocument.getModifiedInSecs(toModified))
+                        .get();
+        DBCursor cursor = getNodeCollection().find(query).setReadPreference(ReadPreference.secondaryPreferred());
+        if (!disableIndexHint) {
+            cursor.hint(new BasicDBObject(NodeDocument.DELETED_ONCE, 1));
+        }
+
+        return CloseableIterable.wrap(transform(cursor, new Function<DBObject, NodeDocument>() {
+            @Override
+            public NodeDocument apply(DBObject input) {
+                return store.convertFromDBObject(NODES, input);
+            }
+        }), cursor);
+    }
+
+    @Override
+    public long getOldestDeletedOnceTimestamp(Clock clock) {
+        DBObject query = start(NodeDocument.DELETED_ONCE).is(Boolean.TRUE).get();
+        DBObject fields = new BasicDBObject(NodeDocument.MODIFIED_IN_SECS, 1);
+        DBCursor cursor = getNodeCollection().find(query, fields)
+                .sort(new BasicDBObject(NodeDocument.MODIFIED_IN_SECS, 1))
+                .limit(1)
+                .setReadPreference(ReadPreference.secondaryPreferred());
+        try {
+            if (cursor.hasNext()) {
+                Object modified = cursor.next().get(NodeDocument.MODIFIED_IN_SECS);
+                if (modified instanceof Number) {
+                    return TimeUnit.SECONDS.toMillis(((Number) modified).longValue());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return clock.getTime();
+    }
+
     @Override
     protected SplitDocumentCleanUp createCleanUp(Set<SplitDocType> gcTypes,
                                                  long oldestRevTimeStamp,
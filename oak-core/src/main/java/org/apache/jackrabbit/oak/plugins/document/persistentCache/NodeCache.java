@@ -65,6 +65,11 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     private final CacheType type;
     private final DataType keyType;
     private final DataType valueType;
+    /**
+     * Value type of broadcast messages. These are received by other cluster
+     * nodes, which might not be able to read documents in the binary format.
+     */
+    private final DataType broadcastValueType;
     private final CacheWriteQueue<K, V> writerQueue;
 
     NodeCache(
@@ -82,6 +87,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
         map = new MultiGenerationMap<K, V>();
         keyType = new KeyDataType(type);
         valueType = new ValueDataType(docNodeStore, docStore, type);
+        broadcastValueType = new ValueDataType(docNodeStore, docStore, type, false);
         if (ASYNC_CACHE) {
             this.writerQueue = new CacheWriteQueue<K, V>(dispatcher, cache, map);
         } else {
@@ -135,7 +141,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
                     buffer.put((byte) 0);
                 } else {
                     buffer.put((byte) 1);
-                    valueType.write(buffer, value);
+                    broadcastValueType.write(buffer, value);
                 }
                 return null;
             }
@@ -21,6 +21,9 @@ import java.nio.ByteBuffer;
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocumentCodec;
+import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.StringDataType;
@@ -30,13 +33,27 @@ public class ValueDataType implements DataType {
     private final DocumentNodeStore docNodeStore;
     private final DocumentStore docStore;
     private final CacheType type;
+    private final boolean binaryDocuments;
     
     public ValueDataType(
             DocumentNodeStore docNodeStore,
             DocumentStore docStore, CacheType type) {
+        this(docNodeStore, docStore, type, true);
+    }
+
+    /**
+     * @param binaryDocuments whether documents are written in the binary
+     *          format of {@link NodeDocumentCodec} or as JSON. Documents in
+     *          either format are read.
+     */
+    public ValueDataType(
+            DocumentNodeStore docNodeStore,
+            DocumentStore docStore, CacheType type,
+            boolean binaryDocuments) {
         this.docNodeStore = docNodeStore;
         this.docStore = docStore;
         this.type = type;
+        this.binaryDocuments = binaryDocuments;
     }
 
     @Override
@@ -51,12 +68,34 @@ public class ValueDataType implements DataType {
 
     @Override
     public void write(WriteBuffer buff, Object obj) {
+        if (binaryDocuments && isDocument()) {
+            // the length is followed by the magic byte and version of the
+            // binary format, which a JSON serialized document never starts
+            // with. An empty JSON document has a zero length
+            byte[] data = ((NodeDocument) obj).asBytes();
+            buff.putVarInt(data.length);
+            buff.put(data);
+            return;
+        }
         String s = type.valueToString(obj);
         StringDataType.INSTANCE.write(buff, s);
     }
 
     @Override
     public Object read(ByteBuffer buff) {
+        if (isDocument()) {
+            int pos = buff.position();
+            int len = DataUtils.readVarInt(buff);
+            if (len >= 2 && buff.remaining() >= len
+                    && buff.get(buff.position()) == NodeDocumentCodec.MAGIC
+                    && buff.get(buff.position() + 1) == NodeDocumentCodec.VERSION) {
+                byte[] data = new byte[len];
+                buff.get(data);
+                return NodeDocument.fromBytes(docStore, data);
+            }
+            // entry written as JSON
+            buff.position(pos);
+        }
         String s = StringDataType.INSTANCE.read(buff);
         return type.valueFromString(docNodeStore, docStore, s);
     }
@@ -74,5 +113,9 @@ public class ValueDataType implements DataType {
             obj[i] = read(buff);
         }
     }
+
+    private boolean isDocument() {
+        return type == CacheType.DOCUMENT || type == CacheType.PREV_DOCUMENT;
+    }
     
 }
\ No newline at end of file
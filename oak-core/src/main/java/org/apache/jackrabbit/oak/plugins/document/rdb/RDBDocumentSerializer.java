@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.zip.GZIPInputStream;
@@ -32,13 +33,16 @@ import java.util.zip.GZIPInputStream;
 import javax.annotation.Nonnull;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.LazyRevisionMap;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocumentCodec;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
@@ -68,6 +72,12 @@ public class RDBDocumentSerializer {
 
     private static final RDBJSONSupport JSON = new RDBJSONSupport(true);
 
+    // Whether to write the BDATA column in the binary format of
+    // NodeDocumentCodec (default: false, as it can not be read by older
+    // versions sharing the same database)
+    private static final boolean BINARYBDATA = Boolean
+            .getBoolean("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYBDATA");
+
     public RDBDocumentSerializer(DocumentStore store, Set<String> columnProperties) {
         this.store = store;
         this.columnProperties = columnProperties;
@@ -95,6 +105,21 @@ public class RDBDocumentSerializer {
         return sb.toString();
     }
 
+    /**
+     * Serializes all non-column properties of the {@link Document} for the
+     * BDATA column; this is either the JSON string {@code data} as returned by
+     * {@link #asString(Document)} or, when enabled, the binary format defined
+     * by {@link NodeDocumentCodec}. The result is GZIPped unless compression
+     * is disabled.
+     */
+    public byte[] asBytes(@Nonnull Document doc, @Nonnull String data) {
+        if (BINARYBDATA) {
+            return RDBDocumentStore.asBytes(NodeDocumentCodec.encode(doc, columnProperties));
+        } else {
+            return RDBDocumentStore.asBytes(data);
+        }
+    }
+
     /**
      * Serializes the changes in the {@link UpdateOp} into a JSON array; each
      * entry is another JSON array holding operation, key, revision, and value.
@@ -166,11 +191,15 @@ public class RDBDocumentSerializer {
         // update operations
         try {
             if (bdata != null && bdata.length != 0) {
-                String s = fromBlobData(bdata);
-                json = new JsopTokenizer(s);
-                json.read('{');
-                readDocumentFromJson(json, doc);
-                json.read(JsopReader.END);
+                byte[] data = fromBlobData(bdata);
+                if (NodeDocumentCodec.isBinary(data)) {
+                    NodeDocumentCodec.decode(data, doc);
+                } else {
+                    json = new JsopTokenizer(new String(data, "UTF-8"));
+                    json.read('{');
+                    readDocumentFromJson(json, doc);
+                    json.read(JsopReader.END);
+                }
                 blobInUse = true;
             }
         } catch (Exception ex) {
@@ -292,32 +321,81 @@ public class RDBDocumentSerializer {
 
     /**
      * Reads from an opened JSON stream ("{" already consumed) into a document.
+     * Maps are not parsed immediately, but put as {@link LazyJsonMap}s into
+     * the document.
      */
     private static <T extends Document> void readDocumentFromJson(@Nonnull JsopTokenizer json, @Nonnull T doc) {
         if (!json.matches('}')) {
             do {
                 String key = json.readString();
                 json.read(':');
-                Object value = JSON.parse(json);
-                doc.put(key, value);
+                String raw = json.readRawValue();
+                if (raw.startsWith("{")) {
+                    doc.put(key, new LazyJsonMap(raw));
+                } else {
+                    doc.put(key, JSON.parse(raw));
+                }
             } while (json.matches(','));
             json.read('}');
         }
     }
 
+    /**
+     * A revision map, which keeps its JSON serialization and only parses it
+     * when accessed.
+     */
+    private static final class LazyJsonMap extends LazyRevisionMap {
+
+        private String json;
+
+        LazyJsonMap(@Nonnull String json) {
+            super(StringUtils.estimateMemoryUsage(json), estimateMemoryUsage(json));
+            this.json = json;
+        }
+
+        /**
+         * Estimates the memory of the decoded map from the number of entries,
+         * which are counted by the colons following a quoted revision, and
+         * two bytes per character of the serialization.
+         */
+        private static int estimateMemoryUsage(String json) {
+            int size = 0;
+            for (int i = json.indexOf("\":"); i >= 0; i = json.indexOf("\":", i + 2)) {
+                size++;
+            }
+            return 112 + size * (64 + 32 + 48) + json.length() * 2;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nonnull
+        @Override
+        protected NavigableMap<Revision, Object> decode() {
+            Object map = JSON.parse(json);
+            if (!(map instanceof NavigableMap)) {
+                throw new DocumentStoreException("expected map but got: " + json);
+            }
+            return (NavigableMap<Revision, Object>) map;
+        }
+
+        @Override
+        protected void release() {
+            json = null;
+        }
+    }
+
     // low level operations
 
     private static byte[] GZIPSIG = { 31, -117 };
 
-    private static String fromBlobData(byte[] bdata) {
+    private static byte[] fromBlobData(byte[] bdata) {
         try {
             if (bdata.length >= 2 && bdata[0] == GZIPSIG[0] && bdata[1] == GZIPSIG[1]) {
                 // GZIP
                 ByteArrayInputStream bis = new ByteArrayInputStream(bdata);
                 GZIPInputStream gis = new GZIPInputStream(bis, 65536);
-                return IOUtils.toString(gis, "UTF-8");
+                return IOUtils.toByteArray(gis);
             } else {
-                return IOUtils.toString(bdata, "UTF-8");
+                return bdata;
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -43,6 +43,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -170,7 +171,11 @@ import com.google.common.collect.Sets;
  * <th>BDATA</th>
  * <td>blob</td>
  * <td>the document's JSON serialization (usually GZIPped, only used for "large"
- * documents)</td>
+ * documents); when the system property
+ * <code>org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYBDATA</code>
+ * is set, the binary format of
+ * {@link org.apache.jackrabbit.oak.plugins.document.NodeDocumentCodec} is written instead
+ * (readers detect either format)</td>
  * </tr>
  * </tbody>
  * </table>
@@ -230,6 +235,32 @@ public class RDBDocumentStore implements DocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> ids) {
+        List<T> result = new ArrayList<T>(ids.size());
+        List<String> uncached = new ArrayList<String>();
+        for (String id : new LinkedHashSet<String>(ids)) {
+            NodeDocument cached = null;
+            if (collection == Collection.NODES) {
+                cached = nodesCache.getIfPresent(id);
+            }
+            if (cached != null && cached.getLastCheckTime() != 0) {
+                stats.doneFindCached(Collection.NODES, id);
+                T doc = castAsT(unwrap(cached));
+                if (doc != null) {
+                    result.add(doc);
+                }
+            } else {
+                uncached.add(id);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            result.addAll(readDocumentsUncached(collection, uncached));
+        }
+        return result;
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
@@ -253,6 +284,31 @@ public class RDBDocumentStore implements DocumentStore {
         return internalQuery(collection, fromKey, toKey, excludeKeyPatterns, conditions, limit);
     }
 
+    /**
+     * Returns the minimal value of an indexed property among the documents
+     * matching the given conditions. The value is read from the database
+     * and does not populate the document cache.
+     *
+     * @return the minimal value or {@code null} if no document matches.
+     */
+    @CheckForNull
+    protected <T extends Document> Long getMinValue(Collection<T> collection, String indexedProperty,
+            List<QueryCondition> conditions) {
+        Connection connection = null;
+        RDBTableMetaData tmd = getTable(collection);
+        try {
+            connection = this.ch.getROConnection();
+            Long value = db.getMinValue(connection, tmd, indexedProperty, conditions);
+            connection.commit();
+            return value;
+        } catch (SQLException ex) {
+            LOG.error("SQL exception on query", ex);
+            throw new DocumentStoreException(ex);
+        } finally {
+            this.ch.closeConnection(connection);
+        }
+    }
+
     @Override
     public <T extends Document> void remove(Collection<T> collection, String id) {
         delete(collection, id);
@@ -420,6 +476,61 @@ public class RDBDocumentStore implements DocumentStore {
         return result;
     }
 
+    /**
+     * Reads the documents with the given ids using {@code IN} statements and
+     * puts them into the cache unless the cache entry for a document was
+     * changed concurrently. Cached documents with a matching modcount are
+     * re-used and marked up-to-date instead.
+     */
+    @Nonnull
+    private <T extends Document> List<T> readDocumentsUncached(Collection<T> collection, List<String> ids) {
+        Connection connection = null;
+        RDBTableMetaData tmd = getTable(collection);
+        final Stopwatch watch = startWatch();
+        int resultSize = 0;
+        CacheChangesTracker tracker = null;
+        try {
+            if (collection == Collection.NODES) {
+                tracker = nodesCache.registerTracker(new HashSet<String>(ids));
+            }
+            long now = System.currentTimeMillis();
+            connection = this.ch.getROConnection();
+            List<RDBRow> rows = db.read(connection, tmd, ids);
+            connection.commit();
+
+            List<T> result = new ArrayList<T>();
+            if (rows != null) {
+                int size = rows.size();
+                for (int i = 0; i < size; i++) {
+                    // free RDBRow as early as possible
+                    RDBRow row = rows.set(i, null);
+                    T doc = getIfCached(collection, row.getId(), row.getModcount());
+                    if (doc == null) {
+                        doc = convertFromDBObject(collection, row);
+                        doc.seal();
+                    } else {
+                        ((NodeDocument) doc).markUpToDate(now);
+                    }
+                    result.add(doc);
+                }
+            }
+            if (collection == Collection.NODES) {
+                nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(result));
+            }
+            resultSize = result.size();
+            return result;
+        } catch (Exception ex) {
+            throw new DocumentStoreException(ex);
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+            this.ch.closeConnection(connection);
+            stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), collection, ids.get(0), ids.get(ids.size() - 1),
+                    false, resultSize, -1, false);
+        }
+    }
+
     private <T extends Document> Map<UpdateOp, T> bulkUpdate(Collection<T> collection, List<UpdateOp> updates, Map<String, T> oldDocs, boolean upsert) {
         Set<String> missingDocs = new HashSet<String>();
         for (UpdateOp op : updates) {
@@ -1729,12 +1840,15 @@ public class RDBDocumentStore implements DocumentStore {
             LOG.error("UTF-8 not supported??", ex);
             throw new DocumentStoreException(ex);
         }
+        return asBytes(bytes);
+    }
 
+    public static byte[] asBytes(byte[] bytes) {
         if (NOGZIP) {
             return bytes;
         } else {
             try {
-                ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length());
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
                 GZIPOutputStream gos = new GZIPOutputStream(bos) {
                     {
                         // TODO: make this configurable
@@ -293,7 +293,7 @@ public class RDBDocumentStoreJDBC {
                     stmt.setBinaryStream(si++, null, 0);
                 } else {
                     stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
+                    byte[] bytes = this.ser.asBytes(document, data);
                     stmt.setBytes(si++, bytes);
                 }
                 stmt.addBatch();
@@ -373,7 +373,7 @@ public class RDBDocumentStoreJDBC {
                     stmt.setBinaryStream(si++, null, 0);
                 } else {
                     stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
+                    byte[] bytes = this.ser.asBytes(document, data);
                     stmt.setBytes(si++, bytes);
                 }
 
@@ -445,6 +445,66 @@ public class RDBDocumentStoreJDBC {
         SUPPORTED_OPS = Collections.unmodifiableSet(tmp);
     }
 
+    /**
+     * Returns the minimal value of an indexed property among the rows
+     * matching the given conditions.
+     *
+     * @return the minimal value or {@code null} if no row matches.
+     */
+    @CheckForNull
+    public Long getMinValue(Connection connection, RDBTableMetaData tmd, String indexedProperty,
+            List<QueryCondition> conditions) throws SQLException {
+        String column = getColumn(indexedProperty);
+        StringBuilder whereClause = new StringBuilder();
+        appendConditions(whereClause, "", conditions);
+
+        StringBuilder query = new StringBuilder();
+        query.append("select min(").append(column).append(") from ").append(tmd.getName());
+        if (whereClause.length() != 0) {
+            query.append(" where ").append(whereClause);
+        }
+
+        PreparedStatement stmt = connection.prepareStatement(query.toString());
+        ResultSet rs = null;
+        try {
+            int si = 1;
+            for (QueryCondition cond : conditions) {
+                stmt.setLong(si++, cond.getValue());
+            }
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                long value = rs.getLong(1);
+                if (!rs.wasNull()) {
+                    return value;
+                }
+            }
+            return null;
+        } finally {
+            closeResultSet(rs);
+            closeStatement(stmt);
+        }
+    }
+
+    private static void appendConditions(StringBuilder whereClause, String whereSep, List<QueryCondition> conditions) {
+        for (QueryCondition cond : conditions) {
+            String op = cond.getOperator();
+            if (!SUPPORTED_OPS.contains(op)) {
+                throw new DocumentStoreException("unsupported operator: " + op);
+            }
+            whereClause.append(whereSep).append(getColumn(cond.getPropertyName())).append(" ").append(op).append(" ?");
+            whereSep = " and ";
+        }
+    }
+
+    @Nonnull
+    private static String getColumn(String indexedProperty) {
+        String column = INDEXED_PROP_MAPPING.get(indexedProperty);
+        if (column == null) {
+            throw new DocumentStoreException("unsupported indexed property: " + indexedProperty);
+        }
+        return column;
+    }
+
     @Nonnull
     public List<RDBRow> query(Connection connection, RDBTableMetaData tmd, String minId, String maxId,
             List<String> excludeKeyPatterns, List<QueryCondition> conditions, int limit) throws SQLException {
@@ -476,20 +536,7 @@ public class RDBDocumentStoreJDBC {
             }
             whereClause.append(")");
         }
-        for (QueryCondition cond : conditions) {
-            String op = cond.getOperator();
-            if (!SUPPORTED_OPS.contains(op)) {
-                throw new DocumentStoreException("unsupported operator: " + op);
-            }
-            String indexedProperty = cond.getPropertyName();
-            String column = INDEXED_PROP_MAPPING.get(indexedProperty);
-            if (column != null) {
-                whereClause.append(whereSep).append(column).append(" ").append(op).append(" ?");
-                whereSep = " and ";
-            } else {
-                throw new DocumentStoreException("unsupported indexed property: " + indexedProperty);
-            }
-        }
+        appendConditions(whereClause, whereSep, conditions);
 
         StringBuilder query = new StringBuilder();
         query.append("select ").append(selectClause);
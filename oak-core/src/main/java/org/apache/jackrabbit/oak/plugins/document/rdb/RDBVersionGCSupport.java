@@ -24,12 +24,14 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument.SplitDocType;
 import org.apache.jackrabbit.oak.plugins.document.VersionGCSupport;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
+import org.apache.jackrabbit.oak.stats.Clock;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
@@ -54,6 +56,25 @@ public class RDBVersionGCSupport extends VersionGCSupport {
         return getIterator(RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
     }
 
+    @Override
+    public Iterable<NodeDocument> getPossiblyDeletedDocs(final long fromModified, final long toModified) {
+        List<QueryCondition> conditions = new ArrayList<QueryCondition>();
+        conditions.add(new QueryCondition(NodeDocument.DELETED_ONCE, "=", 1));
+        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(fromModified)));
+        conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "<", NodeDocument.getModifiedInSecs(toModified)));
+        return getIterator(RDBDocumentStore.EMPTY_KEY_PATTERN, conditions);
+    }
+
+    @Override
+    public long getOldestDeletedOnceTimestamp(Clock clock) {
+        List<QueryCondition> conditions = Collections.singletonList(new QueryCondition(NodeDocument.DELETED_ONCE, "=", 1));
+        Long modified = store.getMinValue(Collection.NODES, NodeDocument.MODIFIED_IN_SECS, conditions);
+        if (modified == null) {
+            return clock.getTime();
+        }
+        return TimeUnit.SECONDS.toMillis(modified);
+    }
+
     private Iterable<NodeDocument> getSplitDocuments() {
         List<QueryCondition> conditions = Collections.emptyList();
         // absent support for SDTYPE as indexed property: exclude those
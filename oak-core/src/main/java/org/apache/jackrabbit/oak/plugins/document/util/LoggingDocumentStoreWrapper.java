@@ -89,6 +89,24 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(final Collection<T> collection,
+                                             final List<String> keys) {
+        try {
+            logMethod("find", collection, keys);
+            return logResult(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return store.find(collection, keys);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
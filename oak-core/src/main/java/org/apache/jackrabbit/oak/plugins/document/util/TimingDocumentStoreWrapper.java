@@ -119,6 +119,22 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> keys) {
+        try {
+            long start = now();
+            List<T> result = base.find(collection, keys);
+            updateAndLogTimes("find3", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "find3 " + collection + " " + keys.size());
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -43,6 +43,7 @@ import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.LazyRevisionMap;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
@@ -147,6 +148,8 @@ public class Utils {
                 size += 8;
             } else if (o instanceof Integer) {
                 size += 8;
+            } else if (o instanceof LazyRevisionMap) {
+                size += 8 + ((LazyRevisionMap) o).getMemory();
             } else if (o instanceof Map) {
                 size += 8 + estimateMemoryUsage((Map<String, Object>) o);
             } else if (o == null) {
@@ -173,6 +173,12 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
      */
     private int softTimeOutSecs = Integer.getInteger("oak.async.softTimeOutSecs", 2 * 60);
 
+    /**
+     * Flag to reindex multiple indexes of this lane in parallel, see
+     * {@link IndexUpdate#withParallelReindex(boolean)}
+     */
+    private boolean parallelReindex = Boolean.getBoolean("oak.async.parallelReindex");
+
     private boolean closed;
 
     public AsyncIndexUpdate(@Nonnull String name, @Nonnull NodeStore store,
@@ -506,7 +512,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
 
             IndexUpdate indexUpdate =
                     new IndexUpdate(provider, name, after, builder, callback)
-                    .withMissingProviderStrategy(missingStrategy);
+                    .withMissingProviderStrategy(missingStrategy)
+                    .withParallelReindex(parallelReindex);
             CommitFailedException exception =
                     EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
             if (exception != null) {
@@ -623,6 +630,11 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         return this;
     }
 
+    public AsyncIndexUpdate setParallelReindex(boolean parallelReindex) {
+        this.parallelReindex = parallelReindex;
+        return this;
+    }
+
     public boolean isClosed(){
         return closed || forcedStopFlag.get();
     }
@@ -96,6 +96,12 @@ public class IndexUpdate implements Editor {
         }
     }
 
+    /**
+     * Maximum number of changes queued for each index when reindexing
+     * multiple indexes in parallel.
+     */
+    private static final int PARALLEL_REINDEX_QUEUE_SIZE = 1000;
+
     private final IndexUpdateRootState rootState;
 
     private final NodeBuilder builder;
@@ -150,9 +156,14 @@ public class IndexUpdate implements Editor {
             rootState.reindexedIndexes.addAll(reindex.keySet());
         }
 
-        // no-op when reindex is empty
-        CommitFailedException exception = process(
-                wrap(wrapProgress(compose(reindex.values()), "Reindexing")), MISSING_NODE, after);
+        CommitFailedException exception;
+        if (rootState.parallelReindex && reindex.size() > 1) {
+            exception = reindexInParallel(after);
+        } else {
+            // no-op when reindex is empty
+            exception = process(
+                    wrap(wrapProgress(compose(reindex.values()), "Reindexing")), MISSING_NODE, after);
+        }
         if (exception != null) {
             throw exception;
         }
@@ -162,6 +173,27 @@ public class IndexUpdate implements Editor {
         }
     }
 
+    /**
+     * Traverse the content once and pass the changes on to the editors of
+     * the reindexed indexes, each running on its own thread.
+     */
+    private CommitFailedException reindexInParallel(NodeState after) {
+        ParallelEditor editor = new ParallelEditor(reindex.values(),
+                PARALLEL_REINDEX_QUEUE_SIZE, "oak-parallel-reindex");
+        try {
+            CommitFailedException exception = process(
+                    wrap(wrapProgress(editor, "Reindexing")), MISSING_NODE, after);
+            if (exception == null) {
+                editor.await();
+            }
+            return exception;
+        } catch (CommitFailedException e) {
+            return e;
+        } finally {
+            editor.close();
+        }
+    }
+
     public boolean isReindexingPerformed(){
         return !getReindexStats().isEmpty();
     }
@@ -200,7 +232,12 @@ public class IndexUpdate implements Editor {
                 boolean shouldReindex = shouldReindex(definition,
                         before, name);
                 String indexPath = getIndexPath(getPath(), name);
-                Editor editor = rootState.provider.getIndexEditor(type, definition, rootState.root,
+                // the editors of a parallel reindex write to the builder
+                // from different threads
+                NodeBuilder editorDefinition = shouldReindex && rootState.parallelReindex
+                        ? new SynchronizedNodeBuilder(definition, rootState.builderLock)
+                        : definition;
+                Editor editor = rootState.provider.getIndexEditor(type, editorDefinition, rootState.root,
                         rootState.newCallback(indexPath, shouldReindex));
                 if (editor == null) {
                     missingProvider.onMissingIndex(type, definition, indexPath);
@@ -351,6 +388,17 @@ public class IndexUpdate implements Editor {
         return ProgressNotificationEditor.wrap(editor, log, message);
     }
 
+    /**
+     * Reindex multiple indexes in parallel. The content is still traversed
+     * once, but each reindexed index is updated on its own thread. Only
+     * useful if the index editors are CPU bound, like the ones of full text
+     * indexes.
+     */
+    public IndexUpdate withParallelReindex(boolean parallelReindex) {
+        rootState.parallelReindex = parallelReindex;
+        return this;
+    }
+
     public static class MissingIndexProviderStrategy {
 
         /**
@@ -414,6 +462,12 @@ public class IndexUpdate implements Editor {
         final IndexUpdateCallback updateCallback;
         final Set<String> reindexedIndexes = Sets.newHashSet();
         final Map<String, CountingCallback> callbacks = Maps.newHashMap();
+        /**
+         * Lock of the definition builders passed to the index editors of a
+         * parallel reindex
+         */
+        final Object builderLock = new Object();
+        boolean parallelReindex;
 
         private IndexUpdateRootState(IndexEditorProvider provider, String async, NodeState root,
                                      IndexUpdateCallback updateCallback) {
@@ -485,7 +539,10 @@ public class IndexUpdate implements Editor {
                     log.info("{} => Indexed {} nodes in {} ...", indexName, count, watch);
                     watch.reset().start();
                 }
-                updateCallback.indexUpdate();
+                // called concurrently during a parallel reindex
+                synchronized (IndexUpdateRootState.this) {
+                    updateCallback.indexUpdate();
+                }
             }
 
             @Override
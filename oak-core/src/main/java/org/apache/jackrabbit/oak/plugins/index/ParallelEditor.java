@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Throwables;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Editor passing the changes of a single diff on to a number of editors,
+ * each of which runs on its own thread. The changes are handed over to the
+ * threads through bounded queues, so the diff is blocked by the slowest
+ * editor instead of buffering the whole content.
+ * <p>
+ * As the diff can't know in advance whether an editor is interested in a
+ * subtree, it always descends into all child nodes. The subtrees for which
+ * an editor returns a {@code null} child editor are skipped on the thread of
+ * that editor.
+ * <p>
+ * The editors must not share state which is not thread safe. Failures of
+ * the editors are reported to the diff on the next change and by
+ * {@link #await()}, which must be called once the diff completed.
+ */
+class ParallelEditor implements Editor, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelEditor.class);
+
+    private final List<Worker> workers = newArrayList();
+
+    private final ExecutorService executor;
+
+    /**
+     * The first failure of any of the editors.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    /**
+     * @param editors    editors to run in parallel, each on its own thread
+     * @param queueSize  maximum number of changes queued for each editor
+     * @param name       name of the threads
+     */
+    ParallelEditor(@Nonnull Collection<Editor> editors, int queueSize, @Nonnull String name) {
+        checkArgument(queueSize > 0);
+        executor = Executors.newFixedThreadPool(editors.size(), new EditorThreadFactory(name));
+        for (Editor editor : editors) {
+            Worker worker = new Worker(editor, queueSize);
+            workers.add(worker);
+            executor.execute(worker);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for all editors to process the changes of the diff.
+     *
+     * @throws CommitFailedException if one of the editors failed
+     */
+    void await() throws CommitFailedException {
+        try {
+            while (!executor.awaitTermination(10, SECONDS)) {
+                log.debug("Waiting for {} editors to complete", workers.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw interrupted(e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stop all editors. Changes which were not processed yet are discarded.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void enter(final NodeState before, final NodeState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                worker.enter(before, after);
+            }
+        });
+    }
+
+    @Override
+    public void leave(final NodeState before, final NodeState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                worker.leave(before, after);
+            }
+        });
+    }
+
+    @Override
+    public void propertyAdded(final PropertyState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.current().propertyAdded(after);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void propertyChanged(final PropertyState before, final PropertyState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.current().propertyChanged(before, after);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void propertyDeleted(final PropertyState before)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.current().propertyDeleted(before);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Editor childNodeAdded(final String name, final NodeState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.push(worker.current().childNodeAdded(name, after));
+                } else {
+                    worker.skipped++;
+                }
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Editor childNodeChanged(final String name, final NodeState before, final NodeState after)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.push(worker.current().childNodeChanged(name, before, after));
+                } else {
+                    worker.skipped++;
+                }
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Editor childNodeDeleted(final String name, final NodeState before)
+            throws CommitFailedException {
+        post(new Event() {
+            @Override
+            void apply(Worker worker) throws CommitFailedException {
+                if (worker.skipped == 0) {
+                    worker.push(worker.current().childNodeDeleted(name, before));
+                } else {
+                    worker.skipped++;
+                }
+            }
+        });
+        return this;
+    }
+
+    private void post(Event event) throws CommitFailedException {
+        checkFailure();
+        try {
+            for (Worker worker : workers) {
+                worker.queue.put(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw interrupted(e);
+        }
+    }
+
+    private void checkFailure() throws CommitFailedException {
+        Throwable t = failure.get();
+        if (t != null) {
+            Throwables.propagateIfInstanceOf(t, CommitFailedException.class);
+            throw Throwables.propagate(t);
+        }
+    }
+
+    private static CommitFailedException interrupted(InterruptedException e) {
+        return new CommitFailedException("IndexUpdate", 2,
+                "Interrupted while waiting for the parallel editors", e);
+    }
+
+    /**
+     * Change reported by the diff, applied to the editors of all workers.
+     */
+    private abstract static class Event {
+        abstract void apply(Worker worker) throws CommitFailedException;
+    }
+
+    /**
+     * Applies the queued changes to one editor. The stack holds the editors
+     * for the current path and {@code skipped} the depth below the last
+     * node the editor was interested in.
+     */
+    private class Worker implements Runnable {
+
+        final BlockingQueue<Event> queue;
+
+        private final List<Editor> stack = newArrayList();
+
+        int skipped;
+
+        Worker(Editor editor, int queueSize) {
+            this.queue = new ArrayBlockingQueue<Event>(queueSize);
+            this.stack.add(editor);
+        }
+
+        Editor current() {
+            return stack.get(stack.size() - 1);
+        }
+
+        void push(Editor child) {
+            if (child != null) {
+                stack.add(child);
+            } else {
+                skipped++;
+            }
+        }
+
+        void enter(NodeState before, NodeState after) throws CommitFailedException {
+            if (skipped == 0) {
+                current().enter(before, after);
+            }
+        }
+
+        void leave(NodeState before, NodeState after) throws CommitFailedException {
+            if (skipped == 0) {
+                current().leave(before, after);
+                stack.remove(stack.size() - 1);
+            } else {
+                skipped--;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                //The editor is done when the root editor is left
+                while (!stack.isEmpty()) {
+                    queue.take().apply(this);
+                }
+            } catch (InterruptedException e) {
+                //Closed before the diff completed
+            } catch (Throwable t) {
+                //Keep the first failure, later ones might only be caused by it
+                failure.compareAndSet(null, t);
+                //Unblock the diff, which fails on its next change
+                queue.clear();
+            }
+        }
+    }
+
+    private static class EditorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final String name;
+
+        EditorThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
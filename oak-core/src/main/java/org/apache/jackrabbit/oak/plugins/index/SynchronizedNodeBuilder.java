@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Node builder serializing all accesses to the builder it wraps on a lock.
+ * Builders of different parts of the same tree share internal state, so
+ * editors running on different threads must use the same lock even if they
+ * write to distinct subtrees. Iterables are copied while holding the lock.
+ */
+class SynchronizedNodeBuilder implements NodeBuilder {
+
+    private final NodeBuilder builder;
+
+    private final Object lock;
+
+    SynchronizedNodeBuilder(@Nonnull NodeBuilder builder, @Nonnull Object lock) {
+        this.builder = checkNotNull(builder);
+        this.lock = checkNotNull(lock);
+    }
+
+    @Nonnull
+    @Override
+    public NodeState getNodeState() {
+        synchronized (lock) {
+            return builder.getNodeState();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeState getBaseState() {
+        synchronized (lock) {
+            return builder.getBaseState();
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        synchronized (lock) {
+            return builder.exists();
+        }
+    }
+
+    @Override
+    public boolean isNew() {
+        synchronized (lock) {
+            return builder.isNew();
+        }
+    }
+
+    @Override
+    public boolean isNew(String name) {
+        synchronized (lock) {
+            return builder.isNew(name);
+        }
+    }
+
+    @Override
+    public boolean isModified() {
+        synchronized (lock) {
+            return builder.isModified();
+        }
+    }
+
+    @Override
+    public boolean isReplaced() {
+        synchronized (lock) {
+            return builder.isReplaced();
+        }
+    }
+
+    @Override
+    public boolean isReplaced(String name) {
+        synchronized (lock) {
+            return builder.isReplaced(name);
+        }
+    }
+
+    @Override
+    public long getChildNodeCount(long max) {
+        synchronized (lock) {
+            return builder.getChildNodeCount(max);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<String> getChildNodeNames() {
+        synchronized (lock) {
+            return ImmutableList.copyOf(builder.getChildNodeNames());
+        }
+    }
+
+    @Override
+    public boolean hasChildNode(@Nonnull String name) {
+        synchronized (lock) {
+            return builder.hasChildNode(name);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder child(@Nonnull String name) {
+        synchronized (lock) {
+            return wrap(builder.child(name));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder getChildNode(@Nonnull String name) {
+        synchronized (lock) {
+            return wrap(builder.getChildNode(name));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder setChildNode(@Nonnull String name) {
+        synchronized (lock) {
+            return wrap(builder.setChildNode(name));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder setChildNode(@Nonnull String name, @Nonnull NodeState nodeState) {
+        synchronized (lock) {
+            return wrap(builder.setChildNode(name, nodeState));
+        }
+    }
+
+    @Override
+    public boolean remove() {
+        synchronized (lock) {
+            return builder.remove();
+        }
+    }
+
+    @Override
+    public boolean moveTo(@Nonnull NodeBuilder newParent, @Nonnull String newName) {
+        if (newParent instanceof SynchronizedNodeBuilder) {
+            newParent = ((SynchronizedNodeBuilder) newParent).builder;
+        }
+        synchronized (lock) {
+            return builder.moveTo(newParent, newName);
+        }
+    }
+
+    @Override
+    public long getPropertyCount() {
+        synchronized (lock) {
+            return builder.getPropertyCount();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<? extends PropertyState> getProperties() {
+        synchronized (lock) {
+            return ImmutableList.copyOf(builder.getProperties());
+        }
+    }
+
+    @Override
+    public boolean hasProperty(String name) {
+        synchronized (lock) {
+            return builder.hasProperty(name);
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public PropertyState getProperty(String name) {
+        synchronized (lock) {
+            return builder.getProperty(name);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(@Nonnull String name) {
+        synchronized (lock) {
+            return builder.getBoolean(name);
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public String getString(String name) {
+        synchronized (lock) {
+            return builder.getString(name);
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public String getName(@Nonnull String name) {
+        synchronized (lock) {
+            return builder.getName(name);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterable<String> getNames(@Nonnull String name) {
+        synchronized (lock) {
+            return ImmutableList.copyOf(builder.getNames(name));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder setProperty(@Nonnull PropertyState property) {
+        synchronized (lock) {
+            builder.setProperty(property);
+        }
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public <T> NodeBuilder setProperty(String name, @Nonnull T value) {
+        synchronized (lock) {
+            builder.setProperty(name, value);
+        }
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public <T> NodeBuilder setProperty(String name, @Nonnull T value, Type<T> type) {
+        synchronized (lock) {
+            builder.setProperty(name, value, type);
+        }
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public NodeBuilder removeProperty(String name) {
+        synchronized (lock) {
+            builder.removeProperty(name);
+        }
+        return this;
+    }
+
+    @Override
+    public Blob createBlob(InputStream stream) throws IOException {
+        //Blobs are written to the underlying store which is thread safe,
+        //so large binaries don't block the other editors
+        return builder.createBlob(stream);
+    }
+
+    private NodeBuilder wrap(NodeBuilder child) {
+        return new SynchronizedNodeBuilder(child, lock);
+    }
+}
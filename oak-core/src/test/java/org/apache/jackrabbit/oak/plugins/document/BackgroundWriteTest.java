@@ -17,9 +17,18 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+import com.google.common.collect.Sets;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
@@ -57,6 +66,72 @@ public class BackgroundWriteTest {
         mk.dispose();
     }
 
+    @Test
+    public void concurrentBatchWrites() throws Exception {
+        OrderCheckingStore store = new OrderCheckingStore();
+        DocumentNodeStore ns = new DocumentMK.Builder().setDocumentStore(store)
+                .setAsyncDelay(0).setBackgroundWriteConcurrency(4).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder child = builder.child("node-" + i);
+            for (int j = 0; j < 20; j++) {
+                child.child("node-" + j);
+            }
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.runBackgroundOperations();
+
+        // use a new revision for each path to get many small batches
+        UnsavedModifications pending = ns.getPendingModifications();
+        for (String p : store.pending) {
+            pending.put(p, ns.newRevision());
+        }
+        ns.runBackgroundOperations();
+
+        assertTrue(store.violations.toString(), store.violations.isEmpty());
+        assertTrue(store.written.containsAll(store.pending));
+        ns.dispose();
+    }
+
+    /**
+     * Checks that the _lastRev of a node is only written after the _lastRevs
+     * of all its descendants in {@link #pending} were written.
+     */
+    private static final class OrderCheckingStore extends MemoryDocumentStore {
+
+        final Set<String> pending = Sets.newTreeSet();
+        final Set<String> written = Sets.newConcurrentHashSet();
+        final List<String> violations = Collections.synchronizedList(new ArrayList<String>());
+
+        OrderCheckingStore() {
+            pending.add("/");
+            for (int i = 0; i < 20; i++) {
+                pending.add("/node-" + i);
+                for (int j = 0; j < 20; j++) {
+                    pending.add("/node-" + i + "/node-" + j);
+                }
+            }
+        }
+
+        @Override
+        public <T extends Document> void update(Collection<T> collection,
+                                                List<String> keys,
+                                                UpdateOp updateOp) {
+            for (String id : keys) {
+                String path = Utils.getPathFromId(id);
+                for (String p : pending) {
+                    if (PathUtils.isAncestor(path, p) && !written.contains(p)) {
+                        violations.add(path + " written before " + p);
+                    }
+                }
+            }
+            super.update(collection, keys, updateOp);
+            for (String id : keys) {
+                written.add(Utils.getPathFromId(id));
+            }
+        }
+    }
+
     private static final class TestStore extends MemoryDocumentStore {
 
         @Override
@@ -67,6 +67,41 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         removeMe.add(id);
     }
 
+    @Test
+    public void testBulkFind() {
+        String base = this.getClass().getName() + ".testBulkFind-";
+        List<String> ids = new ArrayList<String>();
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 10; i++) {
+            String id = base + i;
+            super.ds.remove(Collection.NODES, id);
+            UpdateOp up = new UpdateOp(id, true);
+            up.set("_id", id);
+            up.set("p", (long) i);
+            ops.add(up);
+            ids.add(id);
+        }
+        assertTrue(super.ds.create(Collection.NODES, ops));
+        removeMe.addAll(ids);
+
+        // read one of the documents, so the store may serve it from cache
+        assertNotNull(super.ds.find(Collection.NODES, ids.get(0)));
+
+        List<String> keys = new ArrayList<String>(ids);
+        keys.add(base + "missing");
+        keys.add(ids.get(1));
+        List<NodeDocument> docs = super.ds.find(Collection.NODES, keys);
+        assertEquals(ids.size(), docs.size());
+        Set<String> found = new HashSet<String>();
+        for (NodeDocument doc : docs) {
+            assertTrue(found.add(doc.getId()));
+            assertEquals(Long.valueOf(ids.indexOf(doc.getId())), doc.get("p"));
+        }
+        assertEquals(new HashSet<String>(ids), found);
+
+        assertTrue(super.ds.find(Collection.NODES, Collections.singletonList(base + "missing")).isEmpty());
+    }
+
     @Test
     public void testAddAndRemoveJournalEntry() {
         // OAK-4021
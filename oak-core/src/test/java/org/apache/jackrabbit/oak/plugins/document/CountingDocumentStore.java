@@ -99,6 +99,17 @@ public class CountingDocumentStore implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys) {
+        getStats(collection).numFindCalls++;
+        if (printStacks) {
+            new Exception("find [" + getStats(collection).numFindCalls + "] (" + collection + ") " + keys).printStackTrace();
+        }
+        return delegate.find(collection, keys);
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -54,6 +54,8 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -70,10 +72,12 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.plugins.commit.AnnotatingConflictHandler;
 import org.apache.jackrabbit.oak.plugins.commit.ConflictHook;
 import org.apache.jackrabbit.oak.plugins.commit.ConflictValidatorProvider;
@@ -519,6 +523,81 @@ public class DocumentNodeStoreTest {
                 maxLimit.get() <= DocumentNodeState.INITIAL_FETCH_SIZE + 1);
     }
 
+    @Test
+    public void readChildrenWithConcurrentlyRemovedChild() throws Exception {
+        MemoryDocumentStore docStore = new MemoryDocumentStore();
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(docStore)
+                .setAsyncDelay(0).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 20; i++) {
+            builder.child("test").child("node-" + (10 + i));
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        DocumentNodeState test = (DocumentNodeState) ns.getRoot().getChildNode("test");
+
+        // cache the names of all children
+        ns.invalidateNodeChildrenCache();
+        ns.invalidateDocChildrenCache();
+        assertEquals(20, ns.readChildren(test, null, 100).children.size());
+
+        // remove a child behind the back of the node store
+        docStore.remove(NODES, Utils.getIdFromPath("/test/node-12"));
+        ns.invalidateNodeChildrenCache();
+
+        DocumentNodeState.Children children = ns.readChildren(test, null, 5);
+        assertEquals(Arrays.asList("node-10", "node-11", "node-13", "node-14", "node-15"),
+                children.children);
+        assertTrue(children.hasMore);
+    }
+
+    @Test
+    public void readAheadChildren() throws Exception {
+        final Set<String> queryThreads = Collections.synchronizedSet(new HashSet<String>());
+        DocumentStore docStore = new MemoryDocumentStore() {
+            @Nonnull
+            @Override
+            public <T extends Document> List<T> query(Collection<T> collection,
+                                                      String fromKey,
+                                                      String toKey,
+                                                      int limit) {
+                if (collection == NODES) {
+                    queryThreads.add(Thread.currentThread().getName());
+                }
+                return super.query(collection, fromKey, toKey, limit);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("read-ahead").build());
+        try {
+            DocumentNodeStore ns = builderProvider.newBuilder()
+                    .setDocumentStore(docStore).setExecutor(executor)
+                    .setChildPrefetchDepth(2)
+                    .setAsyncDelay(0).getNodeStore();
+            NodeBuilder builder = ns.getRoot().builder();
+            Set<String> names = new TreeSet<String>();
+            for (int i = 0; i < 1000; i++) {
+                names.add("node-" + i);
+                builder.child("test").child("node-" + i);
+            }
+            ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            // force reading children in pages from the DocumentStore
+            ns.invalidateNodeChildrenCache();
+            ns.invalidateDocChildrenCache();
+            queryThreads.clear();
+
+            List<String> read = Lists.newArrayList();
+            for (ChildNodeEntry entry : ns.getRoot().getChildNode("test").getChildNodeEntries()) {
+                assertTrue(entry.getNodeState().exists());
+                read.add(entry.getName());
+            }
+            assertEquals(Lists.newArrayList(names), read);
+            assertTrue(queryThreads.contains("read-ahead"));
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+    }
+
     // OAK-1972
     @Test
     public void readFromPreviousDoc() throws CommitFailedException {
@@ -48,6 +48,13 @@ public class DocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys) {
+        return store.find(collection, keys);
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.JOURNAL;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link JournalCacheInvalidator}.
+ */
+public class JournalCacheInvalidatorTest {
+
+    private final List<String> invalidated = Lists.newArrayList();
+
+    private DocumentStore store;
+
+    private Clock clock;
+
+    private JournalCacheInvalidator invalidator;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> void invalidateCache(Collection<T> collection,
+                                                             String key) {
+                if (collection == NODES) {
+                    invalidated.add(key);
+                }
+            }
+        };
+        clock = new Clock.Virtual();
+        clock.waitUntil(System.currentTimeMillis());
+        invalidator = new JournalCacheInvalidator(store, clock);
+    }
+
+    @Test
+    public void tail() throws Exception {
+        Revision r1 = new Revision(clock.getTime(), 0, 2);
+        RevisionVector head = new RevisionVector(
+                new Revision(clock.getTime(), 0, 1), r1);
+
+        // start tailing at the current head
+        invalidator.tail(head, 1);
+        assertTrue(invalidated.isEmpty());
+
+        clock.waitUntil(clock.getTime() + 10);
+        Revision r2 = new Revision(clock.getTime(), 0, 2);
+        addJournalEntry(r2, "/foo/bar");
+        // journal entry of the local cluster node is ignored
+        addJournalEntry(new Revision(clock.getTime(), 0, 1), "/baz");
+
+        clock.waitUntil(clock.getTime() + 5);
+        invalidator.tail(head, 1);
+        assertEquals(Lists.newArrayList("0:/", "1:/foo", "2:/foo/bar"), invalidated);
+        assertTrue(invalidator.getAndResetStats().summaryReport().contains("lag=5"));
+
+        // nothing new
+        invalidated.clear();
+        invalidator.tail(head, 1);
+        assertTrue(invalidated.isEmpty());
+
+        // background read must not process r2 again
+        invalidator.catchUp(r1, r2);
+        assertTrue(invalidated.isEmpty());
+        assertTrue(invalidator.getAndResetStats().summaryReport().contains("journalEntryCount=0"));
+    }
+
+    @Test
+    public void catchUp() throws Exception {
+        Revision r1 = new Revision(clock.getTime(), 0, 2);
+        clock.waitUntil(clock.getTime() + 10);
+        Revision r2 = new Revision(clock.getTime(), 0, 2);
+        addJournalEntry(r2, "/foo");
+        clock.waitUntil(clock.getTime() + 10);
+        Revision r3 = new Revision(clock.getTime(), 0, 2);
+        addJournalEntry(r3, "/bar");
+
+        invalidator.catchUp(r1, r2);
+        assertEquals(Lists.newArrayList("0:/", "1:/foo"), invalidated);
+
+        invalidated.clear();
+        invalidator.catchUp(r1, r3);
+        assertEquals(Lists.newArrayList("0:/", "1:/bar"), invalidated);
+        assertTrue(invalidator.getAndResetStats().summaryReport().contains("journalEntryCount=2"));
+    }
+
+    private void addJournalEntry(Revision r, String path) {
+        JournalEntry entry = JOURNAL.newDocument(store);
+        entry.modified(path);
+        assertTrue(store.create(JOURNAL, Collections.singletonList(entry.asUpdateOp(r))));
+    }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
@@ -68,6 +69,30 @@ public class JournalEntryTest {
         sort.close();
     }
 
+    @Test
+    public void applyToTieredDiffCache() throws Exception {
+        DiffCache cache = new TieredDiffCache(new DocumentMK.Builder());
+        List<String> paths = Lists.newArrayList("/content/changed", "/content/changed1/child1");
+        StringSort sort = JournalEntry.newSorter();
+        add(sort, paths);
+        RevisionVector from = new RevisionVector(new Revision(1, 0, 1));
+        RevisionVector to = new RevisionVector(new Revision(2, 0, 1));
+        sort.sort();
+        JournalEntry.applyTo(sort, cache, from, to);
+        sort.close();
+
+        // external changes from the journal go to both tiers
+        for (CacheStats stats : cache.getStats()) {
+            assertEquals(stats.getName(), stats.getName().equals("Document-LocalDiff") ? 1 : 5,
+                    stats.getElementCount());
+        }
+        assertEquals("^\"content\":{}", cache.getChanges(from, to, "/", null));
+        assertEquals(Sets.newHashSet("changed", "changed1"),
+                Sets.newHashSet(getChildren(cache.getChanges(from, to, "/content", null))));
+        assertEquals("", cache.getChanges(from, to, "/content/changed", null));
+        assertEquals("", cache.getChanges(from, to, "/unchanged", null));
+    }
+
     //OAK-3494
     @Test
     public void useParentDiff() throws Exception {
@@ -25,6 +25,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.junit.LogDumper;
 import org.apache.jackrabbit.oak.commons.junit.LogLevelModifier;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
@@ -273,6 +274,45 @@ public class JournalTest extends AbstractJournalTest {
 //        assertEquals(0, countingDocStore1.getNumFindCalls(Collection.NODES));
     }
     
+    @Test
+    public void localDiffCacheFilledOnBackgroundRead() throws Exception {
+        DocumentMK mk1 = createMK(1, 0);
+        DocumentNodeStore ns1 = mk1.getNodeStore();
+        CountingTieredDiffCache countingDiffCache1 = builder.actualDiffCache;
+
+        DocumentMK mk2 = createMK(2, 0);
+        DocumentNodeStore ns2 = mk2.getNodeStore();
+
+        final DiffingObserver observer = new DiffingObserver(false);
+        ns1.addObserver(observer);
+
+        ns1.runBackgroundOperations();
+        ns2.runBackgroundOperations();
+        observer.processAll(); // to make sure we have an 'oldRoot'
+        observer.clear();
+        countingDiffCache1.resetLoadCounter();
+
+        mk2.commit("/", "+\"regular1\": {}", null, null);
+        mk2.commit("/regular1", "+\"regular2\": {}", null, null);
+        ns2.runBackgroundOperations();
+        ns1.runBackgroundOperations();
+
+        CacheStats localStats = null;
+        for (CacheStats stats : countingDiffCache1.getStats()) {
+            if (stats.getName().equals("Document-LocalDiff")) {
+                localStats = stats;
+            }
+        }
+        assertNotNull(localStats);
+        long hits = localStats.getHitCount();
+
+        observer.processAll();
+        assertEquals(1, observer.getTotal());
+        // the diff of the external changes is served by the local tier
+        assertTrue(localStats.getHitCount() > hits);
+        assertEquals(0, countingDiffCache1.getLoadCount());
+    }
+
     @Test
     public void externalBranchChange() throws Exception {
         DocumentMK mk1 = createMK(1, 0);
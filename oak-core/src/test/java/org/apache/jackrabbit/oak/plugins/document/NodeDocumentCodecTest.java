@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link NodeDocumentCodec}.
+ */
+public class NodeDocumentCodecTest {
+
+    private final DocumentStore store = new MemoryDocumentStore();
+
+    @Test
+    public void roundTrip() {
+        Revision r1 = new Revision(1234567890L, 0, 1);
+        Revision r2 = new Revision(1234567891L, 3, 2);
+        Revision b1 = new Revision(1234567892L, 1, 1, true);
+
+        NodeDocument doc = new NodeDocument(store);
+        doc.put(Document.ID, "1:/foo");
+        doc.put(Document.MOD_COUNT, 42L);
+        doc.put(NodeDocument.DELETED_ONCE, Boolean.TRUE);
+        doc.put("_bin", null);
+        doc.put("_double", 1.5d);
+        doc.put("_int", 7);
+        doc.put("_ref", r1);
+        doc.put("\u20ac\uD834\uDD1E", "\u00e0");
+        doc.put(NodeDocument.REVISIONS, revisionMap(r1, "c", r2, "c-r1-0-1", b1, "c"));
+        doc.put("prop", revisionMap(r1, "\"value\"", r2, null, b1, "\"branch\""));
+
+        NodeDocument copy = NodeDocument.fromBytes(store, doc.asBytes());
+        assertTrue(copy.isSealed());
+        assertEquals(doc.keySet(), copy.keySet());
+        assertEquals("1:/foo", copy.getId());
+        assertEquals(42L, copy.get(Document.MOD_COUNT));
+        assertEquals(Boolean.TRUE, copy.get(NodeDocument.DELETED_ONCE));
+        assertTrue(copy.keySet().contains("_bin"));
+        assertNull(copy.get("_bin"));
+        assertEquals(1.5d, copy.get("_double"));
+        // integers are decoded as long, as with JSON
+        assertEquals(7L, copy.get("_int"));
+        assertEquals(r1.toString(), copy.get("_ref"));
+        assertEquals("\u00e0", copy.get("\u20ac\uD834\uDD1E"));
+        assertEquals(doc.get(NodeDocument.REVISIONS), copy.get(NodeDocument.REVISIONS));
+        assertEquals(doc.get("prop"), copy.get("prop"));
+        @SuppressWarnings("unchecked")
+        Map<Revision, Object> revisions = (Map<Revision, Object>) copy.get(NodeDocument.REVISIONS);
+        assertTrue(revisions.containsKey(b1));
+        assertFalse(revisions.containsKey(b1.asTrunkRevision()));
+        assertEquals(doc.asString(), copy.asString());
+    }
+
+    @Test
+    public void decodeProperty() {
+        Revision r1 = new Revision(1, 0, 1);
+        NodeDocument doc = new NodeDocument(store);
+        doc.put(Document.ID, "0:/");
+        doc.put(NodeDocument.REVISIONS, revisionMap(r1, "c"));
+        doc.put("s", "string");
+        doc.put("n", 1L);
+        byte[] data = doc.asBytes();
+
+        assertEquals("0:/", NodeDocumentCodec.decodeProperty(data, Document.ID));
+        assertEquals(doc.get(NodeDocument.REVISIONS),
+                NodeDocumentCodec.decodeProperty(data, NodeDocument.REVISIONS));
+        assertEquals("string", NodeDocumentCodec.decodeProperty(data, "s"));
+        assertEquals(1L, NodeDocumentCodec.decodeProperty(data, "n"));
+        assertNull(NodeDocumentCodec.decodeProperty(data, "missing"));
+    }
+
+    @Test
+    public void lazyMaps() {
+        Revision r1 = new Revision(1, 0, 1);
+        Revision r2 = new Revision(2, 0, 1);
+        NodeDocument doc = new NodeDocument(store);
+        doc.put(Document.ID, "0:/");
+        doc.put(NodeDocument.REVISIONS, revisionMap(r1, "c", r2, "c"));
+        doc.put("prop", revisionMap(r1, "\"a\"", r2, "\"b\""));
+        byte[] data = doc.asBytes();
+
+        NodeDocument copy = NodeDocument.fromBytes(store, data);
+        LazyRevisionMap revisions = (LazyRevisionMap) copy.get(NodeDocument.REVISIONS);
+        LazyRevisionMap prop = (LazyRevisionMap) copy.get("prop");
+        assertFalse(revisions.isDecoded());
+        assertFalse(prop.isDecoded());
+        // weighed by the raw maps plus a bounded decode allowance
+        assertTrue(copy.getMemory() < doc.getMemory());
+
+        // unchanged maps are written as is
+        assertTrue(Arrays.equals(data, copy.asBytes()));
+        assertFalse(prop.isDecoded());
+
+        assertEquals("c", copy.getLocalRevisions().get(r2));
+        assertTrue(revisions.isDecoded());
+        assertFalse(prop.isDecoded());
+        try {
+            revisions.put(new Revision(3, 0, 1), "c");
+            fail("must be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(doc.get("prop"), prop);
+        assertTrue(Arrays.equals(data, copy.asBytes()));
+        assertEquals(doc.getMemory(), copy.getMemory());
+    }
+
+    @Test
+    public void exclude() {
+        NodeDocument doc = new NodeDocument(store);
+        doc.put(Document.ID, "0:/");
+        doc.put("s", "string");
+        byte[] data = NodeDocumentCodec.encode(doc, Collections.singleton(Document.ID));
+
+        NodeDocument copy = NodeDocumentCodec.decode(data, new NodeDocument(store));
+        assertNull(copy.getId());
+        assertEquals("string", copy.get("s"));
+    }
+
+    @Test
+    public void isBinary() throws Exception {
+        NodeDocument doc = new NodeDocument(store);
+        assertTrue(NodeDocumentCodec.isBinary(doc.asBytes()));
+        assertFalse(NodeDocumentCodec.isBinary(null));
+        assertFalse(NodeDocumentCodec.isBinary(new byte[0]));
+        assertFalse(NodeDocumentCodec.isBinary("{}".getBytes("UTF-8")));
+        assertFalse(NodeDocumentCodec.isBinary(new byte[]{31, -117}));
+    }
+
+    @Test
+    public void malformed() {
+        NodeDocument doc = new NodeDocument(store);
+        doc.put("s", "string");
+        byte[] data = doc.asBytes();
+        byte[] truncated = new byte[data.length - 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        try {
+            NodeDocument.fromBytes(store, truncated);
+            fail("must fail with IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Map<Revision, Object> revisionMap(Object... entries) {
+        Map<Revision, Object> map = new TreeMap<Revision, Object>(
+                StableRevisionComparator.REVERSE);
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((Revision) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+}
@@ -51,6 +51,7 @@ import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
@@ -206,6 +207,58 @@ public class VersionGCDeletionTest {
         assertEquals(noOfDocsToDelete * 2 + 1, stats.deletedDocGCCount);
     }
 
+    @Test
+    public void deleteInSegments() throws Exception{
+        DocumentStore ts = new MemoryDocumentStore();
+        store = new DocumentMK.Builder()
+                .clock(clock)
+                .setDocumentStore(ts)
+                .setAsyncDelay(0)
+                .getNodeStore();
+
+        //Baseline the clock
+        clock.waitUntil(Revision.getCurrentTimestamp());
+
+        NodeBuilder b1 = store.getRoot().builder();
+        for (int i = 0; i < 10; i++){
+            b1.child("x" + i).child("y");
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        // remove the nodes at different times
+        for (int i = 0; i < 10; i++){
+            clock.waitUntil(clock.getTime() + MINUTES.toMillis(20));
+            NodeBuilder b2 = store.getRoot().builder();
+            b2.child("x" + i).remove();
+            store.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+        store.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(2));
+        VersionGarbageCollector gc = store.getVersionGarbageCollector();
+        gc.setParallelism(4);
+        gc.setSegmentDuration(30, MINUTES);
+
+        VersionGCStats stats = gc.gc(1, HOURS);
+        assertEquals(20, stats.deletedDocGCCount);
+        assertEquals(stats.segmentCount, stats.segmentsCompleted);
+        for (int i = 0; i < 10; i++){
+            assertNull(ts.find(Collection.NODES, "1:/x" + i));
+            assertNull(ts.find(Collection.NODES, "2:/x" + i + "/y"));
+        }
+        Document settings = ts.find(Collection.SETTINGS,
+                VersionGarbageCollector.SETTINGS_COLLECTION_ID);
+        assertNotNull(settings);
+        long lastCompleted = (Long) settings.get(
+                VersionGarbageCollector.SETTINGS_LAST_COMPLETED_SEGMENT_PROP);
+        assertEquals(clock.getTime() - HOURS.toMillis(1), lastCompleted);
+
+        // nothing left to collect
+        stats = gc.gc(1, HOURS);
+        assertEquals(0, stats.deletedDocGCCount);
+        assertEquals(0, stats.segmentCount);
+    }
+
     @Test
     public void gcForPreviousDocs() throws Exception{
         DocumentStore ts = new MemoryDocumentStore();
@@ -60,6 +60,10 @@ import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.commons.FixturesHelper;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.mongo.MongoVersionGCSupport;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBVersionGCSupport;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
@@ -499,6 +503,40 @@ public class VersionGarbageCollectorIT {
         assertEquals(2, stats.splitDocGCCount);
     }
 
+    @Test
+    public void oldestDeletedOnceTimestamp() throws Exception {
+        Revision.setClock(clock);
+        VersionGCSupport gcSupport = createVersionGCSupport(store.getDocumentStore());
+        assertEquals(clock.getTime(), gcSupport.getOldestDeletedOnceTimestamp(clock));
+
+        NodeBuilder builder = store.getRoot().builder();
+        builder.child("foo");
+        builder.child("bar");
+        merge(store, builder);
+
+        long removed = clock.getTime();
+        builder = store.getRoot().builder();
+        builder.getChildNode("foo").remove();
+        merge(store, builder);
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(1));
+        builder = store.getRoot().builder();
+        builder.getChildNode("bar").remove();
+        merge(store, builder);
+
+        long expected = TimeUnit.SECONDS.toMillis(NodeDocument.getModifiedInSecs(removed));
+        assertEquals(expected, gcSupport.getOldestDeletedOnceTimestamp(clock));
+    }
+
+    private static VersionGCSupport createVersionGCSupport(DocumentStore ds) {
+        if (ds instanceof MongoDocumentStore) {
+            return new MongoVersionGCSupport((MongoDocumentStore) ds);
+        } else if (ds instanceof RDBDocumentStore) {
+            return new RDBVersionGCSupport((RDBDocumentStore) ds);
+        }
+        return new VersionGCSupport(ds);
+    }
+
     private void createTestNode(String name) throws CommitFailedException {
         DocumentStore ds = store.getDocumentStore();
         NodeBuilder builder = store.getRoot().builder();
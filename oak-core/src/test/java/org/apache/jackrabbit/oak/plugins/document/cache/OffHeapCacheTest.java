@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCacheTest {
+
+    private static final int NUM_DOCS = 1000;
+
+    private DocumentStore ds;
+
+    private OffHeapCache<CacheValue, NodeDocument> cache;
+
+    @Before
+    public void before() {
+        ds = new MemoryDocumentStore();
+        cache = createCache(16 * 1024 * 1024);
+    }
+
+    private OffHeapCache<CacheValue, NodeDocument> createCache(long capacity) {
+        final Set<EvictionListener<CacheValue, NodeDocument>> listeners =
+                new CopyOnWriteArraySet<EvictionListener<CacheValue, NodeDocument>>();
+        CacheLIRS<CacheValue, NodeDocument> memCache = CacheLIRS.<CacheValue, NodeDocument>newBuilder()
+                .weigher(new Weigher<CacheValue, NodeDocument>() {
+                    @Override
+                    public int weigh(CacheValue key, NodeDocument value) {
+                        return key.getMemory() + value.getMemory();
+                    }
+                })
+                .maximumWeight(64 * 1024)
+                .evictionCallback(new EvictionCallback<CacheValue, NodeDocument>() {
+                    @Override
+                    public void evicted(CacheValue key, NodeDocument value, RemovalCause cause) {
+                        for (EvictionListener<CacheValue, NodeDocument> l : listeners) {
+                            l.evicted(key, value, cause);
+                        }
+                    }
+                }).build();
+        OffHeapCache<CacheValue, NodeDocument> cache = new OffHeapCache<CacheValue, NodeDocument>(
+                memCache, CacheType.DOCUMENT, null, ds, capacity);
+        listeners.add(cache);
+        return cache;
+    }
+
+    @Test
+    public void evictToOffHeap() {
+        for (int i = 0; i < NUM_DOCS; i++) {
+            cache.put(new StringValue(id(i)), createDocument(i));
+        }
+        assertTrue(cache.getOffHeapStats().getElementCount() > 0);
+        assertTrue(cache.getAllocatedMemory() > 0);
+        assertEquals(NUM_DOCS, cache.asMap().keySet().size());
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = cache.getIfPresent(new StringValue(id(i)));
+            assertNotNull(doc);
+            assertEquals(id(i), doc.getId());
+            assertEquals(Long.valueOf(i), doc.getModCount());
+        }
+        assertTrue(cache.getOffHeapStats().getHitCount() > 0);
+    }
+
+    @Test
+    public void invalidate() {
+        for (int i = 0; i < NUM_DOCS; i++) {
+            cache.put(new StringValue(id(i)), createDocument(i));
+        }
+        for (int i = 0; i < NUM_DOCS; i++) {
+            cache.invalidate(new StringValue(id(i)));
+        }
+        for (int i = 0; i < NUM_DOCS; i++) {
+            assertNull(cache.getIfPresent(new StringValue(id(i))));
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void putReplacesOffHeapEntry() {
+        for (int i = 0; i < NUM_DOCS; i++) {
+            cache.put(new StringValue(id(i)), createDocument(i));
+        }
+        // the first documents were evicted from the heap by now
+        StringValue key = new StringValue(id(0));
+        NodeDocument doc = createDocument(0);
+        doc.put(Document.MOD_COUNT, 42L);
+        cache.put(key, doc);
+        assertEquals(Long.valueOf(42), cache.getIfPresent(key).getModCount());
+    }
+
+    @Test
+    public void fillPastCapacity() {
+        // a single slab, which holds less than 100 of these documents
+        cache = createCache(SlabAllocator.SLAB_SIZE);
+        String value = Strings.repeat("x", 10000);
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = createDocument(i);
+            doc.put("prop", value);
+            cache.put(new StringValue(id(i)), doc);
+        }
+        assertEquals(SlabAllocator.SLAB_SIZE, cache.getAllocatedMemory());
+        // the most recent documents are still cached
+        for (int i = NUM_DOCS - 1; i >= NUM_DOCS - 20; i--) {
+            NodeDocument doc = cache.getIfPresent(new StringValue(id(i)));
+            assertNotNull(doc);
+            assertEquals(id(i), doc.getId());
+        }
+        assertTrue(cache.getOffHeapStats().getHitCount() > 0);
+    }
+
+    private static String id(int i) {
+        return "1:/node-" + i;
+    }
+
+    private NodeDocument createDocument(int i) {
+        NodeDocument doc = Collection.NODES.newDocument(ds);
+        doc.put(Document.ID, id(i));
+        doc.put(Document.MOD_COUNT, (long) i);
+        doc.put("prop", "value-" + i);
+        return doc;
+    }
+}
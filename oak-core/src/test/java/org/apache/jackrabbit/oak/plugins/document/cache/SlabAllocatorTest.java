@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlabAllocatorTest {
+
+    @Test
+    public void storeAndRead() {
+        SlabAllocator allocator = new SlabAllocator(4 * SlabAllocator.SLAB_SIZE);
+        byte[] small = new byte[10];
+        byte[] large = new byte[100000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        long a1 = allocator.store(small);
+        long a2 = allocator.store(large);
+        assertTrue(a1 != -1);
+        assertTrue(a2 != -1);
+        assertArrayEquals(small, allocator.read(a1));
+        assertArrayEquals(large, allocator.read(a2));
+        assertEquals(2 * SlabAllocator.SLAB_SIZE, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    public void tooLarge() {
+        SlabAllocator allocator = new SlabAllocator(SlabAllocator.SLAB_SIZE);
+        assertEquals(-1, allocator.store(new byte[SlabAllocator.SLAB_SIZE]));
+        assertEquals(-1, allocator.getChunkSize(SlabAllocator.SLAB_SIZE));
+    }
+
+    @Test
+    public void reuseFreedChunk() {
+        SlabAllocator allocator = new SlabAllocator(SlabAllocator.SLAB_SIZE);
+        byte[] data = new byte[SlabAllocator.SLAB_SIZE / 2];
+        long address = allocator.store(data);
+        assertTrue(address != -1);
+        // capacity of one slab is exhausted
+        assertEquals(-1, allocator.store(new byte[10]));
+        // but chunks in the same size class are reused
+        allocator.free(address);
+        assertEquals(address, allocator.store(data));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ValueDataTypeTest {
+
+    private final DocumentStore store = new MemoryDocumentStore();
+
+    private final ValueDataType binary = new ValueDataType(null, store, CacheType.DOCUMENT);
+
+    private final ValueDataType json = new ValueDataType(null, store, CacheType.DOCUMENT, false);
+
+    @Test
+    public void document() {
+        NodeDocument doc = new NodeDocument(store, 0);
+        doc.put(Document.ID, "1:/foo");
+        doc.put(Document.MOD_COUNT, 1L);
+
+        NodeDocument copy = roundTrip(binary, doc);
+        assertEquals("1:/foo", copy.getId());
+        assertEquals(doc.asString(), copy.asString());
+
+        copy = roundTrip(json, doc);
+        assertEquals("1:/foo", copy.getId());
+        assertEquals(doc.asString(), copy.asString());
+    }
+
+    @Test
+    public void nullDocument() {
+        assertTrue(roundTrip(binary, NodeDocument.NULL).keySet().isEmpty());
+        assertTrue(roundTrip(json, NodeDocument.NULL).keySet().isEmpty());
+    }
+
+    @Test
+    public void emptyEntryOfPreviousVersion() {
+        WriteBuffer buff = new WriteBuffer();
+        StringDataType.INSTANCE.write(buff, "");
+        StringDataType.INSTANCE.write(buff, "");
+        ByteBuffer data = buff.getBuffer();
+        data.flip();
+
+        assertTrue(((NodeDocument) binary.read(data)).keySet().isEmpty());
+        assertTrue(((NodeDocument) binary.read(data)).keySet().isEmpty());
+        assertFalse(data.hasRemaining());
+    }
+
+    private static NodeDocument roundTrip(ValueDataType type, NodeDocument doc) {
+        WriteBuffer buff = new WriteBuffer();
+        type.write(buff, doc);
+        // a second entry makes sure the first one is read completely
+        type.write(buff, doc);
+        ByteBuffer data = buff.getBuffer();
+        data.flip();
+        NodeDocument copy = (NodeDocument) type.read(data);
+        assertEquals(copy.asString(), ((NodeDocument) type.read(data)).asString());
+        assertFalse(data.hasRemaining());
+        return copy;
+    }
+}
@@ -27,12 +27,17 @@ import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
+import org.apache.jackrabbit.oak.plugins.document.LazyRevisionMap;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocumentCodec;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -107,6 +112,45 @@ public class RDBDocumentSerializerTest {
         assertEquals(3L, doc.get("m2"));
     }
 
+    @Test
+    public void testBinaryBlobAndDiff() {
+        Revision r = new Revision(1, 2, 3);
+        Map<Revision, Object> revisions = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        revisions.put(r, "c");
+        NodeDocument base = Collection.NODES.newDocument(store);
+        base.put("_id", "_foo");
+        base.put("m1", 2L);
+        base.put("_revisions", revisions);
+        byte[] bdata = RDBDocumentStore.asBytes(NodeDocumentCodec.encode(base, Collections.singleton("_id")));
+
+        RDBRow row = new RDBRow("_foo", true, false, 1, 2, 3,
+                "\"blob\", [[\"=\", \"foo\", \"bar\"],[\"M\", \"m1\", 3],[\"=\", \"_revisions\", \"r4-0-1\", \"c\"]]", bdata);
+        NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("_foo", doc.getId());
+        assertEquals("bar", doc.get("foo"));
+        assertEquals(3L, doc.get("m1"));
+        Map<Revision, Object> revs = (Map<Revision, Object>) doc.get("_revisions");
+        assertEquals(2, revs.size());
+        assertEquals("c", revs.get(r));
+    }
+
+    @Test
+    public void testLazyMaps() {
+        RDBRow row = new RDBRow("_foo", true, false, 1, 2, 3,
+                "{\"_revisions\":{\"r1-0-1\":\"c\"},\"_deleted\":{\"r1-0-1\":\"false\"}},"
+                        + "[[\"=\", \"_deleted\", \"r2-0-1\", \"true\"]]", null);
+        NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+        LazyRevisionMap revisions = (LazyRevisionMap) doc.get("_revisions");
+        LazyRevisionMap deleted = (LazyRevisionMap) doc.get("_deleted");
+        // only the map modified by the update is parsed
+        assertFalse(revisions.isDecoded());
+        assertTrue(deleted.isDecoded());
+        assertEquals(2, deleted.size());
+        assertEquals("true", deleted.get(Revision.fromString("r2-0-1")));
+        assertEquals("c", revisions.get(Revision.fromString("r1-0-1")));
+        assertTrue(revisions.isDecoded());
+    }
+
     @Test
     public void testBlobAndDiffBorked() throws UnsupportedEncodingException {
         try {
@@ -182,6 +182,44 @@ public class AsyncIndexUpdateTest {
 
     }
 
+    @Test
+    public void testAsyncParallelReindex() throws Exception {
+        NodeStore store = new MemoryNodeStore();
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+
+        NodeBuilder builder = store.getRoot().builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndexSecond", true, false, ImmutableSet.of("bar"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+
+        for (int i = 0; i < 2000; i++) {
+            builder.child("testRoot").child("n" + i).setProperty("foo", "abc")
+                    .setProperty("bar", "def" + (i % 2));
+        }
+
+        // merge it back in
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        AsyncIndexUpdate async = new AsyncIndexUpdate("async", store, provider)
+                .setParallelReindex(true);
+        async.run();
+        assertFalse(async.isFailing());
+        NodeState root = store.getRoot();
+
+        checkPathExists(root, INDEX_DEFINITIONS_NAME, "rootIndex",
+                INDEX_CONTENT_NODE_NAME);
+        checkPathExists(root, INDEX_DEFINITIONS_NAME, "rootIndexSecond",
+                INDEX_CONTENT_NODE_NAME);
+
+        PropertyIndexLookup lookup = new PropertyIndexLookup(root);
+        assertEquals(2000, find(lookup, "foo", "abc").size());
+        assertEquals(1000, find(lookup, "bar", "def0").size());
+        assertEquals(1000, find(lookup, "bar", "def1").size());
+    }
+
     /**
      * Async Index Test with 2 index defs at different tree locations
      * <ul>
@@ -23,12 +23,14 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTE
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
 import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -51,6 +53,7 @@ import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
 import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.commit.EditorProvider;
@@ -456,6 +459,69 @@ public class IndexUpdateTest {
     }
 
 
+    @Test
+    public void parallelReindexFailure() throws Exception {
+        final IndexUpdateCallback noop = new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() {
+            }
+        };
+        final CommitFailedException failure = new CommitFailedException("test", 1, "failing index");
+        final IndexEditorProvider provider = new IndexEditorProvider() {
+            @Override
+            public Editor getIndexEditor(@Nonnull String type, @Nonnull NodeBuilder definition,
+                    @Nonnull NodeState root, @Nonnull IndexUpdateCallback callback)
+                    throws CommitFailedException {
+                if (!"failing".equals(type)) {
+                    return new PropertyIndexEditorProvider().getIndexEditor(type, definition, root, callback);
+                }
+                return new DefaultEditor() {
+                    @Override
+                    public void propertyAdded(PropertyState after) throws CommitFailedException {
+                        if ("foo".equals(after.getName())) {
+                            throw failure;
+                        }
+                    }
+
+                    @Override
+                    public Editor childNodeAdded(String name, NodeState after) {
+                        return this;
+                    }
+                };
+            }
+        };
+
+        EditorHook hook = new EditorHook(new EditorProvider() {
+            @Override
+            public Editor getRootEditor(NodeState before, NodeState after,
+                    NodeBuilder builder, CommitInfo info)
+                    throws CommitFailedException {
+                return new IndexUpdate(provider, null, after, builder,
+                        noop).withParallelReindex(true);
+            }
+        });
+
+        for (int i = 0; i < 2000; i++) {
+            builder.child("testRoot").child("n" + i).setProperty("foo", "abc");
+        }
+        NodeState before = builder.getNodeState();
+
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null);
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "failingIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(TYPE_PROPERTY_NAME, "failing");
+        NodeState after = builder.getNodeState();
+
+        try {
+            hook.processCommit(before, after, CommitInfo.EMPTY);
+            fail("commit should fail when an index editor fails");
+        } catch (CommitFailedException ex) {
+            assertSame(failure, ex);
+        }
+    }
+
+
     long getReindexCount(NodeState indexed) {
         return indexed.getChildNode(INDEX_DEFINITIONS_NAME)
                 .getChildNode("rootIndex")
@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -42,6 +43,7 @@ class ExtractedTextCache {
     private static final String EMPTY_STRING = "";
     private final Logger log = LoggerFactory.getLogger(getClass());
     private volatile PreExtractedTextProvider extractedTextProvider;
+    private volatile TextExtractionPool textExtractionPool;
     private int textExtractionCount;
     private long totalBytesRead;
     private long totalTextSize;
@@ -166,6 +168,32 @@ class ExtractedTextCache {
             public boolean isAlwaysUsePreExtractedCache() {
                 return alwaysUsePreExtractedCache;
             }
+
+            @Override
+            public int getExtractionThreads() {
+                TextExtractionPool pool = textExtractionPool;
+                return pool != null ? pool.getThreads() : 0;
+            }
+
+            @Override
+            public int getExtractionQueueSize() {
+                TextExtractionPool pool = textExtractionPool;
+                return pool != null ? pool.getPending() : 0;
+            }
+
+            @Override
+            public long getExtractionTimeoutCount() {
+                TextExtractionPool pool = textExtractionPool;
+                return pool != null ? pool.getTimeoutCount() : 0;
+            }
+
+            @Override
+            public String getExtractionThroughput() {
+                if (totalTime == 0) {
+                    return IOUtils.humanReadableByteCount(0) + "/s";
+                }
+                return IOUtils.humanReadableByteCount(totalBytesRead * 1000 / totalTime) + "/s";
+            }
         };
     }
 
@@ -182,6 +210,19 @@ class ExtractedTextCache {
         return extractedTextProvider;
     }
 
+    /**
+     * Set the pool for extracting text in the background. With no pool
+     * text is extracted by the indexing thread.
+     */
+    void setTextExtractionPool(@Nullable TextExtractionPool textExtractionPool) {
+        this.textExtractionPool = textExtractionPool;
+    }
+
+    @CheckForNull
+    TextExtractionPool getTextExtractionPool() {
+        return textExtractionPool;
+    }
+
     void resetCache(){
         if (cache != null){
             cache.invalidateAll();
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Cache of the blocks of index files read through read only
+ * {@link OakDirectory} instances, shared by all indexes. The blocks are kept
+ * in direct buffers, i.e. outside of the Java heap.
+ * <p>
+ * Each block of an index file is stored in its own blob, so blocks are keyed
+ * by the content identity of their blob. Blobs without a content identity,
+ * like in memory blobs, are not cached.
+ */
+class IndexBlockCache {
+
+    private final Cache<String, ByteBuffer> cache;
+
+    private final CacheStats cacheStats;
+
+    IndexBlockCache(long maxWeight) {
+        checkArgument(maxWeight > 0);
+        cache = CacheBuilder.newBuilder()
+                .weigher(BlockWeigher.INSTANCE)
+                .maximumWeight(maxWeight)
+                .recordStats()
+                .build();
+        cacheStats = new CacheStats(cache, "IndexBlockCache", BlockWeigher.INSTANCE, maxWeight);
+    }
+
+    /**
+     * Read the first {@code length} bytes of the given blob into
+     * {@code buffer}, from the cache if possible.
+     */
+    void read(@Nonnull Blob blob, @Nonnull byte[] buffer, int length) throws IOException {
+        String id = blob.getContentIdentity();
+        if (id == null) {
+            readFully(blob, buffer, length);
+            return;
+        }
+
+        ByteBuffer block = cache.getIfPresent(id);
+        if (block != null && block.capacity() >= length) {
+            block.duplicate().get(buffer, 0, length);
+            return;
+        }
+
+        readFully(blob, buffer, length);
+        block = ByteBuffer.allocateDirect(length);
+        block.put(buffer, 0, length);
+        block.flip();
+        cache.put(id, block);
+    }
+
+    CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    private static void readFully(Blob blob, byte[] buffer, int length) throws IOException {
+        InputStream stream = blob.getNewStream();
+        try {
+            ByteStreams.readFully(stream, buffer, 0, length);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static class BlockWeigher implements Weigher<String, ByteBuffer> {
+        static final BlockWeigher INSTANCE = new BlockWeigher();
+
+        @Override
+        public int weigh(@Nonnull String key, @Nonnull ByteBuffer value) {
+            //Overhead of the key and the entry on heap is small compared
+            //to the size of a block
+            return 16 + key.length() * 2 + value.capacity();
+        }
+    }
+}
@@ -218,6 +218,12 @@ class IndexDefinition implements Aggregate.AggregateMapper {
 
     private final boolean spellcheckEnabled;
 
+    private final boolean nrtIndexingEnabled;
+
+    private final Set<String> warmupQueries;
+
+    private final Set<String> warmupSorts;
+
     private final String indexPath;
 
     public IndexDefinition(NodeState root, NodeBuilder defn) {
@@ -288,6 +294,9 @@ class IndexDefinition implements Aggregate.AggregateMapper {
         this.secureFacets = defn.hasChildNode(FACETS) && getOptionalValue(defn.getChildNode(FACETS), PROP_SECURE_FACETS, true);
         this.suggestEnabled = evaluateSuggestionEnabled();
         this.spellcheckEnabled = evaluateSpellcheckEnabled();
+        this.nrtIndexingEnabled = getOptionalValue(defn, LuceneIndexConstants.NRT_INDEXING, false);
+        this.warmupQueries = getMultiProperty(defn, LuceneIndexConstants.WARMUP_QUERIES);
+        this.warmupSorts = getMultiProperty(defn, LuceneIndexConstants.WARMUP_SORTS);
     }
 
     public NodeState getDefinitionNodeState() {
@@ -683,6 +692,33 @@ class IndexDefinition implements Aggregate.AggregateMapper {
         return secureFacets;
     }
 
+    public boolean isNRTIndexingEnabled() {
+        return nrtIndexingEnabled;
+    }
+
+    public Set<String> getWarmupQueries() {
+        return warmupQueries;
+    }
+
+    public Set<String> getWarmupSorts() {
+        return warmupSorts;
+    }
+
+    /**
+     * @return the definition of the given property if it is ordered by any of
+     * the indexing rules. Otherwise null
+     */
+    @CheckForNull
+    public PropertyDefinition getOrderedPropertyDefinition(String propertyName) {
+        for (IndexingRule rule : definedRules) {
+            PropertyDefinition pd = rule.getConfig(propertyName);
+            if (pd != null && pd.ordered) {
+                return pd;
+            }
+        }
+        return null;
+    }
+
     public class IndexingRule {
         private final String baseNodeType;
         private final String nodeTypeName;
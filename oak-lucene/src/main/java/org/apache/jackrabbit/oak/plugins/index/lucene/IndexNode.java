@@ -21,36 +21,79 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_FILE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ImmutableList;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SuggestHelper;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.FilterAtomicReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 class IndexNode {
 
+    private static final Logger log = LoggerFactory.getLogger(IndexNode.class);
+
+    private static final int WARMUP_HITS = 10;
+
     static IndexNode open(String indexPath, NodeState root, NodeState defnNodeState, @Nullable IndexCopier cloner)
             throws IOException {
+        return open(indexPath, root, defnNodeState, cloner, null, null);
+    }
+
+    static IndexNode open(String indexPath, NodeState root, NodeState defnNodeState, @Nullable IndexCopier cloner,
+                          @Nullable NRTIndexFactory nrtIndexFactory, @Nullable IndexBlockCache blockCache)
+            throws IOException {
         Directory directory = null;
         IndexDefinition definition = new IndexDefinition(root, defnNodeState);
         NodeState data = defnNodeState.getChildNode(INDEX_DATA_CHILD_NAME);
         if (data.exists()) {
-            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), definition, true);
             if (cloner != null) {
+                directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), definition, true);
                 directory = cloner.wrapForRead(indexPath, definition, directory);
+            } else {
+                //Without CopyOnRead all reads go to the blobs. So cache the blocks read
+                directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), INDEX_DATA_CHILD_NAME,
+                        definition, true, blockCache);
             }
         } else if (PERSISTENCE_FILE.equalsIgnoreCase(defnNodeState.getString(PERSISTENCE_NAME))) {
             String path = defnNodeState.getString(PERSISTENCE_PATH);
@@ -66,7 +109,8 @@ class IndexNode {
                     suggestDirectory = new OakDirectory(defnNodeState.builder(), ":suggest-data", definition, false);
                 }
 
-                IndexNode index = new IndexNode(PathUtils.getName(indexPath), definition, directory, suggestDirectory);
+                IndexNode index = new IndexNode(PathUtils.getName(indexPath), definition, directory, suggestDirectory,
+                        indexPath, nrtIndexFactory);
                 directory = null; // closed in Index.close()
                 return index;
             } finally {
@@ -87,7 +131,7 @@ class IndexNode {
 
     private final Directory suggestDirectory;
 
-    private final IndexReader reader;
+    private final DirectoryReader reader;
 
     private final IndexSearcher searcher;
 
@@ -95,11 +139,29 @@ class IndexNode {
 
     private final AnalyzingInfixSuggester lookup;
 
+    private final String indexPath;
+
+    @Nullable
+    private final NRTIndexFactory nrtIndexFactory;
+
+    /**
+     * The documents hidden for the NRT readers last used by
+     * {@link #acquireSearcher()}.
+     */
+    private volatile HiddenDocs hiddenDocs;
+
     private boolean closed = false;
 
     IndexNode(String name, IndexDefinition definition, Directory directory, final OakDirectory suggestDirectory)
             throws IOException {
+        this(name, definition, directory, suggestDirectory, null, null);
+    }
+
+    IndexNode(String name, IndexDefinition definition, Directory directory, final OakDirectory suggestDirectory,
+              @Nullable String indexPath, @Nullable NRTIndexFactory nrtIndexFactory) throws IOException {
         this.name = name;
+        this.indexPath = indexPath;
+        this.nrtIndexFactory = indexPath != null && definition.isNRTIndexingEnabled() ? nrtIndexFactory : null;
         this.definition = definition;
         this.directory = directory;
         this.reader = DirectoryReader.open(directory);
@@ -124,6 +186,222 @@ class IndexNode {
         return searcher;
     }
 
+    /**
+     * Acquire a searcher over the persisted index and the in memory indexes
+     * of local changes not yet in the persisted index. Falls back to the
+     * searcher of the persisted index if there are no such changes. The
+     * searcher must be released by {@link #releaseSearcher(IndexSearcher)}.
+     * <p>
+     * The documents of a path indexed by an in memory index are hidden in the
+     * older in memory indexes and in the persisted index, so that queries
+     * don't match the stale documents of nodes changed locally.
+     */
+    IndexSearcher acquireSearcher() throws IOException {
+        if (nrtIndexFactory == null) {
+            return searcher;
+        }
+
+        List<IndexReader> readers = newArrayList();
+        List<DirectoryReader> nrtReaders = newArrayList();
+        try {
+            //Newest first, such that the newer ones hide the older ones
+            for (NRTIndex index : nrtIndexFactory.getIndexes(indexPath)) {
+                DirectoryReader nrtReader = index.acquireReader();
+                if (nrtReader != null) {
+                    nrtReaders.add(nrtReader);
+                }
+            }
+
+            List<DirectoryReader> nonEmpty = newArrayList();
+            for (DirectoryReader nrtReader : nrtReaders) {
+                if (nrtReader.maxDoc() > 0) {
+                    nonEmpty.add(nrtReader);
+                }
+            }
+            if (nonEmpty.isEmpty()) {
+                return searcher;
+            }
+
+            HiddenDocs hidden = getHiddenDocs(nonEmpty);
+            long version = reader.getVersion();
+            for (DirectoryReader nrtReader : nonEmpty) {
+                addLeaves(readers, nrtReader, hidden);
+                version = 31 * version + nrtReader.getVersion();
+            }
+            addLeaves(readers, reader, hidden);
+            // the reader holds its own references to the leaves
+            return new IndexSearcher(new NRTReader(readers.toArray(new IndexReader[readers.size()]), version));
+        } finally {
+            //Hand the wrappers over to the reader, or close them if it
+            //could not be created
+            for (IndexReader leaf : readers) {
+                if (leaf instanceof HidingReader) {
+                    leaf.decRef();
+                }
+            }
+            for (DirectoryReader nrtReader : nrtReaders) {
+                nrtReader.decRef();
+            }
+        }
+    }
+
+    /**
+     * Run the warm up queries and sorts of the index definition such that
+     * the caches of the reader are loaded before the index serves queries.
+     */
+    void warmUp() {
+        if (definition.getWarmupQueries().isEmpty() && definition.getWarmupSorts().isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        QueryParser parser = new QueryParser(VERSION, FieldNames.FULLTEXT, definition.getAnalyzer());
+        for (String text : definition.getWarmupQueries()) {
+            try {
+                searcher.search(parser.parse(text), WARMUP_HITS);
+            } catch (ParseException e) {
+                log.warn("[{}] Ignoring invalid warm up query {}", name, text, e);
+            } catch (IOException e) {
+                log.warn("[{}] Failed to run the warm up query {}", name, text, e);
+            }
+        }
+
+        for (String propertyName : definition.getWarmupSorts()) {
+            PropertyDefinition pd = definition.getOrderedPropertyDefinition(propertyName);
+            if (pd == null) {
+                log.warn("[{}] Ignoring warm up sort on {} as the property is not ordered", name, propertyName);
+                continue;
+            }
+            Sort sort = new Sort(new SortField(FieldNames.createDocValFieldName(propertyName),
+                    LucenePropertyIndex.toLuceneSortType(pd.getType())));
+            try {
+                searcher.search(new MatchAllDocsQuery(), WARMUP_HITS, sort);
+            } catch (IOException e) {
+                log.warn("[{}] Failed to warm up sorting on {}", name, propertyName, e);
+            }
+        }
+        log.debug("[{}] Warmed up in {} ms", name, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Release a searcher acquired by {@link #acquireSearcher()}.
+     */
+    void releaseSearcher(IndexSearcher searcher) {
+        if (searcher != null && searcher != this.searcher) {
+            try {
+                searcher.getIndexReader().close();
+            } catch (IOException e) {
+                log.warn("Failed to release the NRT readers of {}", indexPath, e);
+            }
+        }
+    }
+
+    /**
+     * Get the documents to hide for the given NRT readers. They are only
+     * computed again when one of the NRT readers changed, that is, after a
+     * local change was indexed.
+     *
+     * @param nrtReaders the non empty NRT readers, newest first
+     */
+    private HiddenDocs getHiddenDocs(List<DirectoryReader> nrtReaders) throws IOException {
+        HiddenDocs hidden = hiddenDocs;
+        if (hidden == null || !hidden.nrtReaders.equals(nrtReaders)) {
+            Map<IndexReader, LiveDocs> liveDocs = newHashMap();
+            Set<BytesRef> paths = newHashSet();
+            for (DirectoryReader nrtReader : nrtReaders) {
+                hideDocs(nrtReader, paths, liveDocs);
+                addPaths(nrtReader, paths);
+            }
+            hideDocs(reader, paths, liveDocs);
+            hidden = new HiddenDocs(ImmutableList.copyOf(nrtReaders), liveDocs);
+            hiddenDocs = hidden;
+        }
+        return hidden;
+    }
+
+    /**
+     * Add the leaves of the reader to the list, wrapped to hide documents
+     * where needed.
+     */
+    private static void addLeaves(List<IndexReader> readers, IndexReader reader, HiddenDocs hidden) {
+        for (AtomicReaderContext context : reader.leaves()) {
+            AtomicReader leaf = context.reader();
+            LiveDocs liveDocs = hidden.liveDocs.get(leaf);
+            readers.add(liveDocs != null ? new HidingReader(leaf, liveDocs) : leaf);
+        }
+    }
+
+    /**
+     * Put the live documents without the documents of the given paths for
+     * each leaf of the reader which has such documents into the map.
+     */
+    private static void hideDocs(IndexReader reader, Set<BytesRef> paths, Map<IndexReader, LiveDocs> liveDocs)
+            throws IOException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        for (AtomicReaderContext context : reader.leaves()) {
+            AtomicReader leaf = context.reader();
+            FixedBitSet live = hideDocs(leaf, paths);
+            if (live != null) {
+                liveDocs.put(leaf, new LiveDocs(live));
+            }
+        }
+    }
+
+    /**
+     * @return the live documents of the reader without the documents of the
+     *         given paths or {@code null} if the reader has no such documents
+     */
+    @CheckForNull
+    private static FixedBitSet hideDocs(AtomicReader reader, Set<BytesRef> paths) throws IOException {
+        Terms terms = reader.terms(FieldNames.PATH);
+        if (terms == null) {
+            return null;
+        }
+        Bits liveDocs = reader.getLiveDocs();
+        FixedBitSet live = null;
+        TermsEnum termsEnum = terms.iterator(null);
+        DocsEnum docsEnum = null;
+        for (BytesRef path : paths) {
+            if (!termsEnum.seekExact(path)) {
+                continue;
+            }
+            docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+            for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+                if (live == null) {
+                    live = new FixedBitSet(reader.maxDoc());
+                    live.set(0, reader.maxDoc());
+                    if (liveDocs != null) {
+                        for (int i = 0; i < reader.maxDoc(); i++) {
+                            if (!liveDocs.get(i)) {
+                                live.clear(i);
+                            }
+                        }
+                    }
+                }
+                live.clear(doc);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Add the paths of the documents in the reader to the set. This includes
+     * the paths of deleted documents whose terms have not been merged away,
+     * which also hides the nodes removed locally.
+     */
+    private static void addPaths(IndexReader reader, Set<BytesRef> paths) throws IOException {
+        Terms terms = MultiFields.getTerms(reader, FieldNames.PATH);
+        if (terms == null) {
+            return;
+        }
+        TermsEnum termsEnum = terms.iterator(null);
+        for (BytesRef path = termsEnum.next(); path != null; path = termsEnum.next()) {
+            paths.add(BytesRef.deepCopyOf(path));
+        }
+    }
+
     Directory getSuggestDirectory() {
         return suggestDirectory;
     }
@@ -162,4 +440,90 @@ class IndexNode {
         }
     }
 
+    /**
+     * Reader over the persisted index combined with the in memory indexes.
+     * The version changes whenever one of them changes.
+     */
+    static class NRTReader extends MultiReader {
+
+        private final long version;
+
+        NRTReader(IndexReader[] subReaders, long version) throws IOException {
+            super(subReaders, false);
+            this.version = version;
+        }
+
+        long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * The documents hidden for a combination of NRT readers. Holds the live
+     * documents of the leaves which have hidden documents.
+     */
+    private static class HiddenDocs {
+
+        final List<DirectoryReader> nrtReaders;
+
+        final Map<IndexReader, LiveDocs> liveDocs;
+
+        HiddenDocs(List<DirectoryReader> nrtReaders, Map<IndexReader, LiveDocs> liveDocs) {
+            this.nrtReaders = nrtReaders;
+            this.liveDocs = liveDocs;
+        }
+    }
+
+    /**
+     * Live documents of a leaf. Not modified once created.
+     */
+    private static class LiveDocs {
+
+        final FixedBitSet bits;
+
+        final int numDocs;
+
+        LiveDocs(FixedBitSet bits) {
+            this.bits = bits;
+            this.numDocs = bits.cardinality();
+        }
+    }
+
+    /**
+     * Reader hiding some of the documents of the reader it wraps. It holds
+     * a reference to the wrapped reader until it is closed, but does not
+     * close the wrapped reader.
+     */
+    private static class HidingReader extends FilterAtomicReader {
+
+        private final LiveDocs liveDocs;
+
+        HidingReader(AtomicReader in, LiveDocs liveDocs) {
+            super(in);
+            in.incRef();
+            this.liveDocs = liveDocs;
+        }
+
+        @Override
+        public Bits getLiveDocs() {
+            return liveDocs.bits;
+        }
+
+        @Override
+        public int numDocs() {
+            return liveDocs.numDocs;
+        }
+
+        @Override
+        public Object getCoreCacheKey() {
+            //Same content, so the field caches of the wrapped reader are reused
+            return in.getCoreCacheKey();
+        }
+
+        @Override
+        protected void doClose() throws IOException {
+            in.decRef();
+        }
+    }
+
 }
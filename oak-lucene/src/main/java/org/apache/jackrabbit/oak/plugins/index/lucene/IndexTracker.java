@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.base.Predicates.in;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.base.Predicates.notNull;
@@ -33,6 +34,9 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
@@ -57,6 +61,27 @@ class IndexTracker {
 
     private final IndexCopier cloner;
 
+    @Nullable
+    private final NRTIndexFactory nrtIndexFactory;
+
+    @Nullable
+    private final IndexBlockCache blockCache;
+
+    /**
+     * Executor opening and warming up updated indexes in the background.
+     * If null updated indexes are opened on the thread updating the tracker.
+     */
+    @Nullable
+    private final Executor refreshExecutor;
+
+    /**
+     * Number of the latest background refresh per index path. Refreshes
+     * superseded by a later one are discarded. Guarded by this instance.
+     */
+    private final Map<String, Long> pendingRefreshes = newHashMap();
+
+    private long refreshCount;
+
     private NodeState root = EMPTY_NODE;
 
     private volatile Map<String, IndexNode> indices = emptyMap();
@@ -68,12 +93,30 @@ class IndexTracker {
     }
 
     IndexTracker(IndexCopier cloner){
+        this(cloner, null);
+    }
+
+    IndexTracker(IndexCopier cloner, @Nullable NRTIndexFactory nrtIndexFactory){
+        this(cloner, nrtIndexFactory, null);
+    }
+
+    IndexTracker(IndexCopier cloner, @Nullable NRTIndexFactory nrtIndexFactory,
+                 @Nullable IndexBlockCache blockCache){
+        this(cloner, nrtIndexFactory, blockCache, null);
+    }
+
+    IndexTracker(IndexCopier cloner, @Nullable NRTIndexFactory nrtIndexFactory,
+                 @Nullable IndexBlockCache blockCache, @Nullable Executor refreshExecutor){
         this.cloner = cloner;
+        this.nrtIndexFactory = nrtIndexFactory;
+        this.blockCache = blockCache;
+        this.refreshExecutor = refreshExecutor;
     }
 
     synchronized void close() {
         Map<String, IndexNode> indices = this.indices;
         this.indices = emptyMap();
+        pendingRefreshes.clear();
 
         for (Map.Entry<String, IndexNode> entry : indices.entrySet()) {
             try {
@@ -106,9 +149,13 @@ class IndexTracker {
             editors.add(new SubtreeEditor(new DefaultEditor() {
                 @Override
                 public void leave(NodeState before, NodeState after) {
+                    if (refreshExecutor != null) {
+                        refreshInBackground(path, root, after);
+                        return;
+                    }
                     try {
                         long start = PERF_LOGGER.start();
-                        IndexNode index = IndexNode.open(path, root, after, cloner);
+                        IndexNode index = IndexNode.open(path, root, after, cloner, nrtIndexFactory, blockCache);
                         PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopening the IndexNode", path);
                         updates.put(path, index); // index can be null
                     } catch (IOException e) {
@@ -138,10 +185,84 @@ class IndexTracker {
                 } catch (IOException e) {
                     log.error("Failed to close Lucene index at " + path, e);
                 }
+
+                rollOver(path);
             }
         }
     }
 
+    /**
+     * Open and warm up the updated index at the given path on the refresh
+     * executor. The current index keeps serving queries until the new one
+     * replaces it.
+     */
+    private synchronized void refreshInBackground(final String path, final NodeState root,
+                                                  final NodeState defnState) {
+        final long refresh = ++refreshCount;
+        pendingRefreshes.put(path, refresh);
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                IndexNode index;
+                try {
+                    long start = PERF_LOGGER.start();
+                    index = IndexNode.open(path, root, defnState, cloner, nrtIndexFactory, blockCache);
+                    if (index != null) {
+                        index.warmUp();
+                    }
+                    PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopened and warmed up " +
+                            "the IndexNode in the background", path);
+                } catch (IOException e) {
+                    log.error("Failed to open Lucene index at " + path, e);
+                    return;
+                }
+
+                IndexNode replaced = publish(path, refresh, index);
+                if (replaced != null) {
+                    try {
+                        replaced.close();
+                    } catch (IOException e) {
+                        log.error("Failed to close Lucene index at " + path, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Replace the index at the given path with the one opened by the given
+     * refresh unless a later refresh is pending or the tracker got closed.
+     *
+     * @param index the new index or null if the index is gone
+     * @return the index to close
+     */
+    @Nullable
+    private synchronized IndexNode publish(String path, long refresh, @Nullable IndexNode index) {
+        Long latest = pendingRefreshes.get(path);
+        if (latest == null || latest != refresh) {
+            return index;
+        }
+        pendingRefreshes.remove(path);
+
+        Map<String, IndexNode> original = indices;
+        ImmutableMap.Builder<String, IndexNode> builder = ImmutableMap.<String, IndexNode>builder()
+                .putAll(filterKeys(original, not(equalTo(path))));
+        if (index != null) {
+            builder.put(path, index);
+        }
+        indices = builder.build();
+        rollOver(path);
+        return original.get(path);
+    }
+
+    private void rollOver(String path) {
+        //The persisted index now contains the changes indexed before
+        //the previous update. So the oldest local generation can go
+        if (nrtIndexFactory != null) {
+            nrtIndexFactory.rollOver(path);
+        }
+    }
+
     void refresh() {
         refresh = true;
     }
@@ -155,6 +276,11 @@ class IndexTracker {
         }
     }
 
+    @Nullable
+    IndexBlockCache getBlockCache() {
+        return blockCache;
+    }
+
     Set<String> getIndexNodePaths(){
         return indices.keySet();
     }
@@ -176,7 +302,7 @@ class IndexTracker {
 
         try {
             if (isLuceneIndexNode(node)) {
-                index = IndexNode.open(path, root, node, cloner);
+                index = IndexNode.open(path, root, node, cloner, nrtIndexFactory, blockCache);
                 if (index != null) {
                     checkState(index.acquire());
                     indices = ImmutableMap.<String, IndexNode>builder()
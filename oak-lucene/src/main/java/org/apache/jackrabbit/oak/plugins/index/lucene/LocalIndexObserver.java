@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.NRT_INDEXING;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.isLuceneIndexNode;
+
+/**
+ * Observer indexing the changes committed on the local cluster node into
+ * the {@link NRTIndex}es of the async indexes with near real time indexing
+ * enabled. Queries then see these changes before the async indexer added them
+ * to the persisted index. Changes from other cluster nodes are ignored.
+ */
+class LocalIndexObserver implements Observer {
+    private static final Logger log = LoggerFactory.getLogger(LocalIndexObserver.class);
+
+    private static final IndexUpdateCallback NOOP_CALLBACK = new IndexUpdateCallback() {
+        @Override
+        public void indexUpdate() {
+        }
+    };
+
+    private final IndexTracker tracker;
+
+    private final NRTIndexFactory nrtIndexFactory;
+
+    private final ExtractedTextCache extractedTextCache;
+
+    private final IndexAugmentorFactory augmentorFactory;
+
+    private NodeState before;
+
+    LocalIndexObserver(@Nonnull IndexTracker tracker, @Nonnull NRTIndexFactory nrtIndexFactory,
+                       @Nonnull ExtractedTextCache extractedTextCache,
+                       @CheckForNull IndexAugmentorFactory augmentorFactory) {
+        this.tracker = checkNotNull(tracker);
+        this.nrtIndexFactory = checkNotNull(nrtIndexFactory);
+        this.extractedTextCache = checkNotNull(extractedTextCache);
+        this.augmentorFactory = augmentorFactory;
+    }
+
+    @Override
+    public synchronized void contentChanged(@Nonnull NodeState root, @CheckForNull CommitInfo info) {
+        NodeState before = this.before;
+        this.before = root;
+
+        //Only local changes are indexed. External ones are picked up by
+        //the async indexer of the cluster node which made them
+        if (before == null || info == null) {
+            return;
+        }
+
+        List<Editor> editors = newArrayList();
+        for (String indexPath : tracker.getIndexNodePaths()) {
+            NodeState defnState = getDefinitionState(root, indexPath);
+            if (defnState == null) {
+                continue;
+            }
+            try {
+                NRTIndex index = nrtIndexFactory.getCurrent(indexPath, new IndexDefinition(root, defnState));
+                editors.add(new LuceneIndexEditor(root, new LuceneIndexEditorContext(root, defnState.builder(),
+                        NOOP_CALLBACK, null, extractedTextCache, augmentorFactory, index)));
+            } catch (IOException e) {
+                log.warn("Failed to open the NRT index for {}", indexPath, e);
+            }
+        }
+
+        if (editors.isEmpty()) {
+            return;
+        }
+
+        CommitFailedException e = EditorDiff.process(VisibleEditor.wrap(CompositeEditor.compose(editors)),
+                before, root);
+        if (e != null) {
+            log.warn("Failed to index the local changes in the NRT indexes", e);
+        }
+    }
+
+    /**
+     * Returns the definition at the given path if it is a Lucene index
+     * directly under /oak:index which is updated asynchronously and has near
+     * real time indexing enabled.
+     */
+    @CheckForNull
+    private static NodeState getDefinitionState(NodeState root, String indexPath) {
+        String parentPath = PathUtils.getParentPath(indexPath);
+        if (!PathUtils.concat("/", INDEX_DEFINITIONS_NAME).equals(parentPath)) {
+            return null;
+        }
+        NodeState defnState = root;
+        for (String name : PathUtils.elements(indexPath)) {
+            defnState = defnState.getChildNode(name);
+        }
+        if (!isLuceneIndexNode(defnState)
+                || !defnState.hasProperty(ASYNC_PROPERTY_NAME)
+                || !defnState.getBoolean(NRT_INDEXING)) {
+            return null;
+        }
+        return defnState;
+    }
+}
@@ -329,4 +329,26 @@ public interface LuceneIndexConstants {
      * Boolean property indicate that property should not be included in aggregation
      */
     String PROP_EXCLUDE_FROM_AGGREGATE = "excludeFromAggregation";
+
+    /**
+     * Optional (index definition) boolean property enabling near real time indexing
+     * of the changes committed on the local cluster node. Such changes are searchable
+     * right away until the async indexer has added them to the persisted index.
+     * Only supported for index definitions under /oak:index. Default is false
+     */
+    String NRT_INDEXING = "nrtIndexing";
+
+    /**
+     * Optional (index definition) multi-valued string property with Lucene queries
+     * (classic query parser syntax, default field is the full text field) run against
+     * the index whenever it is reopened in the background, before it serves queries
+     */
+    String WARMUP_QUERIES = "warmupQueries";
+
+    /**
+     * Optional (index definition) multi-valued string property with the names of
+     * ordered properties sorted on whenever the index is reopened in the background,
+     * before it serves queries
+     */
+    String WARMUP_SORTS = "warmupSorts";
 }
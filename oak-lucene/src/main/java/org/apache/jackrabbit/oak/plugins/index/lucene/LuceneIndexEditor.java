@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.collect.Iterables;
@@ -42,6 +43,7 @@ import org.apache.jackrabbit.oak.plugins.index.PathFilter;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
 import org.apache.jackrabbit.oak.plugins.index.lucene.Aggregate.Matcher;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexEditorContext.PendingText;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.StringPropertyState;
 import org.apache.jackrabbit.oak.plugins.tree.TreeFactory;
@@ -59,11 +61,10 @@ import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.util.BytesRef;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.WriteOutContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,7 +73,6 @@ import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
 import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.*;
-import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.ConfigUtil.getPrimaryTypeName;
 
 /**
@@ -121,16 +121,26 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
 
     private final PathFilter.Result pathFilterResult;
 
+    /**
+     * Binaries of the document being built whose text is extracted by the
+     * {@link TextExtractionPool}.
+     */
+    private List<PendingText> pendingTexts;
+
     LuceneIndexEditor(NodeState root, NodeBuilder definition,
                         IndexUpdateCallback updateCallback,
                         @Nullable IndexCopier indexCopier,
                         ExtractedTextCache extractedTextCache,
                       IndexAugmentorFactory augmentorFactory) throws CommitFailedException {
+        this(root, new LuceneIndexEditorContext(root, definition,
+                updateCallback, indexCopier, extractedTextCache, augmentorFactory));
+    }
+
+    LuceneIndexEditor(NodeState root, LuceneIndexEditorContext context) {
         this.parent = null;
         this.name = null;
         this.path = "/";
-        this.context = new LuceneIndexEditorContext(root, definition,
-                updateCallback, indexCopier, extractedTextCache, augmentorFactory);
+        this.context = context;
         this.root = root;
         this.isDeleted = false;
         this.matcherState = MatcherState.NONE;
@@ -269,10 +279,8 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             // tree deletion is handled on the parent node
             String path = concat(getPath(), name);
             try {
-                IndexWriter writer = context.getWriter();
                 // Remove all index entries in the removed subtree
-                writer.deleteDocuments(newPathTerm(path));
-                writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+                context.deleteDocuments(path);
                 this.context.indexUpdate();
             } catch (IOException e) {
                 throw new CommitFailedException("Lucene", 5,
@@ -291,13 +299,14 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
     private boolean addOrUpdate(String path, NodeState state, boolean isUpdate)
             throws CommitFailedException {
         try {
+            pendingTexts = Lists.newArrayList();
             Document d = makeDocument(path, state, isUpdate);
             if (d != null) {
                 if (log.isTraceEnabled()) {
                     log.trace("[{}] Indexed document for {} is {}", getIndexName(), path, d);
                 }
                 context.indexUpdate();
-                context.getWriter().updateDocument(newPathTerm(path), d);
+                context.updateDocument(path, d, pendingTexts);
                 return true;
             }
         } catch (IOException e) {
@@ -603,7 +612,6 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
     private List<Field> newBinary(
             PropertyState property, NodeState state, String nodePath, String path) {
         List<Field> fields = new ArrayList<Field>();
-        Metadata metadata = new Metadata();
 
         //jcr:mimeType is mandatory for a binary to be indexed
         String type = state.getString(JcrConstants.JCR_MIMETYPE);
@@ -615,18 +623,28 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             return fields;
         }
 
-        metadata.set(Metadata.CONTENT_TYPE, type);
+        String encoding = null;
         if (JCR_DATA.equals(property.getName())) {
-            String encoding = state.getString(JcrConstants.JCR_ENCODING);
+            encoding = state.getString(JcrConstants.JCR_ENCODING);
+        }
+
+        for (Blob v : property.getValue(Type.BINARIES)) {
+            //Each blob gets its own metadata as it is modified by the parser
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.CONTENT_TYPE, type);
             if (encoding != null) { // not mandatory
                 metadata.set(Metadata.CONTENT_ENCODING, encoding);
             }
-        }
 
-        for (Blob v : property.getValue(Type.BINARIES)) {
-            String value = parseStringValue(v, metadata, path, property.getName());
-            if (value == null){
-                continue;
+            String value = context.getExtractedTextCache().get(path, property.getName(), v, context.isReindex());
+            if (value == null) {
+                TextExtractionPool pool = context.getTextExtractionPool();
+                if (pool != null) {
+                    pendingTexts.add(new PendingText(nodePath, path, pool,
+                            pool.submit(newExtraction(v, metadata, path))));
+                    continue;
+                }
+                value = parseStringValue0(v, metadata, path);
             }
 
             if (nodePath != null){
@@ -936,22 +954,30 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return context.isSupportedMediaType(type);
     }
 
-    private String parseStringValue(Blob v, Metadata metadata, String path, String propertyName) {
-        String text = context.getExtractedTextCache().get(path, propertyName, v, context.isReindex());
-        if (text == null){
-            text = parseStringValue0(v, metadata, path);
-        }
-        return text;
+    private Callable<String> newExtraction(final Blob v, final Metadata metadata, final String path) {
+        //The parser is initialized lazily by the context, which is not
+        //thread safe. So get it before handing over to the pool
+        final Parser parser = context.getParser();
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return parseStringValue0(parser, v, metadata, path);
+            }
+        };
     }
 
     private String parseStringValue0(Blob v, Metadata metadata, String path) {
+        return parseStringValue0(context.getParser(), v, metadata, path);
+    }
+
+    private String parseStringValue0(Parser parser, Blob v, Metadata metadata, String path) {
         WriteOutContentHandler handler = new WriteOutContentHandler(context.getDefinition().getMaxExtractLength());
         long start = System.currentTimeMillis();
         long bytesRead = 0;
         try {
             CountingInputStream stream = new CountingInputStream(new LazyInputStream(new BlobByteSource(v)));
             try {
-                context.getParser().parse(stream, handler, metadata, new ParseContext());
+                parser.parse(stream, handler, metadata, new ParseContext());
             } finally {
                 bytesRead = stream.getCount();
                 stream.close();
@@ -22,10 +22,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Calendar;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
@@ -43,11 +47,14 @@ import org.apache.jackrabbit.util.ISO8601;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.shingle.ShingleAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.tika.config.TikaConfig;
@@ -60,8 +67,10 @@ import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newFulltextField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.lucene.store.NoLockFactory.getNoLockFactory;
 
 public class LuceneIndexEditorContext {
@@ -151,7 +160,21 @@ public class LuceneIndexEditorContext {
 
     private final IndexAugmentorFactory augmentorFactory;
 
+    /**
+     * Updates waiting for the text of binaries being extracted by the
+     * {@link TextExtractionPool}, in the order they were made.
+     */
+    private final Deque<PendingUpdate> pendingUpdates = new ArrayDeque<PendingUpdate>();
+
     private final NodeState root;
+
+    /**
+     * The in memory index to write to instead of the persisted index or
+     * {@code null}
+     */
+    @Nullable
+    private final NRTIndex nrtIndex;
+
     /**
      * The media types supported by the parser used.
      */
@@ -164,7 +187,14 @@ public class LuceneIndexEditorContext {
     LuceneIndexEditorContext(NodeState root, NodeBuilder definition, IndexUpdateCallback updateCallback,
                              @Nullable IndexCopier indexCopier, ExtractedTextCache extractedTextCache,
                              IndexAugmentorFactory augmentorFactory) {
+        this(root, definition, updateCallback, indexCopier, extractedTextCache, augmentorFactory, null);
+    }
+
+    LuceneIndexEditorContext(NodeState root, NodeBuilder definition, IndexUpdateCallback updateCallback,
+                             @Nullable IndexCopier indexCopier, ExtractedTextCache extractedTextCache,
+                             IndexAugmentorFactory augmentorFactory, @Nullable NRTIndex nrtIndex) {
         this.root = root;
+        this.nrtIndex = nrtIndex;
         this.definitionBuilder = definition;
         this.indexCopier = indexCopier;
         this.definition = new IndexDefinition(root, definition);
@@ -186,6 +216,9 @@ public class LuceneIndexEditorContext {
     }
 
     IndexWriter getWriter() throws IOException {
+        if (writer == null && nrtIndex != null) {
+            writer = nrtIndex.getWriter();
+        }
         if (writer == null) {
             final long start = PERF_LOGGER.start();
             directory = newIndexDirectory(definition, definitionBuilder);
@@ -233,10 +266,78 @@ public class LuceneIndexEditorContext {
             sb.toString());
     }
 
+    /**
+     * Add or replace the document for the given path. If the text of some
+     * binaries of the document is still being extracted then the document
+     * is written once the text is available, after all updates made before.
+     *
+     * @param path path of the indexed node
+     * @param document document without the text of {@code pendingTexts}
+     * @param pendingTexts binaries of the document being extracted
+     */
+    void updateDocument(String path, Document document, List<PendingText> pendingTexts) throws IOException {
+        if (pendingTexts.isEmpty() && pendingUpdates.isEmpty()) {
+            getWriter().updateDocument(newPathTerm(path), document);
+        } else {
+            pendingUpdates.add(new PendingUpdate(path, document, pendingTexts));
+            writePendingUpdates(false);
+        }
+    }
+
+    /**
+     * Remove the documents of the subtree at the given path, after all
+     * pending updates have been written.
+     */
+    void deleteDocuments(String path) throws IOException {
+        if (pendingUpdates.isEmpty()) {
+            deleteDocuments0(path);
+        } else {
+            pendingUpdates.add(new PendingUpdate(path, null, null));
+        }
+    }
+
+    private void deleteDocuments0(String path) throws IOException {
+        IndexWriter writer = getWriter();
+        writer.deleteDocuments(newPathTerm(path));
+        writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+    }
+
+    /**
+     * Write the pending updates in order. Stops at the first update whose
+     * text is not extracted yet unless {@code all} is set or the number of
+     * pending updates exceeds what the pool can work on.
+     */
+    private void writePendingUpdates(boolean all) throws IOException {
+        TextExtractionPool pool = getTextExtractionPool();
+        int maxPending = pool != null ? pool.getMaxPending() : 0;
+        while (!pendingUpdates.isEmpty()) {
+            PendingUpdate update = pendingUpdates.peek();
+            if (!all && !update.isDone() && pendingUpdates.size() <= maxPending) {
+                break;
+            }
+            pendingUpdates.remove();
+            if (update.document == null) {
+                deleteDocuments0(update.path);
+            } else {
+                for (PendingText text : update.pendingTexts) {
+                    update.document.add(text.getField());
+                }
+                getWriter().updateDocument(newPathTerm(update.path), update.document);
+            }
+        }
+    }
+
     /**
      * close writer if it's not null
      */
     void closeWriter() throws IOException {
+        writePendingUpdates(true);
+
+        //The writer of the in memory index stays open for further changes
+        if (nrtIndex != null) {
+            return;
+        }
+
         //If reindex or fresh index and write is null on close
         //it indicates that the index is empty. In such a case trigger
         //creation of write such that an empty Lucene index state is persisted
@@ -420,6 +521,15 @@ public class LuceneIndexEditorContext {
         return extractedTextCache;
     }
 
+    /**
+     * @return the pool for extracting text in the background or {@code null}
+     *         if text is extracted by the indexing thread
+     */
+    @Nullable
+    TextExtractionPool getTextExtractionPool() {
+        return extractedTextCache.getTextExtractionPool();
+    }
+
     IndexAugmentorFactory getAugmentorFactory() {
         return augmentorFactory;
     }
@@ -479,6 +589,64 @@ public class LuceneIndexEditorContext {
         return TikaConfig.getDefaultConfig();
     }
 
+    /**
+     * Text of a binary being extracted by the {@link TextExtractionPool}.
+     */
+    static class PendingText {
+        private final String nodePath;
+        private final String path;
+        private final TextExtractionPool pool;
+        private final Future<String> text;
+
+        /**
+         * @param nodePath relative path of the aggregated node for the
+         *                 fulltext field or {@code null}
+         * @param path path of the binary property
+         * @param pool the pool extracting the text
+         * @param text the future text
+         */
+        PendingText(@Nullable String nodePath, String path, TextExtractionPool pool, Future<String> text) {
+            this.nodePath = nodePath;
+            this.path = path;
+            this.pool = pool;
+            this.text = text;
+        }
+
+        Field getField() throws IOException {
+            String value = pool.getText(text, path);
+            if (nodePath != null) {
+                return newFulltextField(nodePath, value, true);
+            }
+            return newFulltextField(value, true);
+        }
+    }
+
+    private static class PendingUpdate {
+        final String path;
+        /**
+         * The document to add or {@code null} to delete the subtree at path
+         */
+        final Document document;
+        final List<PendingText> pendingTexts;
+
+        PendingUpdate(String path, @Nullable Document document, @Nullable List<PendingText> pendingTexts) {
+            this.path = path;
+            this.document = document;
+            this.pendingTexts = pendingTexts;
+        }
+
+        boolean isDone() {
+            if (pendingTexts != null) {
+                for (PendingText text : pendingTexts) {
+                    if (!text.text.isDone()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
     static class TextExtractionStats {
         /**
          * Log stats only if time spent is more than 2 min
@@ -489,14 +657,14 @@ public class LuceneIndexEditorContext {
         private long totalTime;
         private long totalTextLength;
 
-        public void addStats(long timeInMillis, long bytesRead, int textLength) {
+        public synchronized void addStats(long timeInMillis, long bytesRead, int textLength) {
             count++;
             totalBytesRead += bytesRead;
             totalTime += timeInMillis;
             totalTextLength += textLength;
         }
 
-        public void log(boolean reindex) {
+        public synchronized void log(boolean reindex) {
             if (log.isDebugEnabled()) {
                 log.debug("Text extraction stats {}", this);
             } else if (anyParsingDone() && (reindex || isTakingLotsOfTime())) {
@@ -504,7 +672,7 @@ public class LuceneIndexEditorContext {
             }
         }
 
-        public void collectStats(ExtractedTextCache cache){
+        public synchronized void collectStats(ExtractedTextCache cache){
             cache.addStats(count, totalTime, totalBytesRead, totalTextLength);
         }
 
@@ -48,4 +48,17 @@ public interface LuceneIndexMBean {
             int maxPathCount
             ) throws IOException;
 
+    @Description("Hit rate of the cache for the blocks read from the index files. -1 if the cache is disabled")
+    double getBlockCacheHitRate();
+
+    @Description("Number of blocks read from the block cache. -1 if the cache is disabled")
+    long getBlockCacheHitCount();
+
+    @Description("Number of blocks read from the blob store as they were not in the block cache. " +
+            "-1 if the cache is disabled")
+    long getBlockCacheMissCount();
+
+    @Description("Estimated size in bytes of the blocks in the block cache. -1 if the cache is disabled")
+    long getBlockCacheSize();
+
 }
@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.management.NotCompliantMBeanException;
@@ -44,6 +45,7 @@ import com.google.common.collect.TreeTraverser;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LucenePropertyIndex.PathStoredFieldVisitor;
@@ -157,6 +159,36 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         }
     }
 
+    @Override
+    public double getBlockCacheHitRate() {
+        CacheStats stats = getBlockCacheStats();
+        return stats != null ? stats.getHitRate() : -1;
+    }
+
+    @Override
+    public long getBlockCacheHitCount() {
+        CacheStats stats = getBlockCacheStats();
+        return stats != null ? stats.getHitCount() : -1;
+    }
+
+    @Override
+    public long getBlockCacheMissCount() {
+        CacheStats stats = getBlockCacheStats();
+        return stats != null ? stats.getMissCount() : -1;
+    }
+
+    @Override
+    public long getBlockCacheSize() {
+        CacheStats stats = getBlockCacheStats();
+        return stats != null ? stats.estimateCurrentWeight() : -1;
+    }
+
+    @CheckForNull
+    private CacheStats getBlockCacheStats() {
+        IndexBlockCache blockCache = indexTracker.getBlockCache();
+        return blockCache != null ? blockCache.getCacheStats() : null;
+    }
+
     private String[] determineIndexedPaths(IndexSearcher searcher, final int maxLevel, int maxPathCount)
             throws IOException {
         Set<String> paths = Sets.newHashSet();
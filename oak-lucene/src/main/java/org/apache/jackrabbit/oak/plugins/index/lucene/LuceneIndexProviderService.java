@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -138,6 +139,16 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_ASYNC_INDEX_OPEN = "enableOpenIndexAsync";
 
+    private static final boolean PROP_REFRESH_INDEX_IN_BACKGROUND_DEFAULT = false;
+    @Property(
+            boolValue = PROP_REFRESH_INDEX_IN_BACKGROUND_DEFAULT,
+            label = "Refresh index in background",
+            description = "Open and warm up updated indexes in the background. Queries are served by the " +
+                    "previous version of an index until the new version is ready. The warm up queries and " +
+                    "sorts are configured in the index definition via [warmupQueries] and [warmupSorts]"
+    )
+    private static final String PROP_REFRESH_INDEX_IN_BACKGROUND = "refreshIndexInBackground";
+
     private static final int PROP_THREAD_POOL_SIZE_DEFAULT = 5;
     @Property(
             intValue = PROP_THREAD_POOL_SIZE_DEFAULT,
@@ -181,6 +192,35 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PRE_EXTRACTED_TEXT_ALWAYS_USE = "alwaysUsePreExtractedCache";
 
+    private static final int PROP_TEXT_EXTRACTION_THREADS_DEFAULT = 0;
+    @Property(
+            intValue = PROP_TEXT_EXTRACTION_THREADS_DEFAULT,
+            label = "Text extraction threads",
+            description = "Number of threads extracting the text of binaries while indexing. Documents are " +
+                    "still added to the index in order. When set to 0 then text would be extracted by " +
+                    "the indexing thread"
+    )
+    private static final String PROP_TEXT_EXTRACTION_THREADS = "textExtractionThreads";
+
+    private static final int PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT = 300;
+    @Property(
+            intValue = PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT,
+            label = "Text extraction timeout (secs)",
+            description = "Time in seconds the indexer waits for the text of a binary extracted by the text " +
+                    "extraction threads. The text of binaries timing out is not indexed"
+    )
+    private static final String PROP_TEXT_EXTRACTION_TIMEOUT = "textExtractionTimeoutInSecs";
+
+    private static final int PROP_BLOCK_CACHE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_BLOCK_CACHE_SIZE_DEFAULT,
+            label = "Block cache size (MB)",
+            description = "Size in MB of the off heap cache for the blocks read from the index files when " +
+                    "CopyOnRead is disabled. The JVM must allow for this much direct memory. When set to 0 " +
+                    "then cache would be disabled"
+    )
+    private static final String PROP_BLOCK_CACHE_SIZE = "blockCacheSizeInMB";
+
     private static final int PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT = 1024;
     @Property(
             intValue = PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT,
@@ -193,6 +233,10 @@ public class LuceneIndexProviderService {
 
     private BackgroundObserver backgroundObserver;
 
+    private BackgroundObserver localIndexObserver;
+
+    private NRTIndexFactory nrtIndexFactory;
+
     @Reference
     ScorerProviderFactory scorerFactory;
 
@@ -215,6 +259,8 @@ public class LuceneIndexProviderService {
 
     private ExtractedTextCache extractedTextCache;
 
+    private TextExtractionPool textExtractionPool;
+
     @Activate
     private void activate(BundleContext bundleContext, Map<String, ?> config)
             throws NotCompliantMBeanException, IOException {
@@ -236,6 +282,7 @@ public class LuceneIndexProviderService {
 
         regs.add(bundleContext.registerService(QueryIndexProvider.class.getName(), indexProvider, null));
         registerObserver(bundleContext, config);
+        registerLocalIndexObserver(bundleContext);
         registerIndexEditor(bundleContext, config);
 
         oakRegs.add(registerMBean(whiteboard,
@@ -260,11 +307,20 @@ public class LuceneIndexProviderService {
             backgroundObserver.close();
         }
 
+        if (localIndexObserver != null){
+            localIndexObserver.close();
+        }
+
         if (indexProvider != null) {
             indexProvider.close();
             indexProvider = null;
         }
 
+        if (nrtIndexFactory != null){
+            nrtIndexFactory.close();
+            nrtIndexFactory = null;
+        }
+
         //Close the copier first i.e. before executorService
         if (indexCopier != null){
             indexCopier.close();
@@ -275,6 +331,11 @@ public class LuceneIndexProviderService {
             executorService.awaitTermination(1, TimeUnit.MINUTES);
         }
 
+        if (textExtractionPool != null){
+            textExtractionPool.close();
+            textExtractionPool = null;
+        }
+
         InfoStream.setDefault(InfoStream.NO_OUTPUT);
     }
 
@@ -326,14 +387,37 @@ public class LuceneIndexProviderService {
     }
 
     private IndexTracker createTracker(BundleContext bundleContext, Map<String, ?> config) throws IOException {
+        nrtIndexFactory = new NRTIndexFactory();
+        Executor refreshExecutor = null;
+        if (PropertiesUtil.toBoolean(config.get(PROP_REFRESH_INDEX_IN_BACKGROUND),
+                PROP_REFRESH_INDEX_IN_BACKGROUND_DEFAULT)) {
+            refreshExecutor = getExecutorService();
+            log.info("Enabling refresh of updated indexes in the background");
+        }
+
         boolean enableCopyOnRead = PropertiesUtil.toBoolean(config.get(PROP_COPY_ON_READ), true);
         if (enableCopyOnRead){
             initializeIndexCopier(bundleContext, config);
             log.info("Enabling CopyOnRead support. Index files would be copied under {}", indexDir.getAbsolutePath());
-            return new IndexTracker(indexCopier);
+            return new IndexTracker(indexCopier, nrtIndexFactory, null, refreshExecutor);
         }
 
-        return new IndexTracker();
+        return new IndexTracker(null, nrtIndexFactory, createBlockCache(config), refreshExecutor);
+    }
+
+    private IndexBlockCache createBlockCache(Map<String, ?> config) {
+        int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_BLOCK_CACHE_SIZE),
+                PROP_BLOCK_CACHE_SIZE_DEFAULT);
+        if (cacheSizeInMB <= 0) {
+            return null;
+        }
+        IndexBlockCache blockCache = new IndexBlockCache(cacheSizeInMB * ONE_MB);
+        CacheStats stats = blockCache.getCacheStats();
+        oakRegs.add(registerMBean(whiteboard,
+                CacheStatsMBean.class, stats,
+                CacheStatsMBean.TYPE, stats.getName()));
+        log.info("Index block caching enabled with maxSize {} MB", cacheSizeInMB);
+        return blockCache;
     }
 
     private void initializeIndexCopier(BundleContext bundleContext, Map<String, ?> config) throws IOException {
@@ -419,6 +503,20 @@ public class LuceneIndexProviderService {
         regs.add(bundleContext.registerService(Observer.class.getName(), observer, null));
     }
 
+    private void registerLocalIndexObserver(BundleContext bundleContext) {
+        LocalIndexObserver observer = new LocalIndexObserver(indexProvider.getTracker(), nrtIndexFactory,
+                extractedTextCache, augmentorFactory);
+        //Changes collapsed on queue overflow lose their commit info and are
+        //then left to the async indexer. So use a longer queue
+        localIndexObserver = new BackgroundObserver(observer, getExecutorService(), 100);
+        oakRegs.add(registerMBean(whiteboard,
+                BackgroundObserverMBean.class,
+                localIndexObserver.getMBean(),
+                BackgroundObserverMBean.TYPE,
+                "LuceneLocalIndexObserver queue stats"));
+        regs.add(bundleContext.registerService(Observer.class.getName(), localIndexObserver, null));
+    }
+
     private void initializeFactoryClassLoaders(ClassLoader classLoader) {
         ClassLoader originalClassLoader = Thread.currentThread()
                 .getContextClassLoader();
@@ -457,6 +555,17 @@ public class LuceneIndexProviderService {
         if (extractedTextProvider != null){
             registerExtractedTextProvider(extractedTextProvider);
         }
+        int extractionThreads = PropertiesUtil.toInteger(config.get(PROP_TEXT_EXTRACTION_THREADS),
+                PROP_TEXT_EXTRACTION_THREADS_DEFAULT);
+        if (extractionThreads > 0) {
+            int extractionTimeoutInSecs = PropertiesUtil.toInteger(config.get(PROP_TEXT_EXTRACTION_TIMEOUT),
+                    PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT);
+            textExtractionPool = new TextExtractionPool(extractionThreads, 2 * extractionThreads,
+                    TimeUnit.SECONDS.toMillis(extractionTimeoutInSecs));
+            extractedTextCache.setTextExtractionPool(textExtractionPool);
+            log.info("Text extraction enabled with {} threads and a timeout of {} secs",
+                    extractionThreads, extractionTimeoutInSecs);
+        }
         CacheStats stats = extractedTextCache.getCacheStats();
         if (stats != null){
             oakRegs.add(registerMBean(whiteboard,
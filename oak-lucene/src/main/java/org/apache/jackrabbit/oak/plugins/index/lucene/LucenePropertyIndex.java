@@ -310,6 +310,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         Iterator<LuceneResultRow> itr = new AbstractIterator<LuceneResultRow>() {
             private final Deque<LuceneResultRow> queue = Queues.newArrayDeque();
             private final Set<String> seenPaths = Sets.newHashSet();
+            private final boolean nrtIndexing = pr.indexDefinition.isNRTIndexingEnabled();
             private ScoreDoc lastDoc;
             private int nextBatchSize = LUCENE_QUERY_BATCH_SIZE;
             private boolean noDocs = false;
@@ -350,6 +351,14 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                             return null;
                         }
                         seenPaths.add(path);
+                    } else if (nrtIndexing) {
+                        // local changes change the version of the searcher,
+                        // so the query is run again without offset and
+                        // returns the paths of the previous batches again
+                        if (!seenPaths.add(path)) {
+                            LOG.trace("Ignoring path {} : Returned by a previous batch", path);
+                            return null;
+                        }
                     }
 
                     LOG.trace("Matched path {}", path);
@@ -372,8 +381,9 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
 
                 final IndexNode indexNode = acquireIndexNode(plan);
                 checkState(indexNode != null);
+                IndexSearcher searcher = null;
                 try {
-                    IndexSearcher searcher = indexNode.getSearcher();
+                    searcher = indexNode.acquireSearcher();
                     LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
                     if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
@@ -499,6 +509,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 } catch (Exception e) {
                     LOG.warn("query via {} failed.", LucenePropertyIndex.this, e);
                 } finally {
+                    indexNode.releaseSearcher(searcher);
                     indexNode.release();
                 }
 
@@ -525,8 +536,9 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
             public long getSize() {
                 IndexNode indexNode = acquireIndexNode(plan);
                 checkState(indexNode != null);
+                IndexSearcher searcher = null;
                 try {
-                    IndexSearcher searcher = indexNode.getSearcher();
+                    searcher = indexNode.acquireSearcher();
                     LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
                     if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
@@ -540,6 +552,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 } catch (IOException e) {
                     LOG.warn("query via {} failed.", LucenePropertyIndex.this, e);
                 } finally {
+                    indexNode.releaseSearcher(searcher);
                     indexNode.release();
                 }
                 return -1;
@@ -662,7 +675,10 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         checkState(t != null, "Type cannot be null");
         checkState(!t.isArray(), "Array types are not supported");
 
-        int type = getPropertyType(defn, oe.getPropertyName(), t.tag());
+        return toLuceneSortType(getPropertyType(defn, oe.getPropertyName(), t.tag()));
+    }
+
+    static SortField.Type toLuceneSortType(int type) {
         switch (type) {
             case PropertyType.LONG:
             case PropertyType.DATE:
@@ -1149,6 +1165,9 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         if (reader instanceof DirectoryReader) {
             return ((DirectoryReader) reader).getVersion();
         }
+        if (reader instanceof IndexNode.NRTReader) {
+            return ((IndexNode.NRTReader) reader).getVersion();
+        }
         return -1;
     }
 
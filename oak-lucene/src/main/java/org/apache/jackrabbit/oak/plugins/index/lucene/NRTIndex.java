@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * In memory index of changes committed on the local cluster node which the
+ * async indexer might not have added to the persisted index yet. Documents
+ * are written by the {@link LocalIndexObserver} and read through a near real
+ * time reader of the index writer.
+ */
+class NRTIndex implements Closeable {
+
+    private final IndexDefinition definition;
+
+    private final RAMDirectory directory = new RAMDirectory();
+
+    private final IndexWriter writer;
+
+    /**
+     * The most recent reader. Guarded by this instance.
+     */
+    private DirectoryReader reader;
+
+    private boolean closed;
+
+    NRTIndex(IndexDefinition definition) throws IOException {
+        this.definition = definition;
+        this.writer = new IndexWriter(directory,
+                LuceneIndexEditorContext.getIndexWriterConfig(definition, true));
+        this.reader = DirectoryReader.open(writer, true);
+    }
+
+    IndexDefinition getDefinition() {
+        return definition;
+    }
+
+    IndexWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Acquire a reader reflecting all documents written so far. The reader
+     * must be released by calling {@link DirectoryReader#decRef()}.
+     *
+     * @return the reader or {@code null} if this index has been closed
+     */
+    @CheckForNull
+    synchronized DirectoryReader acquireReader() throws IOException {
+        if (closed) {
+            return null;
+        }
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer, true);
+        if (newReader != null) {
+            reader.decRef();
+            reader = newReader;
+        }
+        reader.incRef();
+        return reader;
+    }
+
+    /**
+     * Close this index. Readers acquired before stay usable until released.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            reader.decRef();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Holds the {@link NRTIndex}es of the index definitions with near real time
+ * indexing enabled. Each index has up to two generations. The current one
+ * receives the local changes. The previous one holds the changes made before
+ * the persisted index was last updated. These changes might not be covered by
+ * the checkpoint the async indexer used for that update, so they stay
+ * searchable until the persisted index is updated once more.
+ */
+class NRTIndexFactory implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(NRTIndexFactory.class);
+
+    /**
+     * Current generation per index path. Guarded by this instance.
+     */
+    private final Map<String, NRTIndex> current = newHashMap();
+
+    /**
+     * Previous generation per index path. Guarded by this instance.
+     */
+    private final Map<String, NRTIndex> previous = newHashMap();
+
+    private boolean closed;
+
+    /**
+     * Get the index receiving the local changes, creating it if needed.
+     *
+     * @param indexPath the path of the index definition
+     * @param definition the definition of the index
+     * @return the current index
+     */
+    synchronized NRTIndex getCurrent(@Nonnull String indexPath, @Nonnull IndexDefinition definition)
+            throws IOException {
+        if (closed) {
+            throw new IOException("NRT indexes closed");
+        }
+        NRTIndex index = current.get(indexPath);
+        if (index == null) {
+            index = new NRTIndex(definition);
+            current.put(indexPath, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return all generations of the index at the given path, newest first
+     */
+    synchronized List<NRTIndex> getIndexes(String indexPath) {
+        List<NRTIndex> indexes = newArrayListWithCapacity(2);
+        NRTIndex index = current.get(indexPath);
+        if (index != null) {
+            indexes.add(index);
+        }
+        index = previous.get(indexPath);
+        if (index != null) {
+            indexes.add(index);
+        }
+        return indexes;
+    }
+
+    /**
+     * Start a new generation for the index at the given path. To be called
+     * when the persisted index has been updated. Drops the previous
+     * generation.
+     */
+    synchronized void rollOver(String indexPath) {
+        NRTIndex index = current.remove(indexPath);
+        close(previous.remove(indexPath), indexPath);
+        if (index != null) {
+            previous.put(indexPath, index);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Map.Entry<String, NRTIndex> e : current.entrySet()) {
+            close(e.getValue(), e.getKey());
+        }
+        for (Map.Entry<String, NRTIndex> e : previous.entrySet()) {
+            close(e.getValue(), e.getKey());
+        }
+        current.clear();
+        previous.clear();
+    }
+
+    private static void close(NRTIndex index, String indexPath) {
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the NRT index for {}", indexPath, e);
+            }
+        }
+    }
+}
@@ -28,6 +28,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
@@ -83,12 +85,23 @@ class OakDirectory extends Directory {
     private final Set<String> fileNames = Sets.newConcurrentHashSet();
     private final boolean activeDeleteEnabled;
     private final String indexName;
+    @Nullable
+    private final IndexBlockCache blockCache;
 
     public OakDirectory(NodeBuilder builder, IndexDefinition definition, boolean readOnly) {
         this(builder, INDEX_DATA_CHILD_NAME, definition, readOnly);
     }
 
     public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition, boolean readOnly) {
+        this(builder, dataNodeName, definition, readOnly, null);
+    }
+
+    /**
+     * @param blockCache cache for the blocks read from the index files. Only
+     *                   used if the directory is read only
+     */
+    public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition, boolean readOnly,
+                        @Nullable IndexBlockCache blockCache) {
         this.lockFactory = NoLockFactory.getNoLockFactory();
         this.builder = builder;
         this.directoryBuilder = readOnly ? builder.getChildNode(dataNodeName) : builder.child(dataNodeName);
@@ -97,6 +110,7 @@ class OakDirectory extends Directory {
         this.fileNames.addAll(getListing());
         this.activeDeleteEnabled = definition.getActiveDeleteEnabled();
         this.indexName = definition.getIndexName();
+        this.blockCache = readOnly ? blockCache : null;
     }
 
     @Override
@@ -141,7 +155,7 @@ class OakDirectory extends Directory {
     @Override
     public long fileLength(String name) throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
-        OakIndexInput input = new OakIndexInput(name, file, indexName);
+        OakIndexInput input = new OakIndexInput(name, file, indexName, blockCache);
         try {
             return input.length();
         } finally {
@@ -174,7 +188,7 @@ class OakDirectory extends Directory {
             throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
         if (file.exists()) {
-            return new OakIndexInput(name, file, indexName);
+            return new OakIndexInput(name, file, indexName, blockCache);
         } else {
             String msg = String.format("[%s] %s", indexName, name);
             throw new FileNotFoundException(msg);
@@ -309,10 +323,18 @@ class OakDirectory extends Directory {
 
         private final String dirDetails;
 
-        public OakIndexFile(String name, NodeBuilder file, String dirDetails) {
+        /**
+         * The cache for the blocks read, or {@code null} if blocks are
+         * always read from the blobs.
+         */
+        private final IndexBlockCache blockCache;
+
+        public OakIndexFile(String name, NodeBuilder file, String dirDetails,
+                            @Nullable IndexBlockCache blockCache) {
             this.name = name;
             this.file = file;
             this.dirDetails = dirDetails;
+            this.blockCache = blockCache;
             this.blobSize = determineBlobSize(file);
             this.uniqueKey = readUniqueKey(file);
             this.blob = new byte[blobSize];
@@ -338,6 +360,7 @@ class OakDirectory extends Directory {
             this.name = that.name;
             this.file = that.file;
             this.dirDetails = that.dirDetails;
+            this.blockCache = that.blockCache;
             this.blobSize = that.blobSize;
             this.uniqueKey = that.uniqueKey;
             this.blob = new byte[blobSize];
@@ -355,11 +378,15 @@ class OakDirectory extends Directory {
                 checkState(!blobModified);
 
                 int n = (int) Math.min(blobSize, length - (long)i * blobSize);
-                InputStream stream = data.get(i).getNewStream();
-                try {
-                    ByteStreams.readFully(stream, blob, 0, n);
-                } finally {
-                    stream.close();
+                if (blockCache != null) {
+                    blockCache.read(data.get(i), blob, n);
+                } else {
+                    InputStream stream = data.get(i).getNewStream();
+                    try {
+                        ByteStreams.readFully(stream, blob, 0, n);
+                    } finally {
+                        stream.close();
+                    }
                 }
                 index = i;
             }
@@ -501,10 +528,11 @@ class OakDirectory extends Directory {
         private final WeakIdentityMap<OakIndexInput, Boolean> clones;
         private final String dirDetails;
 
-        public OakIndexInput(String name, NodeBuilder file, String dirDetails) {
+        public OakIndexInput(String name, NodeBuilder file, String dirDetails,
+                             @Nullable IndexBlockCache blockCache) {
             super(name);
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, blockCache);
             clones = WeakIdentityMap.newConcurrentHashMap();
         }
 
@@ -586,7 +614,7 @@ class OakDirectory extends Directory {
 
         public OakIndexOutput(String name, NodeBuilder file, String dirDetails) throws IOException {
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, null);
         }
 
         @Override
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Pool of threads extracting the text of binaries for the
+ * {@link LuceneIndexEditor}. The number of pending extractions is bounded by
+ * {@link #getMaxPending()}. When all threads are busy and the queue is full
+ * the indexing thread runs the extraction itself, which throttles the
+ * indexer to the speed of the pool.
+ */
+class TextExtractionPool implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TextExtractionPool.class);
+
+    private final int threads;
+
+    private final int queueSize;
+
+    private final long timeoutInMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * @param threads number of extraction threads
+     * @param queueSize number of extractions waiting for a thread
+     * @param timeoutInMillis time the indexer waits for the text of a binary
+     *                        once the document containing it is the oldest
+     *                        pending document
+     */
+    TextExtractionPool(int threads, int queueSize, long timeoutInMillis) {
+        checkArgument(threads > 0, "Number of threads must be positive");
+        checkArgument(queueSize >= 0, "Queue size must not be negative");
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.timeoutInMillis = timeoutInMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread thread = new Thread(r, "oak-lucene-text-extraction-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedule the extraction of a text.
+     * @param extraction returns the extracted text
+     * @return the future text
+     */
+    Future<String> submit(final Callable<String> extraction) {
+        FutureTask<String> task = new FutureTask<String>(extraction) {
+            @Override
+            protected void done() {
+                pending.decrementAndGet();
+            }
+        };
+        pending.incrementAndGet();
+        if (executor.isShutdown()) {
+            // closed, extract in the calling thread
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Wait for the text of a binary.
+     * @param text the future text as returned by {@link #submit(Callable)}
+     * @param path path of the binary property, for logging
+     * @return the extracted text or {@link LuceneIndexEditor#TEXT_EXTRACTION_ERROR}
+     *         if the extraction failed or did not complete in time
+     * @throws IOException if interrupted while waiting
+     */
+    String getText(Future<String> text, String path) throws IOException {
+        try {
+            return text.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            text.cancel(true);
+            timeoutCount.incrementAndGet();
+            log.warn("Text extraction for {} did not complete within {} ms", path, timeoutInMillis);
+        } catch (ExecutionException e) {
+            log.debug("Failed to extract text from a binary property: {}", path, e.getCause());
+        } catch (InterruptedException e) {
+            text.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the text of " + path);
+        }
+        return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+    }
+
+    /**
+     * @return number of extractions queued or running
+     */
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return number of documents with pending extractions an indexer keeps
+     *         before it waits for the oldest one to complete
+     */
+    int getMaxPending() {
+        return threads + queueSize;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Text extraction threads did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -38,4 +38,26 @@ public interface TextExtractionStatsMBean {
     String getExtractedTextSize();
 
     String getBytesRead();
+
+    /**
+     * @return number of threads extracting text in the background, 0 if text
+     *         is extracted by the indexing thread
+     */
+    int getExtractionThreads();
+
+    /**
+     * @return number of binaries queued for or in text extraction
+     */
+    int getExtractionQueueSize();
+
+    /**
+     * @return number of binaries whose text extraction timed out
+     */
+    long getExtractionTimeoutCount();
+
+    /**
+     * @return bytes of binaries read per second of text extraction time of
+     *         a single thread
+     */
+    String getExtractionThroughput();
 }
@@ -19,6 +19,9 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import com.google.common.collect.ImmutableSet;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -27,10 +30,17 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
 
+import static com.google.common.collect.ImmutableList.of;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.api.Type.STRINGS;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.WARMUP_QUERIES;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.newLucenePropertyIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyStates.createProperty;
 import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class IndexTrackerTest {
     private static final EditorHook HOOK = new EditorHook(
@@ -69,4 +79,56 @@ public class IndexTrackerTest {
         assertEquals(0, tracker.getIndexNodePaths().size());
     }
 
+    @Test
+    public void refreshInBackground() throws Exception{
+        final List<Runnable> refreshes = newArrayList();
+        tracker = new IndexTracker(null, null, null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                refreshes.add(command);
+            }
+        });
+
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        NodeBuilder defn = newLucenePropertyIndexDefinition(index, "lucene", ImmutableSet.of("foo"), null);
+        defn.setProperty(createProperty(WARMUP_QUERIES, of("foo:bar", "foo:["), STRINGS));
+
+        NodeState before = builder.getNodeState();
+        builder.setProperty("foo", "bar");
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        tracker.update(indexed);
+        IndexNode indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        indexNode.release();
+
+        builder = indexed.builder();
+        builder.child("a").setProperty("foo", "bar");
+        NodeState indexed2 = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed2);
+        assertEquals(1, refreshes.size());
+
+        //Old index keeps serving until the refresh completed
+        IndexNode current = tracker.acquireIndexNode("/oak:index/lucene");
+        current.release();
+        assertSame(indexNode, current);
+
+        builder = indexed2.builder();
+        builder.child("b").setProperty("foo", "bar");
+        NodeState indexed3 = HOOK.processCommit(indexed2, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed3);
+        assertEquals(2, refreshes.size());
+
+        //Superseded refresh is discarded
+        refreshes.get(0).run();
+        current = tracker.acquireIndexNode("/oak:index/lucene");
+        current.release();
+        assertSame(indexNode, current);
+
+        refreshes.get(1).run();
+        current = tracker.acquireIndexNode("/oak:index/lucene");
+        assertNotSame(indexNode, current);
+        assertEquals(3, current.getSearcher().getIndexReader().numDocs());
+        current.release();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.query.NodeStateNodeTypeInfoProvider;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.ast.NodeTypeInfo;
+import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
+import org.apache.jackrabbit.oak.query.fulltext.FullTextTerm;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static javax.jcr.PropertyType.TYPENAME_STRING;
+import static org.apache.jackrabbit.JcrConstants.NT_BASE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldNames.PATH;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.NRT_INDEXING;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TestUtil.newLuceneIndexDefinitionV2;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+import static org.junit.Assert.assertEquals;
+
+public class LocalIndexObserverTest {
+    private static final EditorHook ASYNC_HOOK = new EditorHook(
+            new IndexUpdateProvider(new LuceneIndexEditorProvider(), "async", false));
+
+    private static final String INDEX_PATH = "/oak:index/lucene";
+
+    private final NRTIndexFactory nrtIndexFactory = new NRTIndexFactory();
+
+    private final IndexTracker tracker = new IndexTracker(null, nrtIndexFactory);
+
+    private final LocalIndexObserver observer = new LocalIndexObserver(tracker, nrtIndexFactory,
+            new ExtractedTextCache(0, 0), null);
+
+    private NodeState root;
+
+    @Before
+    public void setUp() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        NodeBuilder idx = newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene",
+                of(TYPENAME_STRING));
+        idx.setProperty(ASYNC_PROPERTY_NAME, "async");
+        idx.setProperty(NRT_INDEXING, true);
+        builder.child("a").setProperty("foo", "fox");
+
+        root = ASYNC_HOOK.processCommit(EMPTY_NODE, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(root);
+        observer.contentChanged(root, CommitInfo.EMPTY);
+
+        assertEquals(of("/a"), query("fox"));
+    }
+
+    @After
+    public void tearDown() {
+        tracker.close();
+        nrtIndexFactory.close();
+    }
+
+    @Test
+    public void localChanges() throws Exception {
+        NodeBuilder builder = root.builder();
+        builder.child("b").setProperty("foo", "fox");
+        builder.child("a").setProperty("foo", "fox jumps");
+        NodeState local = builder.getNodeState();
+        observer.contentChanged(local, CommitInfo.EMPTY);
+
+        assertEquals(of("/a", "/b"), query("fox"));
+        assertEquals(of("/a"), query("jumps"));
+    }
+
+    @Test
+    public void externalChanges() throws Exception {
+        NodeBuilder builder = root.builder();
+        builder.child("b").setProperty("foo", "fox");
+        observer.contentChanged(builder.getNodeState(), null);
+
+        assertEquals(of("/a"), query("fox"));
+    }
+
+    @Test
+    public void rollOverOnPersistedUpdate() throws Exception {
+        NodeBuilder builder = root.builder();
+        builder.child("b").setProperty("foo", "fox");
+        NodeState local = builder.getNodeState();
+        observer.contentChanged(local, CommitInfo.EMPTY);
+        assertEquals(1, nrtIndexFactory.getIndexes(INDEX_PATH).size());
+
+        //Async indexer catches up. The local changes are kept until the
+        //persisted index is updated once more
+        NodeState indexed = ASYNC_HOOK.processCommit(root, local, CommitInfo.EMPTY);
+        tracker.update(indexed);
+        assertEquals(1, nrtIndexFactory.getIndexes(INDEX_PATH).size());
+        assertEquals(of("/a", "/b"), query("fox"));
+
+        builder = indexed.builder();
+        builder.child("c").setProperty("foo", "fox");
+        NodeState indexed2 = ASYNC_HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed2);
+        assertEquals(0, nrtIndexFactory.getIndexes(INDEX_PATH).size());
+        assertEquals(of("/a", "/b", "/c"), query("fox"));
+    }
+
+    @Test
+    public void staleDocumentsHidden() throws Exception {
+        NodeBuilder builder = root.builder();
+        builder.child("a").setProperty("foo", "dog");
+        NodeState local = builder.getNodeState();
+        observer.contentChanged(local, CommitInfo.EMPTY);
+
+        assertEquals(of(), query("fox"));
+        assertEquals(of("/a"), query("dog"));
+        assertEquals(newArrayList(), queryIndex("fox", local));
+        assertEquals(newArrayList("/a"), queryIndex("dog", local));
+
+        //The hidden documents are computed again for the next local change
+        builder = local.builder();
+        builder.child("a").setProperty("foo", "cat");
+        builder.child("b").setProperty("foo", "dog");
+        NodeState local2 = builder.getNodeState();
+        observer.contentChanged(local2, CommitInfo.EMPTY);
+
+        assertEquals(newArrayList("/b"), queryIndex("dog", local2));
+        assertEquals(newArrayList("/a"), queryIndex("cat", local2));
+        assertEquals(newArrayList(), queryIndex("fox", local2));
+    }
+
+    @Test
+    public void localChangesBetweenBatches() throws Exception {
+        NodeBuilder builder = root.builder();
+        int count = LucenePropertyIndex.LUCENE_QUERY_BATCH_SIZE + 10;
+        for (int i = 0; i < count; i++) {
+            builder.child("c" + i).setProperty("foo", "fox");
+        }
+        NodeState indexed = ASYNC_HOOK.processCommit(root, builder.getNodeState(), CommitInfo.EMPTY);
+        tracker.update(indexed);
+        //Only indexed by the async indexer
+        observer.contentChanged(indexed, null);
+
+        Cursor cursor = queryCursor("fox", indexed);
+        List<String> paths = newArrayList();
+        for (int i = 0; i < LucenePropertyIndex.LUCENE_QUERY_BATCH_SIZE; i++) {
+            paths.add(cursor.next().getPath());
+        }
+
+        //Changes the version of the searcher for the next batch
+        builder = indexed.builder();
+        builder.child("b").setProperty("foo", "fox");
+        NodeState local = builder.getNodeState();
+        observer.contentChanged(local, CommitInfo.EMPTY);
+
+        while (cursor.hasNext()) {
+            paths.add(cursor.next().getPath());
+        }
+        assertEquals(count + 2, paths.size());
+        assertEquals(count + 2, newHashSet(paths).size());
+    }
+
+    private List<String> queryIndex(String text, NodeState state) {
+        List<String> paths = newArrayList();
+        Cursor cursor = queryCursor(text, state);
+        while (cursor.hasNext()) {
+            paths.add(cursor.next().getPath());
+        }
+        return paths;
+    }
+
+    private Cursor queryCursor(String text, NodeState state) {
+        NodeTypeInfo type = new NodeStateNodeTypeInfoProvider(state).getNodeTypeInfo(NT_BASE);
+        FilterImpl filter = new FilterImpl(new SelectorImpl(type, NT_BASE),
+                "SELECT * FROM [" + NT_BASE + "]", new QueryEngineSettings());
+        filter.setFullTextConstraint(new FullTextTerm(null, text, false, false, null));
+        AdvancedQueryIndex queryIndex = new LucenePropertyIndex(tracker);
+        List<IndexPlan> plans = queryIndex.getPlans(filter, null, state);
+        return queryIndex.query(plans.get(0), state);
+    }
+
+    private Set<String> query(String text) throws IOException {
+        IndexNode indexNode = tracker.acquireIndexNode(INDEX_PATH);
+        IndexSearcher searcher = indexNode.acquireSearcher();
+        try {
+            Set<String> paths = newHashSet();
+            TermQuery query = new TermQuery(new Term(FieldNames.FULLTEXT, text));
+            for (ScoreDoc doc : searcher.search(query, 100).scoreDocs) {
+                paths.add(searcher.doc(doc.doc).get(PATH));
+            }
+            return paths;
+        } finally {
+            indexNode.releaseSearcher(searcher);
+            indexNode.release();
+        }
+    }
+}
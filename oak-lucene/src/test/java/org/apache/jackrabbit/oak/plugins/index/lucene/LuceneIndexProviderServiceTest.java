@@ -187,6 +187,34 @@ public class LuceneIndexProviderServiceTest {
         assertTrue(editorProvider.getExtractedTextCache().isAlwaysUsePreExtractedCache());
     }
 
+    @Test
+    public void textExtractionThreads() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("textExtractionThreads", 3);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        TextExtractionPool pool = service.getExtractedTextCache().getTextExtractionPool();
+        assertNotNull(pool);
+        assertEquals(3, pool.getThreads());
+        assertEquals(3, service.getExtractedTextCache().getStatsMBean().getExtractionThreads());
+        MockOsgi.deactivate(service);
+    }
+
+    @Test
+    public void blockCache() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("enableCopyOnReadSupport", false);
+        config.put("blockCacheSizeInMB", 10);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        LuceneIndexProvider provider = (LuceneIndexProvider) context.getService(QueryIndexProvider.class);
+        assertNotNull(provider.getTracker().getBlockCache());
+
+        LuceneIndexMBean mbean = context.getService(LuceneIndexMBean.class);
+        assertEquals(0, mbean.getBlockCacheHitCount());
+        MockOsgi.deactivate(service);
+    }
+
     @Test
     public void booleanQuerySize() throws Exception{
         Map<String,Object> config = getDefaultConfig();
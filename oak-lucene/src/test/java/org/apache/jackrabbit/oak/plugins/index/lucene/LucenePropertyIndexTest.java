@@ -30,6 +30,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.jcr.PropertyType;
@@ -1560,6 +1561,43 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         assertEquals(1, textProvider.accessCount);
     }
 
+    @Test
+    public void parallelTextExtraction() throws Exception{
+        Tree idx = createFulltextIndex(root.getTree("/"), "test");
+        TestUtil.useV2(idx);
+        root.commit();
+
+        TextExtractionPool pool = new TextExtractionPool(2, 2, TimeUnit.MINUTES.toMillis(1));
+        editorProvider.getExtractedTextCache().setTextExtractionPool(pool);
+        try {
+            Tree test = root.getTree("/").addChild("test");
+            for (int i = 0; i < 10; i++) {
+                createFileNode(test, "text" + i, "fox is jumping " + i, "text/plain");
+            }
+            test.addChild("a").setProperty("foo", "fox");
+            root.commit();
+
+            assertQuery("select * from [nt:base] where CONTAINS(*, 'jumping')", asList(
+                    "/test/text0/jcr:content", "/test/text1/jcr:content", "/test/text2/jcr:content",
+                    "/test/text3/jcr:content", "/test/text4/jcr:content", "/test/text5/jcr:content",
+                    "/test/text6/jcr:content", "/test/text7/jcr:content", "/test/text8/jcr:content",
+                    "/test/text9/jcr:content"));
+            assertQuery("select * from [nt:base] where CONTAINS(*, '7')", asList("/test/text7/jcr:content"));
+
+            //Deletions are applied after the pending documents are written
+            root.getTree("/test/text3").remove();
+            createFileNode(root.getTree("/test"), "text10", "fox is jumping 10", "text/plain");
+            root.commit();
+
+            assertQuery("select * from [nt:base] where CONTAINS(*, '3')", Collections.<String>emptyList());
+            assertQuery("select * from [nt:base] where CONTAINS(*, '10')", asList("/test/text10/jcr:content"));
+            assertEquals(0, pool.getPending());
+        } finally {
+            editorProvider.getExtractedTextCache().setTextExtractionPool(null);
+            pool.close();
+        }
+    }
+
     @Test
     public void preExtractedTextCache() throws Exception{
         Tree idx = createFulltextIndex(root.getTree("/"), "test");
@@ -421,6 +421,51 @@ public class OakDirectoryTest {
         assertEquals(0, dir.listAll().length);
     }
 
+    @Test
+    public void readOnlyDirectoryWithBlockCache() throws Exception{
+        Directory dir = createDir(builder, false);
+        byte[] data = randomBytes(fileSize);
+        IndexOutput o = dir.createOutput("test", IOContext.DEFAULT);
+        o.writeBytes(data, data.length);
+        o.close();
+
+        //Blobs need a content identity to be cached
+        NodeBuilder testNode = builder.child(INDEX_DATA_CHILD_NAME).child("test");
+        List<Blob> blobs = newArrayList();
+        for (Blob blob : testNode.getProperty(JCR_DATA).getValue(BINARIES)) {
+            blobs.add(new IdentifiableBlob(IOUtils.toByteArray(blob.getNewStream()), "blob" + blobs.size()));
+        }
+        testNode.setProperty(JCR_DATA, blobs, BINARIES);
+
+        IndexBlockCache blockCache = new IndexBlockCache(ONE_MB);
+        Directory readOnlyDir = new OakDirectory(new ReadOnlyBuilder(builder.getNodeState()), INDEX_DATA_CHILD_NAME,
+                new IndexDefinition(root, builder.getNodeState()), true, blockCache);
+        for (int run = 0; run < 2; run++) {
+            IndexInput i = readOnlyDir.openInput("test", IOContext.DEFAULT);
+            byte[] result = new byte[fileSize];
+            i.readBytes(result, 0, result.length);
+            assertTrue(Arrays.equals(data, result));
+            i.close();
+        }
+
+        assertEquals(3, blockCache.getCacheStats().getMissCount());
+        assertEquals(3, blockCache.getCacheStats().getHitCount());
+    }
+
+    private static class IdentifiableBlob extends ArrayBasedBlob {
+        private final String id;
+
+        IdentifiableBlob(byte[] value, String id) {
+            super(value);
+            this.id = id;
+        }
+
+        @Override
+        public String getContentIdentity() {
+            return id;
+        }
+    }
+
     private static void readInputToEnd(long expectedSize, IndexInput input) throws IOException {
         int COPY_BUFFER_SIZE = 16384;
         byte[] copyBuffer = new byte[(int) ONE_MB];
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextExtractionPoolTest {
+
+    private TextExtractionPool pool;
+
+    @After
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void extract() throws Exception {
+        pool = new TextExtractionPool(2, 2, 10000);
+        Future<String> text = pool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "fox";
+            }
+        });
+        assertEquals("fox", pool.getText(text, "/a/@jcr:data"));
+        assertEquals(0, pool.getPending());
+    }
+
+    @Test
+    public void failure() throws Exception {
+        pool = new TextExtractionPool(1, 1, 10000);
+        Future<String> text = pool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+        assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, pool.getText(text, "/a/@jcr:data"));
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        pool = new TextExtractionPool(1, 1, 100);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<String> text = pool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                latch.await();
+                return "fox";
+            }
+        });
+        assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, pool.getText(text, "/a/@jcr:data"));
+        assertTrue(text.isCancelled());
+        assertEquals(1, pool.getTimeoutCount());
+    }
+
+    @Test
+    public void callerRunsWhenFull() throws Exception {
+        pool = new TextExtractionPool(1, 1, 10000);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Callable<String> blocked = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                latch.await();
+                return "blocked";
+            }
+        };
+        Future<String> first = pool.submit(blocked);
+        Future<String> second = pool.submit(blocked);
+
+        final Thread caller = Thread.currentThread();
+        Future<String> third = pool.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread() == caller ? "caller" : "pool";
+            }
+        });
+        assertTrue(third.isDone());
+        assertEquals("caller", third.get());
+
+        latch.countDown();
+        assertEquals("blocked", pool.getText(first, "/a/@jcr:data"));
+        assertEquals("blocked", pool.getText(second, "/b/@jcr:data"));
+    }
+}
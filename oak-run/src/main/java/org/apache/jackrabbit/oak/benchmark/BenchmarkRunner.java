@@ -243,6 +243,7 @@ public class BenchmarkRunner {
                     base.value(options),
                     luceneIndexOnFS.value(options)),
             new CreateNodesBenchmark(),
+            new CommitQueueContentionBenchmark(),
             new ManyNodes(),
             new ObservationTest(),
             new RevisionGCTest(),
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.document.CommitQueueHelper;
+import org.apache.jackrabbit.oak.plugins.document.CommitQueueHelper.Queue;
+
+/**
+ * Measures the throughput of the commit queue of the DocumentNodeStore with
+ * many concurrent writers and compares the current implementation with the
+ * previous, monitor based implementation. The benchmark does not use the
+ * repository fixtures. The number of writer threads is taken from the
+ * concurrency levels (default: 1, 8, 32, 64).
+ */
+public class CommitQueueContentionBenchmark extends Benchmark {
+
+    private static final List<Integer> DEFAULT_CONCURRENCY_LEVELS =
+            ImmutableList.of(1, 8, 32, 64);
+
+    private static final long DURATION_MS = TimeUnit.SECONDS.toMillis(
+            Long.getLong("duration", 10));
+
+    /**
+     * Ratio of commits canceled instead of completed.
+     */
+    private static final float CANCEL_RATIO = Float.parseFloat(
+            System.getProperty("cancelRatio", "0.1"));
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        run(fixtures, Collections.<Integer>emptyList());
+    }
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures,
+                    List<Integer> concurrencyLevels) {
+        if (concurrencyLevels == null || concurrencyLevels.isEmpty()) {
+            concurrencyLevels = DEFAULT_CONCURRENCY_LEVELS;
+        }
+        System.out.format("# %-26.26s %6s %12s %12s%n",
+                "CommitQueueContention", "C", "sync ops/s", "current ops/s");
+        for (int threads : concurrencyLevels) {
+            try {
+                long sync = run(CommitQueueHelper.newSynchronizedCommitQueue(), threads);
+                long current = run(CommitQueueHelper.newCommitQueue(), threads);
+                System.out.format("  %-26.26s %6d %12d %12d%n",
+                        "", threads, sync, current);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Runs the given number of writer threads against the queue for
+     * {@link #DURATION_MS} and returns the number of commits per second.
+     */
+    private static long run(final Queue queue, int threads) throws Exception {
+        final AtomicLong commits = new AtomicLong();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] end = new long[1];
+        Thread[] writers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    long num = 0;
+                    try {
+                        start.await();
+                        while (System.currentTimeMillis() < end[0]) {
+                            queue.commit(random.nextFloat() < CANCEL_RATIO);
+                            num++;
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        commits.addAndGet(num);
+                    }
+                }
+            }, "CommitQueueContentionBenchmark writer " + i);
+            writers[i].start();
+        }
+        long time = System.currentTimeMillis();
+        end[0] = time + DURATION_MS;
+        start.countDown();
+        for (Thread t : writers) {
+            t.join();
+        }
+        time = System.currentTimeMillis() - time;
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        return commits.get() * 1000 / Math.max(time, 1);
+    }
+}
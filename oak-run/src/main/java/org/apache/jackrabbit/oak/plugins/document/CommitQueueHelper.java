@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Helper class to access the package private {@link CommitQueue} and the
+ * previous {@link SynchronizedCommitQueue} from benchmarks.
+ */
+public class CommitQueueHelper {
+
+    /**
+     * A queue, which orders commits by their revision.
+     */
+    public interface Queue {
+
+        /**
+         * Creates a new revision and then either completes or cancels it.
+         * Completion waits until all commits with earlier revisions are
+         * either completed or canceled.
+         *
+         * @param cancel whether to cancel instead of complete the commit.
+         */
+        void commit(boolean cancel);
+    }
+
+    private CommitQueueHelper() {
+    }
+
+    public static Queue newCommitQueue() {
+        final CommitQueue queue = new CommitQueue(new Context());
+        final Callback callback = new Callback();
+        return new Queue() {
+            @Override
+            public void commit(boolean cancel) {
+                Revision r = queue.createRevision();
+                if (cancel) {
+                    queue.canceled(r);
+                } else {
+                    queue.done(r, callback);
+                }
+            }
+        };
+    }
+
+    public static Queue newSynchronizedCommitQueue() {
+        final SynchronizedCommitQueue queue = new SynchronizedCommitQueue(new Context());
+        final Callback callback = new Callback();
+        return new Queue() {
+            @Override
+            public void commit(boolean cancel) {
+                Revision r = queue.createRevision();
+                if (cancel) {
+                    queue.canceled(r);
+                } else {
+                    queue.done(r, callback);
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks the revisions are passed in ascending order, like the
+     * callback of the DocumentNodeStore, which sets the new head revision.
+     */
+    private static final class Callback implements CommitQueue.Callback {
+
+        private volatile Revision head;
+
+        @Override
+        public void headOfQueue(@Nonnull Revision revision) {
+            if (head != null && StableRevisionComparator.INSTANCE.compare(head, revision) > 0) {
+                throw new IllegalStateException("Commit " + revision +
+                        " completed after " + head);
+            }
+            head = revision;
+        }
+    }
+
+    private static final class Context implements RevisionContext {
+
+        @Override
+        public UnmergedBranches getBranches() {
+            return null;
+        }
+
+        @Override
+        public UnsavedModifications getPendingModifications() {
+            return null;
+        }
+
+        @Override
+        public int getClusterId() {
+            return 1;
+        }
+
+        @Nonnull
+        @Override
+        public RevisionVector getHeadRevision() {
+            return new RevisionVector(newRevision());
+        }
+
+        @Nonnull
+        @Override
+        public Revision newRevision() {
+            return Revision.newRevision(getClusterId());
+        }
+    }
+}
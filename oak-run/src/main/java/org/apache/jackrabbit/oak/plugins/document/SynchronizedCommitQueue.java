@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The previous, monitor based implementation of the ordering in
+ * {@link CommitQueue}. Only used as a baseline for benchmarks.
+ */
+final class SynchronizedCommitQueue {
+
+    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+
+    private final RevisionContext context;
+
+    SynchronizedCommitQueue(@Nonnull RevisionContext context) {
+        this.context = checkNotNull(context);
+    }
+
+    @Nonnull
+    Revision createRevision() {
+        Revision rev;
+        synchronized (this) {
+            rev = context.newRevision();
+            commits.put(rev, new Entry());
+        }
+        return rev;
+    }
+
+    void done(@Nonnull Revision rev, @Nonnull CommitQueue.Callback c) {
+        boolean isHead;
+        Entry commitEntry;
+        synchronized (this) {
+            isHead = commits.firstKey().equals(rev);
+            commitEntry = commits.get(rev);
+        }
+        if (!isHead) {
+            commitEntry.await();
+        }
+        synchronized (this) {
+            commits.remove(rev);
+            try {
+                c.headOfQueue(rev);
+            } finally {
+                notifyHead();
+            }
+        }
+    }
+
+    void canceled(@Nonnull Revision rev) {
+        synchronized (this) {
+            boolean wasHead = commits.firstKey().equals(rev);
+            commits.remove(rev);
+            if (wasHead) {
+                notifyHead();
+            }
+        }
+    }
+
+    private void notifyHead() {
+        if (!commits.isEmpty()) {
+            commits.get(commits.firstKey()).release();
+        }
+    }
+
+    private static final class Entry {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        void release() {
+            latch.countDown();
+        }
+
+        void await() {
+            for (;;) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // retry
+                }
+            }
+        }
+    }
+}
@@ -44,6 +44,12 @@ class CheckCommand implements Command {
         ArgumentAcceptingOptionSpec<Long> bin = parser.accepts(
                 "bin", "read the n first bytes from binary properties. -1 for all bytes.")
                 .withOptionalArg().ofType(Long.class).defaultsTo(0L);
+        ArgumentAcceptingOptionSpec<Integer> incremental = parser.accepts(
+                "incremental", "only check the revisions added since the last incremental check " +
+                        "(requires --segment-tar). An optional integer specifies the number of tar " +
+                        "files verified concurrently")
+                .withOptionalArg().ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors());
         OptionSpec segmentTar = parser.accepts("segment-tar", "Use oak-segment-tar instead of oak-segment");
 
         OptionSet options = parser.parse(args);
@@ -60,7 +66,14 @@ class CheckCommand implements Command {
         long debugLevel = deep.value(options);
         long binLen = bin.value(options);
 
-        if (options.has(segmentTar)) {
+        if (options.has(incremental)) {
+            if (!options.has(segmentTar)) {
+                System.err.println("--incremental requires --segment-tar");
+                System.exit(1);
+            }
+            SegmentTarUtils.checkIncrementally(dir, journalFileName, incremental.value(options),
+                    debugLevel, binLen);
+        } else if (options.has(segmentTar)) {
             SegmentTarUtils.check(dir, journalFileName, fullTraversal, debugLevel, binLen);
         } else {
             SegmentUtils.check(dir, journalFileName, fullTraversal, debugLevel, binLen);
@@ -35,6 +35,7 @@ import static org.apache.jackrabbit.oak.segment.SegmentVersion.LATEST_VERSION;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
 import static org.apache.jackrabbit.oak.segment.file.tooling.ConsistencyChecker.checkConsistency;
+import static org.apache.jackrabbit.oak.segment.file.tooling.ConsistencyChecker.checkConsistencyIncrementally;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.File;
@@ -180,6 +181,10 @@ final class SegmentTarUtils {
         checkConsistency(dir, journalFileName, fullTraversal, debugLevel, binLen);
     }
 
+    static void checkIncrementally(File dir, String journalFileName, int threads, long debugLevel, long binLen) throws IOException {
+        checkConsistencyIncrementally(dir, journalFileName, threads, debugLevel, binLen);
+    }
+
     static void compact(File directory, boolean force) throws IOException {
         FileStore store = newFileStoreBuilder(directory.getAbsolutePath(),
                 force).withGCOptions(defaultGCOptions().setOffline()).build();
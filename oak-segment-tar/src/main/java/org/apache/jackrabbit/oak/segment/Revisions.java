@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
 
 import com.google.common.base.Function;
@@ -40,6 +42,15 @@ public interface Revisions {
     boolean setHead(@Nonnull Function<RecordId, RecordId> newHead,
                     @Nonnull Option... options)
     throws InterruptedException;
+
+    /**
+     * Wait until the current head state has been persisted, if the
+     * implementation defers persisting it to group multiple commits.
+     * Otherwise this is a no-op.
+     * @throws IOException  if persisting the head state failed
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    void awaitPersisted() throws IOException, InterruptedException;
 }
 
 
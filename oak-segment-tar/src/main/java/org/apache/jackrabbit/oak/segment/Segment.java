@@ -213,7 +213,7 @@ public class Segment {
                     @Override
                     public String toString() {
                         return "Invalid segment format. Dumping segment " + id + "\n"
-                            + toHex(data.array());
+                            + toHex(data);
                     }
             });
             this.refids = new SegmentId[getRefCount()];
@@ -225,7 +225,10 @@ public class Segment {
         }
     }
 
-    private static String toHex(byte[] bytes) {
+    private static String toHex(ByteBuffer data) {
+        // memory mapped buffers don't have a backing array
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
             HexDump.dump(bytes, 0, out, 0);
@@ -433,9 +436,14 @@ public class Segment {
     void readBytes(int position, byte[] buffer, int offset, int length) {
         checkNotNull(buffer);
         checkPositionIndexes(offset, offset + length, buffer.length);
-        ByteBuffer d = data.duplicate();
-        d.position(pos(position, length));
-        d.get(buffer, offset, length);
+        int pos = pos(position, length);
+        if (data.hasArray()) {
+            System.arraycopy(data.array(), data.arrayOffset() + pos, buffer, offset, length);
+        } else {
+            ByteBuffer d = data.duplicate();
+            d.position(pos);
+            d.get(buffer, offset, length);
+        }
     }
 
     RecordId readRecordId(int offset) {
@@ -454,17 +462,9 @@ public class Segment {
         int pos = pos(offset, 1);
         long length = internalReadLength(pos);
         if (length < SMALL_LIMIT) {
-            byte[] bytes = new byte[(int) length];
-            ByteBuffer buffer = data.duplicate();
-            buffer.position(pos + 1);
-            buffer.get(bytes);
-            return new String(bytes, Charsets.UTF_8);
+            return decodeString(pos + 1, (int) length);
         } else if (length < MEDIUM_LIMIT) {
-            byte[] bytes = new byte[(int) length];
-            ByteBuffer buffer = data.duplicate();
-            buffer.position(pos + 2);
-            buffer.get(bytes);
-            return new String(bytes, Charsets.UTF_8);
+            return decodeString(pos + 2, (int) length);
         } else if (length < Integer.MAX_VALUE) {
             int size = (int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
             ListRecord list = new ListRecord(internalReadRecordId(pos + 8), size);
@@ -476,6 +476,24 @@ public class Segment {
         }
     }
 
+    /**
+     * Decode the UTF-8 encoded string of the given length at the given
+     * position within the {@link #data} array. Decodes directly from the
+     * backing array of heap buffers without an intermediate copy.
+     */
+    @Nonnull
+    private String decodeString(int pos, int length) {
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + pos, length, Charsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            ByteBuffer buffer = data.duplicate();
+            buffer.position(pos);
+            buffer.get(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        }
+    }
+
     @Nonnull
     Template readTemplate(int offset) {
         int head = readInt(offset);
@@ -19,6 +19,9 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
@@ -80,11 +83,37 @@ public class SegmentCache {
         return cache.get(id, loader);
     }
 
+    /**
+     * Check whether a segment is in the cache without loading it
+     * @param id  segment id
+     * @return  {@code true} if the segment with the given {@code id} is in the cache
+     */
+    public boolean containsSegment(@Nonnull SegmentId id) {
+        return cache.containsKey(id);
+    }
+
     public void putSegment(@Nonnull Segment segment) {
         cache.put(segment.getSegmentId(), segment, segment.size());
         segment.getSegmentId().loaded(segment);
     }
 
+    /**
+     * The ids of the segments in the hot set of the cache, most recently
+     * used first. This is a snapshot of the state of the cache and might
+     * already be outdated when this method returns.
+     * @return  ids of the hot, resident segments
+     */
+    @Nonnull
+    public List<SegmentId> getHotSegmentIds() {
+        List<SegmentId> ids = newArrayList();
+        for (SegmentId id : cache.keys(false, false)) {
+            if (cache.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
     public void clear() {
         cache.invalidateAll();
     }
@@ -279,15 +279,19 @@ public class SegmentNodeStore implements NodeStore, Observable {
         checkNotNull(commitHook);
 
         try {
+            NodeState merged;
             commitSemaphore.acquire();
             try {
                 Commit commit = new Commit(snb, commitHook, info);
-                NodeState merged = commit.execute();
+                merged = commit.execute();
                 snb.reset(merged);
-                return merged;
             } finally {
                 commitSemaphore.release();
             }
+            // Wait for group commit without holding the commitSemaphore
+            // so concurrent commits can join the group
+            revisions.awaitPersisted();
+            return merged;
         } catch (InterruptedException e) {
             currentThread().interrupt();
             throw new CommitFailedException(
@@ -295,6 +299,9 @@ public class SegmentNodeStore implements NodeStore, Observable {
         } catch (SegmentOverflowException e) {
             throw new CommitFailedException(
                     "Segment", 3, "Merge failed", e);
+        } catch (IOException e) {
+            throw new CommitFailedException(
+                    "Segment", 4, "Failed to persist the merged changes", e);
         }
     }
 
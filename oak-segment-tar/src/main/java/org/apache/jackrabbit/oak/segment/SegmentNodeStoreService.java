@@ -24,8 +24,10 @@ import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toBoolean;
 import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toInteger;
 import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toLong;
 import static org.apache.jackrabbit.oak.osgi.OsgiUtil.lookupConfigurationThenFramework;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.COMPACTION_CONCURRENCY_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.FORCE_AFTER_FAIL_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GAIN_THRESHOLD_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.INCREMENTAL_ESTIMATION_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.MEMORY_THRESHOLD_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.PAUSE_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETRY_COUNT_DEFAULT;
@@ -140,6 +142,14 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String CACHE = "cache";
 
+    @Property(
+            intValue = -1,
+            label = "Group Commit Latency (ms)",
+            description = "Maximal time in milliseconds a commit waits for concurrent commits to be " +
+                    "persisted together with it. Commits don't wait for being persisted if negative"
+    )
+    public static final String GROUP_COMMIT_LATENCY = "groupCommit.latency";
+
     @Property(
             byteValue = MEMORY_THRESHOLD_DEFAULT,
             label = "Memory Multiplier",
@@ -189,6 +199,22 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String COMPACTION_LOCK_WAIT_TIME = "compaction.lockWaitTime";
 
+    @Property(
+            intValue = COMPACTION_CONCURRENCY_DEFAULT,
+            label = "Compaction Concurrency",
+            description = "Number of threads compacting subtrees of the repository concurrently. " +
+                    "A value of 1 compacts the repository in a single thread."
+    )
+    public static final String COMPACTION_CONCURRENCY = "compaction.concurrency";
+
+    @Property(
+            boolValue = INCREMENTAL_ESTIMATION_DEFAULT,
+            label = "Incremental Estimation",
+            description = "Estimate the compaction gain from the sizes of the segments by gc generation " +
+                    "instead of traversing the repository."
+    )
+    public static final String COMPACTION_INCREMENTAL_ESTIMATION = "compaction.incrementalEstimation";
+
     @Property(
             boolValue = false,
             label = "Standby Mode",
@@ -347,6 +373,11 @@ public class SegmentNodeStoreService extends ProxyNodeStore
             builder.withBlobStore(blobStore);
         }
 
+        int groupCommitLatency = getGroupCommitLatency();
+        if (groupCommitLatency >= 0) {
+            builder.withGroupCommit(groupCommitLatency);
+        }
+
         store = builder.build();
 
         // Expose an MBean to provide information about the gc options
@@ -442,6 +473,9 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         int retryCount = toInteger(property(COMPACTION_RETRY_COUNT), RETRY_COUNT_DEFAULT);
         boolean forceAfterFail = toBoolean(property(COMPACTION_FORCE_AFTER_FAIL), FORCE_AFTER_FAIL_DEFAULT);
         final int lockWaitTime = toInteger(property(COMPACTION_LOCK_WAIT_TIME), COMPACTION_LOCK_WAIT_TIME_DEFAULT);
+        int concurrency = toInteger(property(COMPACTION_CONCURRENCY), COMPACTION_CONCURRENCY_DEFAULT);
+        boolean incrementalEstimation = toBoolean(
+                property(COMPACTION_INCREMENTAL_ESTIMATION), INCREMENTAL_ESTIMATION_DEFAULT);
 
         byte memoryThreshold = getMemoryThreshold();
         byte gainThreshold = getGainThreshold();
@@ -449,6 +483,8 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         SegmentGCOptions segmentGCOptions = new SegmentGCOptions(
                 pauseCompaction, memoryThreshold, gainThreshold, retryCount, forceAfterFail, lockWaitTime);
         segmentGCOptions.setForceAfterFail(forceAfterFail);
+        segmentGCOptions.setCompactionConcurrency(concurrency);
+        segmentGCOptions.setIncrementalEstimation(incrementalEstimation);
         return segmentGCOptions;
     }
 
@@ -628,6 +664,16 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         return Integer.parseInt(getMaxFileSizeProperty());
     }
 
+    private int getGroupCommitLatency() {
+        String latency = property(GROUP_COMMIT_LATENCY);
+
+        if (latency == null) {
+            return -1;
+        }
+
+        return Integer.parseInt(latency);
+    }
+
     private byte getMemoryThreshold() {
         String mt = property(COMPACTION_MEMORY_THRESHOLD);
 
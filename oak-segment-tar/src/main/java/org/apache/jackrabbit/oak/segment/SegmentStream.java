@@ -63,6 +63,11 @@ public class SegmentStream extends InputStream {
 
     private long mark = 0;
 
+    /**
+     * Buffer for single byte reads of block based streams
+     */
+    private byte[] single;
+
     SegmentStream(RecordId recordId, ListRecord blocks, long length) {
         this.recordId = checkNotNull(recordId);
         this.inline = null;
@@ -126,9 +131,17 @@ public class SegmentStream extends InputStream {
 
     @Override
     public int read() {
-        byte[] b = new byte[1];
-        if (read(b, 0, 1) != -1) {
-            return b[0] & 0xff;
+        if (position == length) {
+            return -1;
+        } else if (inline != null) {
+            return inline[(int) position++] & 0xff;
+        }
+
+        if (single == null) {
+            single = new byte[1];
+        }
+        if (read(single, 0, 1) != -1) {
+            return single[0] & 0xff;
         } else {
             return -1;
         }
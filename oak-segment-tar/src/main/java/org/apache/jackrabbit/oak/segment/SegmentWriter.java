@@ -300,6 +300,41 @@ public class SegmentWriter {
         }
     }
 
+    /**
+     * Write a node state as part of a larger compaction, unless cancelled.
+     * In contrast to {@link #writeNode(NodeState, WriteOperationHandler, Supplier)}
+     * the write operation handler is not flushed, so the caller can compact
+     * many subtrees through the same handler and flush it once. Subtrees
+     * written by this method are kept in the node de-duplication cache of
+     * the writer's generation, from where a subsequent compaction of an
+     * enclosing node state picks them up.
+     * @param state   node state to write
+     * @param depth   depth of {@code state} below the root of the compacted tree
+     * @param writeOperationHandler  the write operation handler through which all write calls
+     *                               induced by by this call are routed.
+     * @param cancel  supplier to signal cancellation of this write operation
+     * @return segment node state equal to {@code state} or {@code null} if cancelled.
+     * @throws IOException
+     */
+    @CheckForNull
+    public SegmentNodeState compactNode(@Nonnull final NodeState state, final int depth,
+                                        @Nonnull WriteOperationHandler writeOperationHandler,
+                                        @Nonnull Supplier<Boolean> cancel)
+    throws IOException {
+        try {
+            RecordId nodeId = writeOperationHandler.execute(new SegmentWriteOperation(cancel) {
+                @Override
+                public RecordId execute(SegmentBufferWriter writer) throws IOException {
+                    CompactionStats stats = new CompactionStats(writeNodeStats, compactNodeStats, true);
+                    return with(writer).with(stats).writeNode(state, depth);
+                }
+            });
+            return new SegmentNodeState(reader, this, nodeId);
+        } catch (SegmentWriteOperation.CancelledWriteException ignore) {
+            return null;
+        }
+    }
+
     private final SynchronizedDescriptiveStatistics writeNodeStats = new SynchronizedDescriptiveStatistics();
     private final SynchronizedDescriptiveStatistics compactNodeStats = new SynchronizedDescriptiveStatistics();
 
@@ -61,6 +61,16 @@ public class SegmentGCOptions {
      */
     public static final int RETAINED_GENERATIONS_DEFAULT = 2;
 
+    /**
+     * Default value for {@link #getCompactionConcurrency()}
+     */
+    public static final int COMPACTION_CONCURRENCY_DEFAULT = 1;
+
+    /**
+     * Default value for {@link #isIncrementalEstimation()}
+     */
+    public static final boolean INCREMENTAL_ESTIMATION_DEFAULT = false;
+
     private boolean paused = PAUSE_DEFAULT;
 
     private int memoryThreshold = MEMORY_THRESHOLD_DEFAULT;
@@ -75,6 +85,10 @@ public class SegmentGCOptions {
 
     private int retainedGenerations = RETAINED_GENERATIONS_DEFAULT;
 
+    private int compactionConcurrency = COMPACTION_CONCURRENCY_DEFAULT;
+
+    private boolean incrementalEstimation = INCREMENTAL_ESTIMATION_DEFAULT;
+
     private boolean offline = false;
 
     private boolean ocBinDeduplication = Boolean
@@ -247,6 +261,57 @@ public class SegmentGCOptions {
         return this;
     }
 
+    /**
+     * Number of threads compacting subtrees of the head state concurrently.
+     * @see #setCompactionConcurrency(int)
+     * @return  number of compaction threads.
+     */
+    public int getCompactionConcurrency() {
+        return compactionConcurrency;
+    }
+
+    /**
+     * Set the number of threads compacting subtrees of the head state
+     * concurrently. With more than one thread, the second level subtrees
+     * (except for checkpoints) are compacted in parallel before the head
+     * state is compacted on top of them.
+     *
+     * @param compactionConcurrency  number of compaction threads. Must be {@code >= 1}.
+     * @return this instance
+     * @throws IllegalArgumentException if {@code compactionConcurrency < 1}
+     */
+    public SegmentGCOptions setCompactionConcurrency(int compactionConcurrency) {
+        checkArgument(compactionConcurrency > 0,
+                "CompactionConcurrency must be positive. Got %s", compactionConcurrency);
+        this.compactionConcurrency = compactionConcurrency;
+        return this;
+    }
+
+    /**
+     * Whether the compaction gain is estimated from the sizes of the segments
+     * by gc generation instead of traversing the repository.
+     * @see #setIncrementalEstimation(boolean)
+     * @return  {@code true} for incremental estimation
+     */
+    public boolean isIncrementalEstimation() {
+        return incrementalEstimation;
+    }
+
+    /**
+     * Enable estimating the compaction gain from the sizes of the segments by
+     * gc generation as recorded in the tar indexes instead of traversing the
+     * repository. The size of the repository after the last compaction serves
+     * as estimate of its live size. A full estimation is still run while that
+     * size is not known, e.g. after a restart.
+     *
+     * @param incrementalEstimation  {@code true} for incremental estimation
+     * @return this instance
+     */
+    public SegmentGCOptions setIncrementalEstimation(boolean incrementalEstimation) {
+        this.incrementalEstimation = incrementalEstimation;
+        return this;
+    }
+
     @Override
     public String toString() {
         if (offline) {
@@ -263,7 +328,9 @@ public class SegmentGCOptions {
                     ", retryCount=" + retryCount +
                     ", forceAfterFail=" + forceAfterFail +
                     ", lockWaitTime=" + lockWaitTime +
-                    ", retainedGenerations=" + retainedGenerations + "}";
+                    ", retainedGenerations=" + retainedGenerations +
+                    ", compactionConcurrency=" + compactionConcurrency +
+                    ", incrementalEstimation=" + incrementalEstimation + "}";
         }
     }
 
@@ -119,4 +119,31 @@ public interface SegmentRevisionGC {
      */
     void setRetainedGenerations(int retainedGenerations);
 
+    /**
+     * Number of threads compacting subtrees of the head state concurrently.
+     * @return  number of compaction threads.
+     */
+    int getCompactionConcurrency();
+
+    /**
+     * Set the number of threads compacting subtrees of the head state
+     * concurrently.
+     *
+     * @param compactionConcurrency  number of compaction threads. Must be {@code >= 1}.
+     * @throws IllegalArgumentException if {@code compactionConcurrency < 1}
+     */
+    void setCompactionConcurrency(int compactionConcurrency);
+
+    /**
+     * @return  {@code true} if the compaction gain is estimated from the sizes
+     *          of the segments by gc generation instead of traversing the repository.
+     */
+    boolean isIncrementalEstimation();
+
+    /**
+     * Enable or disable the incremental estimation of the compaction gain.
+     * @param incrementalEstimation  {@code true} for incremental estimation
+     */
+    void setIncrementalEstimation(boolean incrementalEstimation);
+
 }
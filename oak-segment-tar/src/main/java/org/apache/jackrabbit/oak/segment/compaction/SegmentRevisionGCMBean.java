@@ -101,4 +101,24 @@ public class SegmentRevisionGCMBean
     public void setRetainedGenerations(int retainedGenerations) {
         gcOptions.setRetainedGenerations(retainedGenerations);
     }
+
+    @Override
+    public int getCompactionConcurrency() {
+        return gcOptions.getCompactionConcurrency();
+    }
+
+    @Override
+    public void setCompactionConcurrency(int compactionConcurrency) {
+        gcOptions.setCompactionConcurrency(compactionConcurrency);
+    }
+
+    @Override
+    public boolean isIncrementalEstimation() {
+        return gcOptions.isIncrementalEstimation();
+    }
+
+    @Override
+    public void setIncrementalEstimation(boolean incrementalEstimation) {
+        gcOptions.setIncrementalEstimation(incrementalEstimation);
+    }
 }
@@ -29,6 +29,7 @@ import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.String.format;
 import static java.lang.Thread.currentThread;
 import static java.nio.ByteBuffer.wrap;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -59,6 +60,9 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -119,6 +123,11 @@ public class FileStore implements SegmentStore, Closeable {
      */
     private static final AtomicLong GC_COUNT = new AtomicLong(0);
 
+    /**
+     * Number of segments tracked by the {@link #prefetcher}
+     */
+    private static final int PREFETCH_WINDOW = 1024;
+
     static final boolean MEMORY_MAPPING_DEFAULT =
             "64".equals(System.getProperty("sun.arch.data.model", "32"));
 
@@ -139,8 +148,27 @@ public class FileStore implements SegmentStore, Closeable {
 
     private final boolean memoryMapping;
 
+    /**
+     * Whether data segments are compressed in the tar files.
+     * @see SegmentCompression
+     */
+    private final boolean segmentCompression;
+
+    /**
+     * The tar readers of this store, newest first. The list is never modified
+     * but replaced as a whole while holding {@link #readersLock}. Access to
+     * the contents of the tar files should go through {@link #acquireReaders()}
+     * to protect the readers from being closed by a concurrent cleanup.
+     */
     private volatile List<TarReader> readers;
 
+    /**
+     * Index of the location of all segments in {@link #readers}. Updated
+     * whenever a new reader is added and rebuilt when the readers are
+     * replaced by cleanup.
+     */
+    private volatile SegmentLocationIndex segmentIndex;
+
     private int writeNumber;
 
     private volatile File writeFile;
@@ -198,6 +226,14 @@ public class FileStore implements SegmentStore, Closeable {
      */
     private final AtomicLong approximateSize;
 
+    /**
+     * Size of the data segments of the current generation right after the
+     * last compaction, or the live size determined by the last full
+     * compaction gain estimation. {@code -1} if not known.
+     * @see LiveSizeEstimate
+     */
+    private final AtomicLong compactedSize = new AtomicLong(-1);
+
     /**
      * This flag is periodically updated by calling the {@code SegmentGCOptions}
      * at regular intervals.
@@ -209,13 +245,66 @@ public class FileStore implements SegmentStore, Closeable {
      */
     private volatile boolean shutdown;
 
-    private final ReadWriteLock fileStoreLock = new ReentrantReadWriteLock();
+    /**
+     * Lock guarding the {@link #tarWriter}. Writing segments and switching to
+     * a new tar writer require the write lock, reading from the tar writer
+     * requires the read lock. Reading from the {@link #readers} does not
+     * require any lock.
+     */
+    private final ReadWriteLock writerLock = new ReentrantReadWriteLock();
+
+    /**
+     * Monitor serialising the updates of {@link #readers} and
+     * {@link #segmentIndex}. Acquired after {@link #writerLock} if both are
+     * needed.
+     */
+    private final Object readersLock = new Object();
 
     private final FileStoreStats stats;
 
     @Nonnull
     private final SegmentCache segmentCache;
 
+    /**
+     * Group commit persisting commits as they happen or {@code null} if
+     * commits are only persisted by the {@link #flushThread}.
+     */
+    @CheckForNull
+    private final GroupCommit groupCommit;
+
+    /**
+     * Prefetcher loading the segments referenced from segments read on
+     * demand or {@code null} if prefetching is disabled.
+     */
+    @CheckForNull
+    private final SegmentPrefetcher prefetcher;
+
+    /**
+     * Warm up of the {@link #segmentCache} or {@code null} if disabled.
+     */
+    @CheckForNull
+    private final SegmentCacheWarmup warmup;
+
+    /**
+     * Flushes the pending segments and syncs the current tar file. Called
+     * by {@link TarRevisions} before the head state is written to the journal.
+     */
+    private final Callable<Void> flushSegments = new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+            // FIXME OAK-4291: FileStore.flush prone to races leading to corruption
+            // There is a small windows that could lead to a corrupted store:
+            // if we crash right after setting the persisted head but before any delay-flushed
+            // SegmentBufferWriter instance flushes (see SegmentBufferWriterPool.returnWriter())
+            // then that data is lost although it might be referenced from the persisted head already.
+            // Need a test case. Possible fix: return a future from flush() and set the persisted head
+            // in the completion handler.
+            segmentWriter.flush();
+            tarWriter.flush();
+            return null;
+        }
+    };
+
     private final SegmentIdFactory segmentIdFactory = new SegmentIdFactory() {
 
         @Override
@@ -274,6 +363,7 @@ public class FileStore implements SegmentStore, Closeable {
         this.directory = builder.getDirectory();
         this.maxFileSize = builder.getMaxFileSize() * MB;
         this.memoryMapping = builder.getMemoryMapping();
+        this.segmentCompression = builder.getSegmentCompression();
         this.gcListener = builder.getGcListener();
         this.gcOptions = builder.getGcOptions();
 
@@ -293,6 +383,8 @@ public class FileStore implements SegmentStore, Closeable {
             }
         }
 
+        this.segmentIndex = SegmentLocationIndex.build(readers);
+
         long initialSize = size();
         this.approximateSize = new AtomicLong(initialSize);
         this.stats = new FileStoreStats(builder.getStatsProvider(), this, initialSize);
@@ -305,7 +397,7 @@ public class FileStore implements SegmentStore, Closeable {
             }
             this.writeFile = new File(directory, String.format(
                     FILE_NAME_FORMAT, writeNumber, "a"));
-            this.tarWriter = new TarWriter(writeFile, stats);
+            this.tarWriter = new TarWriter(writeFile, stats, segmentCompression);
         }
 
         if (!readOnly) {
@@ -359,6 +451,63 @@ public class FileStore implements SegmentStore, Closeable {
             diskSpaceThread = null;
         }
 
+        if (builder.getPrefetchThreads() > 0) {
+            prefetcher = new SegmentPrefetcher(segmentCache, stats,
+                    builder.getPrefetchThreads(), PREFETCH_WINDOW) {
+                @Nonnull
+                @Override
+                protected Segment load(@Nonnull SegmentId id) {
+                    return loadSegment(id);
+                }
+            };
+        } else {
+            prefetcher = null;
+        }
+
+        if (builder.getWarmupThreads() > 0) {
+            warmup = new SegmentCacheWarmup(builder.getWarmupThreads(), stats) {
+                @Override
+                protected void load(@Nonnull UUID uuid) throws ExecutionException {
+                    warmUp(newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+                }
+            };
+            List<UUID> hot;
+            try {
+                hot = SegmentCacheWarmup.readSnapshot(directory);
+            } catch (IOException e) {
+                log.warn("Failed to read the segment cache snapshot of the TarMK at {}. " +
+                        "Starting without warm up", directory, e);
+                hot = emptyList();
+            }
+            log.info("TarMK warming up segment cache with {} segments", hot.size());
+            warmup.start(hot);
+            if (!builder.isWarmupInBackground()) {
+                try {
+                    warmup.await();
+                } catch (InterruptedException e) {
+                    currentThread().interrupt();
+                }
+            }
+        } else {
+            warmup = null;
+        }
+
+        if (!readOnly && builder.getGroupCommitLatency() >= 0) {
+            groupCommit = new GroupCommit(
+                    "TarMK group commit [" + directory + "]",
+                    builder.getGroupCommitLatency(),
+                    new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            revisions.syncFlush(flushSegments);
+                            return null;
+                        }
+                    }, stats);
+            revisions.setGroupCommit(groupCommit);
+        } else {
+            groupCommit = null;
+        }
+
         sufficientDiskSpace = new AtomicBoolean(true);
 
         if (readOnly) {
@@ -416,24 +565,41 @@ public class FileStore implements SegmentStore, Closeable {
         } else if (gcOptions.isPaused()) {
             gcListener.info("TarMK GC #{}: estimation skipped because compaction is paused", GC_COUNT);
         } else {
-            gcListener.info("TarMK GC #{}: estimation started", GC_COUNT);
-            Supplier<Boolean> shutdown = newShutdownSignal();
-            CompactionGainEstimate estimate = estimateCompactionGain(shutdown);
-            if (shutdown.get()) {
-                gcListener.info("TarMK GC #{}: estimation interrupted. Skipping compaction.", GC_COUNT);
+            long gain;
+            long reachableSize;
+            long totalSize;
+            if (gcOptions.isIncrementalEstimation() && compactedSize.get() >= 0) {
+                gcListener.info("TarMK GC #{}: incremental estimation started", GC_COUNT);
+                LiveSizeEstimate estimate = estimateLiveSize();
+                gain = estimate.estimateCompactionGain();
+                reachableSize = estimate.getReachableSize();
+                totalSize = estimate.getTotalSize();
+            } else {
+                gcListener.info("TarMK GC #{}: estimation started", GC_COUNT);
+                Supplier<Boolean> shutdown = newShutdownSignal();
+                CompactionGainEstimate estimate = estimateCompactionGain(shutdown);
+                if (shutdown.get()) {
+                    gcListener.info("TarMK GC #{}: estimation interrupted. Skipping compaction.", GC_COUNT);
+                } else {
+                    // Seed the live size for subsequent incremental estimations
+                    long bulkSize = estimateLiveSize().getBulkSize();
+                    compactedSize.set(Math.max(0, estimate.getReachableSize() - bulkSize));
+                }
+                gain = estimate.estimateCompactionGain();
+                reachableSize = estimate.getReachableSize();
+                totalSize = estimate.getTotalSize();
             }
 
-            long gain = estimate.estimateCompactionGain();
             sufficientEstimatedGain = gain >= gainThreshold;
             if (sufficientEstimatedGain) {
                 gcListener.info(
                     "TarMK GC #{}: estimation completed in {} ({} ms). " +
                     "Gain is {}% or {}/{} ({}/{} bytes), so running compaction",
                         GC_COUNT, watch, watch.elapsed(MILLISECONDS), gain,
-                        humanReadableByteCount(estimate.getReachableSize()), humanReadableByteCount(estimate.getTotalSize()),
-                        estimate.getReachableSize(), estimate.getTotalSize());
+                        humanReadableByteCount(reachableSize), humanReadableByteCount(totalSize),
+                        reachableSize, totalSize);
             } else {
-                if (estimate.getTotalSize() == 0) {
+                if (totalSize == 0) {
                     gcListener.skipped(
                             "TarMK GC #{}: estimation completed in {} ({} ms). " +
                             "Skipping compaction for now as repository consists of a single tar file only",
@@ -443,8 +609,8 @@ public class FileStore implements SegmentStore, Closeable {
                         "TarMK GC #{}: estimation completed in {} ({} ms). " +
                         "Gain is {}% or {}/{} ({}/{} bytes), so skipping compaction for now",
                             GC_COUNT, watch, watch.elapsed(MILLISECONDS), gain,
-                            humanReadableByteCount(estimate.getReachableSize()), humanReadableByteCount(estimate.getTotalSize()),
-                            estimate.getReachableSize(), estimate.getTotalSize());
+                            humanReadableByteCount(reachableSize), humanReadableByteCount(totalSize),
+                            reachableSize, totalSize);
                 }
             }
         }
@@ -532,25 +698,16 @@ public class FileStore implements SegmentStore, Closeable {
     }
 
     public final long size() {
-        fileStoreLock.readLock().lock();
-        try {
-            long size = writeFile != null ? writeFile.length() : 0;
-            for (TarReader reader : readers) {
-                size += reader.size();
-            }
-            return size;
-        } finally {
-            fileStoreLock.readLock().unlock();
+        File file = writeFile;
+        long size = file != null ? file.length() : 0;
+        for (TarReader reader : readers) {
+            size += reader.size();
         }
+        return size;
     }
 
     public int readerCount(){
-        fileStoreLock.readLock().lock();
-        try {
-            return readers.size();
-        } finally {
-            fileStoreLock.readLock().unlock();
-        }
+        return readers.size();
     }
 
     /**
@@ -559,18 +716,46 @@ public class FileStore implements SegmentStore, Closeable {
      * @return number of segments
      */
     private int count() {
-        fileStoreLock.readLock().lock();
-        try {
-            int count = 0;
-            if (tarWriter != null) {
-                count += tarWriter.count();
+        int count = 0;
+        TarWriter writer = tarWriter;
+        if (writer != null) {
+            count += writer.count();
+        }
+        for (TarReader reader : readers) {
+            count += reader.count();
+        }
+        return count;
+    }
+
+    /**
+     * Acquire references to the current tar readers. These references must
+     * be released through {@link #release(List)}. Readers already released
+     * by a concurrent cleanup are never returned.
+     *
+     * @return the current tar readers, newest first
+     */
+    @Nonnull
+    private List<TarReader> acquireReaders() {
+        while (true) {
+            List<TarReader> current = readers;
+            List<TarReader> acquired = newArrayListWithCapacity(current.size());
+            for (TarReader reader : current) {
+                if (!reader.retain()) {
+                    break;
+                }
+                acquired.add(reader);
             }
-            for (TarReader reader : readers) {
-                count += reader.count();
+            if (acquired.size() == current.size()) {
+                return acquired;
             }
-            return count;
-        } finally {
-            fileStoreLock.readLock().unlock();
+            // cleanup replaced the readers in the meantime, try again
+            release(acquired);
+        }
+    }
+
+    private static void release(@Nonnull List<TarReader> readers) {
+        for (TarReader reader : readers) {
+            reader.release();
         }
     }
 
@@ -582,16 +767,39 @@ public class FileStore implements SegmentStore, Closeable {
      */
     CompactionGainEstimate estimateCompactionGain(Supplier<Boolean> stop) {
         CompactionGainEstimate estimate = new CompactionGainEstimate(segmentReader.readHeadState(), count(), stop);
-        fileStoreLock.readLock().lock();
+        List<TarReader> current = acquireReaders();
         try {
-            for (TarReader reader : readers) {
+            for (TarReader reader : current) {
                 reader.accept(estimate);
                 if (stop.get()) {
                     break;
                 }
             }
         } finally {
-            fileStoreLock.readLock().unlock();
+            release(current);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimate the compaction gain from the sizes of the segments by gc
+     * generation as recorded in the indexes of the tar files.
+     * @return compaction gain estimate
+     */
+    @Nonnull
+    LiveSizeEstimate estimateLiveSize() {
+        LiveSizeEstimate estimate = new LiveSizeEstimate(getGcGeneration(),
+                gcOptions.getRetainedGenerations(), compactedSize.get());
+        writerLock.readLock().lock();
+        try {
+            if (tarWriter != null) {
+                estimate.add(writeFile.getName(), tarWriter.getGenerationSizes());
+            }
+            for (TarReader reader : readers) {
+                estimate.add(reader.getFile().getName(), reader.getGenerationSizes());
+            }
+        } finally {
+            writerLock.readLock().unlock();
         }
         return estimate;
     }
@@ -601,21 +809,7 @@ public class FileStore implements SegmentStore, Closeable {
     }
 
     public void flush() throws IOException {
-        revisions.flush(new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                // FIXME OAK-4291: FileStore.flush prone to races leading to corruption
-                // There is a small windows that could lead to a corrupted store:
-                // if we crash right after setting the persisted head but before any delay-flushed
-                // SegmentBufferWriter instance flushes (see SegmentBufferWriterPool.returnWriter())
-                // then that data is lost although it might be referenced from the persisted head already.
-                // Need a test case. Possible fix: return a future from flush() and set the persisted head
-                // in the completion handler.
-                segmentWriter.flush();
-                tarWriter.flush();
-                return null;
-            }
-        });
+        revisions.flush(flushSegments);
 
         if (cleanupNeeded.getAndSet(false)) {
             // FIXME OAK-4138: Decouple revision cleanup from the flush thread
@@ -671,30 +865,88 @@ public class FileStore implements SegmentStore, Closeable {
         Set<UUID> bulkRefs = newHashSet();
         Map<TarReader, TarReader> cleaned = newLinkedHashMap();
 
-        fileStoreLock.writeLock().lock();
-        try {
-            gcListener.info("TarMK GC #{}: cleanup started. Current repository size is {} ({} bytes)",
-                    GC_COUNT, humanReadableByteCount(initialSize), initialSize);
+        gcListener.info("TarMK GC #{}: cleanup started. Current repository size is {} ({} bytes)",
+                GC_COUNT, humanReadableByteCount(initialSize), initialSize);
 
-            newWriter();
-            segmentCache.clear();
+        segmentCache.clear();
 
-            // Suggest to the JVM that now would be a good time
-            // to clear stale weak references in the SegmentTracker
-            System.gc();
+        // Suggest to the JVM that now would be a good time
+        // to clear stale weak references in the SegmentTracker
+        // before they are collected as bulk references below
+        System.gc();
 
+        // The bulk references and the readers must be captured together
+        // with the switch to the new writer. Otherwise a concurrent roll
+        // over of the tar file could add a reader containing bulk segments
+        // only referenced from not yet flushed segment writers.
+        List<TarReader> current;
+        writerLock.writeLock().lock();
+        try {
+            newWriter();
             for (SegmentId id : tracker.getReferencedSegmentIds()) {
                 if (!isDataSegmentId(id.getLeastSignificantBits())) {
                     bulkRefs.add(id.asUUID());
                 }
             }
-            for (TarReader reader : readers) {
+            current = acquireReaders();
+        } finally {
+            writerLock.writeLock().unlock();
+        }
+
+        List<TarReader> oldReaders = newArrayList();
+        Set<UUID> reclaimed = newHashSet();
+        try {
+            for (TarReader reader : current) {
                 cleaned.put(reader, reader);
             }
+            sweep(cleaned, bulkRefs, reclaimed, reclaimGeneration, oldReaders);
         } finally {
-            fileStoreLock.writeLock().unlock();
+            release(current);
         }
+        tracker.clearSegmentIdTables(reclaimed, gcInfo);
 
+        // Release the references to the old readers *after* setting readers
+        // to the new readers. Each old reader is closed once the last
+        // concurrent access to it has completed.
+        LinkedList<File> toRemove = newLinkedList();
+        for (TarReader oldReader : oldReaders) {
+            oldReader.release();
+            File file = oldReader.getFile();
+            gcListener.info("TarMK GC #{}: cleanup marking file for deletion: {}", GC_COUNT, file.getName());
+            toRemove.addLast(file);
+        }
+
+        long finalSize = size();
+        approximateSize.set(finalSize);
+        stats.reclaimed(initialSize - finalSize);
+        // FIXME OAK-4106: Reclaimed size reported by FileStore.cleanup is off
+        gcListener.cleaned(initialSize - finalSize, finalSize);
+        gcListener.info("TarMK GC #{}: cleanup completed in {} ({} ms). Post cleanup size is {} ({} bytes)" +
+                " and space reclaimed {} ({} bytes).",
+                GC_COUNT, watch, watch.elapsed(MILLISECONDS),
+                humanReadableByteCount(finalSize), finalSize,
+                humanReadableByteCount(initialSize - finalSize), initialSize - finalSize);
+        return toRemove;
+    }
+
+    /**
+     * Mark and sweep the given readers and replace them with the cleaned
+     * readers in {@link #readers}.
+     *
+     * @param cleaned      map from the readers to clean to themselves. Receives
+     *                     the cleaned readers as values.
+     * @param bulkRefs     bulk segment gc roots
+     * @param reclaimed    receives the actually reclaimed segments
+     * @param reclaimGeneration  reclaim generation predicate for data segments
+     * @param oldReaders   receives the readers that were replaced
+     */
+    private void sweep(
+            @Nonnull Map<TarReader, TarReader> cleaned,
+            @Nonnull Set<UUID> bulkRefs,
+            @Nonnull Set<UUID> reclaimed,
+            @Nonnull Predicate<Integer> reclaimGeneration,
+            @Nonnull List<TarReader> oldReaders)
+    throws IOException {
         Set<UUID> reclaim = newHashSet();
         for (TarReader reader : cleaned.keySet()) {
             reader.mark(bulkRefs, reclaim, reclaimGeneration);
@@ -706,7 +958,6 @@ public class FileStore implements SegmentStore, Closeable {
                 break;
             }
         }
-        Set<UUID> reclaimed = newHashSet();
         for (TarReader reader : cleaned.keySet()) {
             cleaned.put(reader, reader.sweep(reclaim, reclaimed));
             if (shutdown) {
@@ -715,9 +966,7 @@ public class FileStore implements SegmentStore, Closeable {
             }
         }
 
-        List<TarReader> oldReaders = newArrayList();
-        fileStoreLock.writeLock().lock();
-        try {
+        synchronized (readersLock) {
             // Replace current list of reader with the cleaned readers taking care not to lose
             // any new reader that might have come in through concurrent calls to newWriter()
             List<TarReader> newReaders = newArrayList();
@@ -734,33 +983,9 @@ public class FileStore implements SegmentStore, Closeable {
                     newReaders.add(reader);
                 }
             }
+            segmentIndex = SegmentLocationIndex.build(newReaders);
             readers = newReaders;
-        } finally {
-            fileStoreLock.writeLock().unlock();
-        }
-        tracker.clearSegmentIdTables(reclaimed, gcInfo);
-
-        // Close old readers *after* setting readers to the new readers to avoid accessing
-        // a closed reader from readSegment()
-        LinkedList<File> toRemove = newLinkedList();
-        for (TarReader oldReader : oldReaders) {
-            closeAndLogOnFail(oldReader);
-            File file = oldReader.getFile();
-            gcListener.info("TarMK GC #{}: cleanup marking file for deletion: {}", GC_COUNT, file.getName());
-            toRemove.addLast(file);
         }
-
-        long finalSize = size();
-        approximateSize.set(finalSize);
-        stats.reclaimed(initialSize - finalSize);
-        // FIXME OAK-4106: Reclaimed size reported by FileStore.cleanup is off
-        gcListener.cleaned(initialSize - finalSize, finalSize);
-        gcListener.info("TarMK GC #{}: cleanup completed in {} ({} ms). Post cleanup size is {} ({} bytes)" +
-                " and space reclaimed {} ({} bytes).",
-                GC_COUNT, watch, watch.elapsed(MILLISECONDS),
-                humanReadableByteCount(finalSize), finalSize,
-                humanReadableByteCount(initialSize - finalSize), initialSize - finalSize);
-        return toRemove;
     }
 
     /**
@@ -777,18 +1002,21 @@ public class FileStore implements SegmentStore, Closeable {
      */
     public void collectBlobReferences(ReferenceCollector collector) throws IOException {
         segmentWriter.flush();
-        List<TarReader> tarReaders = newArrayList();
-        fileStoreLock.writeLock().lock();
+        writerLock.writeLock().lock();
         try {
             newWriter();
-            tarReaders.addAll(this.readers);
         } finally {
-            fileStoreLock.writeLock().unlock();
+            writerLock.writeLock().unlock();
         }
 
         int minGeneration = getGcGeneration() - gcOptions.getRetainedGenerations() + 1;
-        for (TarReader tarReader : tarReaders) {
-            tarReader.collectBlobReferences(this, collector, minGeneration);
+        List<TarReader> tarReaders = acquireReaders();
+        try {
+            for (TarReader tarReader : tarReaders) {
+                tarReader.collectBlobReferences(this, collector, minGeneration);
+            }
+        } finally {
+            release(tarReaders);
         }
     }
 
@@ -874,6 +1102,20 @@ public class FileStore implements SegmentStore, Closeable {
         SegmentBufferWriter bufferWriter = new SegmentBufferWriter(
                 this, tracker, segmentReader, "c", newGeneration);
         Supplier<Boolean> cancel = newCancelCompactionCondition();
+        int concurrency = gcOptions.getCompactionConcurrency();
+        if (!gcOptions.isOffline() && concurrency > 1) {
+            // Compact the subtrees in parallel first. The compaction of the
+            // whole tree below then picks them up from the node cache.
+            int subtrees = new ParallelCompaction(this, tracker, segmentReader,
+                    segmentWriter, gcListener, newGeneration, concurrency)
+                    .compact(before, cancel);
+            if (subtrees < 0) {
+                gcListener.info("TarMK GC #{}: compaction cancelled.", GC_COUNT);
+                return false;
+            }
+            gcListener.info("TarMK GC #{}: compacted {} subtrees using {} threads",
+                    GC_COUNT, subtrees, concurrency);
+        }
         SegmentNodeState after = compact(bufferWriter, before, cancel);
         if (after == null) {
             gcListener.info("TarMK GC #{}: compaction cancelled.", GC_COUNT);
@@ -920,6 +1162,7 @@ public class FileStore implements SegmentStore, Closeable {
             }
 
             if (success) {
+                compactedSize.set(estimateLiveSize().getCurrentGenerationSize());
                 gcListener.compacted(SUCCESS, newGeneration);
                 gcListener.info("TarMK GC #{}: compaction succeeded in {} ({} ms), after {} cycles",
                         GC_COUNT, watch, watch.elapsed(MILLISECONDS), cycles - 1);
@@ -993,7 +1236,7 @@ public class FileStore implements SegmentStore, Closeable {
     }
 
     public Iterable<SegmentId> getSegmentIds() {
-        fileStoreLock.readLock().lock();
+        writerLock.readLock().lock();
         try {
             List<SegmentId> ids = newArrayList();
             if (tarWriter != null) {
@@ -1012,7 +1255,7 @@ public class FileStore implements SegmentStore, Closeable {
             }
             return ids;
         } finally {
-            fileStoreLock.readLock().unlock();
+            writerLock.readLock().unlock();
         }
     }
 
@@ -1044,30 +1287,45 @@ public class FileStore implements SegmentStore, Closeable {
         // avoid deadlocks by closing (and joining) the background
         // threads before acquiring the synchronization lock
         closeAndLogOnFail(compactionThread);
+        if (groupCommit != null) {
+            revisions.setGroupCommit(null);
+            groupCommit.close();
+        }
         closeAndLogOnFail(flushThread);
         closeAndLogOnFail(diskSpaceThread);
+        closeAndLogOnFail(prefetcher);
+        closeAndLogOnFail(warmup);
         try {
             flush();
             revisions.close();
+            if (warmup != null && tarWriter != null) {
+                try {
+                    SegmentCacheWarmup.writeSnapshot(directory, segmentCache.getHotSegmentIds());
+                } catch (IOException e) {
+                    log.warn("Failed to write the segment cache snapshot of the TarMK at {}", directory, e);
+                }
+            }
             // FIXME OAK-4291: FileStore.flush prone to races leading to corruption
             // Replace this with a way to "close" the underlying SegmentBufferWriter(s)
             // tracker.getWriter().dropCache();
-            fileStoreLock.writeLock().lock();
+            writerLock.writeLock().lock();
             try {
                 closeAndLogOnFail(tarWriter);
 
-                List<TarReader> list = readers;
-                readers = newArrayList();
-                for (TarReader reader : list) {
-                    closeAndLogOnFail(reader);
+                List<TarReader> list;
+                synchronized (readersLock) {
+                    list = readers;
+                    readers = newArrayList();
+                    segmentIndex = new SegmentLocationIndex();
                 }
+                release(list);
 
                 if (lock != null) {
                     lock.release();
                 }
                 closeAndLogOnFail(lockFile);
             } finally {
-                fileStoreLock.writeLock().unlock();
+                writerLock.writeLock().unlock();
             }
         } catch (IOException e) {
             throw new RuntimeException(
@@ -1087,111 +1345,134 @@ public class FileStore implements SegmentStore, Closeable {
     }
 
     private boolean containsSegment(long msb, long lsb) {
-        for (TarReader reader : readers) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
-            }
+        if (segmentIndex.containsEntry(msb, lsb)) {
+            return true;
         }
 
         if (tarWriter != null) {
-            fileStoreLock.readLock().lock();
+            writerLock.readLock().lock();
             try {
                 if (tarWriter.containsEntry(msb, lsb)) {
                     return true;
                 }
             } finally {
-                fileStoreLock.readLock().unlock();
+                writerLock.readLock().unlock();
             }
         }
 
         // the writer might have switched to a new file,
         // so we need to re-check the readers
-        for (TarReader reader : readers) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
-            }
-        }
-
-        return false;
+        return segmentIndex.containsEntry(msb, lsb);
     }
 
     @Override
     @Nonnull
     public Segment readSegment(final SegmentId id) {
+        if (prefetcher != null) {
+            prefetcher.accessed(id);
+        }
         try {
             return segmentCache.geSegment(id, new Callable<Segment>() {
                 @Override
                 public Segment call() throws Exception {
-                    long msb = id.getMostSignificantBits();
-                    long lsb = id.getLeastSignificantBits();
-
-                    for (TarReader reader : readers) {
-                        try {
-                            if (reader.isClosed()) {
-                                // Cleanup might already have closed the file.
-                                // The segment should be available from another file.
-                                log.debug("Skipping closed tar file {}", reader);
-                                continue;
-                            }
-
-                            ByteBuffer buffer = reader.readEntry(msb, lsb);
-                            if (buffer != null) {
-                                return new Segment(FileStore.this, segmentReader, id, buffer);
-                            }
-                        } catch (IOException e) {
-                            log.warn("Failed to read from tar file {}", reader, e);
-                        }
+                    Segment segment = loadSegment(id);
+                    if (prefetcher != null) {
+                        prefetcher.prefetch(segment);
                     }
+                    return segment;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SegmentNotFoundException
+                ? (SegmentNotFoundException) e.getCause()
+                : new SegmentNotFoundException(id, e);
+        }
+    }
 
-                    if (tarWriter != null) {
-                        fileStoreLock.readLock().lock();
-                        try {
-                            try {
-                                ByteBuffer buffer = tarWriter.readEntry(msb, lsb);
-                                if (buffer != null) {
-                                    return new Segment(FileStore.this, segmentReader, id, buffer);
-                                }
-                            } catch (IOException e) {
-                                log.warn("Failed to read from tar file {}", tarWriter, e);
-                            }
-                        } finally {
-                            fileStoreLock.readLock().unlock();
-                        }
-                    }
+    @Nonnull
+    private Segment loadSegment(@Nonnull SegmentId id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
 
-                    // the writer might have switched to a new file,
-                    // so we need to re-check the readers
-                    for (TarReader reader : readers) {
-                        try {
-                            if (reader.isClosed()) {
-                                // Cleanup might already have closed the file.
-                                // The segment should be available from another file.
-                                log.info("Skipping closed tar file {}", reader);
-                                continue;
-                            }
+        ByteBuffer buffer = readFromIndex(msb, lsb);
+        if (buffer != null) {
+            return new Segment(this, segmentReader, id, buffer);
+        }
 
-                            ByteBuffer buffer = reader.readEntry(msb, lsb);
-                            if (buffer != null) {
-                                return new Segment(FileStore.this, segmentReader, id, buffer);
-                            }
-                        } catch (IOException e) {
-                            log.warn("Failed to read from tar file {}", reader, e);
-                        }
+        if (tarWriter != null) {
+            writerLock.readLock().lock();
+            try {
+                try {
+                    buffer = tarWriter.readEntry(msb, lsb);
+                    if (buffer != null) {
+                        return new Segment(this, segmentReader, id, buffer);
                     }
+                } catch (IOException e) {
+                    log.warn("Failed to read from tar file {}", tarWriter, e);
+                }
+            } finally {
+                writerLock.readLock().unlock();
+            }
+        }
+
+        // the writer might have switched to a new file,
+        // so we need to re-check the readers
+        buffer = readFromIndex(msb, lsb);
+        if (buffer != null) {
+            return new Segment(this, segmentReader, id, buffer);
+        }
 
-                    throw new SegmentNotFoundException(id);
+        // Cleanup might have closed the file the segment was
+        // located in before the index was rebuilt. The segment
+        // should be available from another file.
+        for (TarReader reader : readers) {
+            if (!reader.retain()) {
+                log.info("Skipping released tar file {}", reader);
+                continue;
+            }
+            try {
+                buffer = reader.readEntry(msb, lsb);
+                if (buffer != null) {
+                    return new Segment(this, segmentReader, id, buffer);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read from tar file {}", reader, e);
+            } finally {
+                reader.release();
+            }
+        }
+
+        throw new SegmentNotFoundException(id);
+    }
+
+    /**
+     * Load a segment into the segment cache unless it is not in this store
+     * anymore. Does not trigger prefetching.
+     */
+    private void warmUp(@Nonnull final SegmentId id) throws ExecutionException {
+        if (containsSegment(id)) {
+            segmentCache.geSegment(id, new Callable<Segment>() {
+                @Override
+                public Segment call() {
+                    return loadSegment(id);
                 }
             });
-        } catch (ExecutionException e) {
-            throw e.getCause() instanceof SegmentNotFoundException
-                ? (SegmentNotFoundException) e.getCause()
-                : new SegmentNotFoundException(id, e);
+        }
+    }
+
+    @CheckForNull
+    private ByteBuffer readFromIndex(long msb, long lsb) {
+        try {
+            return segmentIndex.readEntry(msb, lsb);
+        } catch (IOException e) {
+            log.warn("Failed to read segment {} from tar file", new UUID(msb, lsb), e);
+            return null;
         }
     }
 
     @Override
     public void writeSegment(SegmentId id, byte[] buffer, int offset, int length) throws IOException {
-        fileStoreLock.writeLock().lock();
+        writerLock.writeLock().lock();
         try {
             int generation = Segment.getGcGeneration(wrap(buffer, offset, length), id.asUUID());
             long size = tarWriter.writeEntry(
@@ -1203,7 +1484,7 @@ public class FileStore implements SegmentStore, Closeable {
             }
             approximateSize.addAndGet(TarWriter.BLOCK_SIZE + length + TarWriter.getPaddingSize(length));
         } finally {
-            fileStoreLock.writeLock().unlock();
+            writerLock.writeLock().unlock();
         }
 
         // Keep this data segment in memory as it's likely to be accessed soon
@@ -1240,24 +1521,28 @@ public class FileStore implements SegmentStore, Closeable {
 
     /**
      * Switch to a new tar writer.
-     * This method may only be called when holding the write lock of {@link #fileStoreLock}
+     * This method may only be called when holding the write lock of {@link #writerLock}
      * @throws IOException
      */
     private void newWriter() throws IOException {
         if (tarWriter.isDirty()) {
             tarWriter.close();
 
-            List<TarReader> list =
-                    newArrayListWithCapacity(1 + readers.size());
-            list.add(TarReader.open(writeFile, memoryMapping));
-            list.addAll(readers);
-            readers = list;
+            TarReader reader = TarReader.open(writeFile, memoryMapping);
+            synchronized (readersLock) {
+                List<TarReader> list =
+                        newArrayListWithCapacity(1 + readers.size());
+                list.add(reader);
+                list.addAll(readers);
+                segmentIndex.add(reader);
+                readers = list;
+            }
 
             writeNumber++;
             writeFile = new File(
                     directory,
                     String.format(FILE_NAME_FORMAT, writeNumber, "a"));
-            tarWriter = new TarWriter(writeFile, stats);
+            tarWriter = new TarWriter(writeFile, stats, segmentCompression);
         }
     }
 
@@ -1285,28 +1570,33 @@ public class FileStore implements SegmentStore, Closeable {
     }
 
     public Map<UUID, List<UUID>> getTarGraph(String fileName) throws IOException {
-        for (TarReader reader : readers) {
-            if (fileName.equals(reader.getFile().getName())) {
-                Map<UUID, List<UUID>> graph = newHashMap();
-                for (UUID uuid : reader.getUUIDs()) {
-                    graph.put(uuid, null);
-                }
-                Map<UUID, List<UUID>> g = reader.getGraph(false);
-                if (g != null) {
-                    graph.putAll(g);
+        List<TarReader> current = acquireReaders();
+        try {
+            for (TarReader reader : current) {
+                if (fileName.equals(reader.getFile().getName())) {
+                    Map<UUID, List<UUID>> graph = newHashMap();
+                    for (UUID uuid : reader.getUUIDs()) {
+                        graph.put(uuid, null);
+                    }
+                    Map<UUID, List<UUID>> g = reader.getGraph(false);
+                    if (g != null) {
+                        graph.putAll(g);
+                    }
+                    return graph;
                 }
-                return graph;
             }
+        } finally {
+            release(current);
         }
         return emptyMap();
     }
 
     private void setRevision(String rootRevision) {
-        fileStoreLock.writeLock().lock();
+        writerLock.writeLock().lock();
         try {
             revisions.setHeadId(RecordId.fromString(this, rootRevision));
         } finally {
-            fileStoreLock.writeLock().unlock();
+            writerLock.writeLock().unlock();
         }
     }
 
@@ -1386,6 +1676,62 @@ public class FileStore implements SegmentStore, Closeable {
             }
         }
 
+        /**
+         * Verify the segments in all tar files of this store. The tar files
+         * are verified concurrently, each of them by a single thread. See
+         * {@code TarReader.verify()} for the checks applied to the individual
+         * segments. Additionally all segments referenced through the segment
+         * graphs of the tar files must be present in the store. Note that
+         * missing references are not necessarily a problem as they might
+         * originate from garbage not reclaimed yet.
+         *
+         * @param threads  number of tar files to verify concurrently
+         * @return  descriptions of the problems found, empty if none
+         * @throws IOException
+         */
+        @Nonnull
+        public List<String> verifySegments(int threads) throws IOException {
+            List<TarReader> readers = super.readers;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<List<String>>> results = newArrayList();
+                final List<Set<UUID>> references = newArrayList();
+                for (final TarReader reader : readers) {
+                    final Set<UUID> refs = newHashSet();
+                    references.add(refs);
+                    results.add(executor.submit(new Callable<List<String>>() {
+                        @Override
+                        public List<String> call() throws IOException {
+                            return reader.verify(refs);
+                        }
+                    }));
+                }
+
+                List<String> problems = newArrayList();
+                for (Future<List<String>> result : results) {
+                    problems.addAll(result.get());
+                }
+                Set<UUID> missing = newHashSet();
+                for (Set<UUID> refs : references) {
+                    for (UUID ref : refs) {
+                        long msb = ref.getMostSignificantBits();
+                        long lsb = ref.getLeastSignificantBits();
+                        if (!super.containsSegment(msb, lsb) && missing.add(ref)) {
+                            problems.add("Missing referenced segment " + ref);
+                        }
+                    }
+                }
+                return problems;
+            } catch (InterruptedException e) {
+                currentThread().interrupt();
+                throw new IOException("Interrupted while verifying segments", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to verify segments", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
         @Override
         public void writeSegment(SegmentId id, byte[] data,
                 int offset, int length) {
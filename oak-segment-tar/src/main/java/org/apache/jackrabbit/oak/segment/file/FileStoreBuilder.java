@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Collections.singleton;
@@ -68,6 +69,16 @@ public class FileStoreBuilder {
 
     private boolean memoryMapping;
 
+    private int groupCommitLatency = -1;   // -1 -> no group commit
+
+    private int prefetchThreads;   // 0 -> no prefetching
+
+    private int warmupThreads;   // 0 -> no segment cache warm up
+
+    private boolean warmupInBackground;
+
+    private boolean segmentCompression;
+
     @Nonnull
     private final DelegatingGCMonitor gcMonitor = new DelegatingGCMonitor(
             singleton(new LoggingGCMonitor(LOG)));
@@ -225,6 +236,69 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Enable group commit. With group commit each commit waits until its
+     * changes have been persisted to the journal. A flusher thread groups
+     * commits arriving within {@code maxLatency} milliseconds of each other
+     * and persists them with a single sync of the tar file and the journal.
+     * @param maxLatency  maximal time in milliseconds a commit waits for
+     *                    further commits to join its group, must be {@code >= 0}.
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withGroupCommit(int maxLatency) {
+        checkArgument(maxLatency >= 0);
+        this.groupCommitLatency = maxLatency;
+        return this;
+    }
+
+    /**
+     * Enable prefetching of segments. Whenever a data segment is loaded
+     * on demand, the data segments it references are loaded into the
+     * segment cache in the background.
+     * @param threads  number of threads loading segments, {@code 0} disables
+     *                 prefetching.
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withSegmentPrefetch(int threads) {
+        checkArgument(threads >= 0);
+        this.prefetchThreads = threads;
+        return this;
+    }
+
+    /**
+     * Enable the warm up of the segment cache. The file store records the
+     * ids of the segments in the hot set of its segment cache when it is
+     * closed and loads these segments again when it is opened.
+     * @param threads     number of threads loading segments, {@code 0} disables
+     *                    the warm up.
+     * @param background  if {@code true} the segments are loaded in the
+     *                    background, otherwise {@link #build()} blocks until
+     *                    all segments are loaded.
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withCacheWarmup(int threads, boolean background) {
+        checkArgument(threads >= 0);
+        this.warmupThreads = threads;
+        this.warmupInBackground = background;
+        return this;
+    }
+
+    /**
+     * Enable compression of data segments in the tar files. Tar files
+     * written without compression remain readable and the option can be
+     * switched between restarts. Bulk segments are never compressed.
+     * @param compression  {@code true} to compress data segments
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withSegmentCompression(boolean compression) {
+        this.segmentCompression = compression;
+        return this;
+    }
+
     /**
      * {@link GCMonitor} for monitoring this files store's gc process.
      * @param gcMonitor
@@ -267,6 +341,9 @@ public class FileStoreBuilder {
      * <li>max file size: 256MB</li>
      * <li>cache size: 256MB</li>
      * <li>memory mapping: on for 64 bit JVMs off otherwise</li>
+     * <li>group commit: off</li>
+     * <li>segment prefetch: off</li>
+     * <li>segment cache warm up: off</li>
      * <li>whiteboard: none. No {@link GCMonitor} tracking</li>
      * <li>statsProvider: {@link StatisticsProvider#NOOP}</li>
      * <li>GC options: {@link SegmentGCOptions#DEFAULT}</li>
@@ -353,6 +430,26 @@ public class FileStoreBuilder {
         return memoryMapping;
     }
 
+    int getGroupCommitLatency() {
+        return groupCommitLatency;
+    }
+
+    int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    int getWarmupThreads() {
+        return warmupThreads;
+    }
+
+    boolean isWarmupInBackground() {
+        return warmupInBackground;
+    }
+
+    boolean getSegmentCompression() {
+        return segmentCompression;
+    }
+
     @Nonnull
     GCListener getGcListener() {
         return gcListener;
@@ -19,31 +19,53 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.annotation.Nonnull;
 import javax.management.openmbean.CompositeData;
 
 import org.apache.jackrabbit.api.stats.TimeSeries;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.apache.jackrabbit.stats.TimeSeriesStatsUtil.asCompositeData;
 
 public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
+    public static final String GROUP_COMMIT_BATCH_SIZE = "SEGMENT_GROUP_COMMIT_BATCH_SIZE";
+    public static final String GROUP_COMMIT_FLUSH_TIME = "SEGMENT_GROUP_COMMIT_FLUSH_TIME";
+    public static final String PREFETCH_COUNT = "SEGMENT_PREFETCH_COUNT";
+    public static final String PREFETCH_HITS = "SEGMENT_PREFETCH_HITS";
+    public static final String PREFETCH_WASTE = "SEGMENT_PREFETCH_WASTE";
     private final StatisticsProvider statisticsProvider;
     private final FileStore store;
     private final MeterStats writeStats;
     private final CounterStats repoSize;
+    private final HistogramStats groupCommitBatchSize;
+    private final TimerStats groupCommitFlushTime;
+    private final CounterStats prefetchCount;
+    private final CounterStats prefetchHits;
+    private final CounterStats prefetchWaste;
+    private final AtomicLong warmupSegments = new AtomicLong();
+    private final AtomicLong warmupLoaded = new AtomicLong();
 
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
         this.store = store;
         this.writeStats = statisticsProvider.getMeter(SEGMENT_WRITES, StatsOptions.DEFAULT);
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
+        this.groupCommitBatchSize = statisticsProvider.getHistogram(GROUP_COMMIT_BATCH_SIZE, StatsOptions.METRICS_ONLY);
+        this.groupCommitFlushTime = statisticsProvider.getTimer(GROUP_COMMIT_FLUSH_TIME, StatsOptions.METRICS_ONLY);
+        this.prefetchCount = statisticsProvider.getCounterStats(PREFETCH_COUNT, StatsOptions.METRICS_ONLY);
+        this.prefetchHits = statisticsProvider.getCounterStats(PREFETCH_HITS, StatsOptions.METRICS_ONLY);
+        this.prefetchWaste = statisticsProvider.getCounterStats(PREFETCH_WASTE, StatsOptions.METRICS_ONLY);
         repoSize.inc(initialSize);
     }
 
@@ -60,6 +82,56 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         repoSize.dec(size);
     }
 
+    /**
+     * Notifies about a group commit flush.
+     *
+     * @param batchSize  number of commits persisted by the flush
+     * @param flushTime  time in nanoseconds spent writing and syncing the
+     *                   tar file and the journal
+     */
+    void groupCommitted(long batchSize, long flushTime) {
+        groupCommitBatchSize.update(batchSize);
+        groupCommitFlushTime.update(flushTime, NANOSECONDS);
+    }
+
+    /**
+     * Notifies about a segment loaded by the prefetcher
+     */
+    void prefetched() {
+        prefetchCount.inc();
+    }
+
+    /**
+     * Notifies about a read of a prefetched segment
+     */
+    void prefetchHit() {
+        prefetchHits.inc();
+    }
+
+    /**
+     * Notifies about a prefetched segment that was not read in time
+     */
+    void prefetchWasted() {
+        prefetchWaste.inc();
+    }
+
+    /**
+     * Notifies about the start of the segment cache warm up
+     *
+     * @param segments  number of segments to load
+     */
+    void warmupStarted(long segments) {
+        warmupSegments.set(segments);
+        warmupLoaded.set(0);
+    }
+
+    /**
+     * Notifies about a segment processed by the segment cache warm up
+     */
+    void warmupLoaded() {
+        warmupLoaded.incrementAndGet();
+    }
+
     //~--------------------------------< FileStoreStatsMBean >
 
     @Override
@@ -84,6 +156,41 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         return asCompositeData(getTimeSeries(SEGMENT_REPO_SIZE), SEGMENT_REPO_SIZE);
     }
 
+    @Override
+    public long getPrefetchCount() {
+        return prefetchCount.getCount();
+    }
+
+    @Override
+    public long getPrefetchHitCount() {
+        return prefetchHits.getCount();
+    }
+
+    @Override
+    public long getPrefetchWasteCount() {
+        return prefetchWaste.getCount();
+    }
+
+    @Override
+    public long getCacheWarmupSegmentCount() {
+        return warmupSegments.get();
+    }
+
+    @Override
+    public long getCacheWarmupLoadedCount() {
+        return warmupLoaded.get();
+    }
+
+    @Override
+    public long getEstimatedCompactionGain() {
+        return store.estimateLiveSize().estimateCompactionGain();
+    }
+
+    @Override
+    public String[] getTarFileGarbageRatios() {
+        return store.estimateLiveSize().getGarbageRatios();
+    }
+
     @Override
     public String fileStoreInfoAsString() {
         return String.format("Segment store size : %s%n" +
@@ -39,5 +39,42 @@ public interface FileStoreStatsMBean {
      */
     CompositeData getRepositorySize();
 
+    /**
+     * @return  number of segments loaded by the prefetcher
+     */
+    long getPrefetchCount();
+
+    /**
+     * @return  number of prefetched segments that were subsequently read
+     */
+    long getPrefetchHitCount();
+
+    /**
+     * @return  number of prefetched segments that were not read in time
+     */
+    long getPrefetchWasteCount();
+
+    /**
+     * @return  number of segments to load by the segment cache warm up
+     */
+    long getCacheWarmupSegmentCount();
+
+    /**
+     * @return  number of segments the segment cache warm up has processed so far
+     */
+    long getCacheWarmupLoadedCount();
+
+    /**
+     * @return  compaction gain in percent as estimated from the sizes of the
+     *          segments by gc generation
+     */
+    long getEstimatedCompactionGain();
+
+    /**
+     * @return  the ratio of data segments of older gc generations in each tar
+     *          file, worst first
+     */
+    String[] getTarFileGarbageRatios();
+
     String fileStoreInfoAsString();
 }
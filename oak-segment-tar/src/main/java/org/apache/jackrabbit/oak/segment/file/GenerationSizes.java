@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.collect.Maps.newTreeMap;
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Sizes of the segments in one or more tar files. Data segments are accounted
+ * by their gc generation, bulk segments separately as they have no generation.
+ * Sizes include the tar headers and padding of the entries. Instances of this
+ * class are not thread safe.
+ */
+class GenerationSizes {
+
+    private final SortedMap<Integer, Long> dataSizes = newTreeMap();
+
+    private long bulkSize;
+
+    /**
+     * Account a segment.
+     * @param lsb         the least significant bits of the segment id
+     * @param generation  the gc generation of the segment
+     * @param size        the size of the segment's tar entry data
+     */
+    void add(long lsb, int generation, int size) {
+        long entrySize = TarReader.getEntrySize(size);
+        if (isDataSegmentId(lsb)) {
+            addDataSize(generation, entrySize);
+        } else {
+            bulkSize += entrySize;
+        }
+    }
+
+    /**
+     * Account all segments accounted by {@code sizes}.
+     */
+    void addAll(GenerationSizes sizes) {
+        for (Map.Entry<Integer, Long> entry : sizes.dataSizes.entrySet()) {
+            addDataSize(entry.getKey(), entry.getValue());
+        }
+        bulkSize += sizes.bulkSize;
+    }
+
+    private void addDataSize(int generation, long size) {
+        Long current = dataSizes.get(generation);
+        dataSizes.put(generation, current == null ? size : current + size);
+    }
+
+    /**
+     * @return  size of the data segments of the given generation
+     */
+    long getDataSize(int generation) {
+        Long size = dataSizes.get(generation);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * @return  size of the data segments of generations older than {@code generation}
+     */
+    long getDataSizeBefore(int generation) {
+        long size = 0;
+        for (long s : dataSizes.headMap(generation).values()) {
+            size += s;
+        }
+        return size;
+    }
+
+    long getBulkSize() {
+        return bulkSize;
+    }
+
+    long getTotalSize() {
+        long size = bulkSize;
+        for (long s : dataSizes.values()) {
+            size += s;
+        }
+        return size;
+    }
+
+}
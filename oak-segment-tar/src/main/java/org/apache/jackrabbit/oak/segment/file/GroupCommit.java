@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group commit of the head state to the journal. Committers call
+ * {@link #commit()} after having set a new head state and are blocked
+ * until a flush that started after their call completed. A dedicated
+ * flusher thread collects the requests of all committers arriving within
+ * {@code maxLatency} milliseconds of the first pending request and
+ * persists them with a single flush, i.e. with a single write of the tar
+ * file and the journal and a single {@code fsync} for each of them.
+ * Requests arriving while a flush is in progress are included in the
+ * next batch.
+ */
+class GroupCommit implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommit.class);
+
+    /**
+     * Flushes the current head state. Called from the flusher thread only.
+     */
+    @Nonnull
+    private final Callable<Void> flush;
+
+    @Nonnull
+    private final FileStoreStats stats;
+
+    private final long maxLatency;
+
+    @Nonnull
+    private final Thread flusher;
+
+    /**
+     * Number of requests received so far. Guarded by this instance.
+     */
+    private long requested;
+
+    /**
+     * Number of requests persisted so far. Guarded by this instance.
+     */
+    private long completed;
+
+    /**
+     * Time in nanoseconds at which the oldest pending request was received.
+     * Guarded by this instance.
+     */
+    private long oldestPending;
+
+    /**
+     * Requests in the range ({@code failedFrom}, {@code failedUpTo}] belong
+     * to the last batch that failed to flush. Guarded by this instance.
+     */
+    private long failedFrom;
+
+    private long failedUpTo;
+
+    private IOException failure;
+
+    private boolean closed;
+
+    /**
+     * @param name        name of the flusher thread
+     * @param maxLatency  time in milliseconds to wait for further commits
+     *                    to join a batch
+     * @param flush       callback flushing the current head state
+     * @param stats       statistics receiving batch sizes and flush times
+     */
+    GroupCommit(@Nonnull String name, long maxLatency,
+                @Nonnull Callable<Void> flush, @Nonnull FileStoreStats stats) {
+        checkArgument(maxLatency >= 0);
+        this.maxLatency = maxLatency;
+        this.flush = checkNotNull(flush);
+        this.stats = checkNotNull(stats);
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, checkNotNull(name));
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Wait until the head state current at the time of this call has been
+     * persisted. Requests pending when this instance is closed are still
+     * persisted, later calls return immediately.
+     * @throws IOException  if persisting the head state failed
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    void commit() throws IOException, InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long ticket = ++requested;
+            if (ticket == completed + 1) {
+                oldestPending = nanoTime();
+            }
+            notifyAll();
+            while (completed < ticket) {
+                wait();
+            }
+            if (failedFrom < ticket && ticket <= failedUpTo) {
+                throw new IOException("Failed to persist the head state", failure);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batch;
+            long previous;
+            synchronized (this) {
+                try {
+                    while (!closed && requested == completed) {
+                        wait();
+                    }
+                    long deadline = oldestPending + MILLISECONDS.toNanos(maxLatency);
+                    long remaining;
+                    while (!closed && (remaining = deadline - nanoTime()) > 0) {
+                        NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+                if (requested == completed) {
+                    // closed and nothing pending
+                    return;
+                }
+                batch = requested;
+                previous = completed;
+            }
+
+            IOException error = null;
+            long start = nanoTime();
+            try {
+                flush.call();
+            } catch (IOException e) {
+                error = e;
+            } catch (Exception e) {
+                error = new IOException(e);
+            }
+            stats.groupCommitted(batch - previous, nanoTime() - start);
+            if (error != null) {
+                LOG.warn("Failed to persist the head state for {} commits", batch - previous, error);
+            }
+
+            synchronized (this) {
+                completed = batch;
+                if (error != null) {
+                    failure = error;
+                    failedFrom = previous;
+                    failedUpTo = batch;
+                }
+                if (requested > completed) {
+                    oldestPending = nanoTime();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Persist any pending requests, release all waiting committers and stop
+     * the flusher thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the group commit flusher to finish");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static java.lang.Math.min;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimate of the compaction gain from the sizes of the segments by gc
+ * generation as recorded in the tar indexes. Unlike {@link CompactionGainEstimate}
+ * this does not traverse the repository: its cost is proportional to the
+ * number of tar files.
+ * <p>
+ * The live size of the repository is estimated as the size of all bulk
+ * segments and of the data segments of the generations retained by cleanup,
+ * plus the size of the data segments of the current generation, but at most
+ * {@code compactedSize}. That is the size of the current generation right
+ * after compaction wrote it or the live size determined by the last full
+ * estimation. The data segments of the generations cleanup reclaims and
+ * whatever was written to the current generation beyond {@code compactedSize}
+ * are considered garbage. The latter is an upper bound as it includes
+ * content added since.
+ */
+class LiveSizeEstimate {
+
+    private final int generation;
+
+    /**
+     * Data segments of generations older than this one are reclaimed by
+     * cleanup.
+     */
+    private final int oldestRetainedGeneration;
+
+    private final long compactedSize;
+
+    private final Map<String, GenerationSizes> files = newLinkedHashMap();
+
+    private final GenerationSizes totals = new GenerationSizes();
+
+    /**
+     * @param generation           the current gc generation
+     * @param retainedGenerations  number of generations retained by cleanup,
+     *                             including the current one
+     * @param compactedSize        size of the current generation after the
+     *                             last compaction, {@code -1} if not known.
+     */
+    LiveSizeEstimate(int generation, int retainedGenerations, long compactedSize) {
+        this.generation = generation;
+        this.oldestRetainedGeneration = generation - retainedGenerations + 1;
+        this.compactedSize = compactedSize;
+    }
+
+    /**
+     * Add the segments of a tar file to this estimate.
+     * @param name   name of the tar file
+     * @param sizes  sizes of the segments in the tar file
+     */
+    void add(String name, GenerationSizes sizes) {
+        files.put(name, sizes);
+        totals.addAll(sizes);
+    }
+
+    /**
+     * Returns a percentage estimate (scale 0-100) for how much disk space
+     * running compaction (and cleanup) could potentially release.
+     *
+     * @return percentage of disk space that could be freed with compaction
+     */
+    long estimateCompactionGain() {
+        long totalSize = getTotalSize();
+        if (totalSize == 0) {
+            return 0;
+        }
+        return 100 * (totalSize - getReachableSize()) / totalSize;
+    }
+
+    long getTotalSize() {
+        return totals.getTotalSize();
+    }
+
+    long getReachableSize() {
+        long current = getCurrentGenerationSize();
+        if (compactedSize >= 0) {
+            current = min(current, compactedSize);
+        }
+        return totals.getBulkSize() + getRetainedSize(totals) + current;
+    }
+
+    long getBulkSize() {
+        return totals.getBulkSize();
+    }
+
+    /**
+     * @return  size of the data segments of the current generation
+     */
+    long getCurrentGenerationSize() {
+        return totals.getDataSize(generation);
+    }
+
+    /**
+     * @return  size of the data segments of the generations retained by
+     *          cleanup, excluding the current generation
+     */
+    private long getRetainedSize(GenerationSizes sizes) {
+        return sizes.getDataSizeBefore(generation) - sizes.getDataSizeBefore(oldestRetainedGeneration);
+    }
+
+    /**
+     * The ratio of data segments reclaimed by cleanup in each tar file,
+     * worst first.
+     * @return  one line per tar file with its name, garbage ratio and sizes
+     */
+    String[] getGarbageRatios() {
+        List<Map.Entry<String, GenerationSizes>> entries = newArrayList(files.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, GenerationSizes>>() {
+            @Override
+            public int compare(Map.Entry<String, GenerationSizes> a, Map.Entry<String, GenerationSizes> b) {
+                return Long.compare(garbageRatio(b.getValue()), garbageRatio(a.getValue()));
+            }
+        });
+
+        String[] ratios = new String[entries.size()];
+        for (int i = 0; i < ratios.length; i++) {
+            GenerationSizes sizes = entries.get(i).getValue();
+            ratios[i] = entries.get(i).getKey() + ": " + garbageRatio(sizes) + "% ("
+                    + humanReadableByteCount(sizes.getDataSizeBefore(oldestRetainedGeneration)) + " of "
+                    + humanReadableByteCount(sizes.getTotalSize()) + ")";
+        }
+        return ratios;
+    }
+
+    private long garbageRatio(GenerationSizes sizes) {
+        long total = sizes.getTotalSize();
+        return total == 0 ? 0 : 100 * sizes.getDataSizeBefore(oldestRetainedGeneration) / total;
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.Thread.currentThread;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import org.apache.jackrabbit.oak.segment.SegmentBufferWriterPool;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.segment.SegmentStore;
+import org.apache.jackrabbit.oak.segment.SegmentTracker;
+import org.apache.jackrabbit.oak.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Pre-pass of online compaction, which compacts the subtrees two levels
+ * below the root concurrently. The compacted subtrees end up in the node
+ * de-duplication cache of the target generation, such that the subsequent
+ * single threaded compaction of the whole tree only needs to rewrite the
+ * top levels and otherwise links to the already compacted subtrees.
+ * <p>
+ * Each thread writes through its own {@link org.apache.jackrabbit.oak.segment.SegmentBufferWriter}
+ * taken from a {@link SegmentBufferWriterPool}, which is flushed once all
+ * subtrees have been compacted. The checkpoints are left to the final pass
+ * as they mostly share their content with the subtrees compacted here.
+ */
+class ParallelCompaction {
+
+    @Nonnull
+    private final SegmentWriter writer;
+
+    @Nonnull
+    private final SegmentBufferWriterPool pool;
+
+    @Nonnull
+    private final GCMonitor monitor;
+
+    private final int concurrency;
+
+    ParallelCompaction(@Nonnull SegmentStore store, @Nonnull SegmentTracker tracker,
+                       @Nonnull SegmentReader reader, @Nonnull SegmentWriter writer,
+                       @Nonnull GCMonitor monitor, int generation, int concurrency) {
+        checkArgument(concurrency > 1);
+        this.writer = checkNotNull(writer);
+        this.monitor = checkNotNull(monitor);
+        this.concurrency = concurrency;
+        this.pool = new SegmentBufferWriterPool(
+                store, tracker, reader, "c", Suppliers.ofInstance(generation));
+    }
+
+    /**
+     * Compact the subtrees of {@code head} in parallel. Subtrees that fail to
+     * compact are logged and left to the final pass.
+     * @param head    the node state to compact
+     * @param cancel  supplier to signal cancellation of this compaction
+     * @return  the number of compacted subtrees or {@code -1} if cancelled.
+     * @throws IOException  if the compacted segments could not be flushed
+     */
+    int compact(@Nonnull NodeState head, @Nonnull final Supplier<Boolean> cancel)
+    throws IOException {
+        List<Callable<Boolean>> tasks = newArrayList();
+        for (ChildNodeEntry child : head.getChildNodeEntries()) {
+            if (SegmentNodeStore.CHECKPOINTS.equals(child.getName())) {
+                continue;
+            }
+            for (ChildNodeEntry grandChild : child.getNodeState().getChildNodeEntries()) {
+                final NodeState subtree = grandChild.getNodeState();
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        return writer.compactNode(subtree, 2, pool, cancel) != null;
+                    }
+                });
+            }
+        }
+
+        int compacted = 0;
+        boolean cancelled = false;
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new CompactionThreadFactory());
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                try {
+                    if (result.get()) {
+                        compacted++;
+                    } else {
+                        cancelled = true;
+                    }
+                } catch (ExecutionException e) {
+                    monitor.warn("TarMK GC: parallel compaction of a subtree failed, " +
+                            "deferring it to the final pass: {}", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            executor.shutdownNow();
+            pool.flush();
+        }
+        return cancelled ? -1 : compacted;
+    }
+
+    private static class CompactionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "TarMK compaction-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.io.Files;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warm up of the segment cache after a restart. On close the file store
+ * writes the ids of the segments in the hot set of its segment cache to
+ * {@link #SNAPSHOT_FILE_NAME} in its directory. On the next start this
+ * class loads these segments again using a pool of threads.
+ */
+abstract class SegmentCacheWarmup implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentCacheWarmup.class);
+
+    static final String SNAPSHOT_FILE_NAME = "cache.snapshot";
+
+    @Nonnull
+    private final FileStoreStats stats;
+
+    @Nonnull
+    private final ExecutorService executor;
+
+    /**
+     * @param threads  number of threads loading segments
+     * @param stats    statistics receiving the progress of the warm up
+     */
+    SegmentCacheWarmup(int threads, @Nonnull FileStoreStats stats) {
+        checkArgument(threads > 0);
+        this.stats = checkNotNull(stats);
+        this.executor = Executors.newFixedThreadPool(threads, new WarmupThreadFactory());
+    }
+
+    /**
+     * Write the ids of the given segments to the snapshot file in
+     * {@code directory}, replacing any previous snapshot.
+     */
+    static void writeSnapshot(@Nonnull File directory, @Nonnull List<SegmentId> ids)
+    throws IOException {
+        File tmp = new File(directory, SNAPSHOT_FILE_NAME + ".tmp");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), UTF_8));
+        try {
+            for (SegmentId id : ids) {
+                writer.write(id.asUUID().toString());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        File snapshot = new File(directory, SNAPSHOT_FILE_NAME);
+        if ((snapshot.exists() && !snapshot.delete()) || !tmp.renameTo(snapshot)) {
+            throw new IOException("Failed to replace " + snapshot);
+        }
+    }
+
+    /**
+     * Read the segment ids from the snapshot file in {@code directory}.
+     * @return  the segment ids in the order they were written. Empty if
+     *          there is no snapshot file.
+     */
+    @Nonnull
+    static List<UUID> readSnapshot(@Nonnull File directory) throws IOException {
+        List<UUID> ids = newArrayList();
+        File snapshot = new File(directory, SNAPSHOT_FILE_NAME);
+        if (snapshot.exists()) {
+            for (String line : Files.readLines(snapshot, UTF_8)) {
+                try {
+                    ids.add(UUID.fromString(line.trim()));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Skipping invalid segment id {} in {}", line, snapshot);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Load the segment with the given id into the segment cache.
+     * Segments that are not in the store anymore must be skipped.
+     */
+    protected abstract void load(@Nonnull UUID id) throws Exception;
+
+    /**
+     * Start loading the given segments.
+     * @param ids  ids of the segments to load
+     */
+    void start(@Nonnull List<UUID> ids) {
+        stats.warmupStarted(ids.size());
+        for (final UUID id : ids) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        load(id);
+                    } catch (Exception e) {
+                        LOG.debug("Failed to load segment {} during warm up", id, e);
+                    } finally {
+                        stats.warmupLoaded();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for all segments passed to {@link #start(List)} to be loaded.
+     */
+    void await() throws InterruptedException {
+        while (!executor.awaitTermination(1, SECONDS)) {
+            LOG.debug("Waiting for the segment cache warm up to finish");
+        }
+    }
+
+    /**
+     * Stop loading segments.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, SECONDS)) {
+                LOG.warn("Segment cache warm up did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class WarmupThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "TarMK segment cache warm up-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
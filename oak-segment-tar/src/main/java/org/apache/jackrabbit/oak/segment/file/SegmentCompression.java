@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Compression of data segments stored in tar files. A compressed tar entry
+ * starts with the {@link #COMPRESSED_MAGIC} byte sequence followed by the
+ * size of the uncompressed segment and the deflated segment:
+ * <pre>
+ *     +---+---+---+---+---+---+---+---+-----...-----+
+ *     | z | a | K | v |  uncompressed size  | deflated  |
+ *     +---+---+---+---+---+---+---+---+-----...-----+
+ * </pre>
+ * Uncompressed data segments always start with {@code 0aK}, so compressed
+ * and uncompressed entries can be mixed freely within and across tar files.
+ * Readers transparently inflate compressed entries and the tar index and
+ * segment graph are unaffected. Bulk segments are never compressed: their
+ * content is arbitrary and mostly consists of already compressed binaries.
+ */
+final class SegmentCompression {
+
+    /**
+     * Magic byte sequence at the start of a compressed tar entry. The last
+     * byte is the version of the compression format.
+     */
+    static final int COMPRESSED_MAGIC =
+            ('z' << 24) + ('a' << 16) + ('K' << 8) + 1;
+
+    /** Size in bytes of the header of a compressed tar entry */
+    static final int HEADER_SIZE = 8;
+
+    private SegmentCompression() {}
+
+    /**
+     * Compress the given data segment.
+     *
+     * @param data    buffer containing the segment
+     * @param offset  offset of the segment in {@code data}
+     * @param size    size of the segment
+     * @return the compressed tar entry or {@code null} if compressing the
+     *         segment would not save at least one tar block.
+     */
+    @CheckForNull
+    static byte[] compress(@Nonnull byte[] data, int offset, int size) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, offset, size);
+            deflater.finish();
+
+            // Only worth it if we save at least one block in the tar file
+            int limit = size - TarWriter.BLOCK_SIZE;
+            if (limit <= HEADER_SIZE) {
+                return null;
+            }
+            byte[] compressed = new byte[limit];
+            int length = HEADER_SIZE;
+            while (!deflater.finished() && length < limit) {
+                length += deflater.deflate(compressed, length, limit - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+
+            ByteBuffer entry = ByteBuffer.wrap(compressed);
+            entry.putInt(COMPRESSED_MAGIC);
+            entry.putInt(size);
+            byte[] result = new byte[length];
+            System.arraycopy(compressed, 0, result, 0, length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param lsb    the least significant bits of the segment id
+     * @param entry  the tar entry of the segment
+     * @return {@code true} iff {@code entry} is a compressed data segment.
+     */
+    static boolean isCompressed(long lsb, @Nonnull ByteBuffer entry) {
+        return isDataSegmentId(lsb)
+                && entry.remaining() >= HEADER_SIZE
+                && entry.getInt(entry.position()) == COMPRESSED_MAGIC;
+    }
+
+    /**
+     * Inflate the given tar entry if it is a compressed data segment.
+     *
+     * @param lsb    the least significant bits of the segment id
+     * @param entry  the tar entry of the segment
+     * @return the segment, which is {@code entry} itself if it is not
+     *         compressed
+     * @throws IOException if the compressed entry is corrupt
+     */
+    @Nonnull
+    static ByteBuffer decompress(long lsb, @Nonnull ByteBuffer entry)
+    throws IOException {
+        if (!isCompressed(lsb, entry)) {
+            return entry;
+        }
+
+        int pos = entry.position();
+        int size = entry.getInt(pos + 4);
+        if (size <= 0) {
+            throw new IOException("Invalid size of compressed segment: " + size);
+        }
+
+        byte[] input;
+        int inputOffset;
+        int inputLength = entry.remaining() - HEADER_SIZE;
+        if (entry.hasArray()) {
+            input = entry.array();
+            inputOffset = entry.arrayOffset() + pos + HEADER_SIZE;
+        } else {
+            input = new byte[inputLength];
+            inputOffset = 0;
+            ByteBuffer duplicate = entry.duplicate();
+            duplicate.position(pos + HEADER_SIZE);
+            duplicate.get(input);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, inputOffset, inputLength);
+            byte[] segment = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int n = inflater.inflate(segment, length, size - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != size || !inflater.finished()) {
+                throw new IOException("Corrupt compressed segment: expected "
+                        + size + " bytes, inflated " + length);
+            }
+            return ByteBuffer.wrap(segment);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.decompress;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A store wide index from segment identifiers to the location of the
+ * segments in the tar files. Lookups cost a single hash probe instead of a
+ * search in the index of every tar file.
+ * <p>
+ * The index is an open addressing hash table keyed by the most and least
+ * significant bits of the segment identifiers. Keys and locations are kept in
+ * primitive arrays to avoid an object per segment. This class is thread safe.
+ */
+class SegmentLocationIndex {
+
+    private static final int MIN_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] msbs;
+
+    private long[] lsbs;
+
+    /**
+     * The tar file holding the segment in a slot or {@code null} if the slot
+     * is empty.
+     */
+    private TarReader[] readers;
+
+    private int[] offsets;
+
+    private int[] sizes;
+
+    private int size;
+
+    SegmentLocationIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Create an index for the given tar files.
+     *
+     * @param readers the tar files, newest first. If a segment is contained
+     *                in multiple tar files, the newest one is used.
+     * @return a new index.
+     */
+    @Nonnull
+    static SegmentLocationIndex build(@Nonnull List<TarReader> readers) {
+        int count = 0;
+        for (TarReader reader : readers) {
+            count += reader.count();
+        }
+        final SegmentLocationIndex index = new SegmentLocationIndex();
+        index.allocate(capacityFor(count));
+        for (final TarReader reader : readers) {
+            reader.accept(new TarEntryVisitor() {
+                @Override
+                public void visit(long msb, long lsb, File file, int offset, int size) {
+                    index.put(msb, lsb, reader, offset, size, false);
+                }
+            });
+        }
+        return index;
+    }
+
+    /**
+     * Add all segments of a tar file, which is newer than all tar files
+     * already in this index.
+     *
+     * @param reader the tar file.
+     */
+    void add(@Nonnull final TarReader reader) {
+        lock.writeLock().lock();
+        try {
+            reader.accept(new TarEntryVisitor() {
+                @Override
+                public void visit(long msb, long lsb, File file, int offset, int size) {
+                    put(msb, lsb, reader, offset, size, true);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of segments in this index.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return {@code true} if the segment is in this index.
+     */
+    boolean containsEntry(long msb, long lsb) {
+        lock.readLock().lock();
+        try {
+            return readers[find(msb, lsb)] != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the given segment from the tar file it is located in.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return the byte buffer, or null if the segment is not in this index or
+     *          its tar file was released in the meantime.
+     */
+    @CheckForNull
+    ByteBuffer readEntry(long msb, long lsb) throws IOException {
+        TarReader reader;
+        int offset;
+        int size;
+        lock.readLock().lock();
+        try {
+            int slot = find(msb, lsb);
+            reader = readers[slot];
+            offset = offsets[slot];
+            size = sizes[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (reader == null || !reader.retain()) {
+            return null;
+        }
+        try {
+            return decompress(lsb, reader.read(offset, size));
+        } finally {
+            reader.release();
+        }
+    }
+
+    //-----------------------------< internal >---------------------------------
+
+    private static int capacityFor(int count) {
+        // keep the load factor below 0.75
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >> 2) <= count) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // segment identifiers are random, mixing the halves is sufficient
+        long h = msb ^ lsb;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        readers = new TarReader[capacity];
+        offsets = new int[capacity];
+        sizes = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Find the slot of the given segment or the empty slot where it would be
+     * inserted.
+     */
+    private int find(long msb, long lsb) {
+        int mask = readers.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (readers[slot] != null
+                && (msbs[slot] != msb || lsbs[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void put(long msb, long lsb, TarReader reader,
+                     int offset, int size, boolean replace) {
+        if (this.size + 1 > readers.length - (readers.length >> 2)) {
+            resize();
+        }
+        int slot = find(msb, lsb);
+        if (readers[slot] == null) {
+            msbs[slot] = msb;
+            lsbs[slot] = lsb;
+            this.size++;
+        } else if (!replace) {
+            return;
+        }
+        readers[slot] = reader;
+        offsets[slot] = offset;
+        sizes[slot] = size;
+    }
+
+    private void resize() {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        TarReader[] oldReaders = readers;
+        int[] oldOffsets = offsets;
+        int[] oldSizes = sizes;
+        allocate(oldReaders.length << 1);
+        for (int i = 0; i < oldReaders.length; i++) {
+            if (oldReaders[i] != null) {
+                put(oldMsbs[i], oldLsbs[i], oldReaders[i],
+                        oldOffsets[i], oldSizes[i], true);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefetcher loading the data segments referenced from a segment into the
+ * {@link SegmentCache} in the background. Prefetching is only triggered by
+ * segments loaded on demand, i.e. it does not cascade to the references of
+ * prefetched segments.
+ * <p>
+ * The prefetches are executed by a bounded pool of I/O threads. Prefetches
+ * are dropped if the queue of the pool is full or the prefetcher has been
+ * closed. A prefetched segment counts as a hit when it is subsequently read
+ * and as wasted when it was not read by the time it falls out of the window
+ * of the most recently prefetched segments.
+ */
+abstract class SegmentPrefetcher implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    @Nonnull
+    private final SegmentCache cache;
+
+    @Nonnull
+    private final FileStoreStats stats;
+
+    @Nonnull
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Prefetched segments that have not been read yet, in prefetch order.
+     * Guarded by itself.
+     */
+    @Nonnull
+    private final Map<SegmentId, Boolean> unread;
+
+    /**
+     * @param cache    the cache to load the segments into
+     * @param stats    statistics receiving prefetch hits and waste
+     * @param threads  number of I/O threads
+     * @param window   number of prefetched segments tracked for computing
+     *                 the statistics. This is also the capacity of the queue
+     *                 of scheduled prefetches.
+     */
+    SegmentPrefetcher(@Nonnull SegmentCache cache, @Nonnull FileStoreStats stats,
+                      int threads, final int window) {
+        checkArgument(threads > 0);
+        checkArgument(window > 0);
+        this.cache = checkNotNull(cache);
+        this.stats = checkNotNull(stats);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                new ArrayBlockingQueue<Runnable>(window), new PrefetchThreadFactory(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.unread = new LinkedHashMap<SegmentId, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SegmentId, Boolean> eldest) {
+                if (size() > window) {
+                    SegmentPrefetcher.this.stats.prefetchWasted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Load the segment with the given id. Must not trigger any prefetching.
+     */
+    @Nonnull
+    protected abstract Segment load(@Nonnull SegmentId id) throws Exception;
+
+    /**
+     * Schedule the data segments referenced from {@code segment} for
+     * prefetching unless they are already cached.
+     * @param segment  segment just loaded on demand
+     */
+    void prefetch(@Nonnull Segment segment) {
+        for (final SegmentId id : segment.getReferencedIds()) {
+            if (!id.isDataSegmentId() || cache.containsSegment(id)) {
+                continue;
+            }
+            synchronized (unread) {
+                if (unread.containsKey(id)) {
+                    continue;
+                }
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    prefetchSegment(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Notify this prefetcher that a segment is being read.
+     * @param id  id of the segment
+     */
+    void accessed(@Nonnull SegmentId id) {
+        boolean hit;
+        synchronized (unread) {
+            hit = unread.remove(id) != null;
+        }
+        if (hit) {
+            stats.prefetchHit();
+        }
+    }
+
+    private void prefetchSegment(final SegmentId id) {
+        if (cache.containsSegment(id)) {
+            return;
+        }
+        try {
+            cache.geSegment(id, new Callable<Segment>() {
+                @Override
+                public Segment call() throws Exception {
+                    return load(id);
+                }
+            });
+            synchronized (unread) {
+                unread.put(id, Boolean.TRUE);
+            }
+            stats.prefetched();
+        } catch (ExecutionException e) {
+            LOG.debug("Failed to prefetch segment {}", id, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "TarMK segment prefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
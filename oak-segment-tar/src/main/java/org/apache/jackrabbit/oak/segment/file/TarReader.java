@@ -32,6 +32,8 @@ import static java.util.Collections.singletonList;
 import static org.apache.jackrabbit.oak.segment.Segment.REF_COUNT_OFFSET;
 import static org.apache.jackrabbit.oak.segment.Segment.getGcGeneration;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.decompress;
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.isCompressed;
 import static org.apache.jackrabbit.oak.segment.file.TarWriter.GRAPH_MAGIC;
 
 import java.io.Closeable;
@@ -49,6 +51,7 @@ import java.util.SortedMap;
 import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
 import javax.annotation.Nonnull;
@@ -218,7 +221,8 @@ class TarReader implements Closeable {
         for (Map.Entry<UUID, byte[]> entry : entries.entrySet()) {
             UUID uuid = entry.getKey();
             byte[] data = entry.getValue();
-            int generation = getGcGeneration(wrap(data), uuid);
+            int generation = getGcGeneration(
+                    decompress(uuid.getLeastSignificantBits(), wrap(data)), uuid);
             writer.writeEntry(
                     uuid.getMostSignificantBits(),
                     uuid.getLeastSignificantBits(),
@@ -507,8 +511,22 @@ class TarReader implements Closeable {
 
     private volatile boolean closed;
 
+    /**
+     * Number of references to this reader. The file store holds one
+     * reference as long as this reader is in its list of readers, each
+     * access through {@link #retain()} holds another one. The reader is
+     * closed when the last reference is released.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
     private volatile boolean hasGraph;
 
+    /**
+     * Sizes of the segments in this file. Computed from the tar index on
+     * first access.
+     */
+    private volatile GenerationSizes generationSizes;
+
     private TarReader(File file, FileAccess access, ByteBuffer index) {
         this.file = file;
         this.access = access;
@@ -547,6 +565,22 @@ class TarReader implements Closeable {
         }
     }
 
+    /**
+     * @return  the sizes of the segments in this file by gc generation
+     */
+    @Nonnull
+    GenerationSizes getGenerationSizes() {
+        GenerationSizes sizes = generationSizes;
+        if (sizes == null) {
+            sizes = new GenerationSizes();
+            for (TarEntry entry : getEntries()) {
+                sizes.add(entry.lsb(), entry.generation(), entry.size());
+            }
+            generationSizes = sizes;
+        }
+        return sizes;
+    }
+
     Set<UUID> getUUIDs() {
         Set<UUID> uuids = newHashSetWithExpectedSize(index.remaining() / TarEntry.SIZE);
         int position = index.position();
@@ -577,14 +611,27 @@ class TarReader implements Closeable {
     ByteBuffer readEntry(long msb, long lsb) throws IOException {
         int position = findEntry(msb, lsb);
         if (position != -1) {
-            return access.read(
+            return decompress(lsb, access.read(
                     index.getInt(position + 16),
-                    index.getInt(position + 20));
+                    index.getInt(position + 20)));
         } else {
             return null;
         }
     }
 
+    /**
+     * Get the byte buffer that allows reading the entry at the given
+     * location in this file, as listed in the tar index. The entry is
+     * returned as stored, i.e. compressed segments are not inflated.
+     *
+     * @param offset the offset of the entry data
+     * @param size the size of the entry data
+     * @return the byte buffer
+     */
+    ByteBuffer read(int offset, int size) throws IOException {
+        return access.read(offset, size);
+    }
+
     /**
      * Find the position of the given segment in the tar file.
      * It uses the tar index if available.
@@ -665,6 +712,10 @@ class TarReader implements Closeable {
             ByteBuffer segment = access.read(
                     entry.offset(),
                     Math.min(entry.size(), 16 * 256));
+            if (isCompressed(entry.lsb(), segment)) {
+                segment = decompress(entry.lsb(),
+                        access.read(entry.offset(), entry.size()));
+            }
             int pos = segment.position();
             int refCount = segment.get(pos + REF_COUNT_OFFSET) & 0xff;
             int refEnd = pos + 16 * (refCount + 1);
@@ -731,6 +782,62 @@ class TarReader implements Closeable {
         }
     }
 
+    /**
+     * Verify the entries of this file. The checksum of each entry is compared
+     * with the one recorded in its tar header and data segments are checked
+     * for a valid segment header.
+     *
+     * @param references  receives the ids of the segments referenced from the
+     *                    data segments in this file
+     * @return  descriptions of the problems found, empty if none
+     * @throws IOException
+     */
+    @Nonnull
+    List<String> verify(@Nonnull Set<UUID> references) throws IOException {
+        List<String> problems = newArrayList();
+        Map<UUID, List<UUID>> graph = getGraph(false);
+        for (TarEntry entry : getEntries()) {
+            UUID id = new UUID(entry.msb(), entry.lsb());
+            try {
+                ByteBuffer header = access.read(entry.offset() - BLOCK_SIZE, BLOCK_SIZE);
+                Matcher matcher = NAME_PATTERN.matcher(readString(header, 100));
+                if (!matcher.matches() || !id.equals(UUID.fromString(matcher.group(1)))) {
+                    problems.add("Invalid tar header of segment " + id + " in " + file);
+                    continue;
+                }
+
+                ByteBuffer data = access.read(entry.offset(), entry.size());
+                String checksum = matcher.group(3);
+                if (checksum != null) {
+                    byte[] b = new byte[entry.size()];
+                    data.duplicate().get(b);
+                    CRC32 crc = new CRC32();
+                    crc.update(b);
+                    if (crc.getValue() != Long.parseLong(checksum, 16)) {
+                        problems.add("Checksum mismatch of segment " + id + " in " + file);
+                        continue;
+                    }
+                }
+
+                if (isDataSegmentId(entry.lsb())) {
+                    ByteBuffer segment = decompress(entry.lsb(), data);
+                    int pos = segment.position();
+                    if (segment.remaining() < 16
+                            || segment.get(pos) != '0'
+                            || segment.get(pos + 1) != 'a'
+                            || segment.get(pos + 2) != 'K') {
+                        problems.add("Invalid header of segment " + id + " in " + file);
+                        continue;
+                    }
+                    references.addAll(getReferences(entry, id, graph));
+                }
+            } catch (IOException e) {
+                problems.add("Error reading segment " + id + " in " + file + ": " + e.getMessage());
+            }
+        }
+        return problems;
+    }
+
     /**
      * Collect the references of those blobs that are reachable from any segment with a
      * generation at or above {@code minGeneration}.
@@ -897,6 +1004,38 @@ class TarReader implements Closeable {
         return closed;
     }
 
+    /**
+     * Acquire a reference to this reader, which must be released through
+     * {@link #release()} once done.
+     *
+     * @return {@code false} if the last reference to this reader has
+     *         already been released, {@code true} otherwise.
+     */
+    boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release a reference to this reader and close it if it was the last one.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                close();
+            } catch (IOException e) {
+                log.warn("Failed to close tar file {}", file, e);
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
         closed = true;
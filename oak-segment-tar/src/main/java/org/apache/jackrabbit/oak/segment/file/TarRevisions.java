@@ -41,6 +41,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
@@ -158,29 +159,78 @@ public class TarRevisions implements Revisions, Closeable {
 
     private final Lock flushLock = new ReentrantLock();
 
+    /**
+     * Group commit of this instance or {@code null} if commits are only
+     * persisted by the periodic {@link #flush(Callable)}.
+     */
+    @CheckForNull
+    private volatile GroupCommit groupCommit;
+
     public void flush(@Nonnull Callable<Void> persisted) throws IOException {
         checkBound();
         if (flushLock.tryLock()) {
             try {
-                RecordId before = persistedHead.get();
-                RecordId after = getHead();
-                if (!after.equals(before)) {
-                    persisted.call();
-
-                    LOG.debug("TarMK journal update {} -> {}", before, after);
-                    journalFile.writeBytes(after.toString10() + " root " + System.currentTimeMillis() + "\n");
-                    journalFile.getChannel().force(false);
-                    persistedHead.set(after);
-                }
-            } catch (Exception e) {
-                propagateIfInstanceOf(e, IOException.class);
-                propagate(e);
+                doFlush(persisted);
             } finally {
                 flushLock.unlock();
             }
         }
     }
 
+    /**
+     * Same as {@link #flush(Callable)} but waits for a concurrent flush to
+     * finish instead of skipping this one. This guarantees that the head
+     * state current at the time of this call is persisted when it returns.
+     */
+    void syncFlush(@Nonnull Callable<Void> persisted) throws IOException {
+        checkBound();
+        flushLock.lock();
+        try {
+            doFlush(persisted);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush(@Nonnull Callable<Void> persisted) throws IOException {
+        try {
+            RecordId before = persistedHead.get();
+            RecordId after = getHead();
+            if (!after.equals(before)) {
+                persisted.call();
+
+                LOG.debug("TarMK journal update {} -> {}", before, after);
+                journalFile.writeBytes(after.toString10() + " root " + System.currentTimeMillis() + "\n");
+                journalFile.getChannel().force(false);
+                persistedHead.set(after);
+            }
+        } catch (Exception e) {
+            propagateIfInstanceOf(e, IOException.class);
+            propagate(e);
+        }
+    }
+
+    void setGroupCommit(@Nullable GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Wait until the current head state has been persisted to the journal.
+     * This is a no-op unless group commit is enabled for the file store
+     * backing this instance (see {@link FileStoreBuilder#withGroupCommit(int)}).
+     * Callers should not hold any locks preventing other commits, as this
+     * would prevent commits from being grouped.
+     * @throws IOException  if persisting the head state failed
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    @Override
+    public void awaitPersisted() throws IOException, InterruptedException {
+        GroupCommit gc = groupCommit;
+        if (gc != null) {
+            gc.commit();
+        }
+    }
+
     @Nonnull
     @Override
     public RecordId getHead() {
@@ -30,6 +30,9 @@ import static com.google.common.collect.Maps.newTreeMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.oak.segment.Segment.REF_COUNT_OFFSET;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.compress;
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.decompress;
+import static org.apache.jackrabbit.oak.segment.file.SegmentCompression.isCompressed;
 
 import java.io.Closeable;
 import java.io.File;
@@ -120,6 +123,12 @@ class TarWriter implements Closeable {
 
     private final FileStoreMonitor monitor;
 
+    /**
+     * Whether data segments should be compressed when written to this file.
+     * @see SegmentCompression
+     */
+    private final boolean compression;
+
     /**
      * File handle. Initialized lazily in
      * {@link #writeEntry(long, long, byte[], int, int)} to avoid creating
@@ -154,13 +163,23 @@ class TarWriter implements Closeable {
      */
     private final SortedMap<UUID, List<UUID>> graph = newTreeMap();
 
+    /**
+     * Sizes of the entries that have already been written.
+     */
+    private final GenerationSizes generationSizes = new GenerationSizes();
+
     TarWriter(File file) {
         this(file, FileStoreMonitor.DEFAULT);
     }
 
     TarWriter(File file, FileStoreMonitor monitor) {
+        this(file, monitor, false);
+    }
+
+    TarWriter(File file, FileStoreMonitor monitor, boolean compression) {
         this.file = file;
         this.monitor = monitor;
+        this.compression = compression;
     }
 
     /**
@@ -172,6 +191,15 @@ class TarWriter implements Closeable {
         return index.size();
     }
 
+    /**
+     * @return  a copy of the sizes of the segments written so far by gc generation
+     */
+    synchronized GenerationSizes getGenerationSizes() {
+        GenerationSizes sizes = new GenerationSizes();
+        sizes.addAll(generationSizes);
+        return sizes;
+    }
+
     synchronized Set<UUID> getUUIDs() {
         return newHashSet(index.keySet());
     }
@@ -201,7 +229,7 @@ class TarWriter implements Closeable {
             ByteBuffer data = ByteBuffer.allocate(entry.size());
             channel.read(data, entry.offset());
             data.rewind();
-            return data;
+            return decompress(lsb, data);
         } else {
             return null;
         }
@@ -214,17 +242,31 @@ class TarWriter implements Closeable {
         checkPositionIndexes(offset, offset + size, data.length);
 
         UUID uuid = new UUID(msb, lsb);
+        ByteBuffer segment = ByteBuffer.wrap(data, offset, size);
+        if (isCompressed(lsb, segment)) {
+            // already compressed entry copied from another tar file
+            segment = decompress(lsb, segment);
+        } else if (compression && isDataSegmentId(lsb)) {
+            byte[] compressed = compress(data, offset, size);
+            if (compressed != null) {
+                data = compressed;
+                offset = 0;
+                size = compressed.length;
+            }
+        }
+
         CRC32 checksum = new CRC32();
         checksum.update(data, offset, size);
         String entryName = String.format("%s.%08x", uuid, checksum.getValue());
         byte[] header = newEntryHeader(entryName, size);
 
         log.debug("Writing segment {} to {}", uuid, file);
-        return writeEntry(uuid, header, data, offset, size, generation);
+        return writeEntry(uuid, header, data, offset, size, generation, segment);
     }
 
     private synchronized long writeEntry(
-            UUID uuid, byte[] header, byte[] data, int offset, int size, int generation)
+            UUID uuid, byte[] header, byte[] data, int offset, int size, int generation,
+            ByteBuffer segment)
             throws IOException {
         checkState(!closed);
         if (access == null) {
@@ -246,9 +288,9 @@ class TarWriter implements Closeable {
                 uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
                 (int) (currentLength - size - padding), size, generation);
         index.put(uuid, entry);
+        generationSizes.add(uuid.getLeastSignificantBits(), generation, size);
 
         if (isDataSegmentId(uuid.getLeastSignificantBits())) {
-            ByteBuffer segment = ByteBuffer.wrap(data, offset, size);
             int pos = segment.position();
             int refcount = segment.get(pos + REF_COUNT_OFFSET) & 0xff;
             if (refcount != 0) {
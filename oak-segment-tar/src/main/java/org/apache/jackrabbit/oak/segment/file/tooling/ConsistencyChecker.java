@@ -19,6 +19,9 @@
 
 package org.apache.jackrabbit.oak.segment.file.tooling;
 
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.reverse;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.Math.min;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
@@ -33,11 +36,14 @@ import static org.apache.jackrabbit.oak.spi.state.NodeStateUtils.getNode;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 
+import com.google.common.io.Files;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentBlob;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
@@ -45,6 +51,7 @@ import org.apache.jackrabbit.oak.segment.file.FileStore.ReadOnlyStore;
 import org.apache.jackrabbit.oak.segment.file.JournalReader;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +63,12 @@ import org.slf4j.LoggerFactory;
 public class ConsistencyChecker {
     private static final Logger LOG = LoggerFactory.getLogger(ConsistencyChecker.class);
 
+    /**
+     * Suffix of the file next to the journal recording the latest revision
+     * verified by {@link #checkConsistencyIncrementally(File, String, int, long, long)}.
+     */
+    public static final String CHECKED_REVISION_SUFFIX = ".checked";
+
     private final ReadOnlyStore store;
     private final long debugInterval;
 
@@ -109,6 +122,122 @@ public class ConsistencyChecker {
         return null;
     }
 
+    /**
+     * Run an incremental consistency check. The segments of all tar files
+     * are verified concurrently first (see {@link ReadOnlyStore#verifySegments(int)}).
+     * Then the revisions added to the journal since the last run are checked in
+     * the order they were written. Each of these revisions is only checked for
+     * the changes against its predecessor, which must be consistent. The latest
+     * consistent revision is recorded in the file {@code journalFileName +
+     * CHECKED_REVISION_SUFFIX} for the next run. If there is no such record,
+     * the latest revision is fully traversed instead. If that fails as well
+     * this method falls back to
+     * {@link #checkConsistency(File, String, boolean, long, long)}.
+     *
+     * @param directory  directory containing the tar files
+     * @param journalFileName  name of the journal file containing the revision history
+     * @param threads          number of tar files to verify concurrently
+     * @param debugInterval    number of seconds between printing progress information to
+     *                         the console during the traversal of changes.
+     * @param binLen           number of bytes to read from binary properties. -1 for all.
+     * @return  the latest consistent revision out of the revisions listed in the journal.
+     * @throws IOException
+     */
+    public static String checkConsistencyIncrementally(File directory, String journalFileName,
+            int threads, long debugInterval, long binLen) throws IOException {
+        File checkedFile = new File(directory, journalFileName + CHECKED_REVISION_SUFFIX);
+        String good = readCheckedRevision(checkedFile);
+        ConsistencyChecker checker = new ConsistencyChecker(directory, debugInterval);
+        try {
+            print("Verifying segments using {} threads", threads);
+            List<String> problems = checker.store.verifySegments(threads);
+            for (String problem : problems) {
+                print(problem);
+            }
+            print("Found {} problems while verifying segments", problems.size());
+
+            List<String> revisions = revisionsSince(new File(directory, journalFileName), good);
+            if (revisions == null) {
+                print("Last checked revision {} not found in {}", good, journalFileName);
+                good = null;
+                revisions = revisionsSince(new File(directory, journalFileName), null);
+            }
+            print("Checking {} revisions since {}", revisions.size(), good);
+
+            for (String revision : revisions) {
+                String badPath;
+                try {
+                    if (good == null) {
+                        print("Traversing revision {}", revision);
+                        badPath = checker.traverse(revision, binLen);
+                    } else {
+                        print("Checking revision {} against {}", revision, good);
+                        badPath = checker.checkDelta(good, revision, binLen);
+                    }
+                } catch (IllegalArgumentException e) {
+                    print("Skipping invalid record id {}", revision);
+                    continue;
+                }
+                if (badPath != null) {
+                    print("Broken revision {} at {}", revision, badPath);
+                    break;
+                }
+                good = revision;
+                writeCheckedRevision(checkedFile, good);
+            }
+        } finally {
+            checker.close();
+        }
+
+        if (good == null) {
+            print("No consistent revision to start from, falling back to a full check");
+            return checkConsistency(directory, journalFileName, true, debugInterval, binLen);
+        }
+        print("Found latest good revision {}", good);
+        return good;
+    }
+
+    /**
+     * @return  the revisions written to {@code journal} after {@code revision}
+     *          in the order they were written, {@code null} if {@code revision}
+     *          is not in the journal. Only the latest revision if {@code revision}
+     *          is {@code null}.
+     */
+    private static List<String> revisionsSince(File journal, String revision) throws IOException {
+        List<String> revisions = newArrayList();
+        JournalReader reader = new JournalReader(journal);
+        try {
+            for (String r : reader) {
+                if (revision == null) {
+                    revisions.add(r);
+                    return revisions;
+                } else if (r.equals(revision)) {
+                    return reverse(revisions);
+                }
+                revisions.add(r);
+            }
+        } finally {
+            reader.close();
+        }
+        return revision == null ? revisions : null;
+    }
+
+    private static String readCheckedRevision(File file) throws IOException {
+        if (file.exists()) {
+            String revision = Files.readFirstLine(file, UTF_8);
+            return revision == null ? null : revision.trim();
+        }
+        return null;
+    }
+
+    private static void writeCheckedRevision(File file, String revision) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.write(revision + "\n", tmp, UTF_8);
+        if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
     /**
      * Create a new consistency checker instance
      *
@@ -161,6 +290,35 @@ public class ConsistencyChecker {
         }
     }
 
+    /**
+     * Check the changes between two revisions. Added nodes are fully
+     * traversed, changed nodes are checked for their changed properties
+     * and child nodes. Unchanged subtrees are not accessed.
+     *
+     * @param before    consistent base revision
+     * @param after     revision to check
+     * @param binLen    number of bytes to read from binary properties. -1 for all.
+     * @return  Path of the first inconsistency detected or {@code null} if none.
+     * @throws IllegalArgumentException  if either revision is not a valid record id
+     */
+    public String checkDelta(String before, String after, long binLen) {
+        RecordId beforeId = RecordId.fromString(store, before);
+        RecordId afterId = RecordId.fromString(store, after);
+        try {
+            nodeCount = 0;
+            propertyCount = 0;
+            NodeState base = store.getReader().readNode(beforeId).getChildNode("root");
+            NodeState head = store.getReader().readNode(afterId).getChildNode("root");
+            DeltaChecker checker = new DeltaChecker("/", binLen);
+            head.compareAgainstBaseState(base, checker);
+            print("Checked {} nodes and {} properties", nodeCount, propertyCount);
+            return checker.badPath;
+        } catch (RuntimeException e) {
+            print("Error while checking {}: {}", after, e.getMessage());
+            return "/";
+        }
+    }
+
     private int nodeCount;
     private int propertyCount;
 
@@ -190,16 +348,7 @@ public class ConsistencyChecker {
             nodeCount++;
             for (PropertyState propertyState : node.getProperties()) {
                 debug("Checking {}/{}", path, propertyState);
-                Type<?> type = propertyState.getType();
-                if (type == BINARY) {
-                    traverse(propertyState.getValue(BINARY), binLen);
-                } else if (type == BINARIES) {
-                    for (Blob blob : propertyState.getValue(BINARIES)) {
-                        traverse(blob, binLen);
-                    }
-                } else {
-                    propertyState.getValue(type);
-                }
+                checkProperty(propertyState, binLen);
                 propertyCount++;
             }
             for (ChildNodeEntry cne : node.getChildNodeEntries()) {
@@ -222,6 +371,20 @@ public class ConsistencyChecker {
         }
     }
 
+    private static void checkProperty(PropertyState propertyState, long binLen)
+            throws IOException {
+        Type<?> type = propertyState.getType();
+        if (type == BINARY) {
+            traverse(propertyState.getValue(BINARY), binLen);
+        } else if (type == BINARIES) {
+            for (Blob blob : propertyState.getValue(BINARIES)) {
+                traverse(blob, binLen);
+            }
+        } else {
+            propertyState.getValue(type);
+        }
+    }
+
     private static void traverse(Blob blob, long length) throws IOException {
         if (length < 0) {
             length = Long.MAX_VALUE;
@@ -251,6 +414,80 @@ public class ConsistencyChecker {
         store.close();
     }
 
+    /**
+     * Diff checking the properties and child nodes changed below
+     * {@code path}.
+     */
+    private class DeltaChecker implements NodeStateDiff {
+        private final String path;
+        private final long binLen;
+
+        /** Path of the first inconsistency detected, {@code null} if none */
+        private String badPath;
+
+        DeltaChecker(String path, long binLen) {
+            this.path = path;
+            this.binLen = binLen;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return check(after);
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return check(after);
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return true;
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            badPath = traverse(after, concat(path, name), true, binLen);
+            return badPath == null;
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            String childPath = concat(path, name);
+            debug("Checking {}", childPath);
+            try {
+                nodeCount++;
+                DeltaChecker checker = new DeltaChecker(childPath, binLen);
+                after.compareAgainstBaseState(before, checker);
+                badPath = checker.badPath;
+            } catch (RuntimeException e) {
+                print("Error while checking {}: {}", childPath, e.getMessage());
+                badPath = childPath;
+            }
+            return badPath == null;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return true;
+        }
+
+        private boolean check(PropertyState propertyState) {
+            try {
+                debug("Checking {}/{}", path, propertyState);
+                checkProperty(propertyState, binLen);
+                propertyCount++;
+                return true;
+            } catch (RuntimeException e) {
+                print("Error while checking {}: {}", path, e.getMessage());
+            } catch (IOException e) {
+                print("Error while checking {}: {}", path, e.getMessage());
+            }
+            badPath = path;
+            return false;
+        }
+    }
+
     private static void print(String format) {
         LOG.info(format);
     }
@@ -74,4 +74,9 @@ public class HttpStoreRevisions implements Revisions {
             @Nonnull Option... options) throws InterruptedException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void awaitPersisted() {
+        // read only
+    }
 }
@@ -73,4 +73,9 @@ public class MemoryStoreRevisions implements Revisions {
             @Nonnull Option... options) throws InterruptedException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void awaitPersisted() {
+        // nothing to persist
+    }
 }
@@ -904,6 +904,37 @@ public class CompactionAndCleanupIT {
         }
     }
 
+    @Test
+    public void parallelCompaction() throws IOException, CommitFailedException {
+        SegmentGCOptions gcOptions = defaultGCOptions().setCompactionConcurrency(4);
+        FileStore fileStore = fileStoreBuilder(getFileStoreFolder())
+                .withGCOptions(gcOptions)
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            createNodes(builder, 5, 3);
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+            String cpId = nodeStore.checkpoint(Long.MAX_VALUE);
+
+            NodeState uncompacted = nodeStore.getRoot();
+            assertTrue(fileStore.compact());
+            NodeState compacted = nodeStore.getRoot();
+
+            assertEquals(uncompacted, compacted);
+            assertEquals(((SegmentNodeState) uncompacted).getStableId(),
+                    ((SegmentNodeState) compacted).getStableId());
+            assertFalse(((Record) uncompacted).getRecordId().equals(((Record) compacted).getRecordId()));
+
+            NodeState checkpoint = nodeStore.retrieve(cpId);
+            assertEquals("Checkpoint should get de-duplicated",
+                    ((Record) compacted).getRecordId(), ((Record) checkpoint).getRecordId());
+        } finally {
+            fileStore.close();
+        }
+    }
+
     private static void addContent(NodeBuilder builder) {
         for (int k = 0; k < 10000; k++) {
             builder.setProperty(UUID.randomUUID().toString(), UUID.randomUUID().toString());
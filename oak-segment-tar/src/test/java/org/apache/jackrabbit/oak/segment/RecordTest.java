@@ -192,6 +192,16 @@ public class RecordTest {
         } finally {
             stream.close();
         }
+
+        stream = value.getNewStream();
+        try {
+            for (int i = 0; i < size; i++) {
+                assertEquals(source[i] & 0xff, stream.read());
+            }
+            assertEquals(-1, stream.read());
+        } finally {
+            stream.close();
+        }
     }
 
     @Test
@@ -20,11 +20,26 @@
 package org.apache.jackrabbit.oak.segment.file;
 
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -51,4 +66,96 @@ public class FileStoreTest {
         }
     }
 
+    @Test
+    public void segmentPrefetch() throws IOException, CommitFailedException, InterruptedException {
+        FileStore fileStore = fileStoreBuilder(getFileStoreFolder()).build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            for (int k = 0; k < 10; k++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                NodeBuilder child = builder.child("node-" + k);
+                for (int j = 0; j < 100; j++) {
+                    child.setProperty("property-" + j, "value-" + k + "-" + j);
+                }
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                fileStore.flush();
+            }
+        } finally {
+            fileStore.close();
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        fileStore = fileStoreBuilder(getFileStoreFolder())
+                .withSegmentPrefetch(2)
+                .withStatisticsProvider(new DefaultStatisticsProvider(executor))
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            traverse(nodeStore.getRoot());
+
+            FileStoreStats stats = fileStore.getStats();
+            for (int k = 0; k < 100 && stats.getPrefetchCount() == 0; k++) {
+                Thread.sleep(100);
+            }
+            assertTrue(stats.getPrefetchCount() > 0);
+            assertTrue(stats.getPrefetchHitCount() <= stats.getPrefetchCount());
+        } finally {
+            fileStore.close();
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    @Test
+    public void cacheWarmup() throws IOException, CommitFailedException {
+        FileStore fileStore = fileStoreBuilder(getFileStoreFolder())
+                .withCacheWarmup(2, false)
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int k = 0; k < 100; k++) {
+                builder.child("node-" + k).setProperty("property", "value-" + k);
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            traverse(nodeStore.getRoot());
+        } finally {
+            fileStore.close();
+        }
+        assertTrue(new File(getFileStoreFolder(), SegmentCacheWarmup.SNAPSHOT_FILE_NAME).exists());
+
+        fileStore = fileStoreBuilder(getFileStoreFolder())
+                .withCacheWarmup(2, false)
+                .build();
+        try {
+            FileStoreStats stats = fileStore.getStats();
+            assertTrue(stats.getCacheWarmupSegmentCount() > 0);
+            assertEquals(stats.getCacheWarmupSegmentCount(), stats.getCacheWarmupLoadedCount());
+        } finally {
+            fileStore.close();
+        }
+    }
+
+    @Test
+    public void cacheWarmupUnreadableSnapshot() throws IOException {
+        File folder = getFileStoreFolder();
+        assertTrue(new File(folder, SegmentCacheWarmup.SNAPSHOT_FILE_NAME).mkdirs());
+        FileStore fileStore = fileStoreBuilder(folder)
+                .withCacheWarmup(2, false)
+                .build();
+        try {
+            assertEquals(0, fileStore.getStats().getCacheWarmupSegmentCount());
+        } finally {
+            fileStore.close();
+        }
+    }
+
+    private static void traverse(NodeState node) {
+        for (PropertyState property : node.getProperties()) {
+            property.getValue(property.getType());
+        }
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            traverse(child.getNodeState());
+        }
+    }
+
 }
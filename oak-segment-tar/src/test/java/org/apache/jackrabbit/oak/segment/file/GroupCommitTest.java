@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.Test;
+
+public class GroupCommitTest {
+
+    private final FileStoreStats stats = new FileStoreStats(
+            StatisticsProvider.NOOP, mock(FileStore.class), 0);
+
+    @Test
+    public void concurrentCommitsAreGrouped() throws Exception {
+        final AtomicInteger flushes = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit("test", 50, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                flushes.incrementAndGet();
+                Thread.sleep(10);
+                return null;
+            }
+        }, stats);
+
+        int commits = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(commits);
+        try {
+            List<Future<Void>> results = Lists.newArrayList();
+            for (int k = 0; k < commits; k++) {
+                results.add(executor.submit(newCommit(groupCommit)));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            assertTrue("Expected fewer flushes than commits, got " + flushes.get(),
+                    flushes.get() < commits);
+        } finally {
+            executor.shutdown();
+            groupCommit.close();
+        }
+    }
+
+    @Test
+    public void failedFlush() throws Exception {
+        final AtomicInteger flushes = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit("test", 0, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (flushes.incrementAndGet() == 1) {
+                    throw new IOException("fail");
+                }
+                return null;
+            }
+        }, stats);
+        try {
+            try {
+                groupCommit.commit();
+                fail("Expected IOException");
+            } catch (IOException expected) {}
+
+            // subsequent commits succeed again
+            groupCommit.commit();
+            assertEquals(2, flushes.get());
+        } finally {
+            groupCommit.close();
+        }
+    }
+
+    @Test
+    public void commitAfterClose() throws Exception {
+        final AtomicInteger flushes = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit("test", 0, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                flushes.incrementAndGet();
+                return null;
+            }
+        }, stats);
+        groupCommit.commit();
+        groupCommit.close();
+        groupCommit.commit();
+        assertEquals(1, flushes.get());
+    }
+
+    private static Callable<Void> newCommit(final GroupCommit groupCommit) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                groupCommit.commit();
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GAIN_THRESHOLD_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETAINED_GENERATIONS_DEFAULT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LiveSizeEstimateTest {
+
+    private static final long DATA = 0xAL << 60;
+
+    private static final long BULK = 0xBL << 60;
+
+    // entries of 1536 bytes take 2048 bytes including the tar header
+    private static final int SIZE = 1536;
+
+    private static final long ENTRY = 2048;
+
+    @Test
+    public void testGenerationSizes() {
+        GenerationSizes sizes = new GenerationSizes();
+        sizes.add(DATA, 0, SIZE);
+        sizes.add(DATA, 1, SIZE);
+        sizes.add(DATA, 1, SIZE);
+        sizes.add(BULK, 0, SIZE);
+
+        assertEquals(ENTRY, sizes.getDataSize(0));
+        assertEquals(2 * ENTRY, sizes.getDataSize(1));
+        assertEquals(0, sizes.getDataSize(2));
+        assertEquals(ENTRY, sizes.getDataSizeBefore(1));
+        assertEquals(3 * ENTRY, sizes.getDataSizeBefore(2));
+        assertEquals(ENTRY, sizes.getBulkSize());
+        assertEquals(4 * ENTRY, sizes.getTotalSize());
+    }
+
+    @Test
+    public void testEstimate() {
+        GenerationSizes old = new GenerationSizes();
+        old.add(DATA, 0, SIZE);
+        old.add(DATA, 0, SIZE);
+        old.add(BULK, 0, SIZE);
+
+        GenerationSizes current = new GenerationSizes();
+        current.add(DATA, 1, SIZE);
+        current.add(DATA, 1, SIZE);
+
+        LiveSizeEstimate estimate = new LiveSizeEstimate(1, 1, ENTRY);
+        estimate.add("data00000a.tar", old);
+        estimate.add("data00001a.tar", current);
+
+        assertEquals(5 * ENTRY, estimate.getTotalSize());
+        assertEquals(2 * ENTRY, estimate.getCurrentGenerationSize());
+        assertEquals(2 * ENTRY, estimate.getReachableSize());
+        assertEquals(60, estimate.estimateCompactionGain());
+
+        String[] ratios = estimate.getGarbageRatios();
+        assertEquals(2, ratios.length);
+        assertTrue(ratios[0].startsWith("data00000a.tar: 66%"));
+        assertTrue(ratios[1].startsWith("data00001a.tar: 0%"));
+    }
+
+    @Test
+    public void testTwoCompactionsInARow() {
+        GenerationSizes gen0 = new GenerationSizes();
+        for (int i = 0; i < 4; i++) {
+            gen0.add(DATA, 0, SIZE);
+        }
+        gen0.add(BULK, 0, SIZE);
+
+        // First compaction and cleanup: generation 0 is still retained
+        GenerationSizes gen1 = new GenerationSizes();
+        gen1.add(DATA, 1, SIZE);
+        gen1.add(DATA, 1, SIZE);
+
+        LiveSizeEstimate estimate = new LiveSizeEstimate(1, RETAINED_GENERATIONS_DEFAULT, 2 * ENTRY);
+        estimate.add("data00000a.tar", gen0);
+        estimate.add("data00001a.tar", gen1);
+        assertEquals(7 * ENTRY, estimate.getReachableSize());
+        assertTrue(estimate.estimateCompactionGain() < GAIN_THRESHOLD_DEFAULT);
+        assertTrue(estimate.getGarbageRatios()[0].contains(": 0%"));
+        assertTrue(estimate.getGarbageRatios()[1].contains(": 0%"));
+
+        // Second compaction and cleanup: the data segments of generation 0
+        // are reclaimed, generation 1 is retained
+        GenerationSizes bulk = new GenerationSizes();
+        bulk.add(BULK, 0, SIZE);
+        GenerationSizes gen2 = new GenerationSizes();
+        gen2.add(DATA, 2, SIZE);
+        gen2.add(DATA, 2, SIZE);
+
+        estimate = new LiveSizeEstimate(2, RETAINED_GENERATIONS_DEFAULT, 2 * ENTRY);
+        estimate.add("data00000b.tar", bulk);
+        estimate.add("data00001a.tar", gen1);
+        estimate.add("data00002a.tar", gen2);
+        assertEquals(5 * ENTRY, estimate.getReachableSize());
+        assertTrue(estimate.estimateCompactionGain() < GAIN_THRESHOLD_DEFAULT);
+
+        // Generation 0 is garbage once generation 2 is current
+        estimate = new LiveSizeEstimate(2, RETAINED_GENERATIONS_DEFAULT, 2 * ENTRY);
+        estimate.add("data00000a.tar", gen0);
+        estimate.add("data00001a.tar", gen1);
+        estimate.add("data00002a.tar", gen2);
+        assertEquals(5 * ENTRY, estimate.getReachableSize());
+        assertEquals(44, estimate.estimateCompactionGain());
+        assertTrue(estimate.getGarbageRatios()[0].startsWith("data00000a.tar: 80%"));
+    }
+
+    @Test
+    public void testUnknownCompactedSize() {
+        GenerationSizes sizes = new GenerationSizes();
+        sizes.add(DATA, 0, SIZE);
+        sizes.add(DATA, 1, SIZE);
+
+        LiveSizeEstimate estimate = new LiveSizeEstimate(1, 1, -1);
+        estimate.add("data00000a.tar", sizes);
+        assertEquals(ENTRY, estimate.getReachableSize());
+        assertEquals(50, estimate.estimateCompactionGain());
+    }
+
+}
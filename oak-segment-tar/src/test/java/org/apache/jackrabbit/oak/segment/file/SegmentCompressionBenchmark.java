@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.util.Random;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Compares the disk footprint and the cold read latency of a file store with
+ * and without compression of its data segments. The segment cache holds
+ * uncompressed segments in either case so its footprint is not affected.
+ */
+public class SegmentCompressionBenchmark {
+
+    public static void main(String... args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            test(false);
+            test(true);
+        }
+    }
+
+    private static void test(boolean compression) throws Exception {
+        File directory = Files.createTempDir();
+        try {
+            FileStore store = fileStoreBuilder(directory)
+                    .withSegmentCompression(compression)
+                    .build();
+            try {
+                long time = System.currentTimeMillis();
+                write(SegmentNodeStoreBuilders.builder(store).build());
+                time = System.currentTimeMillis() - time;
+                System.out.println("compression=" + compression + " write: " + time + " ms");
+            } finally {
+                store.close();
+            }
+
+            System.out.println("compression=" + compression + " size: "
+                    + FileUtils.sizeOfDirectory(directory) / 1024 + " kB");
+
+            store = fileStoreBuilder(directory)
+                    .withSegmentCompression(compression)
+                    .build();
+            try {
+                long time = System.nanoTime();
+                traverse(store.getReader().readHeadState());
+                time = System.nanoTime() - time;
+                System.out.println("compression=" + compression + " cold read: "
+                        + time / 1000000 + " ms");
+            } finally {
+                store.close();
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static void write(SegmentNodeStore nodeStore) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            NodeBuilder root = nodeStore.getRoot().builder();
+            NodeBuilder parent = root.child("c" + i);
+            for (int j = 0; j < 1000; j++) {
+                NodeBuilder child = parent.child("n" + j);
+                child.setProperty("jcr:primaryType", "nt:unstructured");
+                child.setProperty("title", "Node " + j + " of collection " + i);
+                child.setProperty("count", random.nextInt(1000));
+            }
+            nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+    }
+
+    private static void traverse(NodeState node) {
+        for (PropertyState property : node.getProperties()) {
+            property.getValue(property.getType());
+        }
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            traverse(child.getNodeState());
+        }
+    }
+
+}
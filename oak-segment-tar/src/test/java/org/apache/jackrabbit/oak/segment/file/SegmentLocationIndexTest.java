@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentLocationIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<TarReader> readers = newArrayList();
+
+    @After
+    public void tearDown() throws IOException {
+        for (TarReader reader : readers) {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void buildAndRead() throws IOException {
+        List<UUID> ids = newArrayList();
+        // enough segments to resize the index
+        for (int i = 0; i < 3; i++) {
+            readers.add(0, writeTarFile(ids, 1000));
+        }
+
+        SegmentLocationIndex index = SegmentLocationIndex.build(readers);
+        assertEquals(ids.size(), index.size());
+        for (UUID id : ids) {
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            assertTrue(index.containsEntry(msb, lsb));
+            assertEquals(data(id), index.readEntry(msb, lsb));
+        }
+
+        UUID unknown = newId();
+        long msb = unknown.getMostSignificantBits();
+        long lsb = unknown.getLeastSignificantBits();
+        assertFalse(index.containsEntry(msb, lsb));
+        assertNull(index.readEntry(msb, lsb));
+    }
+
+    @Test
+    public void add() throws IOException {
+        List<UUID> ids = newArrayList();
+        TarReader first = writeTarFile(ids, 10);
+        readers.add(first);
+        SegmentLocationIndex index = SegmentLocationIndex.build(readers);
+
+        TarReader second = writeTarFile(ids, 10);
+        readers.add(0, second);
+        UUID id = ids.get(ids.size() - 1);
+        assertFalse(index.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+
+        index.add(second);
+        assertEquals(20, index.size());
+        for (UUID uuid : ids) {
+            assertEquals(data(uuid), index.readEntry(
+                    uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+
+        // entries of a closed tar file are not read
+        first.close();
+        id = ids.get(0);
+        assertTrue(index.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        assertNull(index.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+    }
+
+    private TarReader writeTarFile(List<UUID> ids, int count) throws IOException {
+        File file = folder.newFile();
+        TarWriter writer = new TarWriter(file);
+        try {
+            for (int i = 0; i < count; i++) {
+                UUID id = newId();
+                byte[] data = data(id).array();
+                writer.writeEntry(id.getMostSignificantBits(),
+                        id.getLeastSignificantBits(), data, 0, data.length, 0);
+                ids.add(id);
+            }
+        } finally {
+            writer.close();
+        }
+        return TarReader.open(file, false);
+    }
+
+    private static UUID newId() {
+        UUID id = UUID.randomUUID();
+        return new UUID(id.getMostSignificantBits(),
+                id.getLeastSignificantBits() & (-1 >>> 4)); // OAK-1672
+    }
+
+    private static ByteBuffer data(UUID id) {
+        return ByteBuffer.wrap(id.toString().getBytes(UTF_8));
+    }
+
+}
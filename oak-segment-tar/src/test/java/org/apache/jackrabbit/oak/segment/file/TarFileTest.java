@@ -20,12 +20,16 @@ package org.apache.jackrabbit.oak.segment.file;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.UUID;
 
+import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.file.TarReader;
 import org.apache.jackrabbit.oak.segment.file.TarWriter;
 import org.junit.Before;
@@ -77,4 +81,79 @@ public class TarFileTest {
         }
     }
 
+    @Test
+    public void testWriteAndReadCompressed() throws IOException {
+        UUID id = UUID.randomUUID();
+        long msb = id.getMostSignificantBits();
+        long dataLsb = (id.getLeastSignificantBits() & (-1L >>> 4)) | (0xAL << 60);
+        long bulkLsb = (id.getLeastSignificantBits() & (-1L >>> 4)) | (0xBL << 60);
+
+        // a data segment without references and highly compressible content
+        byte[] data = new byte[16 * 1024];
+        Arrays.fill(data, (byte) 'x');
+        data[0] = '0';
+        data[1] = 'a';
+        data[2] = 'K';
+        data[3] = 12;
+        data[Segment.REF_COUNT_OFFSET] = 0;
+        byte[] bulk = data.clone();
+
+        TarWriter writer = new TarWriter(file, FileStoreMonitor.DEFAULT, true);
+        try {
+            writer.writeEntry(msb, dataLsb, data, 0, data.length, 0);
+            writer.writeEntry(msb, bulkLsb, bulk, 0, bulk.length, 0);
+            assertEquals(ByteBuffer.wrap(data), writer.readEntry(msb, dataLsb));
+            assertEquals(ByteBuffer.wrap(bulk), writer.readEntry(msb, bulkLsb));
+        } finally {
+            writer.close();
+        }
+
+        // bulk segments are never compressed
+        assertTrue(file.length() < 2 * data.length);
+        assertTrue(file.length() > bulk.length);
+
+        TarReader reader = TarReader.open(file, false);
+        try {
+            assertEquals(ByteBuffer.wrap(data), reader.readEntry(msb, dataLsb));
+            assertEquals(ByteBuffer.wrap(bulk), reader.readEntry(msb, bulkLsb));
+        } finally {
+            reader.close();
+        }
+
+        reader = TarReader.open(file, true);
+        try {
+            assertEquals(ByteBuffer.wrap(data), reader.readEntry(msb, dataLsb));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testRetainAndRelease() throws IOException {
+        UUID id = UUID.randomUUID();
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits() & (-1 >>> 4); // OAK-1672
+        byte[] data = "Hello, World!".getBytes(UTF_8);
+
+        TarWriter writer = new TarWriter(file);
+        try {
+            writer.writeEntry(msb, lsb, data, 0, data.length, 0);
+        } finally {
+            writer.close();
+        }
+
+        TarReader reader = TarReader.open(file, false);
+        assertTrue(reader.retain());
+
+        // releasing the initial reference keeps the reader open
+        reader.release();
+        assertFalse(reader.isClosed());
+        assertEquals(ByteBuffer.wrap(data), reader.readEntry(msb, lsb));
+
+        // releasing the last reference closes the reader
+        reader.release();
+        assertTrue(reader.isClosed());
+        assertFalse(reader.retain());
+    }
+
 }
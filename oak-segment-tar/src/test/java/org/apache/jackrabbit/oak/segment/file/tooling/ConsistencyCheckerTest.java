@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tooling;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.file.tooling.ConsistencyChecker.CHECKED_REVISION_SUFFIX;
+import static org.apache.jackrabbit.oak.segment.file.tooling.ConsistencyChecker.checkConsistencyIncrementally;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.io.Files;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStore.ReadOnlyStore;
+import org.apache.jackrabbit.oak.segment.file.JournalReader;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConsistencyCheckerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void incrementalCheck() throws Exception {
+        File directory = folder.getRoot();
+        addRevisions(directory, 0, 3);
+
+        String head = getHead(directory);
+        assertEquals(head, checkConsistencyIncrementally(directory, "journal.log", 2, Long.MAX_VALUE, -1));
+        File checked = new File(directory, "journal.log" + CHECKED_REVISION_SUFFIX);
+        assertTrue(checked.exists());
+        assertEquals(head, Files.readFirstLine(checked, UTF_8));
+
+        addRevisions(directory, 3, 3);
+
+        head = getHead(directory);
+        assertEquals(head, checkConsistencyIncrementally(directory, "journal.log", 2, Long.MAX_VALUE, -1));
+        assertEquals(head, Files.readFirstLine(checked, UTF_8));
+    }
+
+    @Test
+    public void verifySegments() throws Exception {
+        File directory = folder.getRoot();
+        addRevisions(directory, 0, 3);
+
+        ReadOnlyStore store = fileStoreBuilder(directory).buildReadOnly();
+        try {
+            assertTrue(store.verifySegments(2).isEmpty());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void addRevisions(File directory, int from, int count) throws Exception {
+        FileStore store = fileStoreBuilder(directory).build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = from; i < from + count; i++) {
+                NodeBuilder root = nodeStore.getRoot().builder();
+                root.child("node-" + i).setProperty("p", i);
+                root.child("changed").setProperty("p", i);
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private static String getHead(File directory) throws IOException {
+        JournalReader journal = new JournalReader(new File(directory, "journal.log"));
+        try {
+            return journal.iterator().next();
+        } finally {
+            journal.close();
+        }
+    }
+
+}